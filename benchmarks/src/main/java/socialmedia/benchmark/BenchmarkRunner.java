@@ -0,0 +1,34 @@
+package socialmedia.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options. Unless other profilers are asked for, the GC
+ * profiler is added so every result also reports the bytes allocated per operation.
+ */
+public class BenchmarkRunner {
+    /**
+     * Runs the benchmarks selected on the command line, or all of them.
+     * @param args JMH command line options, see -h
+     * @throws Exception If the options are invalid or a benchmark fails
+     */
+    public static void main(String[] args) throws Exception{
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()){
+            Main.main(args); // Let JMH print what was asked for
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()){
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,133 @@
+package socialmedia.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import socialmedia.SocialMediaPlatform;
+
+/**
+ * Benchmarks deleting posts and removing accounts, including the cascade to their endorsements and comments.
+ * Each call consumes something that has to be created first, so every iteration is a batch of BATCH calls over
+ * posts and accounts created just before it, and the score is the time for the whole batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = DeletionBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = DeletionBenchmark.BATCH)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DeletionBenchmark {
+    /**
+     * The number of posts or accounts deleted in each iteration.
+     */
+    public final static int BATCH = 1000;
+
+    /**
+     * The number of accounts and original posts on the platform before the first batch is created.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    /**
+     * The SocialMediaPlatform implementation being benchmarked.
+     */
+    @Param({"SocialMedia", "ConcurrentSocialMedia", "CompactSocialMedia"})
+    public String implementation;
+
+    /**
+     * The platform being benchmarked.
+     */
+    private SocialMediaPlatform platform;
+    /**
+     * The handles of the accounts the fixture created.
+     */
+    private String[] handles;
+    /**
+     * The IDs of the posts the fixture created.
+     */
+    private int[] posts;
+    /**
+     * The posts to delete in the current iteration.
+     */
+    private final int[] batchPosts = new int[BATCH];
+    /**
+     * The handles of the accounts to remove in the current iteration.
+     */
+    private final String[] batchHandles = new String[BATCH];
+    /**
+     * The number of calls made in the current iteration.
+     */
+    private int calls;
+    /**
+     * The number of batches created, used to keep the handles of batch accounts unique.
+     */
+    private int batches;
+
+    /**
+     * Builds the platform at its starting size.
+     * @throws Exception If the platform cannot be built
+     */
+    @Setup(Level.Trial)
+    public void buildPlatform() throws Exception{
+        PlatformFixture fixture = new PlatformFixture(implementation, size);
+        platform = fixture.getPlatform();
+        handles = fixture.getHandles();
+        posts = fixture.getPosts();
+    }
+
+    /**
+     * Creates the posts and accounts the next batch deletes. Every batch post has an endorsement and a comment,
+     * and every batch account has two posts, a comment on an existing post and an endorsement of an existing post,
+     * so that the deletions cascade as they would on a live platform.
+     * @throws Exception If the platform rejects one of the calls
+     */
+    @Setup(Level.Iteration)
+    public void createBatch() throws Exception{
+        int[] indexes = PlatformFixture.randomIndexes(Math.min(handles.length, posts.length), BATCH);
+        for (int i = 0; i < BATCH; i++){
+            String author = handles[indexes[i]];
+            batchPosts[i] = platform.createPost(author, PlatformFixture.MESSAGE);
+            platform.endorsePost(handles[handles.length - 1 - indexes[i]], batchPosts[i]);
+            platform.commentPost(author, batchPosts[i], PlatformFixture.MESSAGE);
+
+            batchHandles[i] = "batch" + batches + "_" + i;
+            platform.createAccount(batchHandles[i]);
+            int own = platform.createPost(batchHandles[i], PlatformFixture.MESSAGE);
+            platform.createPost(batchHandles[i], PlatformFixture.MESSAGE);
+            platform.commentPost(batchHandles[i], posts[indexes[i]], PlatformFixture.MESSAGE);
+            platform.endorsePost(batchHandles[i], posts[posts.length - 1 - indexes[i]]);
+            platform.endorsePost(author, own);
+        }
+        batches++;
+        calls = 0;
+    }
+
+    /**
+     * Deletes a post with one endorsement and one comment.
+     * @throws Exception If the post is not recognised
+     */
+    @Benchmark
+    public void deletePost() throws Exception{
+        platform.deletePost(batchPosts[calls++]);
+    }
+
+    /**
+     * Removes an account with two posts, a comment and an endorsement, one of whose posts has been endorsed.
+     * @throws Exception If the handle is not recognised
+     */
+    @Benchmark
+    public void removeAccount() throws Exception{
+        platform.removeAccount(batchHandles[calls++]);
+    }
+}
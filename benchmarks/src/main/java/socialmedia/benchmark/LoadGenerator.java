@@ -0,0 +1,412 @@
+package socialmedia.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import socialmedia.PlatformClient;
+import socialmedia.PlatformServer;
+
+/**
+ * Puts load on a {@link PlatformServer} from many connections at once and reports the throughput and the latency of
+ * reads, writes and saves. Each connection sends one request, waits for its answer and sends the next, choosing
+ * between reads and writes at random. Unless a host is given, a server is started in this process on a free port, so
+ * a platform can be load tested on its own.
+ * <p>
+ * Options are given as name=value:
+ * <pre>
+ * host            server to connect to, or none to start one here
+ * port            port of the server to connect to, 7070 by default
+ * implementation  platform the server started here serves, VersionedSocialMedia by default
+ * connections     number of connections sending requests, 64 by default
+ * seconds         how long the load is measured for, 10 by default
+ * warmup          how long the load is put on before it is measured, in seconds, 2 by default
+ * writes          percentage of requests that change the platform, 20 by default
+ * accounts        number of accounts, each with a post, created before the load starts, 1000 by default
+ * saveEvery       milliseconds between saves made alongside the load, or 0 for none, the default
+ * </pre>
+ */
+public class LoadGenerator {
+    /**
+     * The number of requests sent before their answers are received while the platform is being filled.
+     */
+    private final static int SETUP_WINDOW = 64;
+
+    /**
+     * The latencies of the reads measured.
+     */
+    private final Latencies reads = new Latencies();
+    /**
+     * The latencies of the writes measured.
+     */
+    private final Latencies writes = new Latencies();
+    /**
+     * The latencies of the saves measured.
+     */
+    private final Latencies saves = new Latencies();
+    /**
+     * The number of requests answered BUSY while the load was measured.
+     */
+    private final LongAdder busy = new LongAdder();
+    /**
+     * The number of requests answered ERR while the load was measured.
+     */
+    private final LongAdder errors = new LongAdder();
+    /**
+     * The server to connect to.
+     */
+    private final String host;
+    /**
+     * The port of the server.
+     */
+    private final int port;
+    /**
+     * The percentage of requests that change the platform.
+     */
+    private final int writePercentage;
+    /**
+     * The handles of the accounts created before the load starts.
+     */
+    private String[] handles;
+    /**
+     * The IDs of the posts created before the load starts, one for each account.
+     */
+    private String[] posts;
+    /**
+     * The time measuring starts at, from System.nanoTime.
+     */
+    private long measureStart;
+    /**
+     * The time the load stops at, from System.nanoTime.
+     */
+    private long end;
+
+    /**
+     * Creates a load generator for a server.
+     * @param host The server to connect to
+     * @param port The port of the server
+     * @param writePercentage The percentage of requests that change the platform
+     */
+    public LoadGenerator(String host, int port, int writePercentage){
+        this.host = host;
+        this.port = port;
+        this.writePercentage = writePercentage;
+    }
+
+    /**
+     * Creates the accounts and posts the load is made of, each account with one post.
+     * @param accounts The number of accounts
+     * @throws IOException If the server cannot be reached or refuses a post
+     */
+    public void fill(int accounts) throws IOException{
+        handles = new String[accounts];
+        posts = new String[accounts];
+        try (PlatformClient client = new PlatformClient(host, port)){
+            for (int i = 0; i < accounts; i++){
+                handles[i] = "load" + i;
+            }
+            for (int start = 0; start < accounts; start += SETUP_WINDOW){
+                int stop = Math.min(accounts, start + SETUP_WINDOW);
+                for (int i = start; i < stop; i++){
+                    client.send("CREATE_ACCOUNT", handles[i]); // Refused if the server already has the account
+                }
+                for (int i = start; i < stop; i++){
+                    client.receive();
+                }
+                for (int i = start; i < stop; i++){
+                    client.send("CREATE_POST", handles[i], PlatformFixture.MESSAGE);
+                }
+                for (int i = start; i < stop; i++){
+                    String[] answer = client.receive();
+                    if (!answer[0].equals(PlatformServer.OK)){
+                        throw new IOException("Could not create a post: " + String.join(" ", answer));
+                    }
+                    posts[i] = answer[1];
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts load on the server and waits until it is done.
+     * @param connections The number of connections sending requests
+     * @param warmupMillis How long the load is put on before it is measured
+     * @param measureMillis How long the load is measured for
+     * @param saveEveryMillis The time between saves, or 0 for none
+     * @throws Exception If a connection fails
+     */
+    public void run(int connections, long warmupMillis, long measureMillis, long saveEveryMillis) throws Exception{
+        measureStart = System.nanoTime() + warmupMillis * 1000000;
+        end = measureStart + measureMillis * 1000000;
+        List<Thread> threads = new ArrayList<Thread>();
+        List<Exception> failures = new ArrayList<Exception>();
+        for (int i = 0; i < connections; i++){
+            long seed = PlatformFixture.SEED + i;
+            threads.add(new Thread(() -> {
+                try{
+                    sendRequests(new Random(seed));
+                } catch (Exception e){
+                    synchronized (failures){
+                        failures.add(e);
+                    }
+                }
+            }, "load-" + i));
+        }
+        if (saveEveryMillis > 0){
+            threads.add(new Thread(() -> {
+                try{
+                    sendSaves(saveEveryMillis);
+                } catch (Exception e){
+                    synchronized (failures){
+                        failures.add(e);
+                    }
+                }
+            }, "load-saves"));
+        }
+        for (Thread thread : threads){
+            thread.start();
+        }
+        for (Thread thread : threads){
+            thread.join();
+        }
+        if (!failures.isEmpty()){
+            throw failures.get(0);
+        }
+    }
+
+    /**
+     * Sends random reads and writes over a connection of its own until the load stops.
+     * @param random Source of the random choices
+     * @throws IOException If the connection fails
+     * @throws InterruptedException If the thread is interrupted while backing off
+     */
+    private void sendRequests(Random random) throws IOException, InterruptedException{
+        Latencies connectionReads = new Latencies();
+        Latencies connectionWrites = new Latencies();
+        try (PlatformClient client = new PlatformClient(host, port)){
+            while (true){
+                boolean write = random.nextInt(100) < writePercentage;
+                String[] fields = write ? writeRequest(random) : readRequest(random);
+                long start = System.nanoTime();
+                if (start >= end){
+                    break;
+                }
+                String[] answer = client.request(fields);
+                long finish = System.nanoTime();
+                if (start < measureStart){
+                    continue;
+                }
+                if (answer[0].equals(PlatformServer.BUSY)){
+                    busy.increment();
+                    Thread.sleep(1); // Back off so the server can catch up
+                } else{
+                    if (answer[0].equals(PlatformServer.ERROR)){
+                        errors.increment();
+                    }
+                    (write ? connectionWrites : connectionReads).record(finish - start);
+                }
+            }
+        }
+        reads.add(connectionReads); // Each connection records its own, so they never wait on each other
+        writes.add(connectionWrites);
+    }
+
+    /**
+     * Makes a random write: a post, an endorsement or a comment.
+     * @param random Source of the random choices
+     * @return The fields of the request
+     */
+    private String[] writeRequest(Random random){
+        int choice = random.nextInt(10);
+        String handle = handles[random.nextInt(handles.length)];
+        String post = posts[random.nextInt(posts.length)];
+        if (choice < 5){
+            return new String[]{"CREATE_POST", handle, PlatformFixture.MESSAGE};
+        }
+        if (choice < 8){
+            return new String[]{"ENDORSE_POST", handle, post};
+        }
+        return new String[]{"COMMENT_POST", handle, post, PlatformFixture.MESSAGE};
+    }
+
+    /**
+     * Makes a random read: a post, an account or the first page of a thread.
+     * @param random Source of the random choices
+     * @return The fields of the request
+     */
+    private String[] readRequest(Random random){
+        int choice = random.nextInt(10);
+        if (choice < 5){
+            return new String[]{"SHOW_POST", posts[random.nextInt(posts.length)]};
+        }
+        if (choice < 8){
+            return new String[]{"SHOW_ACCOUNT", handles[random.nextInt(handles.length)]};
+        }
+        return new String[]{"THREAD_PAGE", posts[random.nextInt(posts.length)], "", "20", "3", "5"};
+    }
+
+    /**
+     * Asks the server to save the platform at a fixed interval over a connection of its own until the load stops.
+     * @param intervalMillis The time between saves
+     * @throws IOException If the connection fails
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    private void sendSaves(long intervalMillis) throws IOException, InterruptedException{
+        try (PlatformClient client = new PlatformClient(host, port)){
+            while (true){
+                Thread.sleep(intervalMillis);
+                long start = System.nanoTime();
+                if (start >= end){
+                    return;
+                }
+                String[] answer = client.request("SAVE");
+                if (!answer[0].equals(PlatformServer.OK)){
+                    throw new IOException("Could not save: " + String.join(" ", answer));
+                }
+                if (start >= measureStart){
+                    saves.record(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the throughput and latencies measured.
+     * @param measureMillis How long the load was measured for
+     */
+    public void report(long measureMillis){
+        System.out.println(reads.summary("reads", measureMillis));
+        System.out.println(writes.summary("writes", measureMillis));
+        if (saves.count() > 0){
+            System.out.println(saves.summary("saves", measureMillis));
+        }
+        System.out.println("busy " + busy.sum() + ", errors " + errors.sum());
+    }
+
+    /**
+     * Runs a load test, starting a server in this process unless a host is given.
+     * @param args Options as name=value, see the class description
+     * @throws Exception If the server cannot be started or reached
+     */
+    public static void main(String[] args) throws Exception{
+        HashMap<String, String> options = new HashMap<String, String>();
+        for (String arg : args){
+            int equals = arg.indexOf('=');
+            if (equals < 0){
+                throw new IllegalArgumentException("Options are given as name=value, not " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        int connections = Integer.parseInt(options.getOrDefault("connections", "64"));
+        long seconds = Long.parseLong(options.getOrDefault("seconds", "10"));
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "2"));
+        int writePercentage = Integer.parseInt(options.getOrDefault("writes", "20"));
+        int accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        long saveEvery = Long.parseLong(options.getOrDefault("saveEvery", "0"));
+
+        String host = options.get("host");
+        int port = Integer.parseInt(options.getOrDefault("port", String.valueOf(PlatformServer.DEFAULT_PORT)));
+        PlatformServer server = null;
+        File snapshot = null;
+        if (host == null){
+            String implementation = options.getOrDefault("implementation", "VersionedSocialMedia");
+            snapshot = File.createTempFile("load", ".ser");
+            server = new PlatformServer(PlatformFixture.newPlatform(implementation), 0, snapshot.getPath(),
+                    connections + 1, 2 * Runtime.getRuntime().availableProcessors(), 100);
+            server.start();
+            host = "localhost";
+            port = server.getPort();
+            System.out.println("Started a server for " + implementation + " on port " + port);
+        }
+        try{
+            LoadGenerator generator = new LoadGenerator(host, port, writePercentage);
+            generator.fill(accounts);
+            System.out.println(connections + " connections, " + writePercentage + "% writes, " + seconds + " s"
+                    + (saveEvery > 0 ? ", saving every " + saveEvery + " ms" : ""));
+            generator.run(connections, warmup * 1000, seconds * 1000, saveEvery);
+            generator.report(seconds * 1000);
+        } finally{
+            if (server != null){
+                server.close();
+                snapshot.delete();
+            }
+        }
+    }
+
+    /**
+     * The latencies of the requests of one kind.
+     */
+    private static class Latencies {
+        /**
+         * The latencies recorded, in nanoseconds.
+         */
+        private long[] values = new long[1024];
+        /**
+         * The number of latencies recorded.
+         */
+        private int count;
+
+        /**
+         * Records a latency.
+         * @param nanos The latency in nanoseconds
+         */
+        synchronized void record(long nanos){
+            if (count == values.length){
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nanos;
+        }
+
+        /**
+         * Records every latency recorded by another list.
+         * @param other The other list, which is no longer recorded to
+         */
+        synchronized void add(Latencies other){
+            if (count + other.count > values.length){
+                values = Arrays.copyOf(values, Math.max(values.length * 2, count + other.count));
+            }
+            System.arraycopy(other.values, 0, values, count, other.count);
+            count += other.count;
+        }
+
+        /**
+         * Returns the number of latencies recorded.
+         * @return Number of latencies
+         */
+        synchronized int count(){
+            return count;
+        }
+
+        /**
+         * Describes the throughput and the latency percentiles of the requests.
+         * @param name The kind of request
+         * @param measureMillis How long the load was measured for
+         * @return The description
+         */
+        synchronized String summary(String name, long measureMillis){
+            if (count == 0){
+                return name + ": none";
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return String.format("%s: %d, %.0f/s, p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms", name, count,
+                    count * 1000.0 / measureMillis, percentile(sorted, 0.5), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), sorted[count - 1] / 1e6);
+        }
+
+        /**
+         * Returns a percentile of sorted latencies.
+         * @param sorted The latencies in increasing order
+         * @param fraction The fraction of latencies at or below the percentile
+         * @return The percentile in milliseconds
+         */
+        private static double percentile(long[] sorted, double fraction){
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package socialmedia.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import socialmedia.SocialMediaPlatform;
+
+/**
+ * Benchmarks saving the platform to a file and loading it back. Each call takes long enough to be timed on its
+ * own, so every iteration is a single call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PersistenceBenchmark {
+    /**
+     * The number of accounts and original posts on the platform.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    /**
+     * The SocialMediaPlatform implementation being benchmarked.
+     */
+    @Param({"SocialMedia", "ConcurrentSocialMedia", "CompactSocialMedia"})
+    public String implementation;
+
+    /**
+     * The platform being benchmarked.
+     */
+    private SocialMediaPlatform platform;
+    /**
+     * The file the platform is saved to and loaded from.
+     */
+    private File file;
+
+    /**
+     * Builds the platform and saves it once, so there is a file to load from.
+     * @throws Exception If the platform cannot be built or saved
+     */
+    @Setup(Level.Trial)
+    public void buildPlatform() throws Exception{
+        platform = new PlatformFixture(implementation, size).getPlatform();
+        file = File.createTempFile("platform", ".ser");
+        platform.savePlatform(file.getPath());
+    }
+
+    /**
+     * Deletes the file the platform was saved to.
+     */
+    @TearDown(Level.Trial)
+    public void deleteFile(){
+        file.delete();
+    }
+
+    /**
+     * Saves the platform.
+     * @throws Exception If the file cannot be written
+     */
+    @Benchmark
+    public void savePlatform() throws Exception{
+        platform.savePlatform(file.getPath());
+    }
+
+    /**
+     * Loads the platform, replacing the platform in memory with the one in the file.
+     * @throws Exception If the file cannot be read
+     */
+    @Benchmark
+    public void loadPlatform() throws Exception{
+        platform.loadPlatform(file.getPath());
+    }
+}
@@ -0,0 +1,131 @@
+package socialmedia.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import socialmedia.PipelinedSocialMedia;
+
+/**
+ * Benchmarks posting through the command pipeline of PipelinedSocialMedia. Each call submits a command and keeps up
+ * to a window of commands outstanding before waiting for the oldest, so a window of 1 measures a caller that waits
+ * for every answer and larger windows let the writer apply commands in batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PipelineBenchmark {
+    /**
+     * The number of accounts and original posts on the platform at the start of each iteration.
+     */
+    @Param({"1000", "100000"})
+    public int size;
+    /**
+     * The number of commands a caller keeps outstanding.
+     */
+    @Param({"1", "64", "1024"})
+    public int window;
+
+    /**
+     * The platform being benchmarked.
+     */
+    private PipelinedSocialMedia platform;
+    /**
+     * The handles of the accounts on the platform.
+     */
+    private String[] handles;
+    /**
+     * The IDs of the posts on the platform that can be endorsed.
+     */
+    private int[] posts;
+    /**
+     * Random account and post numbers, cycled through by the benchmarks.
+     */
+    private int[] indexes;
+    /**
+     * The outstanding commands, used as a ring of the window size.
+     */
+    private CompletableFuture<?>[] outstanding;
+    /**
+     * The number of calls made in the current iteration.
+     */
+    private int calls;
+
+    /**
+     * Rebuilds the platform at its starting size.
+     * @throws Exception If the platform cannot be built
+     */
+    @Setup(Level.Iteration)
+    public void buildPlatform() throws Exception{
+        PlatformFixture fixture = new PlatformFixture("PipelinedSocialMedia", size);
+        platform = (PipelinedSocialMedia) fixture.getPlatform();
+        handles = fixture.getHandles();
+        posts = fixture.getPosts();
+        indexes = PlatformFixture.randomIndexes(Math.min(handles.length, posts.length), 1 << 16);
+        outstanding = new CompletableFuture<?>[window];
+        calls = 0;
+    }
+
+    /**
+     * Waits for the outstanding commands and stops the writer.
+     * @throws IOException If the platform cannot be closed
+     */
+    @TearDown(Level.Iteration)
+    public void closePlatform() throws IOException{
+        for (CompletableFuture<?> command : outstanding){
+            if (command != null){
+                command.join();
+            }
+        }
+        platform.close();
+    }
+
+    /**
+     * Keeps a command outstanding, first waiting for the one submitted a window earlier.
+     * @param command The command just submitted
+     * @return The answer of the command it replaces, or null while the window fills
+     */
+    private Object keep(CompletableFuture<?> command){
+        int slot = calls++ % window;
+        CompletableFuture<?> oldest = outstanding[slot];
+        outstanding[slot] = command;
+        return oldest == null ? null : oldest.join();
+    }
+
+    /**
+     * Creates an original post from a random account.
+     * @return ID of an earlier post
+     */
+    @Benchmark
+    public Object createPost(){
+        int i = indexes[calls & (indexes.length - 1)];
+        return keep(platform.createPostAsync(handles[i], PlatformFixture.MESSAGE));
+    }
+
+    /**
+     * Endorses a random post from a random account.
+     * @return ID of an earlier endorsement
+     */
+    @Benchmark
+    public Object endorsePost(){
+        int i = indexes[calls & (indexes.length - 1)];
+        return keep(platform.endorsePostAsync(handles[i], posts[posts.length - 1 - i]));
+    }
+}
@@ -0,0 +1,137 @@
+package socialmedia.benchmark;
+
+import java.util.Random;
+
+import socialmedia.CompactSocialMedia;
+import socialmedia.ConcurrentSocialMedia;
+import socialmedia.PipelinedSocialMedia;
+import socialmedia.SocialMedia;
+import socialmedia.SocialMediaPlatform;
+import socialmedia.VersionedSocialMedia;
+
+/**
+ * Builds the platforms the benchmarks run against. A platform of a given size has that many accounts and that many
+ * original posts, with a quarter as many comments and a quarter as many endorsements spread randomly over them.
+ * Every platform is built from the same seed, so each benchmark sees the same platform for the same size.
+ */
+public class PlatformFixture {
+    /**
+     * The seed of the random choices made while building a platform.
+     */
+    public final static long SEED = 1410;
+    /**
+     * The message of every post created by the fixture and the benchmarks.
+     */
+    public final static String MESSAGE = "A post of a typical length, long enough to be realistic but under the limit.";
+
+    /**
+     * The platform that was built.
+     */
+    private final SocialMediaPlatform platform;
+    /**
+     * The handles of the accounts created, indexed by account number.
+     */
+    private final String[] handles;
+    /**
+     * The IDs of the original and comment posts created, which can be endorsed or commented on.
+     */
+    private final int[] posts;
+
+    /**
+     * Builds a platform of the given size, first erasing the platform so the IDs start from 1.
+     * @param implementation Simple class name of the SocialMediaPlatform implementation to build
+     * @param size Number of accounts and number of original posts
+     * @throws Exception If the platform rejects one of the calls, which would be a bug in the fixture
+     */
+    public PlatformFixture(String implementation, int size) throws Exception{
+        platform = newPlatform(implementation);
+        platform.erasePlatform();
+        handles = new String[size];
+        for (int i = 0; i < size; i++){
+            handles[i] = "user" + i;
+            platform.createAccount(handles[i]);
+        }
+
+        Random random = new Random(SEED);
+        int replies = size / 4;
+        posts = new int[size + replies];
+        for (int i = 0; i < size; i++){
+            posts[i] = platform.createPost(handles[i], MESSAGE);
+        }
+        for (int i = 0; i < replies; i++){
+            posts[size + i] = platform.commentPost(randomHandle(random), posts[random.nextInt(size + i)], MESSAGE);
+            platform.endorsePost(randomHandle(random), posts[random.nextInt(size + i)]);
+        }
+    }
+
+    /**
+     * Creates an empty platform.
+     * @param implementation Simple class name of the SocialMediaPlatform implementation
+     * @return The new platform
+     */
+    public static SocialMediaPlatform newPlatform(String implementation){
+        switch (implementation){
+            case "SocialMedia":
+                return new SocialMedia();
+            case "ConcurrentSocialMedia":
+                return new ConcurrentSocialMedia();
+            case "CompactSocialMedia":
+                return new CompactSocialMedia();
+            case "VersionedSocialMedia":
+                return new VersionedSocialMedia();
+            case "PipelinedSocialMedia":
+                return new PipelinedSocialMedia();
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+    }
+
+    /**
+     * Returns the platform that was built.
+     * @return The platform
+     */
+    public SocialMediaPlatform getPlatform(){
+        return platform;
+    }
+
+    /**
+     * Returns the handles of the accounts created, indexed by account number.
+     * @return Handles of the accounts
+     */
+    public String[] getHandles(){
+        return handles;
+    }
+
+    /**
+     * Returns the IDs of the original and comment posts created.
+     * @return IDs of posts that can be endorsed or commented on
+     */
+    public int[] getPosts(){
+        return posts;
+    }
+
+    /**
+     * Returns the handle of a random account.
+     * @param random Source of the random choice
+     * @return Handle of the account
+     */
+    public String randomHandle(Random random){
+        return handles[random.nextInt(handles.length)];
+    }
+
+    /**
+     * Returns a sequence of random indexes below a bound, so that a benchmark can pick random accounts or posts
+     * without calling Random while it is being measured.
+     * @param bound Exclusive upper bound of the indexes
+     * @param count Number of indexes, a power of two so the sequence can be cycled through with a mask
+     * @return The indexes
+     */
+    public static int[] randomIndexes(int bound, int count){
+        Random random = new Random(SEED);
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++){
+            indexes[i] = random.nextInt(bound);
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,126 @@
+package socialmedia.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import socialmedia.SocialMediaPlatform;
+
+/**
+ * Benchmarks the calls that add accounts and posts. Each call grows the platform, so the platform is rebuilt at
+ * its starting size before every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PostingBenchmark {
+    /**
+     * The number of accounts and original posts on the platform at the start of each iteration.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    /**
+     * The SocialMediaPlatform implementation being benchmarked.
+     */
+    @Param({"SocialMedia", "ConcurrentSocialMedia", "CompactSocialMedia"})
+    public String implementation;
+
+    /**
+     * The platform being benchmarked.
+     */
+    private SocialMediaPlatform platform;
+    /**
+     * The handles of the accounts on the platform.
+     */
+    private String[] handles;
+    /**
+     * The IDs of the posts on the platform that can be endorsed or commented on.
+     */
+    private int[] posts;
+    /**
+     * Random account and post numbers, cycled through by the benchmarks.
+     */
+    private int[] indexes;
+    /**
+     * The number of calls made in the current iteration.
+     */
+    private int calls;
+
+    /**
+     * Rebuilds the platform at its starting size.
+     * @throws Exception If the platform cannot be built
+     */
+    @Setup(Level.Iteration)
+    public void buildPlatform() throws Exception{
+        PlatformFixture fixture = new PlatformFixture(implementation, size);
+        platform = fixture.getPlatform();
+        handles = fixture.getHandles();
+        posts = fixture.getPosts();
+        indexes = PlatformFixture.randomIndexes(Math.min(handles.length, posts.length), 1 << 16);
+        calls = 0;
+    }
+
+    /**
+     * Returns the next random account or post number.
+     * @return Index into the handles or posts
+     */
+    private int next(){
+        return indexes[calls++ & (indexes.length - 1)];
+    }
+
+    /**
+     * Creates an account with a handle that has not been used.
+     * @return ID of the account
+     * @throws Exception If the handle is rejected
+     */
+    @Benchmark
+    public int createAccount() throws Exception{
+        return platform.createAccount("new" + calls++);
+    }
+
+    /**
+     * Creates an original post from a random account.
+     * @return ID of the post
+     * @throws Exception If the post is rejected
+     */
+    @Benchmark
+    public int createPost() throws Exception{
+        return platform.createPost(handles[next()], PlatformFixture.MESSAGE);
+    }
+
+    /**
+     * Endorses a random post from a random account.
+     * @return ID of the endorsement
+     * @throws Exception If the endorsement is rejected
+     */
+    @Benchmark
+    public int endorsePost() throws Exception{
+        int i = next();
+        return platform.endorsePost(handles[i], posts[posts.length - 1 - i]);
+    }
+
+    /**
+     * Comments on a random post from a random account.
+     * @return ID of the comment
+     * @throws Exception If the comment is rejected
+     */
+    @Benchmark
+    public int commentPost() throws Exception{
+        int i = next();
+        return platform.commentPost(handles[i], posts[posts.length - 1 - i], PlatformFixture.MESSAGE);
+    }
+}
@@ -0,0 +1,194 @@
+package socialmedia.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import socialmedia.SocialMediaPlatform;
+
+/**
+ * Benchmarks the calls that read from the platform without changing it: looking up single accounts and posts, the
+ * counters and leaderboards that summarise the whole platform, and searching the messages of the posts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class QueryBenchmark {
+    /**
+     * The number of accounts and original posts on the platform.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    /**
+     * The SocialMediaPlatform implementation being benchmarked.
+     */
+    @Param({"SocialMedia", "ConcurrentSocialMedia", "CompactSocialMedia"})
+    public String implementation;
+
+    /**
+     * The platform being benchmarked.
+     */
+    private SocialMediaPlatform platform;
+    /**
+     * The handles of the accounts on the platform.
+     */
+    private String[] handles;
+    /**
+     * The IDs of the posts on the platform.
+     */
+    private int[] posts;
+    /**
+     * Random account and post numbers, cycled through by the benchmarks.
+     */
+    private int[] indexes;
+    /**
+     * The number of calls made.
+     */
+    private int calls;
+
+    /**
+     * Builds the platform.
+     * @throws Exception If the platform cannot be built
+     */
+    @Setup(Level.Trial)
+    public void buildPlatform() throws Exception{
+        PlatformFixture fixture = new PlatformFixture(implementation, size);
+        platform = fixture.getPlatform();
+        handles = fixture.getHandles();
+        posts = fixture.getPosts();
+        indexes = PlatformFixture.randomIndexes(Math.min(handles.length, posts.length), 1 << 16);
+    }
+
+    /**
+     * Returns the next random account or post number.
+     * @return Index into the handles or posts
+     */
+    private int next(){
+        return indexes[calls++ & (indexes.length - 1)];
+    }
+
+    /**
+     * Shows the summary of a random account.
+     * @return The summary
+     * @throws Exception If the handle is not recognised
+     */
+    @Benchmark
+    public String showAccount() throws Exception{
+        return platform.showAccount(handles[next()]);
+    }
+
+    /**
+     * Shows a random post.
+     * @return The post
+     * @throws Exception If the post is not recognised
+     */
+    @Benchmark
+    public String showIndividualPost() throws Exception{
+        return platform.showIndividualPost(posts[next()]);
+    }
+
+    /**
+     * Counts the accounts.
+     * @return Number of accounts
+     */
+    @Benchmark
+    public int getNumberOfAccounts(){
+        return platform.getNumberOfAccounts();
+    }
+
+    /**
+     * Counts the original posts.
+     * @return Number of original posts
+     */
+    @Benchmark
+    public int getTotalOriginalPosts(){
+        return platform.getTotalOriginalPosts();
+    }
+
+    /**
+     * Counts the comments.
+     * @return Number of comments
+     */
+    @Benchmark
+    public int getTotalCommentPosts(){
+        return platform.getTotalCommentPosts();
+    }
+
+    /**
+     * Counts the endorsements.
+     * @return Number of endorsements
+     */
+    @Benchmark
+    public int getTotalEndorsmentPosts(){
+        return platform.getTotalEndorsmentPosts();
+    }
+
+    /**
+     * Finds the most endorsed post.
+     * @return ID of the post
+     */
+    @Benchmark
+    public int getMostEndorsedPost(){
+        return platform.getMostEndorsedPost();
+    }
+
+    /**
+     * Finds the most endorsed account.
+     * @return ID of the account
+     */
+    @Benchmark
+    public int getMostEndorsedAccount(){
+        return platform.getMostEndorsedAccount();
+    }
+
+    /**
+     * Lists the ten most endorsed posts.
+     * @return IDs of the posts
+     */
+    @Benchmark
+    public int[] getTopEndorsedPosts(){
+        return platform.getTopEndorsedPosts(10);
+    }
+
+    /**
+     * Lists the ten most endorsed accounts.
+     * @return IDs of the accounts
+     */
+    @Benchmark
+    public int[] getTopEndorsedAccounts(){
+        return platform.getTopEndorsedAccounts(10);
+    }
+
+    /**
+     * Finds the ten newest posts containing two words. Every post of the fixture contains both, so this walks the
+     * two longest posting lists in the index.
+     * @return IDs of the posts
+     */
+    @Benchmark
+    public int[] searchPostsAllWords(){
+        return platform.searchPosts("typical length", 10);
+    }
+
+    /**
+     * Finds the ten newest posts containing a word starting with a prefix or another word.
+     * @return IDs of the posts
+     */
+    @Benchmark
+    public int[] searchPostsPrefixOrWord(){
+        return platform.searchPosts("real* OR limit", 10);
+    }
+}
@@ -0,0 +1,121 @@
+package socialmedia.benchmark;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import socialmedia.SocialMediaPlatform;
+
+/**
+ * Benchmarks rendering a post and all of the comments below it with showPostChildrenDetails, on a deep thread
+ * where every comment replies to the one before, and on a wide thread where every comment replies to the post.
+ * Each thread is also streamed to a Writer that discards it, to compare with building it in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ThreadBenchmark {
+    /**
+     * The number of accounts and original posts on the platform around the threads.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+    /**
+     * The SocialMediaPlatform implementation being benchmarked.
+     */
+    @Param({"SocialMedia", "ConcurrentSocialMedia", "CompactSocialMedia"})
+    public String implementation;
+    /**
+     * The number of comments in each thread.
+     */
+    @Param({"1000"})
+    public int threadSize;
+
+    /**
+     * The platform being benchmarked.
+     */
+    private SocialMediaPlatform platform;
+    /**
+     * The ID of the post at the top of the deep thread.
+     */
+    private int deepThread;
+    /**
+     * The ID of the post at the top of the wide thread.
+     */
+    private int wideThread;
+
+    /**
+     * Builds the platform and adds the two threads to it.
+     * @throws Exception If the platform cannot be built
+     */
+    @Setup(Level.Trial)
+    public void buildPlatform() throws Exception{
+        PlatformFixture fixture = new PlatformFixture(implementation, size);
+        platform = fixture.getPlatform();
+        String[] handles = fixture.getHandles();
+
+        deepThread = platform.createPost(handles[0], PlatformFixture.MESSAGE);
+        int parent = deepThread;
+        for (int i = 0; i < threadSize; i++){
+            parent = platform.commentPost(handles[i % handles.length], parent, PlatformFixture.MESSAGE);
+        }
+
+        wideThread = platform.createPost(handles[0], PlatformFixture.MESSAGE);
+        for (int i = 0; i < threadSize; i++){
+            platform.commentPost(handles[i % handles.length], wideThread, PlatformFixture.MESSAGE);
+        }
+    }
+
+    /**
+     * Renders the deep thread.
+     * @return The rendered thread
+     * @throws Exception If the post is not recognised
+     */
+    @Benchmark
+    public StringBuilder deepThread() throws Exception{
+        return platform.showPostChildrenDetails(deepThread);
+    }
+
+    /**
+     * Renders the wide thread.
+     * @return The rendered thread
+     * @throws Exception If the post is not recognised
+     */
+    @Benchmark
+    public StringBuilder wideThread() throws Exception{
+        return platform.showPostChildrenDetails(wideThread);
+    }
+
+    /**
+     * Streams the deep thread to a Writer that discards it.
+     * @throws Exception If the post is not recognised
+     */
+    @Benchmark
+    public void deepThreadStreamed() throws Exception{
+        platform.showPostChildrenDetails(deepThread, Writer.nullWriter());
+    }
+
+    /**
+     * Streams the wide thread to a Writer that discards it.
+     * @throws Exception If the post is not recognised
+     */
+    @Benchmark
+    public void wideThreadStreamed() throws Exception{
+        platform.showPostChildrenDetails(wideThread, Writer.nullWriter());
+    }
+}
@@ -1,6 +1,8 @@
 package socialmedia;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import java.io.Serializable;
 
@@ -9,9 +11,14 @@ import java.io.Serializable;
  */
 public class Account implements Serializable{
     /**
-     * ID assigned to next account to be created
+     * Serialisation version, fixed so that platforms saved by earlier builds can still be loaded.
      */
-    private static int nextID = 1;
+    private static final long serialVersionUID = -2188585348745815162L;
+    /**
+     * ID assigned to next account to be created. Atomic so that accounts created on different threads never
+     * share an ID.
+     */
+    private final static AtomicInteger nextID = new AtomicInteger(1);
     /**
      * The handle associated with the account
      */
@@ -45,9 +52,19 @@ public class Account implements Serializable{
      */
     private final static int MAX_HANDLE_LENGTH = 30; 
     /**
-     * All posts posted by the account (original, comments and endorsements).
+     * All posts posted by the account (original, comments and endorsements). Null until first used if the account
+     * was read from a mapped snapshot or compact store.
      */
     private ArrayList<Post> accountPosts = new ArrayList<Post>();
+    /**
+     * The posts of the account in the order they were made. Null until the timeline is first shown, and not saved,
+     * as it is rebuilt from the posts of the account.
+     */
+    private transient Timeline timeline;
+    /**
+     * The mapped snapshot or compact store the account was read from, or null if it was not read lazily.
+     */
+    private transient PlatformSource source;
     
     /**
      * Creates an instance of an Account object and calls the overloaded constructor with the handle and an empty description.
@@ -66,7 +83,37 @@ public class Account implements Serializable{
     public Account(String handle, String description){
         this.handle = handle;
         this.description = description;
-        accountID = nextID++;
+        accountID = nextID.getAndIncrement();
+    }
+    /**
+     * Creates an instance of an account object with an ID that has already been assigned, for example when loading a
+     * saved platform. The sequential ID is not changed.
+     * @param accountID The ID of the account.
+     * @param handle The handle to be associated with the account.
+     * @param description The description to be associated with the account.
+     */
+    Account(int accountID, String handle, String description){
+        this.handle = handle;
+        this.description = description;
+        this.accountID = accountID;
+    }
+    /**
+     * Creates an instance of an account object that is read from a mapped snapshot or compact store. Its posts are
+     * only read from the source when they are first used, and its post and endorsement counts are taken from the
+     * source.
+     * @param accountID The ID of the account.
+     * @param handle The handle to be associated with the account.
+     * @param description The description to be associated with the account.
+     * @param source The mapped snapshot or compact store the account is being read from.
+     */
+    Account(int accountID, String handle, String description, PlatformSource source){
+        this(accountID, handle, description);
+        this.source = source;
+        this.accountPosts = null;
+        this.postCount = source.originalPostCountOf(accountID);
+        this.postCountUpToDate = true;
+        this.endorsementCount = source.endorsementCountOf(accountID);
+        this.endorsementCountUpToDate = true;
     }
     /**
      * Returns the handle associated with the account.
@@ -96,7 +143,7 @@ public class Account implements Serializable{
     public int getOriginalPostCount(){
         if(!postCountUpToDate){
             int total=0;
-            for(Post p:accountPosts){
+            for(Post p:getPosts()){
                 if(!(p instanceof Comment || p instanceof EndorsementPost)){
                     total += 1;
                 }
@@ -113,7 +160,7 @@ public class Account implements Serializable{
     public int getEndorsementCount(){
         if(!endorsementCountUpToDate){
             int total = 0;
-            for(Post p:accountPosts){
+            for(Post p:getPosts()){
                 total += p.getNumEndorsements();
             }
             endorsementCount = total; // Cache the calculated value
@@ -126,6 +173,9 @@ public class Account implements Serializable{
      * @return The number of posts made by the account.
      */
     public int getTotalPostCount(){ 
+        if (accountPosts == null){ // Posts have not been read from the source yet
+            return source.totalPostCountOf(accountID);
+        }
         return accountPosts.size();
     }
     /**
@@ -134,14 +184,35 @@ public class Account implements Serializable{
      * @return ArrayList of posts created by the account
      */
     public ArrayList<Post> getPosts(){
+        if (accountPosts == null){ // Posts of an account read lazily are read on first use
+            accountPosts = source.readAccountPosts(accountID);
+        }
         return accountPosts;
     } 
+    /**
+     * Returns the timeline of the posts of the account, creating it from the list of posts the first time it is used.
+     * @return The timeline of the account
+     */
+    public Timeline getTimeline(){
+        if (timeline == null){
+            timeline = Timeline.of(getPosts());
+        }
+        return timeline;
+    }
     /**
      * Returns the next sequential ID that will be assigned to the next account to be created
      * @return ID to be used by the next account to be created
      */
     public static int getNextId(){
-        return nextID;
+        return nextID.get();
+    }
+    /**
+     * Takes the next sequential ID for an account that is stored without creating an Account object, for example by a
+     * CompactStore.
+     * @return The ID taken
+     */
+    static int takeNextId(){
+        return nextID.getAndIncrement();
     }
     
     //Setters
@@ -151,7 +222,7 @@ public class Account implements Serializable{
      * @param id The value to assign to nextID
      */
     public static void setNextId(int id){
-        nextID=id;
+        nextID.set(id);
     }
     /**
      * Sets the handle of the account to a new value.
@@ -171,7 +242,7 @@ public class Account implements Serializable{
      * Resets the sequential ID to a value of 1.
      */
     public static void resetIdCount(){
-        nextID = 1;
+        nextID.set(1);
     }
     /**
      * Set the endorsementCountUpToDate attribute to false, so when the getEndorsementCount() method is called the number of endorsements related to
@@ -192,18 +263,42 @@ public class Account implements Serializable{
      * @param p The post to be added to the list of posts that the account has made.
      */
     public void addPost(Post p){
-        this.accountPosts.add(p);
+        ArrayList<Post> posts = getPosts();
+        p.setAccountSlot(posts.size());
+        posts.add(p);
+        if (timeline != null){
+            timeline.add(p.getID(), PlatformSnapshot.typeOf(p));
+        }
         if (!(p instanceof Comment || p instanceof EndorsementPost)){ //If post is original post
             postCountUpToDate = false;
         }
         
     }
     /**
-     * Removes the post (specified by parameter p) from the list of posts that the account has made.
+     * Removes the post (specified by parameter p) from the list of posts that the account has made. The last post
+     * in the list is moved into its place, so the removal takes constant time but does not keep the order of the
+     * list.
      * @param p The post to be removed from the list of posts that the account has made.
      */
     public void removePost(Post p){
-        this.accountPosts.remove(p);
+        ArrayList<Post> posts = getPosts();
+        int slot = p.getAccountSlot();
+        if (slot >= posts.size() || posts.get(slot) != p){ // Slots are not saved, so they are renumbered after a load
+            for (int i = 0; i < posts.size(); i++){
+                posts.get(i).setAccountSlot(i);
+            }
+            slot = p.getAccountSlot();
+        }
+        if (slot < posts.size() && posts.get(slot) == p){
+            Post last = posts.remove(posts.size() - 1);
+            if (last != p){
+                posts.set(slot, last);
+                last.setAccountSlot(slot);
+            }
+        }
+        if (timeline != null){
+            timeline.remove(p.getID(), PlatformSnapshot.typeOf(p));
+        }
         if (!(p instanceof Comment || p instanceof EndorsementPost)){ // If post is original post
             postCountUpToDate = false;
         }
@@ -234,49 +329,78 @@ public class Account implements Serializable{
      * Validates a string to be used as the handle of an account by checking that it is less than 30 characters, not empty, contains 
      * no white space and is not being used by any other account in the system.
      * @param handle The string to be used as the handle of an account.
-     * @param accountList An ArrayList of account objects.
+     * @param handleIndex A map of account objects keyed by their handle.
      * @throws InvalidHandleException This is thrown when the handle is more than 30 characters, or is an empty string, or contains any whitespace.
      * @throws IllegalHandleException This is thrown when an account already contains the handle defined in the parameter handle.
      */
-    public static void validateHandle(String handle, ArrayList<Account> accountList) throws InvalidHandleException, IllegalHandleException{
-        if(handle.length() > MAX_HANDLE_LENGTH || handle.isEmpty() || handle.matches("(\\s)+")){ //Checks string is not empty, less than 30 characters and contains no whitespace
+    public static void validateHandle(String handle, Map<String, Account> handleIndex) throws InvalidHandleException, IllegalHandleException{
+        validateHandleFormat(handle);
+        if(handleIndex.containsKey(handle)){ // Checks if any account already owns this handle
+            throw new IllegalHandleException();
+        }
+    }
+    /**
+     * Validates the format of a string to be used as the handle of an account, without checking whether it is
+     * already used, by checking that it is less than 30 characters, not empty and contains no white space.
+     * @param handle The string to be used as the handle of an account.
+     * @throws InvalidHandleException This is thrown when the handle is more than 30 characters, or is an empty string, or contains any whitespace.
+     */
+    public static void validateHandleFormat(String handle) throws InvalidHandleException{
+        int length = handle.length();
+        if(length > MAX_HANDLE_LENGTH || length == 0){ //Checks string is not empty and less than 30 characters
             throw new InvalidHandleException();
         }
-        for(Account a : accountList){ // Checks if any account already owns this handle
-            if(a.getHandle().equals(handle)){
-                throw new IllegalHandleException();
+        for(int i = 0; i < length; i++){ // Checks each character once, as a regular expression would be compiled on every call
+            if(Character.isWhitespace(handle.charAt(i))){
+                throw new InvalidHandleException();
             }
         }
     }
     /**
-     * Returns the account with the handle defined by parameter handle if it exists in the ArrayList accounts, otherwise a HandleNotRecognisedException is thrown.
+     * Creates an account with a handle whose format has already been validated, claiming the handle in the handle
+     * index with a single lookup so the uniqueness check and the insertion do not each search the index. The ID of
+     * the account is only taken once the handle is known to be free.
+     * @param handle The handle to be associated with the account.
+     * @param description The description to be associated with the account.
+     * @param handleIndex A map of account objects keyed by their handle, which the new account is added to.
+     * @return The new account.
+     * @throws IllegalHandleException This is thrown when an account already contains the handle defined in the parameter handle.
+     */
+    public static Account claimHandle(String handle, String description, Map<String, Account> handleIndex) throws IllegalHandleException{
+        Account[] created = new Account[1];
+        handleIndex.computeIfAbsent(handle, h -> created[0] = new Account(h, description));
+        if(created[0] == null){ // Checks if any account already owns this handle
+            throw new IllegalHandleException();
+        }
+        return created[0];
+    }
+    /**
+     * Returns the account with the handle defined by parameter handle if it exists in the handle index, otherwise a HandleNotRecognisedException is thrown.
      * @param handle The account with the handle to find.
-     * @param accounts An ArrayList of Account objects.
+     * @param handleIndex A map of Account objects keyed by their handle.
      * @return The account object that has the handle that is equal to the parameter handle.
-     * @throws HandleNotRecognisedException This is thrown if no account has a handle defined by the parameter handle in the ArrayList of accounts (parameter accounts).
+     * @throws HandleNotRecognisedException This is thrown if no account has a handle defined by the parameter handle in the handle index.
      */
-    public static Account findAccountByHandle(String handle, ArrayList<Account> accounts) throws HandleNotRecognisedException{
-        for (Account a : accounts){
-            if (a.getHandle().equals(handle)){
-                return a;
-            }
+    public static Account findAccountByHandle(String handle, Map<String, Account> handleIndex) throws HandleNotRecognisedException{
+        Account account = handleIndex.get(handle);
+        if (account == null){
+            throw new HandleNotRecognisedException();
         }
-        throw new HandleNotRecognisedException();
+        return account;
     }
     /**
-     * Returns the account with the ID defined by the parameter id if it contained in the ArrayList of accounts, otherwise an AccountIDNotRecognisedException is thrown.
+     * Returns the account with the ID defined by the parameter id if it contained in the ID index, otherwise an AccountIDNotRecognisedException is thrown.
      * @param id The ID of the account to find.
-     * @param accounts An ArrayList of Accounts.
+     * @param idIndex A map of Account objects keyed by their ID.
      * @return The account with the ID that is equal to the parameter id.
-     * @throws AccountIDNotRecognisedException This is thrown if no account in the ArrayList of accounts that has an ID that is equal to the parameter id.
+     * @throws AccountIDNotRecognisedException This is thrown if no account in the ID index has an ID that is equal to the parameter id.
      */
-    public static Account findAccountById(int id, ArrayList<Account> accounts) throws AccountIDNotRecognisedException{
-        for (Account a : accounts){
-            if (a.getID() == id){
-                return a;
-            }
+    public static Account findAccountById(int id, Map<Integer, Account> idIndex) throws AccountIDNotRecognisedException{
+        Account account = idIndex.get(id);
+        if (account == null){
+            throw new AccountIDNotRecognisedException();
         }
-        throw new AccountIDNotRecognisedException();
+        return account;
     }
 
 
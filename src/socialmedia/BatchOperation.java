@@ -0,0 +1,265 @@
+package socialmedia;
+
+import java.util.List;
+
+/**
+ * One operation in a batch passed to applyBatch: creating an account, or creating, commenting on or endorsing a
+ * post. A comment or endorsement can refer to a post created by an earlier operation in the same batch by its
+ * position in the batch, as its ID is not known until the batch is applied.
+ */
+public class BatchOperation {
+    /**
+     * The kinds of operation that can be batched.
+     */
+    public enum Type {
+        /**
+         * Creates an account, like createAccount.
+         */
+        CREATE_ACCOUNT,
+        /**
+         * Creates an original post, like createPost.
+         */
+        CREATE_POST,
+        /**
+         * Comments on a post, like commentPost.
+         */
+        COMMENT_POST,
+        /**
+         * Endorses a post, like endorsePost.
+         */
+        ENDORSE_POST
+    }
+
+    /**
+     * The kind of operation.
+     */
+    private final Type type;
+    /**
+     * The handle of the account created, or of the account posting.
+     */
+    private final String handle;
+    /**
+     * The description of the account created, or the message of the post created.
+     */
+    private final String text;
+    /**
+     * The ID of the post commented on or endorsed, if it is not created in the batch.
+     */
+    private final int postId;
+    /**
+     * The position in the batch of the operation that creates the post commented on or endorsed, or -1 if the post
+     * already exists.
+     */
+    private final int postItem;
+
+    /**
+     * Creates an operation.
+     * @param type The kind of operation
+     * @param handle Handle of the account created or posting
+     * @param text Description of the account or message of the post
+     * @param postId ID of the post commented on or endorsed
+     * @param postItem Position in the batch of the operation creating the post commented on or endorsed, or -1
+     */
+    private BatchOperation(Type type, String handle, String text, int postId, int postItem){
+        this.type = type;
+        this.handle = handle;
+        this.text = text;
+        this.postId = postId;
+        this.postItem = postItem;
+    }
+
+    /**
+     * Returns an operation that creates an account with an empty description.
+     * @param handle Handle of the account
+     * @return The operation
+     */
+    public static BatchOperation createAccount(String handle){
+        return createAccount(handle, "");
+    }
+
+    /**
+     * Returns an operation that creates an account.
+     * @param handle Handle of the account
+     * @param description Description of the account
+     * @return The operation
+     */
+    public static BatchOperation createAccount(String handle, String description){
+        return new BatchOperation(Type.CREATE_ACCOUNT, handle, description, 0, -1);
+    }
+
+    /**
+     * Returns an operation that creates an original post.
+     * @param handle Handle of the account posting
+     * @param message Message of the post
+     * @return The operation
+     */
+    public static BatchOperation createPost(String handle, String message){
+        return new BatchOperation(Type.CREATE_POST, handle, message, 0, -1);
+    }
+
+    /**
+     * Returns an operation that comments on a post that already exists.
+     * @param handle Handle of the account commenting
+     * @param id ID of the post commented on
+     * @param message Message of the comment
+     * @return The operation
+     */
+    public static BatchOperation commentPost(String handle, int id, String message){
+        return new BatchOperation(Type.COMMENT_POST, handle, message, id, -1);
+    }
+
+    /**
+     * Returns an operation that comments on a post created earlier in the same batch.
+     * @param handle Handle of the account commenting
+     * @param item Position in the batch of the operation that creates the post commented on
+     * @param message Message of the comment
+     * @return The operation
+     */
+    public static BatchOperation commentPostInBatch(String handle, int item, String message){
+        return new BatchOperation(Type.COMMENT_POST, handle, message, 0, item);
+    }
+
+    /**
+     * Returns an operation that endorses a post that already exists.
+     * @param handle Handle of the account endorsing
+     * @param id ID of the post endorsed
+     * @return The operation
+     */
+    public static BatchOperation endorsePost(String handle, int id){
+        return new BatchOperation(Type.ENDORSE_POST, handle, null, id, -1);
+    }
+
+    /**
+     * Returns an operation that endorses a post created earlier in the same batch.
+     * @param handle Handle of the account endorsing
+     * @param item Position in the batch of the operation that creates the post endorsed
+     * @return The operation
+     */
+    public static BatchOperation endorsePostInBatch(String handle, int item){
+        return new BatchOperation(Type.ENDORSE_POST, handle, null, 0, item);
+    }
+
+    /**
+     * Returns the kind of operation.
+     * @return The kind of operation
+     */
+    public Type getType(){
+        return type;
+    }
+
+    /**
+     * Returns the handle of the account created, or of the account posting.
+     * @return The handle
+     */
+    public String getHandle(){
+        return handle;
+    }
+
+    /**
+     * Returns the description of the account created, or the message of the post created.
+     * @return The description or message, or null for an endorsement
+     */
+    public String getText(){
+        return text;
+    }
+
+    /**
+     * Returns the ID of the post commented on or endorsed, once any post created in the batch has been created.
+     * @param result The results of the operations before this one
+     * @return ID of the post, or 0, which is never the ID of a post, if the operation that was to create the post
+     *         failed
+     */
+    public int getPostId(BatchResult result){
+        if (postItem < 0){
+            return postId;
+        }
+        return result.getId(postItem);
+    }
+
+    /**
+     * Checks everything about the operation that does not depend on the state of the platform: the format of a new
+     * handle, the message of a new post, and that a post created in the batch is created by an earlier post
+     * operation.
+     * @param item Position of the operation in the batch
+     * @param operations The whole batch
+     * @throws InvalidHandleException If the handle of a new account is empty, too long or has white space
+     * @throws InvalidPostException If the message of a new post is empty or too long
+     */
+    void validate(int item, List<BatchOperation> operations) throws InvalidHandleException, InvalidPostException{
+        if (type == Type.CREATE_ACCOUNT){
+            Account.validateHandleFormat(handle);
+        } else if (type != Type.ENDORSE_POST){
+            Post.validateMessage(text);
+        }
+        if (postItem >= 0 && (postItem >= item || operations.get(postItem).type == Type.CREATE_ACCOUNT)){
+            throw new IllegalArgumentException("Item " + item + " must refer to an earlier post operation");
+        }
+    }
+
+    /**
+     * Checks every operation in a batch with validate, before anything is applied.
+     * @param operations The batch
+     * @return The results of the batch, with the operations that failed the checks already marked as failed
+     */
+    static BatchResult validateAll(List<BatchOperation> operations){
+        BatchResult result = new BatchResult(operations.size());
+        for (int i = 0; i < operations.size(); i++){
+            try{
+                operations.get(i).validate(i, operations);
+            } catch (InvalidHandleException | InvalidPostException | IllegalArgumentException e){
+                result.failed(i, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applies a batch one operation at a time through the public methods of a platform, recording the result of
+     * each. Used by platforms that have no faster way to apply a batch.
+     * @param platform The platform the batch is applied to
+     * @param operations The batch
+     * @return The ID created by, or the error of, each operation
+     */
+    static BatchResult applyEach(SocialMediaPlatform platform, List<BatchOperation> operations){
+        BatchResult result = validateAll(operations);
+        for (int i = 0; i < operations.size(); i++){
+            if (result.getError(i) != null){
+                continue;
+            }
+            try{
+                result.succeeded(i, operations.get(i).applyTo(platform, result));
+            } catch (IllegalHandleException | InvalidHandleException | HandleNotRecognisedException
+                    | InvalidPostException | PostIDNotRecognisedException | NotActionablePostException e){
+                result.failed(i, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applies the operation through the public methods of a platform.
+     * @param platform The platform
+     * @param result The results of the operations before this one
+     * @return ID of the account or post created
+     * @throws IllegalHandleException If a new handle is already used
+     * @throws InvalidHandleException If a new handle is not valid
+     * @throws HandleNotRecognisedException If the account posting does not exist
+     * @throws InvalidPostException If a message is not valid
+     * @throws PostIDNotRecognisedException If the post commented on or endorsed does not exist
+     * @throws NotActionablePostException If the post commented on or endorsed is an endorsement
+     */
+    private int applyTo(SocialMediaPlatform platform, BatchResult result) throws IllegalHandleException,
+            InvalidHandleException, HandleNotRecognisedException, InvalidPostException,
+            PostIDNotRecognisedException, NotActionablePostException{
+        switch (type){
+            case CREATE_ACCOUNT:
+                return platform.createAccount(handle, text);
+            case CREATE_POST:
+                return platform.createPost(handle, text);
+            case COMMENT_POST:
+                return platform.commentPost(handle, getPostId(result), text);
+            default:
+                return platform.endorsePost(handle, getPostId(result));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package socialmedia;
+
+/**
+ * The outcome of each operation in a batch passed to applyBatch, in the same order as the batch. An operation
+ * either succeeded and created an account or post with an ID, or failed with the exception the matching single
+ * method would have thrown. A failed operation changes nothing and does not stop the rest of the batch.
+ */
+public class BatchResult {
+    /**
+     * The ID of the account or post created by each operation, or 0 if it failed.
+     */
+    private final int[] ids;
+    /**
+     * The exception each failed operation failed with, or null if it succeeded.
+     */
+    private final Exception[] errors;
+    /**
+     * The number of operations that failed.
+     */
+    private int failureCount;
+
+    /**
+     * Creates the results of a batch before any operation has been applied.
+     * @param size Number of operations in the batch
+     */
+    BatchResult(int size){
+        ids = new int[size];
+        errors = new Exception[size];
+    }
+
+    /**
+     * Records that an operation succeeded.
+     * @param item Position of the operation in the batch
+     * @param id ID of the account or post it created
+     */
+    void succeeded(int item, int id){
+        ids[item] = id;
+    }
+
+    /**
+     * Records that an operation failed.
+     * @param item Position of the operation in the batch
+     * @param error The exception it failed with
+     */
+    void failed(int item, Exception error){
+        errors[item] = error;
+        failureCount++;
+    }
+
+    /**
+     * Returns the number of operations in the batch.
+     * @return Number of operations
+     */
+    public int size(){
+        return ids.length;
+    }
+
+    /**
+     * States whether an operation succeeded.
+     * @param item Position of the operation in the batch
+     * @return Boolean value stating whether the operation succeeded
+     */
+    public boolean isSuccess(int item){
+        return errors[item] == null;
+    }
+
+    /**
+     * Returns the ID of the account or post an operation created.
+     * @param item Position of the operation in the batch
+     * @return ID created by the operation, or 0 if it failed
+     */
+    public int getId(int item){
+        return ids[item];
+    }
+
+    /**
+     * Returns the exception an operation failed with.
+     * @param item Position of the operation in the batch
+     * @return The exception, or null if the operation succeeded
+     */
+    public Exception getError(int item){
+        return errors[item];
+    }
+
+    /**
+     * Returns the number of operations that succeeded.
+     * @return Number of operations that succeeded
+     */
+    public int getSuccessCount(){
+        return ids.length - failureCount;
+    }
+
+    /**
+     * Returns the number of operations that failed.
+     * @return Number of operations that failed
+     */
+    public int getFailureCount(){
+        return failureCount;
+    }
+}
@@ -0,0 +1,160 @@
+package socialmedia;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads primitive values and strings written by {@link BufferedChannelOutput} from a file channel, refilling a
+ * fixed size direct buffer from the channel as it empties.
+ */
+public class BufferedChannelInput implements Closeable{
+    /**
+     * The channel the buffer is filled from.
+     */
+    private final FileChannel channel;
+    /**
+     * The buffer holding data read from the channel that has not been consumed yet.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BufferedChannelOutput.BUFFER_SIZE);
+
+    /**
+     * Creates an input that reads from the given channel from its current position.
+     * @param channel Channel to read from
+     */
+    public BufferedChannelInput(FileChannel channel){
+        this.channel = channel;
+        buffer.limit(0); // Nothing has been read yet
+    }
+
+    /**
+     * States whether every byte of the channel has been read.
+     * @return Boolean value stating whether the end of the channel has been reached
+     * @throws IOException If the channel cannot be read
+     */
+    public boolean isAtEnd() throws IOException{
+        return !buffer.hasRemaining() && !fill(1);
+    }
+
+    /**
+     * Reads a single byte.
+     * @return Byte that was read
+     * @throws IOException If the channel cannot be read or ends before the value
+     */
+    public byte readByte() throws IOException{
+        require(1);
+        return buffer.get();
+    }
+
+    /**
+     * Reads a 4 byte integer.
+     * @return Integer that was read
+     * @throws IOException If the channel cannot be read or ends before the value
+     */
+    public int readInt() throws IOException{
+        require(4);
+        return buffer.getInt();
+    }
+
+    /**
+     * Reads an 8 byte integer.
+     * @return Long that was read
+     * @throws IOException If the channel cannot be read or ends before the value
+     */
+    public long readLong() throws IOException{
+        require(8);
+        return buffer.getLong();
+    }
+
+    /**
+     * Reads the given number of bytes.
+     * @param length Number of bytes to read
+     * @return Array of the bytes that were read
+     * @throws IOException If the channel cannot be read or ends before all the bytes
+     */
+    public byte[] readBytes(int length) throws IOException{
+        if (length < 0){
+            throw new IOException("Negative length " + length);
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length){
+            require(1);
+            int count = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, count);
+            offset += count;
+        }
+        return bytes;
+    }
+
+    /**
+     * Skips over the given number of bytes.
+     * @param length Number of bytes to skip
+     * @throws IOException If the channel cannot be read or ends before all the bytes
+     */
+    public void skipBytes(long length) throws IOException{
+        while (length > 0){
+            require(1);
+            int count = (int)Math.min(buffer.remaining(), length);
+            buffer.position(buffer.position() + count);
+            length -= count;
+        }
+    }
+
+    /**
+     * Reads a string written as its length in bytes followed by its UTF-8 encoding.
+     * @return String that was read, or null if a null string was written
+     * @throws IOException If the channel cannot be read or ends before the string
+     */
+    public String readString() throws IOException{
+        int length = readInt();
+        if (length == -1){
+            return null;
+        }
+        return new String(readBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes the channel.
+     * @throws IOException If the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException{
+        channel.close();
+    }
+
+    /**
+     * Makes sure the buffer holds at least the given number of unread bytes.
+     * @param bytes Number of bytes needed
+     * @throws IOException If the channel cannot be read or ends before enough bytes are available
+     */
+    private void require(int bytes) throws IOException{
+        if (buffer.remaining() < bytes && !fill(bytes)){
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * Moves unread bytes to the start of the buffer and reads from the channel until the buffer holds at least
+     * the given number of unread bytes or the channel ends.
+     * @param bytes Number of bytes wanted
+     * @return Boolean value stating whether the buffer now holds enough bytes
+     * @throws IOException If the channel cannot be read
+     */
+    private boolean fill(int bytes) throws IOException{
+        buffer.compact();
+        try{
+            while (buffer.position() < bytes){
+                if (channel.read(buffer) < 0){
+                    return false;
+                }
+            }
+            return true;
+        } finally{
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package socialmedia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes primitive values and strings to a file channel through a fixed size direct buffer, so the channel is
+ * only written to once per buffer full of data.
+ */
+public class BufferedChannelOutput implements Closeable{
+    /**
+     * The size in bytes of the buffer that writes are collected in.
+     */
+    public final static int BUFFER_SIZE = 64 * 1024;
+    /**
+     * The channel the buffer is written to.
+     */
+    private final FileChannel channel;
+    /**
+     * The buffer that writes are collected in until it is full.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Creates an output that writes to the given channel from its current position.
+     * @param channel Channel to write to
+     */
+    public BufferedChannelOutput(FileChannel channel){
+        this.channel = channel;
+    }
+
+    /**
+     * Returns the channel that this output writes to.
+     * @return Channel written to
+     */
+    public FileChannel getChannel(){
+        return channel;
+    }
+
+    /**
+     * Returns the position in the channel that the next value will be written at, including data still held in
+     * the buffer.
+     * @return Position of the next write
+     * @throws IOException If the position of the channel cannot be read
+     */
+    public long position() throws IOException{
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * Writes a single byte.
+     * @param value Byte to write
+     * @throws IOException If the buffer cannot be written to the channel
+     */
+    public void writeByte(int value) throws IOException{
+        ensureSpace(1);
+        buffer.put((byte)value);
+    }
+
+    /**
+     * Writes a 4 byte integer.
+     * @param value Integer to write
+     * @throws IOException If the buffer cannot be written to the channel
+     */
+    public void writeInt(int value) throws IOException{
+        ensureSpace(4);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes an 8 byte integer.
+     * @param value Long to write
+     * @throws IOException If the buffer cannot be written to the channel
+     */
+    public void writeLong(long value) throws IOException{
+        ensureSpace(8);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Writes an array of bytes. Arrays larger than the buffer are written in buffer sized pieces.
+     * @param bytes Bytes to write
+     * @throws IOException If the buffer cannot be written to the channel
+     */
+    public void writeBytes(byte[] bytes) throws IOException{
+        int offset = 0;
+        while (offset < bytes.length){
+            if (!buffer.hasRemaining()){
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes a string as its length in bytes followed by its UTF-8 encoding. A null string is written as a length
+     * of -1.
+     * @param value String to write, may be null
+     * @throws IOException If the buffer cannot be written to the channel
+     */
+    public void writeString(String value) throws IOException{
+        if (value == null){
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        writeBytes(bytes);
+    }
+
+    /**
+     * Writes everything held in the buffer to the channel.
+     * @throws IOException If the buffer cannot be written to the channel
+     */
+    public void flush() throws IOException{
+        buffer.flip();
+        while (buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Flushes the buffer and closes the channel.
+     * @throws IOException If the buffer cannot be written or the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException{
+        try{
+            flush();
+        } finally{
+            channel.close();
+        }
+    }
+
+    /**
+     * Flushes the buffer if there is not enough space left in it for a value of the given size.
+     * @param bytes Size of the value about to be written
+     * @throws IOException If the buffer cannot be written to the channel
+     */
+    private void ensureSpace(int bytes) throws IOException{
+        if (buffer.remaining() < bytes){
+            flush();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package socialmedia;
+
+import java.util.Arrays;
+
+/**
+ * The IDs of the posts and accounts a platform has changed since the set was last cleared, so a copy of them, such as
+ * a {@link PlatformVersion}, can be brought up to date by visiting only what changed. An ID may be recorded more
+ * than once. Replacing the contents of the whole platform is recorded with a flag instead, as every post and
+ * account has changed.
+ */
+public class ChangeSet {
+    /**
+     * The number of IDs each list has room for when it is created.
+     */
+    private final static int INITIAL_CAPACITY = 16;
+
+    /**
+     * The IDs of the changed posts, in the order they were recorded.
+     */
+    private int[] posts = new int[INITIAL_CAPACITY];
+    /**
+     * The number of post IDs recorded.
+     */
+    private int postCount;
+    /**
+     * The IDs of the changed accounts, in the order they were recorded.
+     */
+    private int[] accounts = new int[INITIAL_CAPACITY];
+    /**
+     * The number of account IDs recorded.
+     */
+    private int accountCount;
+    /**
+     * Whether the contents of the whole platform have been replaced.
+     */
+    private boolean replaced;
+
+    /**
+     * Records that a post has been added, removed or changed.
+     * @param id ID of the post
+     */
+    public void postChanged(int id){
+        if (postCount == posts.length){
+            posts = Arrays.copyOf(posts, postCount * 2);
+        }
+        posts[postCount++] = id;
+    }
+
+    /**
+     * Records that an account has been added, removed or changed. An account recorded just before is not recorded
+     * again, as removing an account changes it once for each of its posts.
+     * @param id ID of the account
+     */
+    public void accountChanged(int id){
+        if (accountCount > 0 && accounts[accountCount - 1] == id){
+            return;
+        }
+        if (accountCount == accounts.length){
+            accounts = Arrays.copyOf(accounts, accountCount * 2);
+        }
+        accounts[accountCount++] = id;
+    }
+
+    /**
+     * Records that the contents of the whole platform have been replaced, for example by erasing or loading it.
+     * The IDs recorded so far are dropped.
+     */
+    public void platformReplaced(){
+        clear();
+        replaced = true;
+    }
+
+    /**
+     * States whether the contents of the whole platform have been replaced.
+     * @return Whether the platform was replaced
+     */
+    public boolean isReplaced(){
+        return replaced;
+    }
+
+    /**
+     * Returns the number of post IDs recorded.
+     * @return Number of post IDs
+     */
+    public int getPostCount(){
+        return postCount;
+    }
+
+    /**
+     * Returns a recorded post ID.
+     * @param index Position of the ID in the order they were recorded
+     * @return ID of the post
+     */
+    public int getPost(int index){
+        return posts[index];
+    }
+
+    /**
+     * Returns the number of account IDs recorded.
+     * @return Number of account IDs
+     */
+    public int getAccountCount(){
+        return accountCount;
+    }
+
+    /**
+     * Returns a recorded account ID.
+     * @param index Position of the ID in the order they were recorded
+     * @return ID of the account
+     */
+    public int getAccount(int index){
+        return accounts[index];
+    }
+
+    /**
+     * Drops every recorded change. Lists grown past their initial size by a large change are shrunk again.
+     */
+    public void clear(){
+        if (posts.length > INITIAL_CAPACITY * 64){
+            posts = new int[INITIAL_CAPACITY];
+        }
+        if (accounts.length > INITIAL_CAPACITY * 64){
+            accounts = new int[INITIAL_CAPACITY];
+        }
+        postCount = 0;
+        accountCount = 0;
+        replaced = false;
+    }
+}
@@ -0,0 +1,186 @@
+package socialmedia;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An Appendable that collects text into a fixed-size chunk and passes each full chunk on to another Appendable or
+ * encodes it as UTF-8 into a channel. Text streamed through it is only ever held one chunk at a time, however much
+ * is written. finish must be called once everything has been appended, to pass on the last partial chunk.
+ */
+public class ChunkedOutput implements Appendable {
+    /**
+     * The number of chars in a chunk unless another size is given.
+     */
+    public final static int CHUNK_SIZE = 8192;
+
+    /**
+     * The text waiting to be passed on.
+     */
+    private final char[] chunk;
+    /**
+     * The number of chars in the chunk.
+     */
+    private int length;
+    /**
+     * The Appendable chunks are passed to, or null if they are written to a channel.
+     */
+    private final Appendable out;
+    /**
+     * The channel chunks are written to, or null if they are passed to an Appendable.
+     */
+    private final WritableByteChannel channel;
+    /**
+     * Encodes chunks into UTF-8 for the channel.
+     */
+    private final CharsetEncoder encoder;
+    /**
+     * Holds the encoded bytes of a chunk while they are written to the channel.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Creates a chunked output that passes chunks of CHUNK_SIZE chars to an Appendable.
+     * @param out Where the chunks are passed to
+     */
+    public ChunkedOutput(Appendable out){
+        this(out, CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a chunked output that passes chunks to an Appendable, flushing it after each one if it is Flushable.
+     * @param out Where the chunks are passed to
+     * @param chunkSize Number of chars in a chunk, at least 1
+     */
+    public ChunkedOutput(Appendable out, int chunkSize){
+        if (chunkSize < 1){
+            throw new IllegalArgumentException("A chunk must hold at least 1 char");
+        }
+        this.chunk = new char[chunkSize];
+        this.out = out;
+        this.channel = null;
+        this.encoder = null;
+        this.bytes = null;
+    }
+
+    /**
+     * Creates a chunked output that encodes chunks of CHUNK_SIZE chars as UTF-8 and writes them to a channel.
+     * @param channel Where the chunks are written to
+     */
+    public ChunkedOutput(WritableByteChannel channel){
+        this(channel, CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a chunked output that encodes chunks as UTF-8 and writes them to a channel.
+     * @param channel Where the chunks are written to
+     * @param chunkSize Number of chars in a chunk, at least 2 so a surrogate pair always fits
+     */
+    public ChunkedOutput(WritableByteChannel channel, int chunkSize){
+        if (chunkSize < 2){
+            throw new IllegalArgumentException("A chunk must hold at least 2 chars");
+        }
+        this.chunk = new char[chunkSize];
+        this.out = null;
+        this.channel = channel;
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE); // Replace lone surrogates as String.getBytes does
+        this.bytes = ByteBuffer.allocate((int) Math.ceil(encoder.maxBytesPerChar() * chunkSize));
+    }
+
+    @Override
+    public ChunkedOutput append(CharSequence csq) throws IOException{
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public ChunkedOutput append(CharSequence csq, int start, int end) throws IOException{
+        while (start < end){
+            if (length == chunk.length){
+                passOn(false);
+            }
+            int count = Math.min(end - start, chunk.length - length);
+            if (csq instanceof String){
+                ((String) csq).getChars(start, start + count, chunk, length);
+            } else if (csq instanceof StringBuilder){
+                ((StringBuilder) csq).getChars(start, start + count, chunk, length);
+            } else{
+                for (int i = 0; i < count; i++){
+                    chunk[length + i] = csq.charAt(start + i);
+                }
+            }
+            length += count;
+            start += count;
+        }
+        return this;
+    }
+
+    @Override
+    public ChunkedOutput append(char c) throws IOException{
+        if (length == chunk.length){
+            passOn(false);
+        }
+        chunk[length++] = c;
+        return this;
+    }
+
+    /**
+     * Passes on whatever is left in the chunk. Nothing should be appended afterwards.
+     * @throws IOException If the chunk cannot be written
+     */
+    public void finish() throws IOException{
+        passOn(true);
+    }
+
+    /**
+     * Passes the chunk on and empties it.
+     * @param last Whether this is the last chunk, so a surrogate pair split across chunks cannot be completed
+     * @throws IOException If the chunk cannot be written
+     */
+    private void passOn(boolean last) throws IOException{
+        if (channel != null){
+            encode(last);
+            return;
+        }
+        if (out instanceof Writer){
+            ((Writer) out).write(chunk, 0, length);
+        } else{
+            out.append(CharBuffer.wrap(chunk, 0, length));
+        }
+        length = 0;
+        if (out instanceof Flushable){
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * Encodes the chunk and writes it to the channel. A high surrogate at the end of the chunk is kept back until
+     * the low surrogate that completes it is appended.
+     * @param last Whether this is the last chunk
+     * @throws IOException If the channel cannot be written to
+     */
+    private void encode(boolean last) throws IOException{
+        CharBuffer chars = CharBuffer.wrap(chunk, 0, length);
+        encoder.encode(chars, bytes, last);
+        if (last){
+            encoder.flush(bytes);
+            encoder.reset();
+        }
+        bytes.flip();
+        while (bytes.hasRemaining()){
+            channel.write(bytes);
+        }
+        bytes.clear();
+        int left = chars.remaining(); // At most the high half of a surrogate pair
+        System.arraycopy(chunk, chars.position(), chunk, 0, left);
+        length = left;
+    }
+}
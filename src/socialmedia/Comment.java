@@ -4,6 +4,10 @@ package socialmedia;
  * Represents a comment post on the platform.
  */
 public class Comment extends Post{
+    /**
+     * Serialisation version, fixed so that platforms saved by earlier builds can still be loaded.
+     */
+    private static final long serialVersionUID = -5968121726388177098L;
     /**
      * The post object that the comment is under.
      */
@@ -22,11 +26,37 @@ public class Comment extends Post{
         referencePost.addComment(this);
 		account.addPost(this);
     }
+    /**
+     * Creates an instance of a Comment object with an ID that has already been assigned, for example when
+     * loading a saved platform. The comment is not added to the reference post or the account.
+     * @param postID the ID of the comment.
+     * @param account the account that created the comment.
+     * @param message the text contained in the comment object.
+     * @param referencePost the post object that the comment refers to.
+     */
+    Comment(int postID, Account account, String message, Post referencePost) {
+        super(postID, account, message);
+        this.referencePost = referencePost;
+    }
+    /**
+     * Creates an instance of a Comment object that is read from a mapped snapshot or compact store. The post it
+     * refers to is only read from the source when it is first used.
+     * @param postID the ID of the comment.
+     * @param account the account that created the comment.
+     * @param message the text contained in the comment.
+     * @param source the mapped snapshot or compact store the comment is being read from.
+     */
+    Comment(int postID, Account account, String message, PlatformSource source) {
+        super(postID, account, message, source);
+    }
     
     /** This returns the post object that the comment refers to.
      * @return Post that the comment refers to.
      */
     public Post getReferencePost(){
+        if (referencePost == null){ // Reference post of a comment read lazily is read on first use
+            referencePost = source.readReferencePost(postID);
+        }
         return referencePost;
     }
 }
@@ -0,0 +1,498 @@
+package socialmedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Implementor of the SocialMediaPlatform interface that keeps its accounts and posts in a {@link CompactStore}
+ * instead of as Account and Post objects, for platforms with too many posts to hold one object graph of them.
+ * <p>
+ * Each post is stored as a few primitives in arrays indexed by its ID, with its message packed into a shared arena
+ * outside the Java heap and its comments and endorsements kept as lists of IDs that are only created once the post
+ * has any. An endorsement stores no message of its own. The Account and Post objects used to show an account, a post
+ * or a thread are views created by the store when they are needed and thrown away afterwards.
+ * <p>
+ * The platform behaves exactly like SocialMedia and saves files in the same format, so a platform saved by either
+ * can be loaded by the other. Like SocialMedia, it must only be used by one thread at a time.
+ */
+public class CompactSocialMedia implements SocialMediaPlatform {
+	/**
+	 * The accounts and posts on the platform.
+	 */
+	private CompactStore store = new CompactStore();
+	/**
+	 * Original and comment posts ranked by the number of endorsements they have.
+	 */
+	private final Leaderboard postLeaderboard = new Leaderboard();
+	/**
+	 * Accounts ranked by the number of endorsements their posts have.
+	 */
+	private final Leaderboard accountLeaderboard = new Leaderboard();
+	/**
+	 * The home timelines, built from the follow graph held by the store.
+	 */
+	private HomeFeeds homeFeeds = new HomeFeeds(store.getFollows());
+	/**
+	 * The text of recently shown posts and accounts, so the views do not have to be created and formatted again.
+	 */
+	private final RenderCache renderCache = new RenderCache(RenderCache.DEFAULT_BUDGET);
+
+	/**
+	 * Returns the ID of the account with the given handle.
+	 * @param handle The handle of the account.
+	 * @return The ID of the account with the handle.
+	 * @throws HandleNotRecognisedException If no account has the handle.
+	 */
+	private int findAccount(String handle) throws HandleNotRecognisedException{
+		int id = store.accountIdOf(handle);
+		if (id == 0){
+			throw new HandleNotRecognisedException();
+		}
+		return id;
+	}
+
+	/**
+	 * Checks that there is a post with the given ID.
+	 * @param id The ID of the post.
+	 * @param includeEmptyPosts Whether an empty post with the given ID counts as a post.
+	 * @throws PostIDNotRecognisedException If no post has the ID.
+	 */
+	private void findPost(int id, boolean includeEmptyPosts) throws PostIDNotRecognisedException{
+		if (!store.hasPost(id) || (store.isEmptyPost(id) && !includeEmptyPosts)){
+			throw new PostIDNotRecognisedException();
+		}
+	}
+
+	/**
+	 * States whether the post with the given ID exists and has not been deleted.
+	 * @param id The ID of the post.
+	 * @return Boolean value stating whether the post is live.
+	 */
+	private boolean isLivePost(int id){
+		return store.hasPost(id) && !store.isEmptyPost(id);
+	}
+
+	/**
+	 * Checks a new handle: that it is valid and that no account already has it.
+	 * @param handle The handle.
+	 * @throws InvalidHandleException If the handle is empty, too long or has white space.
+	 * @throws IllegalHandleException If an account already has the handle.
+	 */
+	private void validateHandle(String handle) throws InvalidHandleException, IllegalHandleException{
+		Account.validateHandleFormat(handle);
+		if (store.accountIdOf(handle) != 0){ // Checks if any account already owns this handle
+			throw new IllegalHandleException();
+		}
+	}
+
+	/**
+	 * Updates the leaderboards after endorsements of a post have been added or removed.
+	 * @param endorsedPostId The ID of the post whose endorsements have changed.
+	 * @param change The number of endorsements added, negative when endorsements are removed.
+	 */
+	private void updateLeaderboards(int endorsedPostId, int change){
+		postLeaderboard.changeScore(endorsedPostId, change);
+		accountLeaderboard.changeScore(store.accountOf(endorsedPostId), change);
+	}
+
+	/**
+	 * Rebuilds the post and account leaderboards from the store.
+	 */
+	private void rebuildLeaderboards(){
+		postLeaderboard.clear();
+		accountLeaderboard.clear();
+		for (int id = 1; id < store.getNextAccountID(); id++){
+			if (store.hasAccount(id)){
+				accountLeaderboard.add(id, store.endorsementCountOf(id));
+			}
+		}
+		for (int id = 1; id < store.getNextPostID(); id++){
+			if (store.hasPost(id) && !store.isEmptyPost(id) && store.typeOf(id) != PlatformSnapshot.ENDORSEMENT_POST){ // Endorsement posts cannot be endorsed so never rank above another post
+				postLeaderboard.add(id, store.endorsementCountOfPost(id));
+			}
+		}
+	}
+
+	@Override
+	public int createAccount(String handle) throws IllegalHandleException, InvalidHandleException {
+		return createAccount(handle, "");
+	}
+
+	@Override
+	public int createAccount(String handle, String description) throws IllegalHandleException, InvalidHandleException {
+		validateHandle(handle);
+		int id = Account.takeNextId();
+		int numOfAccounts = getNumberOfAccounts();
+		store.addAccount(id, handle, description);
+		accountLeaderboard.add(id, 0);
+		assert (numOfAccounts + 1 == getNumberOfAccounts()) : "Number of accounts has not increased.";
+		return id;
+	}
+
+	@Override
+	public void removeAccount(int id) throws AccountIDNotRecognisedException {
+		if (!store.hasAccount(id)){
+			throw new AccountIDNotRecognisedException();
+		}
+		int numOfAccounts = getNumberOfAccounts();
+		deleteAllPosts(id);
+		homeFeeds.removeAccount(id);
+		renderCache.removeAccount(id);
+		store.removeAccount(id);
+		accountLeaderboard.remove(id);
+		assert (numOfAccounts - 1 == getNumberOfAccounts()) : "Number of accounts has not decreased.";
+	}
+
+	@Override
+	public void removeAccount(String handle) throws HandleNotRecognisedException {
+		int id = findAccount(handle);
+		try{
+			removeAccount(id);
+		} catch (AccountIDNotRecognisedException e){
+
+		}
+	}
+
+	@Override
+	public void changeAccountHandle(String oldHandle, String newHandle)
+			throws HandleNotRecognisedException, IllegalHandleException, InvalidHandleException {
+		validateHandle(newHandle);
+		int id = findAccount(oldHandle);
+		store.setHandle(id, newHandle);
+		assert (store.handleOf(id).equals(newHandle)) : "Handle has not updated.";
+	}
+
+	@Override
+	public void updateAccountDescription(String handle, String description) throws HandleNotRecognisedException {
+		int id = findAccount(handle);
+		store.setDescription(id, description);
+		renderCache.removeAccount(id);
+	}
+
+	@Override
+	public String showAccount(String handle) throws HandleNotRecognisedException {
+		int id = findAccount(handle);
+		String text = renderCache.account(id, handle);
+		if (text == null){
+			text = store.account(id).toString();
+			renderCache.putAccount(id, handle, text);
+		}
+		return text;
+	}
+
+	@Override
+	public int createPost(String handle, String message) throws HandleNotRecognisedException, InvalidPostException {
+		int accountId = findAccount(handle);
+		Post.validateMessage(message);
+		int id = Post.takeNextId();
+		store.addPost(id, PlatformSnapshot.ORIGINAL_POST, accountId, 0, message, System.currentTimeMillis());
+		dropRenders(id);
+		postLeaderboard.add(id, 0);
+		homeFeeds.postCreated(accountId, id);
+		store.getSearchIndex().add(id, message);
+		return id;
+	}
+
+	@Override
+	public int endorsePost(String handle, int id)
+			throws HandleNotRecognisedException, PostIDNotRecognisedException, NotActionablePostException {
+		int accountId = findAccount(handle);
+		findPost(id, false);
+		if (store.typeOf(id) == PlatformSnapshot.ENDORSEMENT_POST){ // Cannot endorse an endorsement post
+			throw new NotActionablePostException();
+		}
+
+		int numOfEndorsements = getTotalEndorsmentPosts();
+		int endorsementId = Post.takeNextId();
+		store.addPost(endorsementId, PlatformSnapshot.ENDORSEMENT_POST, accountId, id, null, System.currentTimeMillis());
+		dropRenders(endorsementId);
+		updateLeaderboards(id, 1);
+		homeFeeds.postCreated(accountId, endorsementId);
+		assert (numOfEndorsements + 1 == getTotalEndorsmentPosts()):"Number of endorsement posts has not increased.";
+		return endorsementId;
+	}
+
+	@Override
+	public int commentPost(String handle, int id, String message) throws HandleNotRecognisedException,
+			PostIDNotRecognisedException, NotActionablePostException, InvalidPostException {
+		int accountId = findAccount(handle);
+		findPost(id, false);
+		Post.validateMessage(message);
+		if (store.typeOf(id) == PlatformSnapshot.ENDORSEMENT_POST){ //Cannot comment on an endorsement post
+			throw new NotActionablePostException();
+		}
+
+		int numOfComments = getTotalCommentPosts();
+		int commentId = Post.takeNextId();
+		store.addPost(commentId, PlatformSnapshot.COMMENT_POST, accountId, id, message, System.currentTimeMillis());
+		dropRenders(commentId);
+		postLeaderboard.add(commentId, 0);
+		store.getSearchIndex().add(commentId, message);
+		assert (numOfComments + 1 == getTotalCommentPosts()):"Number of comment posts has not increased.";
+		return commentId;
+	}
+
+	@Override
+	public BatchResult applyBatch(List<BatchOperation> operations){
+		return BatchOperation.applyEach(this, operations);
+	}
+
+	@Override
+	public void deletePost(int id) throws PostIDNotRecognisedException {
+		findPost(id, false);
+		deleteStoredPost(id);
+	}
+
+	/**
+	 * Deletes every post of an account, taking them from the end of the list of posts of the account.
+	 * @param accountId The ID of the account whose posts are deleted.
+	 */
+	private void deleteAllPosts(int accountId){
+		int count;
+		while ((count = store.totalPostCountOf(accountId)) > 0){
+			deleteStoredPost(store.accountPostAt(accountId, count - 1));
+		}
+	}
+
+	/**
+	 * Deletes a post from the platform, along with its endorsements if it is an original or comment post. The
+	 * post is left in the store as an empty post so replies can still show it.
+	 * @param id The ID of the post to be deleted, which must not be empty.
+	 */
+	private void deleteStoredPost(int id){
+		if (store.typeOf(id) == PlatformSnapshot.ENDORSEMENT_POST){ //Removes the endorsement from the post that is endorsed
+			int endorsedPostId = store.parentOf(id);
+			removeStoredPost(id);
+			if (!store.isEmptyPost(endorsedPostId)){
+				updateLeaderboards(endorsedPostId, -1);
+			}
+			return;
+		}
+		updateLeaderboards(id, -store.endorsementCountOfPost(id));
+		postLeaderboard.remove(id);
+		store.getSearchIndex().remove(id, store.messageOf(id)); // Before the message is removed from the store
+		int count;
+		while ((count = store.endorsementCountOfPost(id)) > 0){ // Endorsements of the post are deleted with it
+			removeStoredPost(store.endorsementAt(id, count - 1));
+		}
+		removeStoredPost(id);
+	}
+
+	/**
+	 * Turns a post into an empty post in the store, dropping the cached text it changes first.
+	 * @param id The ID of the post, which must not be empty.
+	 */
+	private void removeStoredPost(int id){
+		dropRenders(id);
+		store.removePost(id);
+	}
+
+	/**
+	 * Drops the cached text changed by adding or removing a post: that of the post, of its account, whose post
+	 * count changes, and of the post it comments on or endorses, whose comment or endorsement count changes. An
+	 * endorsement also changes the endorsement count of the account of the post it endorses.
+	 * @param id The ID of the post, which must still be in the store and not be empty.
+	 */
+	private void dropRenders(int id){
+		renderCache.removePost(id);
+		renderCache.removeAccount(store.accountOf(id));
+		byte type = store.typeOf(id);
+		if (type != PlatformSnapshot.ORIGINAL_POST){
+			int parentId = store.parentOf(id);
+			renderCache.removePost(parentId);
+			if (type == PlatformSnapshot.ENDORSEMENT_POST && !store.isEmptyPost(parentId)){
+				renderCache.removeAccount(store.accountOf(parentId));
+			}
+		}
+	}
+
+	@Override
+	public String showIndividualPost(int id) throws PostIDNotRecognisedException {
+		findPost(id, true);
+		if (store.isEmptyPost(id)){ // Every empty post shows the same text, so only live posts are cached
+			return store.post(id).toString();
+		}
+		String handle = store.handleOf(store.accountOf(id));
+		String text = renderCache.post(id, handle);
+		if (text == null){
+			text = store.post(id).toString();
+			renderCache.putPost(id, handle, text);
+		}
+		return text;
+	}
+
+	@Override
+	public StringBuilder showPostChildrenDetails(int id)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		return ThreadRenderer.render(findThreadPost(id), new StringBuilder());
+	}
+
+	@Override
+	public void showPostChildrenDetails(int id, Appendable out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		streamPostChildrenDetails(id, new ChunkedOutput(out));
+	}
+
+	@Override
+	public void showPostChildrenDetails(int id, WritableByteChannel channel)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		streamPostChildrenDetails(id, new ChunkedOutput(channel));
+	}
+
+	@Override
+	public ThreadPage getThreadPage(int id, String cursor, int limit, int maxDepth, int maxChildren)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		return ThreadRenderer.renderPage(findThreadPost(id), cursor, limit, maxDepth, maxChildren);
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		return getTimeline(handle, cursor, limit, Timeline.ALL_POSTS);
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit, int types) throws HandleNotRecognisedException {
+		int accountId = findAccount(handle);
+		int before = TimelinePage.decodeCursor(cursor, accountId, limit, types);
+		int[] ids = store.timelineOf(accountId).before(before, limit, types);
+		return TimelinePage.render(accountId, ids, limit, store::post);
+	}
+
+	@Override
+	public boolean follow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		return homeFeeds.follow(findAccount(handle), findAccount(followeeHandle));
+	}
+
+	@Override
+	public boolean unfollow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		return homeFeeds.unfollow(findAccount(handle), findAccount(followeeHandle));
+	}
+
+	@Override
+	public int getFollowerCount(String handle) throws HandleNotRecognisedException {
+		return store.getFollows().followerCount(findAccount(handle));
+	}
+
+	@Override
+	public int getFollowingCount(String handle) throws HandleNotRecognisedException {
+		return store.getFollows().followingCount(findAccount(handle));
+	}
+
+	@Override
+	public TimelinePage getHomeTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		int accountId = findAccount(handle);
+		int before = TimelinePage.decodeCursor(cursor, accountId, limit, HomeFeeds.HOME_POSTS);
+		int[] ids = homeFeeds.before(accountId, before, limit, store::timelineOf, this::isLivePost);
+		return TimelinePage.render(accountId, ids, limit, store::post);
+	}
+
+	@Override
+	public int[] searchPosts(String query, int limit) {
+		return store.getSearchIndex().search(query, limit);
+	}
+
+	/**
+	 * Returns a view of the post a thread is shown from.
+	 * @param id ID of the post.
+	 * @return The post.
+	 * @throws PostIDNotRecognisedException If there is no post with the ID.
+	 * @throws NotActionablePostException If the post is an endorsement.
+	 */
+	private Post findThreadPost(int id) throws PostIDNotRecognisedException, NotActionablePostException {
+		findPost(id, true);
+		if (store.typeOf(id) == PlatformSnapshot.ENDORSEMENT_POST){ //Cannot call method on endorsement posts
+			throw new NotActionablePostException();
+		}
+		return store.post(id);
+	}
+
+	/**
+	 * Writes a post and every comment below it through a chunked output, checking the post before anything is written.
+	 * @param id ID of the post the thread is shown from.
+	 * @param out The chunked output the thread is written through.
+	 * @throws PostIDNotRecognisedException If there is no post with the ID.
+	 * @throws NotActionablePostException If the post is an endorsement.
+	 * @throws IOException If the output cannot be written to.
+	 */
+	private void streamPostChildrenDetails(int id, ChunkedOutput out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		ThreadRenderer.render(findThreadPost(id), out);
+		out.finish();
+	}
+
+	@Override
+	public int getNumberOfAccounts() {
+		return store.getAccountCount();
+	}
+
+	@Override
+	public int getTotalOriginalPosts() {
+		return store.getTotalOriginalPosts();
+	}
+
+	@Override
+	public int getTotalEndorsmentPosts() {
+		return store.getTotalEndorsementPosts();
+	}
+
+	@Override
+	public int getTotalCommentPosts() {
+		return store.getTotalCommentPosts();
+	}
+
+	@Override
+	public int getMostEndorsedPost() {
+		return postLeaderboard.top(); // 0 if there are no posts on the platform
+	}
+
+	@Override
+	public int getMostEndorsedAccount() {
+		return accountLeaderboard.top(); // 0 if there are no accounts on the platform
+	}
+
+	@Override
+	public int[] getTopEndorsedPosts(int k) {
+		return postLeaderboard.top(k);
+	}
+
+	@Override
+	public int[] getTopEndorsedAccounts(int k) {
+		return accountLeaderboard.top(k);
+	}
+
+	@Override
+	public void erasePlatform() {
+		store.clear();
+		homeFeeds = new HomeFeeds(store.getFollows());
+		renderCache.clear();
+		postLeaderboard.clear();
+		accountLeaderboard.clear();
+		Post.resetIdCount();
+		Account.resetIdCount();
+		assert (getNumberOfAccounts() == 0) : "Account list not empty";
+	}
+
+	@Override
+	public void savePlatform(String filename) throws IOException {
+		store.write(filename, Account.getNextId(), Post.getNextId());
+
+		File f = new File(filename);
+		assert (f.isFile()) : "File has not been created";
+	}
+
+	@Override
+	public void loadPlatform(String filename) throws IOException, ClassNotFoundException {
+		if (PlatformSnapshot.isSnapshot(filename)){
+			store = CompactStore.read(filename);
+		} else{ // Platforms saved by earlier versions were written with Java serialisation
+			store = CompactStore.from(SocialMedia.readSerialisedPlatform(filename));
+		}
+		Account.setNextId(store.getNextAccountID());
+		Post.setNextId(store.getNextPostID());
+		homeFeeds = new HomeFeeds(store.getFollows());
+		renderCache.clear();
+		rebuildLeaderboards();
+	}
+}
@@ -0,0 +1,973 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Holds the accounts and posts of a {@link CompactSocialMedia} as arrays of primitives indexed by ID, rather than
+ * as Account and Post objects. A post is a type tag, the IDs of its account and of the post it refers to, and the
+ * offset of its message in a {@link MessageArena}, which holds the text outside the Java heap. The message of an
+ * endorsement is not stored at all but written from the post it endorses each time it is read. The comments and
+ * endorsements of a post and the posts of an account are lists of IDs in {@link IntLists}, so a post nobody has
+ * replied to costs no list at all. The handles of the accounts are kept in a {@link HandleDictionary} that maps each
+ * handle to the ID of its account.
+ * <p>
+ * The Account and Post objects handed out by account and post are views created on demand. They read their counts
+ * when they are created and their lists from the store the first time they are used, and are not updated by later
+ * changes to the store, so a view should be used straight away and not kept.
+ * <p>
+ * The store only records what it is told. The rules of the platform, such as deleting the endorsements of a post
+ * along with it, are kept by CompactSocialMedia.
+ */
+public class CompactStore implements PlatformSource {
+    /**
+     * The number of IDs the arrays start with.
+     */
+    private final static int INITIAL_CAPACITY = 64;
+    /**
+     * The bits of a type tag that hold the PlatformSnapshot type of the post.
+     */
+    private final static byte TYPE_MASK = 3;
+    /**
+     * Flag set in the type tag of every ID that is used by a post.
+     */
+    private final static byte PRESENT_FLAG = 4;
+    /**
+     * Flag set in the type tag of a post that has been deleted and is an empty post.
+     */
+    private final static byte EMPTY_FLAG = 8;
+    /**
+     * The message offset of an endorsement whose message is written from the post it endorses when it is read.
+     */
+    private final static int RENDERED_MESSAGE = -1;
+
+    /**
+     * The handles of the accounts, with the ID of each account as the code of its handle.
+     */
+    private HandleDictionary handles;
+    /**
+     * The description of each account, indexed by ID.
+     */
+    private String[] descriptions;
+    /**
+     * The number of original posts of each account, indexed by account ID.
+     */
+    private int[] originalPostCounts;
+    /**
+     * The number of endorsements the posts of each account have, indexed by account ID.
+     */
+    private int[] endorsementCounts;
+    /**
+     * The IDs of the posts of each account (original, comments and endorsements), indexed by account ID.
+     */
+    private IntLists accountPosts;
+    /**
+     * The timeline of each account, indexed by account ID, or null until the timeline of the account is first used.
+     */
+    private Timeline[] timelines;
+    /**
+     * The number of accounts in the store.
+     */
+    private int accountCount;
+    /**
+     * The accounts each account follows.
+     */
+    private FollowGraph follows;
+    /**
+     * The index of the words in the messages of original and comment posts. Kept up to date by CompactSocialMedia,
+     * like the follows, and only read and written here.
+     */
+    private PostSearchIndex searchIndex;
+
+    /**
+     * The type tag of each post, indexed by ID: the PlatformSnapshot type of the post along with PRESENT_FLAG and,
+     * once it has been deleted, EMPTY_FLAG. 0 if there is no post with the ID.
+     */
+    private byte[] types;
+    /**
+     * The ID of the account of each post, indexed by post ID, or 0 for an empty post.
+     */
+    private int[] accountIds;
+    /**
+     * The ID of the post each comment or endorsement refers to, indexed by post ID, or 0 for an original post.
+     */
+    private int[] parentIds;
+    /**
+     * The offset in the message arena of the message of each post, indexed by post ID, or RENDERED_MESSAGE for an
+     * endorsement whose message is not stored.
+     */
+    private int[] messageOffsets;
+    /**
+     * The time each post was created in milliseconds since the epoch, indexed by post ID.
+     */
+    private long[] timestamps;
+    /**
+     * The number of comments of each post, excluding empty ones, indexed by post ID.
+     */
+    private int[] commentCounts;
+    /**
+     * The position of each post in the list of posts of its account, indexed by post ID.
+     */
+    private int[] accountSlots;
+    /**
+     * The position of each endorsement in the list of endorsements of the post it endorses, indexed by post ID.
+     */
+    private int[] endorsementSlots;
+    /**
+     * The IDs of the comments of each post in ID order, including empty ones, indexed by post ID.
+     */
+    private IntLists comments;
+    /**
+     * The IDs of the endorsements of each post, indexed by post ID.
+     */
+    private IntLists endorsements;
+    /**
+     * The messages of the posts.
+     */
+    private MessageArena messages;
+
+    /**
+     * The number of original posts that have not been deleted.
+     */
+    private int totalOriginalPosts;
+    /**
+     * The number of comment posts that have not been deleted.
+     */
+    private int totalCommentPosts;
+    /**
+     * The number of endorsement posts that have not been deleted.
+     */
+    private int totalEndorsementPosts;
+    /**
+     * One more than the highest account ID in the store, or the next account ID saved in the file it was read from.
+     */
+    private int nextAccountID;
+    /**
+     * One more than the highest post ID in the store, or the next post ID saved in the file it was read from.
+     */
+    private int nextPostID;
+
+    /**
+     * Creates an empty store.
+     */
+    public CompactStore(){
+        clear();
+    }
+
+    /**
+     * Removes every account and post.
+     */
+    public void clear(){
+        handles = new HandleDictionary();
+        descriptions = new String[INITIAL_CAPACITY];
+        originalPostCounts = new int[INITIAL_CAPACITY];
+        endorsementCounts = new int[INITIAL_CAPACITY];
+        accountPosts = new IntLists();
+        timelines = new Timeline[INITIAL_CAPACITY];
+        accountCount = 0;
+        follows = new FollowGraph();
+        searchIndex = new PostSearchIndex();
+        types = new byte[INITIAL_CAPACITY];
+        accountIds = new int[INITIAL_CAPACITY];
+        parentIds = new int[INITIAL_CAPACITY];
+        messageOffsets = new int[INITIAL_CAPACITY];
+        timestamps = new long[INITIAL_CAPACITY];
+        commentCounts = new int[INITIAL_CAPACITY];
+        accountSlots = new int[INITIAL_CAPACITY];
+        endorsementSlots = new int[INITIAL_CAPACITY];
+        comments = new IntLists();
+        endorsements = new IntLists();
+        messages = new MessageArena();
+        totalOriginalPosts = 0;
+        totalCommentPosts = 0;
+        totalEndorsementPosts = 0;
+        nextAccountID = 1;
+        nextPostID = 1;
+    }
+
+    // Accounts
+
+    /**
+     * Adds an account.
+     * @param id ID of the account, not already used
+     * @param handle Handle of the account, not already used
+     * @param description Description of the account
+     */
+    public void addAccount(int id, String handle, String description){
+        if (id >= descriptions.length){
+            int capacity = Math.max(id + 1, descriptions.length * 2);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+            originalPostCounts = Arrays.copyOf(originalPostCounts, capacity);
+            endorsementCounts = Arrays.copyOf(endorsementCounts, capacity);
+            timelines = Arrays.copyOf(timelines, capacity);
+        }
+        handles.put(id, handle);
+        descriptions[id] = description;
+        accountCount++;
+        nextAccountID = Math.max(nextAccountID, id + 1);
+    }
+
+    /**
+     * Removes an account. Its posts must have been removed first.
+     * @param id ID of the account
+     */
+    public void removeAccount(int id){
+        handles.remove(id);
+        descriptions[id] = null;
+        originalPostCounts[id] = 0;
+        endorsementCounts[id] = 0;
+        timelines[id] = null;
+        accountCount--;
+    }
+
+    /**
+     * States whether there is an account with the given ID.
+     * @param id ID of the account
+     * @return Boolean value stating whether the account exists
+     */
+    public boolean hasAccount(int id){
+        return handles.contains(id);
+    }
+
+    /**
+     * Returns the ID of the account with the given handle.
+     * @param handle Handle of the account
+     * @return ID of the account, or 0 if no account has the handle
+     */
+    public int accountIdOf(String handle){
+        return handles.codeOf(handle);
+    }
+
+    /**
+     * Returns the handle of an account.
+     * @param id ID of the account
+     * @return The handle
+     */
+    public String handleOf(int id){
+        return handles.get(id);
+    }
+
+    /**
+     * Changes the handle of an account. The endorsements of its posts keep the handle they were made with, so any
+     * whose message is written from the handle are given a stored copy of their message first. Handles change rarely
+     * compared to how often posts are endorsed, so this costs less than storing every endorsement message.
+     * @param id ID of the account
+     * @param handle The new handle, not already used
+     */
+    public void setHandle(int id, String handle){
+        for (int i = 0; i < accountPosts.size(id); i++){
+            int postId = accountPosts.get(id, i);
+            for (int j = 0; j < endorsements.size(postId); j++){
+                int endorsementId = endorsements.get(postId, j);
+                if (messageOffsets[endorsementId] == RENDERED_MESSAGE){
+                    messageOffsets[endorsementId] = messages.add(messageOf(endorsementId));
+                }
+            }
+        }
+        handles.replace(id, handle);
+    }
+
+    /**
+     * Changes the description of an account.
+     * @param id ID of the account
+     * @param description The new description
+     */
+    public void setDescription(int id, String description){
+        descriptions[id] = description;
+    }
+
+    /**
+     * Returns the timeline of an account, creating it from the list of posts of the account the first time it is used.
+     * @param id ID of the account
+     * @return The timeline of the account
+     */
+    public Timeline timelineOf(int id){
+        if (timelines[id] == null){
+            int[] postIds = accountPosts.toArray(id);
+            Arrays.sort(postIds); // Each post is then appended to the timeline
+            Timeline timeline = new Timeline();
+            for (int postId : postIds){
+                timeline.add(postId, typeOf(postId));
+            }
+            timelines[id] = timeline;
+        }
+        return timelines[id];
+    }
+
+    /**
+     * Returns the time a post was created.
+     * @param id ID of the post
+     * @return Creation time in milliseconds since the epoch, or 0 if it is not known
+     */
+    public long timestampOf(int id){
+        return timestamps[id];
+    }
+
+    /**
+     * Returns the ID of one of the posts of an account.
+     * @param accountId ID of the account
+     * @param index Position of the post in the list of posts of the account
+     * @return ID of the post
+     */
+    public int accountPostAt(int accountId, int index){
+        return accountPosts.get(accountId, index);
+    }
+
+    /**
+     * Returns the number of accounts in the store.
+     * @return Number of accounts
+     */
+    public int getAccountCount(){
+        return accountCount;
+    }
+
+    /**
+     * Returns the accounts each account follows. The graph is replaced when the store is cleared.
+     * @return The follow graph
+     */
+    public FollowGraph getFollows(){
+        return follows;
+    }
+
+    /**
+     * Returns the search index of the posts. The index is replaced when the store is cleared.
+     * @return The search index
+     */
+    public PostSearchIndex getSearchIndex(){
+        return searchIndex;
+    }
+
+    /**
+     * Returns one more than the highest account ID in the store, or the next account ID saved in the file it was
+     * read from.
+     * @return Bound of the account IDs
+     */
+    public int getNextAccountID(){
+        return nextAccountID;
+    }
+
+    // Posts
+
+    /**
+     * Adds a post and links it to its account and to the post it refers to, updating the counts of both.
+     * @param id ID of the post, not already used
+     * @param type PlatformSnapshot type of the post
+     * @param accountId ID of the account of the post
+     * @param parentId ID of the post a comment or endorsement refers to, or 0 for an original post
+     * @param message Message of the post, or null for an endorsement whose message is to be written from the post it
+     * endorses whenever it is read
+     * @param timestamp Time the post was created in milliseconds since the epoch
+     */
+    public void addPost(int id, byte type, int accountId, int parentId, String message, long timestamp){
+        addPostRecord(id, type, parentId, timestamp);
+        accountIds[id] = accountId;
+        messageOffsets[id] = message == null ? RENDERED_MESSAGE : messages.add(message);
+        accountSlots[id] = accountPosts.add(accountId, id);
+        if (timelines[accountId] != null){
+            timelines[accountId].add(id, type);
+        }
+        if (type == PlatformSnapshot.COMMENT_POST){
+            comments.add(parentId, id);
+            commentCounts[parentId]++;
+            totalCommentPosts++;
+        } else if (type == PlatformSnapshot.ENDORSEMENT_POST){
+            if (!isEmptyPost(parentId)){ // Only older saves can hold an endorsement of a deleted post
+                endorsementSlots[id] = endorsements.add(parentId, id);
+                endorsementCounts[accountIds[parentId]]++;
+                totalEndorsementPosts++;
+            }
+        } else{
+            originalPostCounts[accountId]++;
+            totalOriginalPosts++;
+        }
+    }
+
+    /**
+     * Adds a post that has already been deleted, as read from a saved platform. A deleted comment is still linked
+     * to the post it refers to, so the replies to it can be shown.
+     * @param id ID of the post, not already used
+     * @param type PlatformSnapshot type of the post
+     * @param parentId ID of the post a comment or endorsement refers to, or 0 for an original post
+     * @param timestamp Time the post was created in milliseconds since the epoch
+     */
+    public void addEmptyPost(int id, byte type, int parentId, long timestamp){
+        addPostRecord(id, type, parentId, timestamp);
+        types[id] |= EMPTY_FLAG;
+        if (type == PlatformSnapshot.COMMENT_POST){
+            comments.add(parentId, id);
+        }
+    }
+
+    /**
+     * Turns a post into an empty post: it is removed from its account and, if it is an endorsement, from the
+     * endorsements of the post it endorses, and the counts of both are updated. A post with endorsements of its
+     * own must have them removed first. The post keeps its ID, type and comments.
+     * @param id ID of the post, which must not already be empty
+     */
+    public void removePost(int id){
+        int accountId = accountIds[id];
+        int moved = accountPosts.removeAt(accountId, accountSlots[id]);
+        if (moved != 0){
+            accountSlots[moved] = accountSlots[id];
+        }
+        byte type = typeOf(id);
+        if (timelines[accountId] != null){
+            timelines[accountId].remove(id, type);
+        }
+        int parentId = parentIds[id];
+        if (type == PlatformSnapshot.COMMENT_POST){
+            commentCounts[parentId]--;
+            totalCommentPosts--;
+        } else if (type == PlatformSnapshot.ENDORSEMENT_POST){
+            if (!isEmptyPost(parentId)){
+                moved = endorsements.removeAt(parentId, endorsementSlots[id]);
+                if (moved != 0){
+                    endorsementSlots[moved] = endorsementSlots[id];
+                }
+                endorsementCounts[accountIds[parentId]]--;
+                totalEndorsementPosts--; // Endorsements of deleted posts were not counted when they were added
+            }
+        } else{
+            originalPostCounts[accountId]--;
+            totalOriginalPosts--;
+        }
+        types[id] |= EMPTY_FLAG;
+        accountIds[id] = 0;
+        messageOffsets[id] = 0;
+    }
+
+    /**
+     * States whether there is a post, empty or not, with the given ID.
+     * @param id ID of the post
+     * @return Boolean value stating whether the post exists
+     */
+    public boolean hasPost(int id){
+        return id > 0 && id < types.length && types[id] != 0;
+    }
+
+    /**
+     * Returns the PlatformSnapshot type of a post.
+     * @param id ID of the post
+     * @return ORIGINAL_POST, COMMENT_POST or ENDORSEMENT_POST
+     */
+    public byte typeOf(int id){
+        return (byte)(types[id] & TYPE_MASK);
+    }
+
+    /**
+     * States whether a post is an empty post.
+     * @param id ID of the post
+     * @return Boolean value stating whether the post has been deleted
+     */
+    public boolean isEmptyPost(int id){
+        return (types[id] & EMPTY_FLAG) != 0;
+    }
+
+    /**
+     * Returns the ID of the account of a post.
+     * @param id ID of the post
+     * @return ID of the account, or 0 for an empty post
+     */
+    public int accountOf(int id){
+        return accountIds[id];
+    }
+
+    /**
+     * Returns the ID of the post a comment or endorsement refers to.
+     * @param id ID of the post
+     * @return ID of the post referred to, or 0 for an original post
+     */
+    public int parentOf(int id){
+        return parentIds[id];
+    }
+
+    /**
+     * Returns the message of a post that is not empty.
+     * @param id ID of the post
+     * @return The message
+     */
+    public String messageOf(int id){
+        if (messageOffsets[id] == RENDERED_MESSAGE){
+            return endorsementMessageOf(parentIds[id]);
+        }
+        return messages.get(messageOffsets[id]);
+    }
+
+    /**
+     * Returns the message an endorsement of a post has: the handle of the account of the post and its message.
+     * @param postId ID of the post, not empty
+     * @return The message of an endorsement of the post
+     */
+    public String endorsementMessageOf(int postId){
+        return "EP@" + handles.get(accountIds[postId]) + ": " + messageOf(postId);
+    }
+
+    /**
+     * Returns the ID of one of the endorsements of a post.
+     * @param postId ID of the post
+     * @param index Position of the endorsement in the list of endorsements of the post
+     * @return ID of the endorsement
+     */
+    public int endorsementAt(int postId, int index){
+        return endorsements.get(postId, index);
+    }
+
+    /**
+     * Returns the number of original posts that have not been deleted.
+     * @return Number of original posts
+     */
+    public int getTotalOriginalPosts(){
+        return totalOriginalPosts;
+    }
+
+    /**
+     * Returns the number of comment posts that have not been deleted.
+     * @return Number of comment posts
+     */
+    public int getTotalCommentPosts(){
+        return totalCommentPosts;
+    }
+
+    /**
+     * Returns the number of endorsement posts that have not been deleted.
+     * @return Number of endorsement posts
+     */
+    public int getTotalEndorsementPosts(){
+        return totalEndorsementPosts;
+    }
+
+    /**
+     * Returns one more than the highest post ID in the store, or the next post ID saved in the file it was read
+     * from.
+     * @return Bound of the post IDs
+     */
+    public int getNextPostID(){
+        return nextPostID;
+    }
+
+    // Views
+
+    /**
+     * Returns a view of an account.
+     * @param id ID of the account
+     * @return The account, or null if there is no account with the ID
+     */
+    public Account account(int id){
+        if (!hasAccount(id)){
+            return null;
+        }
+        return new Account(id, handles.get(id), descriptions[id], this);
+    }
+
+    /**
+     * Returns a view of a post.
+     * @param id ID of the post
+     * @return The post, or null if there is no post with the ID
+     */
+    public Post post(int id){
+        if (!hasPost(id)){
+            return null;
+        }
+        boolean isEmpty = isEmptyPost(id);
+        Account account = isEmpty ? null : account(accountIds[id]);
+        String message = isEmpty ? "" : messageOf(id);
+        Post p;
+        byte type = typeOf(id);
+        if (type == PlatformSnapshot.COMMENT_POST){
+            p = new Comment(id, account, message, this);
+        } else if (type == PlatformSnapshot.ENDORSEMENT_POST){
+            p = new EndorsementPost(id, account, message, this);
+        } else{
+            p = new Post(id, account, message, this);
+        }
+        p.setTimestamp(timestamps[id]);
+        if (isEmpty){
+            p.setPostToEmpty();
+        }
+        return p;
+    }
+
+    @Override
+    public ArrayList<Post> readAccountPosts(int accountId){
+        int size = accountPosts.size(accountId);
+        ArrayList<Post> list = new ArrayList<Post>(size);
+        for (int i = 0; i < size; i++){
+            list.add(post(accountPosts.get(accountId, i)));
+        }
+        return list;
+    }
+
+    @Override
+    public ArrayList<Comment> readComments(int postId){
+        int size = comments.size(postId);
+        ArrayList<Comment> list = new ArrayList<Comment>(size);
+        for (int i = 0; i < size; i++){
+            list.add((Comment)post(comments.get(postId, i)));
+        }
+        return list;
+    }
+
+    @Override
+    public ArrayList<EndorsementPost> readEndorsements(int postId){
+        int size = endorsements.size(postId);
+        ArrayList<EndorsementPost> list = new ArrayList<EndorsementPost>(size);
+        for (int i = 0; i < size; i++){
+            list.add((EndorsementPost)post(endorsements.get(postId, i)));
+        }
+        return list;
+    }
+
+    @Override
+    public Post readReferencePost(int postId){
+        return post(parentIds[postId]);
+    }
+
+    @Override
+    public int originalPostCountOf(int accountId){
+        return originalPostCounts[accountId];
+    }
+
+    @Override
+    public int totalPostCountOf(int accountId){
+        return accountPosts.size(accountId);
+    }
+
+    @Override
+    public int endorsementCountOf(int accountId){
+        return endorsementCounts[accountId];
+    }
+
+    @Override
+    public int endorsementCountOfPost(int postId){
+        return endorsements.size(postId);
+    }
+
+    @Override
+    public int commentCountOf(int postId){
+        return commentCounts[postId];
+    }
+
+    // Saving and loading
+
+    /**
+     * Writes the store to a file in the PlatformSnapshot format, so it can be loaded by any platform. The file is
+     * written to a temporary file first and then moved over the old file, as PlatformSnapshot.write does.
+     * @param filename Location of the file to be written
+     * @param nextAccountID The ID that will be assigned to the next account created
+     * @param nextPostID The ID that will be assigned to the next post created
+     * @throws IOException If the file cannot be written
+     */
+    public void write(String filename, int nextAccountID, int nextPostID) throws IOException{
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        int accountBound = Math.min(nextAccountID, descriptions.length);
+        int postBound = Math.min(nextPostID, types.length);
+        int postCount = 0;
+        for (int id = 1; id < postBound; id++){
+            if (hasPost(id)){
+                postCount++;
+            }
+        }
+        try(BufferedChannelOutput out = new BufferedChannelOutput(channel)){
+            out.writeInt(PlatformSnapshot.MAGIC);
+            out.writeInt(PlatformSnapshot.VERSION);
+            out.writeInt(nextAccountID);
+            out.writeInt(nextPostID);
+            out.writeInt(accountCount);
+            out.writeInt(postCount);
+            out.writeInt(totalOriginalPosts);
+            out.writeInt(totalCommentPosts);
+            out.writeInt(totalEndorsementPosts);
+            while (out.position() < PlatformSnapshot.JOURNAL_SEQUENCE_POSITION){ // Table offsets are filled in once the tables are written
+                out.writeByte(0);
+            }
+            out.writeLong(0);
+
+            long[] accountOffsets = new long[nextAccountID];
+            for (int id = 1; id < accountBound; id++){
+                if (!hasAccount(id)){
+                    continue;
+                }
+                accountOffsets[id] = out.position();
+                out.writeInt(id);
+                out.writeString(handles.get(id));
+                out.writeString(descriptions[id]);
+                writeIds(out, accountPosts, id);
+            }
+
+            long[] postOffsets = new long[nextPostID];
+            for (int id = 1; id < postBound; id++){
+                if (!hasPost(id)){
+                    continue;
+                }
+                boolean isEmpty = isEmptyPost(id);
+                postOffsets[id] = out.position();
+                out.writeInt(id);
+                out.writeByte(typeOf(id));
+                out.writeByte(isEmpty ? PlatformSnapshot.EMPTY_POST_FLAG : 0);
+                out.writeInt(parentIds[id]);
+                out.writeInt(accountIds[id]);
+                out.writeLong(timestamps[id]);
+                out.writeString(isEmpty ? "" : messageOf(id));
+                writeIds(out, comments, id);
+                writeIds(out, endorsements, id);
+            }
+
+            long accountTableOffset = out.position();
+            for (int id = 0; id < nextAccountID; id++){
+                boolean exists = hasAccount(id);
+                out.writeLong(accountOffsets[id]);
+                out.writeInt(exists ? endorsementCounts[id] : 0);
+                out.writeInt(exists ? originalPostCounts[id] : 0);
+                out.writeInt(exists ? accountPosts.size(id) : 0);
+            }
+
+            long postTableOffset = out.position();
+            for (int id = 0; id < nextPostID; id++){
+                boolean exists = hasPost(id);
+                out.writeLong(postOffsets[id]);
+                out.writeInt(exists ? endorsements.size(id) : 0);
+                out.writeInt(exists ? commentCounts[id] : 0);
+                out.writeByte(exists ? typeOf(id) : 0);
+                out.writeByte(exists && isEmptyPost(id) ? PlatformSnapshot.EMPTY_POST_FLAG : 0);
+            }
+
+            long handleTableOffset = out.position();
+            int handleTableSlots = PlatformSnapshot.handleTableSlotsFor(accountCount);
+            int[] slots = new int[handleTableSlots * 2];
+            for (int id = 1; id < accountBound; id++){
+                if (!hasAccount(id)){
+                    continue;
+                }
+                int hash = handles.hashOf(id);
+                int slot = PlatformSnapshot.handleSlotFor(hash, handleTableSlots);
+                while (slots[slot * 2 + 1] != 0){
+                    slot = (slot + 1) & (handleTableSlots - 1);
+                }
+                slots[slot * 2] = hash;
+                slots[slot * 2 + 1] = id;
+            }
+            for (int value : slots){
+                out.writeInt(value);
+            }
+            PlatformSnapshot.writeFollows(out, follows, nextAccountID);
+            searchIndex.write(out);
+
+            out.flush();
+            ByteBuffer tableOffsets = ByteBuffer.allocate(PlatformSnapshot.JOURNAL_SEQUENCE_POSITION
+                    - PlatformSnapshot.ACCOUNT_TABLE_OFFSET_POSITION);
+            tableOffsets.putLong(accountTableOffset).putLong(postTableOffset).putLong(handleTableOffset).putInt(handleTableSlots);
+            tableOffsets.flip();
+            while (tableOffsets.hasRemaining()){
+                channel.write(tableOffsets, PlatformSnapshot.ACCOUNT_TABLE_OFFSET_POSITION + tableOffsets.position());
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes one list of IDs as a count followed by the IDs.
+     * @param out Output to write to
+     * @param lists The lists the list belongs to
+     * @param owner ID of the owner of the list
+     * @throws IOException If the IDs cannot be written
+     */
+    private static void writeIds(BufferedChannelOutput out, IntLists lists, int owner) throws IOException{
+        int size = lists.size(owner);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++){
+            out.writeInt(lists.get(owner, i));
+        }
+    }
+
+    /**
+     * Reads a file written in the PlatformSnapshot format straight into a new store, without creating an Account
+     * or Post object for each record. The lists of IDs in the file are not needed, as every post is linked to its
+     * account and to the post it refers to as it is read.
+     * @param filename Location of the file to be read
+     * @return The store
+     * @throws IOException If the file cannot be read or is not a valid snapshot
+     */
+    public static CompactStore read(String filename) throws IOException{
+        try(BufferedChannelInput in = new BufferedChannelInput(FileChannel.open(Paths.get(filename), StandardOpenOption.READ))){
+            if (in.readInt() != PlatformSnapshot.MAGIC){
+                throw new IOException(filename + " is not a platform snapshot");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > PlatformSnapshot.VERSION){
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            CompactStore store = new CompactStore();
+            int nextAccountID = in.readInt();
+            int nextPostID = in.readInt();
+            int accountCount = in.readInt();
+            int postCount = in.readInt();
+            in.skipBytes(12); // The post totals are counted as the posts are read
+            if (version > 1){
+                in.skipBytes(PlatformSnapshot.JOURNAL_SEQUENCE_POSITION - PlatformSnapshot.ACCOUNT_TABLE_OFFSET_POSITION);
+            }
+            if (version > 2){
+                in.readLong();
+            }
+            store.ensurePostCapacity(nextPostID);
+
+            for (int i = 0; i < accountCount; i++){
+                int id = in.readInt();
+                store.addAccount(id, in.readString(), in.readString());
+                if (version > 1){
+                    in.skipBytes(4L * in.readInt());
+                }
+            }
+            for (int i = 0; i < postCount; i++){
+                int id = in.readInt();
+                byte type = in.readByte();
+                boolean isEmpty = (in.readByte() & PlatformSnapshot.EMPTY_POST_FLAG) != 0;
+                int parentId = in.readInt();
+                int accountId = in.readInt();
+                long timestamp = version >= PlatformSnapshot.TIMESTAMP_VERSION ? in.readLong() : 0;
+                String message = in.readString();
+                store.readPost(id, type, isEmpty, parentId, accountId, message, timestamp);
+                if (version > 1){
+                    in.skipBytes(4L * in.readInt());
+                    in.skipBytes(4L * in.readInt());
+                }
+            }
+            if (version >= PlatformSnapshot.FOLLOW_VERSION){
+                in.skipBytes(PlatformSnapshot.tablesSizeFor(nextAccountID, nextPostID, accountCount));
+                store.follows = PlatformSnapshot.readFollows(in);
+            }
+            if (version >= PlatformSnapshot.SEARCH_VERSION){
+                store.searchIndex = PostSearchIndex.read(in);
+            } else{
+                store.indexMessages();
+            }
+            store.nextAccountID = Math.max(store.nextAccountID, nextAccountID);
+            store.nextPostID = Math.max(store.nextPostID, nextPostID);
+            return store;
+        }
+    }
+
+    /**
+     * Copies a platform read as Account and Post objects, such as one saved with Java serialisation by an earlier
+     * version, into a new store.
+     * @param snapshot The platform that was read
+     * @return The store
+     * @throws IOException If a post refers to an account or post that does not exist
+     */
+    public static CompactStore from(PlatformSnapshot snapshot) throws IOException{
+        CompactStore store = new CompactStore();
+        store.ensurePostCapacity(snapshot.getNextPostID());
+        for (Account a : snapshot.getAccounts().values()){
+            store.addAccount(a.getID(), a.getHandle(), a.getDescription());
+        }
+        for (int id = 1; id < snapshot.getNextPostID(); id++){ // Visits every post in ID order, so parents come first
+            Post p = snapshot.getPosts().get(id);
+            if (p != null){
+                store.readPost(id, PlatformSnapshot.typeOf(p), p.isEmptyPost(), PlatformSnapshot.parentIdOf(p),
+                        p.isEmptyPost() ? 0 : p.getAccount().getID(), p.getMessage(), p.getTimestamp());
+            }
+        }
+        store.follows = snapshot.getFollows();
+        store.searchIndex = snapshot.getSearchIndex();
+        store.nextAccountID = Math.max(store.nextAccountID, snapshot.getNextAccountID());
+        store.nextPostID = Math.max(store.nextPostID, snapshot.getNextPostID());
+        return store;
+    }
+
+    /**
+     * Adds every original and comment post that has not been deleted to the search index, for files written before
+     * the index was saved with them.
+     */
+    private void indexMessages(){
+        for (int id = 1; id < nextPostID; id++){
+            if (hasPost(id) && !isEmptyPost(id) && typeOf(id) != PlatformSnapshot.ENDORSEMENT_POST){
+                searchIndex.add(id, messageOf(id));
+            }
+        }
+    }
+
+    /**
+     * Adds a post that has been read from a saved platform, after checking that what it refers to has been read.
+     * @param id ID of the post
+     * @param type PlatformSnapshot type of the post
+     * @param isEmpty Whether the post has been deleted
+     * @param parentId ID of the post a comment or endorsement refers to
+     * @param accountId ID of the account of the post
+     * @param message Message of the post
+     * @param timestamp Time the post was created in milliseconds since the epoch
+     * @throws IOException If the post refers to an account or post that has not been read, or has an unknown type
+     */
+    private void readPost(int id, byte type, boolean isEmpty, int parentId, int accountId, String message, long timestamp) throws IOException{
+        if (id <= 0 || hasPost(id)){
+            throw new IOException("Post " + id + " is not a new post ID");
+        }
+        if (type != PlatformSnapshot.ORIGINAL_POST && type != PlatformSnapshot.COMMENT_POST
+                && type != PlatformSnapshot.ENDORSEMENT_POST){
+            throw new IOException("Post " + id + " has unknown type " + type);
+        }
+        if (!isEmpty && !hasAccount(accountId)){
+            throw new IOException("Post " + id + " refers to unknown account " + accountId);
+        }
+        if (type != PlatformSnapshot.ORIGINAL_POST && !hasPost(parentId)){
+            throw new IOException("Post " + id + " refers to unknown post " + parentId);
+        }
+        if (type == PlatformSnapshot.ORIGINAL_POST){
+            parentId = 0;
+        }
+        if (isEmpty){
+            addEmptyPost(id, type, parentId, timestamp);
+        } else if (type == PlatformSnapshot.ENDORSEMENT_POST && !isEmptyPost(parentId)
+                && message.equals(endorsementMessageOf(parentId))){
+            addPost(id, type, accountId, parentId, null, timestamp); // The message can be written from the endorsed post
+        } else{
+            addPost(id, type, accountId, parentId, message, timestamp);
+        }
+    }
+
+    /**
+     * Records the ID, type and parent of a new post, growing the arrays if needed.
+     * @param id ID of the post
+     * @param type PlatformSnapshot type of the post
+     * @param parentId ID of the post a comment or endorsement refers to, or 0 for an original post
+     * @param timestamp Time the post was created in milliseconds since the epoch
+     */
+    private void addPostRecord(int id, byte type, int parentId, long timestamp){
+        ensurePostCapacity(id + 1);
+        types[id] = (byte)(type | PRESENT_FLAG);
+        parentIds[id] = parentId;
+        timestamps[id] = timestamp;
+        nextPostID = Math.max(nextPostID, id + 1);
+    }
+
+    /**
+     * Makes room for posts with IDs below the given value.
+     * @param postBound One more than the highest post ID that will be used
+     */
+    private void ensurePostCapacity(int postBound){
+        if (postBound <= types.length){
+            return;
+        }
+        int capacity = Math.max(postBound, types.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        accountIds = Arrays.copyOf(accountIds, capacity);
+        parentIds = Arrays.copyOf(parentIds, capacity);
+        messageOffsets = Arrays.copyOf(messageOffsets, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        commentCounts = Arrays.copyOf(commentCounts, capacity);
+        accountSlots = Arrays.copyOf(accountSlots, capacity);
+        endorsementSlots = Arrays.copyOf(endorsementSlots, capacity);
+        comments.ensureCapacity(capacity);
+        endorsements.ensureCapacity(capacity);
+    }
+}
@@ -0,0 +1,1027 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Implementor of the SocialMediaPlatform interface that can be used by many threads at once.
+ * <p>
+ * Accounts and posts are indexed in concurrent maps, IDs are handed out atomically and the post totals are atomic
+ * counters. An account and every post it has made are guarded by the account's stripe in a set of striped locks, so
+ * calls that involve different accounts run in parallel. Calls that involve more than one account, such as
+ * endorsing or commenting on another account's post, lock the stripes of all of them in a fixed order.
+ * <p>
+ * Calls that change the whole platform (removing an account, changing a handle, erasing, saving and loading) take
+ * the platform lock exclusively and wait for every other call to finish. All other calls share the platform lock.
+ * <p>
+ * The follow graph and home timelines are guarded by a single feed lock, taken last. New posts are pushed into home
+ * timelines while the stripe of their account is held, and home timelines are read with every stripe held for
+ * reading, so a reader never sees a post that is in the timeline of its account but not yet pushed.
+ * <p>
+ * The search index is guarded by a read-write search lock, also taken last, so searches run in parallel with each
+ * other and only wait for the words of a post being added or removed.
+ * <p>
+ * The text of shown posts and accounts is cached in one {@link RenderCache} for each stripe, holding the accounts of
+ * the stripe and their posts. An entry is only read, written or dropped while its stripe is held, and each cache is
+ * also locked on itself as a leaf lock, as readers share the stripe.
+ */
+public class ConcurrentSocialMedia implements SocialMediaPlatform {
+	/**
+	 * The number of stripes accounts are spread across.
+	 */
+	private final static int STRIPE_COUNT = 64;
+	/**
+	 * Shared by every call, and held exclusively by calls that change the whole platform.
+	 */
+	private final ReentrantReadWriteLock platformLock = new ReentrantReadWriteLock();
+	/**
+	 * The stripes that guard each account and the posts it has made.
+	 */
+	private final StripedLocks accountLocks = new StripedLocks(STRIPE_COUNT);
+	/**
+	 * The accounts on the platform indexed by their ID.
+	 */
+	private final ConcurrentHashMap<Integer, Account> accountsById = new ConcurrentHashMap<Integer, Account>();
+	/**
+	 * The accounts on the platform indexed by their handle.
+	 */
+	private final ConcurrentHashMap<String, Account> accountsByHandle = new ConcurrentHashMap<String, Account>();
+	/**
+	 * Every post on the platform indexed by its ID, including generic empty posts.
+	 */
+	private final ConcurrentHashMap<Integer, Post> posts = new ConcurrentHashMap<Integer, Post>();
+	/**
+	 * The number of original posts currently on the platform.
+	 */
+	private final AtomicInteger totalOriginalPosts = new AtomicInteger();
+	/**
+	 * The number of comment posts currently on the platform.
+	 */
+	private final AtomicInteger totalCommentPosts = new AtomicInteger();
+	/**
+	 * The number of endorsement posts currently on the platform.
+	 */
+	private final AtomicInteger totalEndorsementPosts = new AtomicInteger();
+	/**
+	 * Original and comment posts ranked by the number of endorsements they have. Guarded by leaderboardLock.
+	 */
+	private final Leaderboard postLeaderboard = new Leaderboard();
+	/**
+	 * Accounts ranked by the number of endorsements their posts have. Guarded by leaderboardLock.
+	 */
+	private final Leaderboard accountLeaderboard = new Leaderboard();
+	/**
+	 * The lock guarding both leaderboards. It is only held for single leaderboard updates, never while waiting for
+	 * another lock.
+	 */
+	private final Object leaderboardLock = new Object();
+	/**
+	 * The follow graph and the home timelines built from it. Guarded by feedLock.
+	 */
+	private HomeFeeds homeFeeds = new HomeFeeds(new FollowGraph());
+	/**
+	 * The lock guarding the follow graph and home timelines. It is only held for single calls on them, never while
+	 * waiting for another lock.
+	 */
+	private final Object feedLock = new Object();
+	/**
+	 * The index of the words in the messages of original and comment posts. Guarded by searchLock.
+	 */
+	private PostSearchIndex searchIndex = new PostSearchIndex();
+	/**
+	 * The lock guarding the search index. Like feedLock, it is never held while waiting for another lock.
+	 */
+	private final ReentrantReadWriteLock searchLock = new ReentrantReadWriteLock();
+	/**
+	 * The text of recently shown posts and accounts, with one cache for each stripe. Each is guarded by its stripe
+	 * and by locking on the cache itself.
+	 */
+	private final RenderCache[] renderCaches = new RenderCache[STRIPE_COUNT];
+
+	/**
+	 * Creates an empty platform.
+	 */
+	public ConcurrentSocialMedia(){
+		for (int i = 0; i < STRIPE_COUNT; i++){
+			renderCaches[i] = new RenderCache(RenderCache.DEFAULT_BUDGET / STRIPE_COUNT);
+		}
+	}
+
+	/**
+	 * Returns the account with the given handle.
+	 * @param handle The handle of the account.
+	 * @return The account with the handle.
+	 * @throws HandleNotRecognisedException If no account has the handle.
+	 */
+	private Account findAccount(String handle) throws HandleNotRecognisedException{
+		return Account.findAccountByHandle(handle, accountsByHandle);
+	}
+
+	/**
+	 * Returns the post with the given ID.
+	 * @param id The ID of the post.
+	 * @param includeEmptyPosts Whether an empty post with the given ID should be returned.
+	 * @return The post with the ID.
+	 * @throws PostIDNotRecognisedException If no post has the ID.
+	 */
+	private Post findPost(int id, boolean includeEmptyPosts) throws PostIDNotRecognisedException{
+		Post p = posts.get(id);
+		if (p == null || (p.isEmptyPost() && !includeEmptyPosts)){
+			throw new PostIDNotRecognisedException();
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the ID of the account that made a post, read without holding its stripe.
+	 * @param p The post.
+	 * @return The ID of the account, or 0 if the post is empty.
+	 */
+	private static int accountIdOf(Post p){
+		Account account = p.getAccount(); // Only ever changes to null, which is checked again once the stripe is held
+		return account == null ? 0 : account.getID();
+	}
+
+	/**
+	 * Returns the timeline of the account with the given ID. A timeline is created the first time it is used, so
+	 * the stripe of the account must be held for writing, or every stripe for reading along with the feed lock.
+	 * @param id The ID of the account, which must exist.
+	 * @return The timeline of the account.
+	 */
+	private Timeline timelineOf(int id){
+		return accountsById.get(id).getTimeline();
+	}
+
+	/**
+	 * States whether the post with the given ID exists and has not been deleted.
+	 * @param id The ID of the post.
+	 * @return Boolean value stating whether the post is live.
+	 */
+	private boolean isLivePost(int id){
+		Post p = posts.get(id);
+		return p != null && !p.isEmptyPost();
+	}
+
+	/**
+	 * Adds a change to the platform counter matching the type of the post (original, comment or endorsement).
+	 * @param p The post that has been added to or removed from the platform.
+	 * @param change The amount to change the counter by, 1 when a post is added and -1 when it is removed.
+	 */
+	private void updatePostCounters(Post p, int change){
+		if (p instanceof Comment){
+			totalCommentPosts.addAndGet(change);
+		} else if (p instanceof EndorsementPost){
+			totalEndorsementPosts.addAndGet(change);
+		} else{
+			totalOriginalPosts.addAndGet(change);
+		}
+	}
+
+	/**
+	 * States whether a post is an endorsement left behind by an older save after the post it endorses was deleted.
+	 * These endorsements are not counted in the post totals and do not change any counts when they are deleted.
+	 * @param p The post.
+	 * @return Boolean value stating whether the post is an endorsement of an empty post.
+	 */
+	private static boolean isOrphanedEndorsement(Post p){
+		return p instanceof EndorsementPost && ((EndorsementPost)p).getReferencePost().isEmptyPost();
+	}
+
+	/**
+	 * Returns the render cache holding an account and its posts.
+	 * @param accountId The ID of the account.
+	 * @return The cache of the stripe of the account.
+	 */
+	private RenderCache renderCacheOf(int accountId){
+		return renderCaches[accountLocks.stripeOf(accountId)];
+	}
+
+	/**
+	 * Drops the cached text of a post. The stripe of its account must be held for writing.
+	 * @param postId The ID of the post.
+	 * @param accountId The ID of the account of the post, or 0 for an empty post, which is never cached.
+	 */
+	private void dropPostRender(int postId, int accountId){
+		if (accountId != 0){
+			RenderCache cache = renderCacheOf(accountId);
+			synchronized (cache){
+				cache.removePost(postId);
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached text of an account. The stripe of the account must be held for writing.
+	 * @param accountId The ID of the account, or 0 for none.
+	 */
+	private void dropAccountRender(int accountId){
+		if (accountId != 0){
+			RenderCache cache = renderCacheOf(accountId);
+			synchronized (cache){
+				cache.removeAccount(accountId);
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached text changed by adding or removing a post: that of the post, of its account, whose post
+	 * count changes, and of the post it comments on or endorses, whose comment or endorsement count changes. An
+	 * endorsement also changes the endorsement count of the account of the post it endorses. The stripes of both
+	 * accounts must be held for writing.
+	 * @param p The post that is being added to or removed from the platform, before it is emptied.
+	 */
+	private void dropRenders(Post p){
+		int accountId = accountIdOf(p);
+		dropPostRender(p.getID(), accountId);
+		dropAccountRender(accountId);
+		Post referencePost = null;
+		if (p instanceof Comment){
+			referencePost = ((Comment)p).getReferencePost();
+		} else if (p instanceof EndorsementPost){
+			referencePost = ((EndorsementPost)p).getReferencePost();
+		}
+		if (referencePost != null){
+			int referenceAccountId = accountIdOf(referencePost);
+			dropPostRender(referencePost.getID(), referenceAccountId);
+			if (p instanceof EndorsementPost){
+				dropAccountRender(referenceAccountId);
+			}
+		}
+	}
+
+	/**
+	 * Updates the leaderboards after endorsements of a post have been added or removed.
+	 * @param endorsedPost The post whose endorsements have changed.
+	 * @param change The number of endorsements added, negative when endorsements are removed.
+	 */
+	private void updateLeaderboards(Post endorsedPost, int change){
+		if (endorsedPost.isEmptyPost()){ // Deleted posts and their accounts are no longer ranked
+			return;
+		}
+		synchronized (leaderboardLock){
+			postLeaderboard.changeScore(endorsedPost.getID(), change);
+			accountLeaderboard.changeScore(endorsedPost.getAccount().getID(), change);
+		}
+	}
+
+	@Override
+	public int createAccount(String handle) throws IllegalHandleException, InvalidHandleException {
+		return createAccount(handle, "");
+	}
+
+	@Override
+	public int createAccount(String handle, String description) throws IllegalHandleException, InvalidHandleException {
+		platformLock.readLock().lock();
+		try{
+			Account.validateHandleFormat(handle);
+			Account created = Account.claimHandle(handle, description, accountsByHandle); // Claims the handle and the ID together, atomically
+			accountsById.put(created.getID(), created);
+			synchronized (leaderboardLock){
+				accountLeaderboard.add(created.getID(), 0);
+			}
+			return created.getID();
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void removeAccount(int id) throws AccountIDNotRecognisedException {
+		platformLock.writeLock().lock();
+		try{
+			removeAccount(Account.findAccountById(id, accountsById));
+		} finally{
+			platformLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void removeAccount(String handle) throws HandleNotRecognisedException {
+		platformLock.writeLock().lock();
+		try{
+			removeAccount(findAccount(handle));
+		} finally{
+			platformLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes an account and all of its posts. The platform lock must be held exclusively.
+	 * @param accountToDelete The account to be removed.
+	 */
+	private void removeAccount(Account accountToDelete){
+		ArrayList<Post> posts = accountToDelete.getPosts();
+		while (!posts.isEmpty()){ // Deletes from the end of the list so no other post has to be moved
+			deletePost(posts.get(posts.size() - 1));
+		}
+		synchronized (feedLock){
+			homeFeeds.removeAccount(accountToDelete.getID());
+		}
+		dropAccountRender(accountToDelete.getID());
+		accountsById.remove(accountToDelete.getID());
+		accountsByHandle.remove(accountToDelete.getHandle());
+		synchronized (leaderboardLock){
+			accountLeaderboard.remove(accountToDelete.getID());
+		}
+	}
+
+	@Override
+	public void changeAccountHandle(String oldHandle, String newHandle)
+			throws HandleNotRecognisedException, IllegalHandleException, InvalidHandleException {
+		platformLock.writeLock().lock();
+		try{
+			Account.validateHandle(newHandle, accountsByHandle);
+			Account account = findAccount(oldHandle);
+			accountsByHandle.remove(oldHandle);
+			account.setHandle(newHandle);
+			accountsByHandle.put(newHandle, account);
+		} finally{
+			platformLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void updateAccountDescription(String handle, String description) throws HandleNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			Account account = findAccount(handle);
+			int[] stripes = accountLocks.stripesOf(account.getID());
+			accountLocks.lockForWriting(stripes);
+			try{
+				account.setDescription(description);
+				dropAccountRender(account.getID());
+			} finally{
+				accountLocks.unlockForWriting(stripes);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public String showAccount(String handle) throws HandleNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			Account account = findAccount(handle);
+			accountLocks.lockForReading(account.getID());
+			try{
+				RenderCache cache = renderCacheOf(account.getID());
+				String text;
+				synchronized (cache){
+					text = cache.account(account.getID(), account.getHandle());
+				}
+				if (text == null){ // Rendered outside the cache lock, as the stripe stops the account changing
+					text = account.toString();
+					synchronized (cache){
+						cache.putAccount(account.getID(), account.getHandle(), text);
+					}
+				}
+				return text;
+			} finally{
+				accountLocks.unlockForReading(account.getID());
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int createPost(String handle, String message) throws HandleNotRecognisedException, InvalidPostException {
+		platformLock.readLock().lock();
+		try{
+			Account postingAccount = findAccount(handle);
+			Post.validateMessage(message);
+			int[] stripes = accountLocks.stripesOf(postingAccount.getID());
+			accountLocks.lockForWriting(stripes);
+			try{
+				Post newPost = new Post(postingAccount, message);
+				postingAccount.addPost(newPost);
+				posts.put(newPost.getID(), newPost);
+				updatePostCounters(newPost, 1);
+				dropRenders(newPost);
+				synchronized (leaderboardLock){
+					postLeaderboard.add(newPost.getID(), 0);
+				}
+				synchronized (feedLock){
+					homeFeeds.postCreated(postingAccount.getID(), newPost.getID());
+				}
+				addToSearchIndex(newPost.getID(), message);
+				return newPost.getID();
+			} finally{
+				accountLocks.unlockForWriting(stripes);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int endorsePost(String handle, int id)
+			throws HandleNotRecognisedException, PostIDNotRecognisedException, NotActionablePostException {
+		platformLock.readLock().lock();
+		try{
+			Account postingAccount = findAccount(handle);
+			Post postToEndorse = findPost(id, false);
+			if (postToEndorse instanceof EndorsementPost){ // Cannot endorse an endorsement post
+				throw new NotActionablePostException();
+			}
+			int[] stripes = accountLocks.stripesOf(postingAccount.getID(), accountIdOf(postToEndorse));
+			accountLocks.lockForWriting(stripes);
+			try{
+				if (postToEndorse.isEmptyPost()){ // Deleted before its account's stripe was locked
+					throw new PostIDNotRecognisedException();
+				}
+				String message = "EP@" + postToEndorse.getAccount().getHandle() + ": " + postToEndorse.getMessage();
+				EndorsementPost endorsementPost = new EndorsementPost(postingAccount, message, postToEndorse);
+				posts.put(endorsementPost.getID(), endorsementPost);
+				updatePostCounters(endorsementPost, 1);
+				dropRenders(endorsementPost);
+				updateLeaderboards(postToEndorse, 1);
+				synchronized (feedLock){
+					homeFeeds.postCreated(postingAccount.getID(), endorsementPost.getID());
+				}
+				return endorsementPost.getID();
+			} finally{
+				accountLocks.unlockForWriting(stripes);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int commentPost(String handle, int id, String message) throws HandleNotRecognisedException,
+			PostIDNotRecognisedException, NotActionablePostException, InvalidPostException {
+		platformLock.readLock().lock();
+		try{
+			Account postingAccount = findAccount(handle);
+			Post commentedPost = findPost(id, false);
+			Post.validateMessage(message);
+			if (commentedPost instanceof EndorsementPost){ // Cannot comment on an endorsement post
+				throw new NotActionablePostException();
+			}
+			int[] stripes = accountLocks.stripesOf(postingAccount.getID(), accountIdOf(commentedPost));
+			accountLocks.lockForWriting(stripes);
+			try{
+				if (commentedPost.isEmptyPost()){ // Deleted before its account's stripe was locked
+					throw new PostIDNotRecognisedException();
+				}
+				Comment newComment = new Comment(postingAccount, message, commentedPost);
+				posts.put(newComment.getID(), newComment);
+				updatePostCounters(newComment, 1);
+				dropRenders(newComment);
+				synchronized (leaderboardLock){
+					postLeaderboard.add(newComment.getID(), 0);
+				}
+				addToSearchIndex(newComment.getID(), message);
+				return newComment.getID();
+			} finally{
+				accountLocks.unlockForWriting(stripes);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public BatchResult applyBatch(List<BatchOperation> operations){
+		platformLock.writeLock().lock(); // One exclusive lock for the whole batch instead of locks for every operation
+		try{
+			return BatchOperation.applyEach(this, operations);
+		} finally{
+			platformLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void deletePost(int id) throws PostIDNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			while (true){
+				Post postToDelete = findPost(id, false);
+				int accountId = accountIdOf(postToDelete);
+				if (accountId == 0){
+					throw new PostIDNotRecognisedException();
+				}
+				int[] involved;
+				int[] ownStripe = accountLocks.stripesOf(accountId);
+				accountLocks.lockForWriting(ownStripe); // Stops endorsements being added while they are listed
+				try{
+					if (postToDelete.isEmptyPost()){
+						throw new PostIDNotRecognisedException();
+					}
+					involved = accountsAffectedByDeleting(postToDelete);
+				} finally{
+					accountLocks.unlockForWriting(ownStripe);
+				}
+
+				int[] stripes = accountLocks.stripesOf(involved);
+				accountLocks.lockForWriting(stripes);
+				try{
+					if (postToDelete.isEmptyPost()){
+						throw new PostIDNotRecognisedException();
+					}
+					if (!accountLocks.covers(stripes, accountsAffectedByDeleting(postToDelete))){
+						continue; // Endorsed by another account while no stripes were held, so lock again
+					}
+					deletePost(postToDelete);
+					return;
+				} finally{
+					accountLocks.unlockForWriting(stripes);
+				}
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the IDs of every account changed by deleting a post: the account that made it, the account that
+	 * made the post it refers to and the accounts that endorsed it. The stripe of the account that made the post
+	 * must be held.
+	 * @param p The post to be deleted.
+	 * @return The IDs of the accounts, with 0 in place of an account that no longer exists.
+	 */
+	private int[] accountsAffectedByDeleting(Post p){
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		ids.add(accountIdOf(p));
+		if (p instanceof EndorsementPost){
+			ids.add(accountIdOf(((EndorsementPost)p).getReferencePost()));
+		} else{
+			if (p instanceof Comment){
+				ids.add(accountIdOf(((Comment)p).getReferencePost()));
+			}
+			for (EndorsementPost e : p.getEndorsements()){
+				ids.add(accountIdOf(e));
+			}
+		}
+		int[] result = new int[ids.size()];
+		for (int i = 0; i < result.length; i++){
+			result[i] = ids.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Deletes a post from the platform, along with its endorsements if it is an original or comment post. The
+	 * stripes of every account returned by accountsAffectedByDeleting, or the platform lock exclusively, must be
+	 * held.
+	 * @param postToDelete The post to be deleted.
+	 */
+	private void deletePost(Post postToDelete){
+		if (postToDelete instanceof EndorsementPost){ //Removes the endorsement from the post that is endorsed
+			Post endorsedPost = ((EndorsementPost)postToDelete).getReferencePost();
+			endorsedPost.removeEndorsement((EndorsementPost)postToDelete);
+			if (!endorsedPost.isEmptyPost()){ // Older saves kept endorsements of deleted posts
+				endorsedPost.getAccount().setEndorsementCountUpToDateToFalse();
+				updateLeaderboards(endorsedPost, -1);
+			}
+		}
+		else{
+			for (EndorsementPost e : postToDelete.getEndorsements()){ // Endorsements of the post are deleted with it
+				removePostFromAccount(e);
+			}
+			updateLeaderboards(postToDelete, -postToDelete.getNumEndorsements());
+			synchronized (leaderboardLock){
+				postLeaderboard.remove(postToDelete.getID());
+			}
+			searchLock.writeLock().lock();
+			try{
+				searchIndex.remove(postToDelete.getID(), postToDelete.getMessage()); // Before the message is emptied
+			} finally{
+				searchLock.writeLock().unlock();
+			}
+			postToDelete.clearEndorsements();
+			postToDelete.getAccount().setEndorsementCountUpToDateToFalse();
+			if (postToDelete instanceof Comment){ // Comment count of the commented post must be recalculated
+				((Comment)postToDelete).getReferencePost().setCommentCountUptoDateToFalse();
+			}
+			else{ // If post is an original post, account post count must be recalculated
+				postToDelete.getAccount().setPostCountUpToDateToFalse();
+			}
+		}
+		removePostFromAccount(postToDelete);
+	}
+
+	/**
+	 * Adds a new original or comment post to the search index. The stripe of the account that made it must be held.
+	 * @param postId ID of the post.
+	 * @param message Message of the post.
+	 */
+	private void addToSearchIndex(int postId, String message){
+		searchLock.writeLock().lock();
+		try{
+			searchIndex.add(postId, message);
+		} finally{
+			searchLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a post from the account that posted it, updates the platform counters and turns it into an empty
+	 * post. The empty post stays in the post index so replies can still show it.
+	 * @param p The post to be removed.
+	 */
+	private void removePostFromAccount(Post p){
+		p.getAccount().removePost(p);
+		if (!isOrphanedEndorsement(p)){ // Not counted when loaded
+			updatePostCounters(p, -1);
+		}
+		dropRenders(p);
+		p.setPostToEmpty();
+	}
+
+	@Override
+	public String showIndividualPost(int id) throws PostIDNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			Post postToShow = findPost(id, true);
+			int accountId = accountIdOf(postToShow);
+			if (accountId == 0){ // An empty post, which could still be being emptied by the stripe of its old account
+				accountLocks.lockAllForReading();
+				try{
+					return postToShow.toString();
+				} finally{
+					accountLocks.unlockAllForReading();
+				}
+			}
+			accountLocks.lockForReading(accountId);
+			try{
+				if (postToShow.isEmptyPost()){ // Deleted before the stripe was locked, and empty posts are not cached
+					return postToShow.toString();
+				}
+				RenderCache cache = renderCacheOf(accountId);
+				String handle = postToShow.getAccount().getHandle();
+				String text;
+				synchronized (cache){
+					text = cache.post(id, handle);
+				}
+				if (text == null){
+					text = postToShow.toString();
+					synchronized (cache){
+						cache.putPost(id, handle, text);
+					}
+				}
+				return text;
+			} finally{
+				accountLocks.unlockForReading(accountId);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public StringBuilder showPostChildrenDetails(int id)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		platformLock.readLock().lock();
+		accountLocks.lockAllForReading(); // Comments in the thread can be made by any account
+		try{
+			Post postToShow = findPost(id, true);
+			if (postToShow instanceof EndorsementPost){ //Cannot call method on endorsement posts
+				throw new NotActionablePostException();
+			}
+			return ThreadRenderer.render(postToShow, new StringBuilder());
+		} finally{
+			accountLocks.unlockAllForReading();
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void showPostChildrenDetails(int id, Appendable out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		streamPostChildrenDetails(id, new ChunkedOutput(out));
+	}
+
+	@Override
+	public void showPostChildrenDetails(int id, WritableByteChannel channel)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		streamPostChildrenDetails(id, new ChunkedOutput(channel));
+	}
+
+	@Override
+	public ThreadPage getThreadPage(int id, String cursor, int limit, int maxDepth, int maxChildren)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		platformLock.readLock().lock();
+		accountLocks.lockAllForReading(); // Comments in the thread can be made by any account
+		try{
+			Post postToShow = findPost(id, true);
+			if (postToShow instanceof EndorsementPost){ //Cannot call method on endorsement posts
+				throw new NotActionablePostException();
+			}
+			return ThreadRenderer.renderPage(postToShow, cursor, limit, maxDepth, maxChildren);
+		} finally{
+			accountLocks.unlockAllForReading();
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		return getTimeline(handle, cursor, limit, Timeline.ALL_POSTS);
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit, int types) throws HandleNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			Account account = findAccount(handle);
+			int before = TimelinePage.decodeCursor(cursor, account.getID(), limit, types);
+			int[] stripes = accountLocks.stripesOf(account.getID());
+			accountLocks.lockForWriting(stripes); // The timeline is created on first use, so readers of it are not shared
+			try{
+				int[] ids = account.getTimeline().before(before, limit, types);
+				return TimelinePage.render(account.getID(), ids, limit, posts::get);
+			} finally{
+				accountLocks.unlockForWriting(stripes);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean follow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			int follower = findAccount(handle).getID();
+			int followee = findAccount(followeeHandle).getID();
+			synchronized (feedLock){
+				return homeFeeds.follow(follower, followee);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean unfollow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			int follower = findAccount(handle).getID();
+			int followee = findAccount(followeeHandle).getID();
+			synchronized (feedLock){
+				return homeFeeds.unfollow(follower, followee);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int getFollowerCount(String handle) throws HandleNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			int id = findAccount(handle).getID();
+			synchronized (feedLock){
+				return homeFeeds.getFollows().followerCount(id);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int getFollowingCount(String handle) throws HandleNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			int id = findAccount(handle).getID();
+			synchronized (feedLock){
+				return homeFeeds.getFollows().followingCount(id);
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public TimelinePage getHomeTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		platformLock.readLock().lock();
+		try{
+			Account account = findAccount(handle);
+			int before = TimelinePage.decodeCursor(cursor, account.getID(), limit, HomeFeeds.HOME_POSTS);
+			accountLocks.lockAllForReading(); // Posts of any followed account can be on the page
+			try{
+				int[] ids;
+				synchronized (feedLock){
+					ids = homeFeeds.before(account.getID(), before, limit, this::timelineOf, this::isLivePost);
+				}
+				return TimelinePage.render(account.getID(), ids, limit, posts::get);
+			} finally{
+				accountLocks.unlockAllForReading();
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int[] searchPosts(String query, int limit) {
+		platformLock.readLock().lock();
+		try{
+			searchLock.readLock().lock();
+			try{
+				return searchIndex.search(query, limit);
+			} finally{
+				searchLock.readLock().unlock();
+			}
+		} finally{
+			platformLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Writes a post and every comment below it through a chunked output, checking the post before anything is
+	 * written. The thread stays locked for reading until it has all been written, so a slow reader of the output
+	 * holds up changes to the platform.
+	 * @param id ID of the post the thread is shown from.
+	 * @param out The chunked output the thread is written through.
+	 * @throws PostIDNotRecognisedException If there is no post with the ID.
+	 * @throws NotActionablePostException If the post is an endorsement.
+	 * @throws IOException If the output cannot be written to.
+	 */
+	private void streamPostChildrenDetails(int id, ChunkedOutput out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		platformLock.readLock().lock();
+		accountLocks.lockAllForReading(); // Comments in the thread can be made by any account
+		try{
+			Post postToShow = findPost(id, true);
+			if (postToShow instanceof EndorsementPost){ //Cannot call method on endorsement posts
+				throw new NotActionablePostException();
+			}
+			ThreadRenderer.render(postToShow, out);
+			out.finish();
+		} finally{
+			accountLocks.unlockAllForReading();
+			platformLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public int getNumberOfAccounts() {
+		return accountsById.size();
+	}
+
+	@Override
+	public int getTotalOriginalPosts() {
+		return totalOriginalPosts.get();
+	}
+
+	@Override
+	public int getTotalEndorsmentPosts() {
+		return totalEndorsementPosts.get();
+	}
+
+	@Override
+	public int getTotalCommentPosts() {
+		return totalCommentPosts.get();
+	}
+
+	@Override
+	public int getMostEndorsedPost() {
+		synchronized (leaderboardLock){
+			return postLeaderboard.top(); // 0 if there are no posts on the platform
+		}
+	}
+
+	@Override
+	public int getMostEndorsedAccount() {
+		synchronized (leaderboardLock){
+			return accountLeaderboard.top(); // 0 if there are no accounts on the platform
+		}
+	}
+
+	@Override
+	public int[] getTopEndorsedPosts(int k) {
+		synchronized (leaderboardLock){
+			return postLeaderboard.top(k);
+		}
+	}
+
+	@Override
+	public int[] getTopEndorsedAccounts(int k) {
+		synchronized (leaderboardLock){
+			return accountLeaderboard.top(k);
+		}
+	}
+
+	@Override
+	public void erasePlatform() {
+		platformLock.writeLock().lock();
+		try{
+			clearPlatform();
+			Post.resetIdCount();
+			Account.resetIdCount();
+		} finally{
+			platformLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes every account and post from the indexes and resets the counters and leaderboards. The platform lock
+	 * must be held exclusively.
+	 */
+	private void clearPlatform(){
+		accountsById.clear();
+		accountsByHandle.clear();
+		posts.clear();
+		totalOriginalPosts.set(0);
+		totalCommentPosts.set(0);
+		totalEndorsementPosts.set(0);
+		synchronized (leaderboardLock){
+			postLeaderboard.clear();
+			accountLeaderboard.clear();
+		}
+		synchronized (feedLock){
+			homeFeeds.clear();
+		}
+		searchLock.writeLock().lock();
+		try{
+			searchIndex = new PostSearchIndex();
+		} finally{
+			searchLock.writeLock().unlock();
+		}
+		for (RenderCache cache : renderCaches){
+			synchronized (cache){
+				cache.clear();
+			}
+		}
+	}
+
+	@Override
+	public void savePlatform(String filename) throws IOException {
+		platformLock.writeLock().lock();
+		try{
+			LinkedHashMap<Integer, Account> accountsInIdOrder = new LinkedHashMap<Integer, Account>(new TreeMap<Integer, Account>(accountsById));
+			PostIndex postIndex = new PostIndex();
+			for (Post p : posts.values()){
+				postIndex.put(p);
+			}
+			PlatformSnapshot snapshot = new PlatformSnapshot(accountsInIdOrder, postIndex, Account.getNextId(), Post.getNextId(),
+					totalOriginalPosts.get(), totalCommentPosts.get(), totalEndorsementPosts.get(), 0, homeFeeds.getFollows(),
+					searchIndex);
+			snapshot.write(filename);
+		} finally{
+			platformLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void loadPlatform(String filename) throws IOException, ClassNotFoundException {
+		boolean isSnapshot = PlatformSnapshot.isSnapshot(filename);
+		PlatformSnapshot snapshot = isSnapshot ? PlatformSnapshot.read(filename) : SocialMedia.readSerialisedPlatform(filename);
+		platformLock.writeLock().lock();
+		try{
+			clearPlatform();
+			synchronized (feedLock){
+				homeFeeds = new HomeFeeds(snapshot.getFollows());
+			}
+			searchLock.writeLock().lock();
+			try{
+				searchIndex = snapshot.getSearchIndex();
+			} finally{
+				searchLock.writeLock().unlock();
+			}
+			for (Account a : snapshot.getAccounts().values()){
+				accountsById.put(a.getID(), a);
+				accountsByHandle.put(a.getHandle(), a);
+			}
+			for (Post p : snapshot.getPosts()){
+				posts.put(p.getID(), p);
+			}
+			Account.setNextId(snapshot.getNextAccountID());
+			Post.setNextId(snapshot.getNextPostID());
+			if (isSnapshot){
+				totalOriginalPosts.set(snapshot.getTotalOriginalPosts());
+				totalCommentPosts.set(snapshot.getTotalCommentPosts());
+				totalEndorsementPosts.set(snapshot.getTotalEndorsementPosts());
+			} else{ // Serialised platforms do not store the post totals
+				for (Post p : posts.values()){
+					if (!p.isEmptyPost() && !isOrphanedEndorsement(p)){
+						updatePostCounters(p, 1);
+					}
+				}
+			}
+			synchronized (leaderboardLock){
+				for (Account a : accountsById.values()){
+					accountLeaderboard.add(a.getID(), a.getEndorsementCount());
+				}
+				for (Post p : posts.values()){
+					if (!p.isEmptyPost() && !(p instanceof EndorsementPost)){ // Endorsement posts cannot be endorsed so never rank above another post
+						postLeaderboard.add(p.getID(), p.getNumEndorsements());
+					}
+				}
+			}
+		} finally{
+			platformLock.writeLock().unlock();
+		}
+	}
+}
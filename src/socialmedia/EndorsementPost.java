@@ -3,11 +3,21 @@ package socialmedia;
  * Represents an endorsement post on the platform.
  */
 public class EndorsementPost extends Post{
+    /**
+     * Serialisation version, fixed so that platforms saved by earlier builds can still be loaded.
+     */
+    private static final long serialVersionUID = 5948419634041192132L;
 
     /**
      * The post object that the endorsement post is endorsing.
      */
     private Post referencePost;
+    /**
+     * The position of the endorsement in the list of endorsements of the post it endorses, so that it can be
+     * removed from the list without searching it. Not saved, as it is renumbered the first time it is found to be
+     * wrong.
+     */
+    private transient int endorsementSlot;
     /**
      * Creates an instance of a EndorsementPost object, by first calling the post
      * superclass constructor and then assigning a value for reference post.
@@ -22,11 +32,52 @@ public class EndorsementPost extends Post{
 		referencePost.getAccount().setEndorsementCountUpToDateToFalse();//postingAccount.setEndorsementCountUpToDateToFalse();
 		account.addPost(this);
     }
+    /**
+     * Creates an instance of a EndorsementPost object with an ID that has already been assigned, for example
+     * when loading a saved platform. The endorsement is not added to the reference post or the account.
+     * @param postID the ID of the endorsement post.
+     * @param account the account that posted the endorsement.
+     * @param message The text shown in the post body.
+     * @param referencePost The post that is being endorsed
+     */
+    EndorsementPost(int postID, Account account, String message, Post referencePost) {
+        super(postID, account, message);
+        this.referencePost = referencePost;
+    }
+    /**
+     * Creates an instance of an EndorsementPost object that is read from a mapped snapshot or compact store. The post it
+     * refers to is only read from the source when it is first used.
+     * @param postID the ID of the endorsement post.
+     * @param account the account that created the endorsement post.
+     * @param message the text contained in the endorsement post.
+     * @param source the mapped snapshot or compact store the endorsement post is being read from.
+     */
+    EndorsementPost(int postID, Account account, String message, PlatformSource source) {
+        super(postID, account, message, source);
+    }
     /**
      * Returns the post object that the endorsement referes to
      * @return Post that endorsement referes to
      */
     public Post getReferencePost(){
+        if (referencePost == null){ // Reference post of an endorsement read lazily is read on first use
+            referencePost = source.readReferencePost(postID);
+        }
         return this.referencePost;
     }
+    /**
+     * Returns the position of the endorsement in the list of endorsements of the post it endorses. It may be out
+     * of date after a load.
+     * @return Index of the endorsement in the list of endorsements of the post
+     */
+    int getEndorsementSlot(){
+        return endorsementSlot;
+    }
+    /**
+     * Records the position of the endorsement in the list of endorsements of the post it endorses.
+     * @param slot Index of the endorsement in the list of endorsements of the post
+     */
+    void setEndorsementSlot(int slot){
+        endorsementSlot = slot;
+    }
 }
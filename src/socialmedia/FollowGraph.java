@@ -0,0 +1,125 @@
+package socialmedia;
+
+/**
+ * Which accounts follow which, held as two adjacency lists indexed by account ID: the accounts each account follows
+ * and the accounts that follow it. Each list is a sorted int array in an {@link IntLists}, so an account that
+ * follows no one costs a null reference, a follow costs two ints, and checking whether one account follows another
+ * is a binary search.
+ */
+public class FollowGraph {
+    /**
+     * The IDs of the accounts each account follows, in ascending order.
+     */
+    private final IntLists followees = new IntLists();
+    /**
+     * The IDs of the accounts following each account, in ascending order.
+     */
+    private final IntLists followers = new IntLists();
+
+    /**
+     * Makes one account follow another.
+     * @param follower ID of the account following
+     * @param followee ID of the account being followed
+     * @return Boolean value stating whether the follow is new, false if it already existed
+     */
+    public boolean follow(int follower, int followee){
+        if (!followees.addSorted(follower, followee)){
+            return false;
+        }
+        followers.addSorted(followee, follower);
+        return true;
+    }
+
+    /**
+     * Stops one account following another.
+     * @param follower ID of the account following
+     * @param followee ID of the account being followed
+     * @return Boolean value stating whether the account was following the other
+     */
+    public boolean unfollow(int follower, int followee){
+        if (!followees.removeSorted(follower, followee)){
+            return false;
+        }
+        followers.removeSorted(followee, follower);
+        return true;
+    }
+
+    /**
+     * States whether one account follows another.
+     * @param follower ID of the account following
+     * @param followee ID of the account being followed
+     * @return Boolean value stating whether the follow exists
+     */
+    public boolean isFollowing(int follower, int followee){
+        return followees.search(follower, followee) >= 0;
+    }
+
+    /**
+     * Returns the number of accounts following an account.
+     * @param id ID of the account
+     * @return Number of followers
+     */
+    public int followerCount(int id){
+        return followers.size(id);
+    }
+
+    /**
+     * Returns the number of accounts an account follows.
+     * @param id ID of the account
+     * @return Number of accounts followed
+     */
+    public int followingCount(int id){
+        return followees.size(id);
+    }
+
+    /**
+     * Returns one of the accounts following an account, without copying the list.
+     * @param id ID of the account
+     * @param index Position of the follower, below followerCount
+     * @return ID of the follower
+     */
+    public int followerAt(int id, int index){
+        return followers.get(id, index);
+    }
+
+    /**
+     * Returns the accounts following an account.
+     * @param id ID of the account
+     * @return IDs of the followers, in ascending order
+     */
+    public int[] followersOf(int id){
+        return followers.toArray(id);
+    }
+
+    /**
+     * Returns the accounts an account follows.
+     * @param id ID of the account
+     * @return IDs of the accounts followed, in ascending order
+     */
+    public int[] followeesOf(int id){
+        return followees.toArray(id);
+    }
+
+    /**
+     * Removes every follow to or from an account, when the account is removed.
+     * @param id ID of the account
+     */
+    public void removeAccount(int id){
+        for (int followee : followees.toArray(id)){
+            followers.removeSorted(followee, id);
+        }
+        for (int follower : followers.toArray(id)){
+            followees.removeSorted(follower, id);
+        }
+        followees.removeAll(id);
+        followers.removeAll(id);
+    }
+
+    /**
+     * Removes every follow.
+     */
+    public void clear(){
+        followees.clear();
+        followers.clear();
+    }
+}
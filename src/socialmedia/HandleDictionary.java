@@ -0,0 +1,233 @@
+package socialmedia;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps the handles of accounts to int codes, which are the IDs of the accounts, and back. Each handle is held once as
+ * its UTF-8 bytes alongside its hash code, and the codes are found through an open addressing table of ints, so a
+ * handle costs one small byte array instead of a String, a boxed Integer and a HashMap entry.
+ * <p>
+ * A handle is looked up by its String hash code, which a String caches, and the probe only compares the bytes of a
+ * handle when the hash codes match. Handles are compared against the stored bytes as they are encoded, so a lookup
+ * does not allocate. The hash codes are the ones the handle table of a {@link PlatformSnapshot} is built from.
+ */
+public class HandleDictionary {
+    /**
+     * The number of codes the arrays start with.
+     */
+    private final static int INITIAL_CAPACITY = 64;
+
+    /**
+     * The UTF-8 bytes of the handle with each code, or null if the code is not in use.
+     */
+    private byte[][] handles;
+    /**
+     * The String hash code of the handle with each code.
+     */
+    private int[] hashes;
+    /**
+     * Open addressing table of codes, indexed from the hash code of their handle, with 0 for an empty slot. Its
+     * length is a power of two.
+     */
+    private int[] slots;
+    /**
+     * The number of handles in the dictionary.
+     */
+    private int size;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public HandleDictionary(){
+        clear();
+    }
+
+    /**
+     * Adds a handle.
+     * @param code Code of the handle, greater than 0 and not already used
+     * @param handle The handle, not already in the dictionary
+     */
+    public void put(int code, String handle){
+        if (code >= handles.length){
+            int capacity = Math.max(code + 1, handles.length * 2);
+            handles = Arrays.copyOf(handles, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        if ((size + 1) * 2 > slots.length){ // Keeps the table at most half full
+            resize(slots.length * 2);
+        }
+        handles[code] = handle.getBytes(StandardCharsets.UTF_8);
+        hashes[code] = handle.hashCode();
+        insert(code);
+        size++;
+    }
+
+    /**
+     * Removes the handle with a code.
+     * @param code Code of the handle
+     */
+    public void remove(int code){
+        int slot = slotOf(code);
+        slots[slot] = 0;
+        handles[code] = null;
+        size--;
+        for (int next = (slot + 1) & (slots.length - 1); slots[next] != 0; next = (next + 1) & (slots.length - 1)){
+            int moved = slots[next]; // Reinserts the rest of the run so no probe stops early at the gap
+            slots[next] = 0;
+            insert(moved);
+        }
+    }
+
+    /**
+     * Changes the handle with a code.
+     * @param code Code of the handle
+     * @param handle The new handle, not already in the dictionary
+     */
+    public void replace(int code, String handle){
+        remove(code);
+        put(code, handle);
+    }
+
+    /**
+     * Returns the code of a handle.
+     * @param handle The handle
+     * @return Code of the handle, or 0 if the handle is not in the dictionary
+     */
+    public int codeOf(String handle){
+        int hash = handle.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = PlatformSnapshot.handleSlotFor(hash, slots.length); slots[slot] != 0; slot = (slot + 1) & mask){
+            int code = slots[slot];
+            if (hashes[code] == hash && matches(handles[code], handle)){
+                return code;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * States whether a code is in use.
+     * @param code Code of the handle
+     * @return Boolean value stating whether a handle has the code
+     */
+    public boolean contains(int code){
+        return code > 0 && code < handles.length && handles[code] != null;
+    }
+
+    /**
+     * Returns the handle with a code.
+     * @param code Code of the handle
+     * @return The handle
+     */
+    public String get(int code){
+        return new String(handles[code], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the String hash code of the handle with a code.
+     * @param code Code of the handle
+     * @return Hash code of the handle
+     */
+    public int hashOf(int code){
+        return hashes[code];
+    }
+
+    /**
+     * Returns the number of handles in the dictionary.
+     * @return Number of handles
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Removes every handle.
+     */
+    public void clear(){
+        handles = new byte[INITIAL_CAPACITY][];
+        hashes = new int[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Puts a code into the first free slot from the home slot of its handle.
+     * @param code Code of the handle
+     */
+    private void insert(int code){
+        int mask = slots.length - 1;
+        int slot = PlatformSnapshot.handleSlotFor(hashes[code], slots.length);
+        while (slots[slot] != 0){
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = code;
+    }
+
+    /**
+     * Returns the slot holding a code.
+     * @param code Code of the handle, in the dictionary
+     * @return Slot of the code
+     */
+    private int slotOf(int code){
+        int mask = slots.length - 1;
+        int slot = PlatformSnapshot.handleSlotFor(hashes[code], slots.length);
+        while (slots[slot] != code){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the table with a new number of slots.
+     * @param capacity Number of slots, a power of two
+     */
+    private void resize(int capacity){
+        int[] old = slots;
+        slots = new int[capacity];
+        for (int code : old){
+            if (code != 0){
+                insert(code);
+            }
+        }
+    }
+
+    /**
+     * States whether the UTF-8 bytes of a stored handle are the encoding of a string.
+     * @param bytes UTF-8 bytes of the stored handle
+     * @param handle The string to compare
+     * @return Boolean value stating whether they are the same handle
+     */
+    private static boolean matches(byte[] bytes, String handle){
+        int position = 0;
+        for (int i = 0; i < handle.length(); i++){
+            int c = handle.codePointAt(i);
+            if (Character.isSupplementaryCodePoint(c)){
+                i++;
+            }
+            if (c < 0x10000 && Character.isSurrogate((char)c)){
+                c = '?'; // String.getBytes encodes a lone surrogate as a question mark
+            }
+            if (c < 0x80){
+                if (position >= bytes.length || bytes[position++] != c){
+                    return false;
+                }
+            } else{
+                int length = c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+                if (position + length > bytes.length){
+                    return false;
+                }
+                int lead = length == 2 ? 0xC0 : length == 3 ? 0xE0 : 0xF0;
+                if ((bytes[position++] & 0xFF) != (lead | (c >>> (6 * (length - 1))))){
+                    return false;
+                }
+                for (int shift = 6 * (length - 2); shift >= 0; shift -= 6){
+                    if ((bytes[position++] & 0xFF) != (0x80 | ((c >>> shift) & 0x3F))){
+                        return false;
+                    }
+                }
+            }
+        }
+        return position == bytes.length;
+    }
+}
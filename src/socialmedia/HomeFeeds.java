@@ -0,0 +1,335 @@
+package socialmedia;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * The home timelines of the accounts on a platform: the original and endorsement posts of the accounts each account
+ * follows, newest first. Home timelines are built by hybrid fan-out.
+ * <p>
+ * Each account that has read its home timeline keeps a ring buffer of the IDs of the newest RING_CAPACITY posts of
+ * the accounts it follows, in ascending order. When an account makes a post it is pushed into the rings of its
+ * followers, so reading the first pages of a home timeline is a walk down one ring. Accounts with more than
+ * FAN_OUT_LIMIT followers are not pushed; their posts are pulled from their own {@link Timeline} when a home
+ * timeline is read and merged with the ring, so one post never has to be copied into millions of rings.
+ * <p>
+ * A ring is created from the timelines of the accounts followed the first time its home timeline is read, so
+ * accounts that never read theirs cost nothing. A ring holds every post made after its horizon, the newest post
+ * that has been dropped from it, apart from deleted posts, which are skipped as the ring is read. Pages older than
+ * the horizon are pulled from every account followed. Following or unfollowing an account drops the ring of the
+ * follower, as does an account falling back to FAN_OUT_LIMIT followers for its followers, since its posts were
+ * not pushed in the meantime, and the ring is created again when it is next read.
+ */
+public class HomeFeeds {
+    /**
+     * Type filter of the posts in a home timeline.
+     */
+    public final static int HOME_POSTS = Timeline.ORIGINAL_POSTS | Timeline.ENDORSEMENT_POSTS;
+    /**
+     * The number of post IDs each ring holds.
+     */
+    public final static int RING_CAPACITY = 256;
+    /**
+     * The most followers an account can have for its posts to be pushed into their rings.
+     */
+    public final static int FAN_OUT_LIMIT = 1000;
+    /**
+     * The number of accounts the array of rings starts with.
+     */
+    private final static int INITIAL_CAPACITY = 64;
+
+    /**
+     * The accounts each account follows, and the reverse.
+     */
+    private final FollowGraph follows;
+    /**
+     * The ring of each account indexed by account ID, or null if the account has not read its home timeline since
+     * the ring was last dropped.
+     */
+    private Ring[] rings = new Ring[INITIAL_CAPACITY];
+
+    /**
+     * Creates the home timelines of a platform. No rings are created until home timelines are read.
+     * @param follows The follow graph of the platform
+     */
+    public HomeFeeds(FollowGraph follows){
+        this.follows = follows;
+    }
+
+    /**
+     * Returns the follow graph the home timelines are built from.
+     * @return The follow graph
+     */
+    public FollowGraph getFollows(){
+        return follows;
+    }
+
+    /**
+     * Makes one account follow another.
+     * @param follower ID of the account following
+     * @param followee ID of the account being followed
+     * @return Boolean value stating whether the follow is new
+     * @throws IllegalArgumentException If an account tries to follow itself
+     */
+    public boolean follow(int follower, int followee){
+        if (follower == followee){
+            throw new IllegalArgumentException("An account cannot follow itself");
+        }
+        if (!follows.follow(follower, followee)){
+            return false;
+        }
+        dropRing(follower); // The ring has none of the posts of the new followee
+        return true;
+    }
+
+    /**
+     * Stops one account following another.
+     * @param follower ID of the account following
+     * @param followee ID of the account being followed
+     * @return Boolean value stating whether the account was following the other
+     */
+    public boolean unfollow(int follower, int followee){
+        if (!follows.unfollow(follower, followee)){
+            return false;
+        }
+        dropRing(follower); // The ring still holds the posts of the old followee
+        if (follows.followerCount(followee) == FAN_OUT_LIMIT){
+            dropFollowerRings(followee);
+        }
+        return true;
+    }
+
+    /**
+     * Pushes a new original or endorsement post into the rings of the followers of the account that made it,
+     * unless the account has too many followers, in which case its posts are pulled when they are read.
+     * @param accountId ID of the account that made the post
+     * @param postId ID of the post
+     */
+    public void postCreated(int accountId, int postId){
+        int count = follows.followerCount(accountId);
+        if (count > FAN_OUT_LIMIT){
+            return;
+        }
+        for (int i = 0; i < count; i++){
+            int follower = follows.followerAt(accountId, i);
+            if (follower < rings.length && rings[follower] != null){
+                rings[follower].add(postId);
+            }
+        }
+    }
+
+    /**
+     * Removes an account from the follow graph along with its ring. The posts of the account must already have
+     * been deleted, so the rings of its followers skip them.
+     * @param id ID of the account
+     */
+    public void removeAccount(int id){
+        int[] followees = follows.followeesOf(id);
+        follows.removeAccount(id);
+        dropRing(id);
+        for (int followee : followees){
+            if (follows.followerCount(followee) == FAN_OUT_LIMIT){
+                dropFollowerRings(followee);
+            }
+        }
+    }
+
+    /**
+     * Removes every follow and every ring.
+     */
+    public void clear(){
+        follows.clear();
+        rings = new Ring[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the IDs of the newest posts in the home timeline of an account made before a post, newest first. The
+     * ring of the account is created if it does not exist.
+     * @param accountId ID of the account whose home timeline is read
+     * @param before ID that every returned post is below, or Integer.MAX_VALUE for the newest posts
+     * @param limit The most IDs to return, at least 1
+     * @param timelines Finds the timeline of an account by ID
+     * @param isLive States whether the post with an ID exists and has not been deleted
+     * @return The IDs, followed by one more ID if there are more posts after the page
+     */
+    public int[] before(int accountId, int before, int limit, IntFunction<Timeline> timelines, IntPredicate isLive){
+        int want = limit == Integer.MAX_VALUE ? limit : limit + 1;
+        Ring ring = ringOf(accountId, timelines);
+        int[] followees = follows.followeesOf(accountId);
+
+        int[][] sources = new int[followees.length + 1][];
+        int sourceCount = 0;
+        sources[sourceCount++] = ring.before(before, want, isLive);
+        for (int followee : followees){
+            if (follows.followerCount(followee) > FAN_OUT_LIMIT){ // Pulled, as its posts are not pushed
+                sources[sourceCount++] = timelines.apply(followee).before(before, limit, HOME_POSTS);
+            }
+        }
+        int[] page = merge(sources, sourceCount, ring.horizon, want);
+        if (page.length == want || ring.horizon == 0){
+            return page;
+        }
+
+        int older = Math.min(before, ring.horizon + 1); // Posts at or below the horizon are only in the timelines
+        sourceCount = 0;
+        for (int followee : followees){
+            sources[sourceCount++] = timelines.apply(followee).before(older, limit, HOME_POSTS);
+        }
+        int[] rest = merge(sources, sourceCount, 0, want - page.length);
+        int[] result = Arrays.copyOf(page, page.length + rest.length);
+        System.arraycopy(rest, 0, result, page.length, rest.length);
+        return result;
+    }
+
+    /**
+     * Returns the ring of an account, creating it from the timelines of the accounts it follows if needed. Accounts
+     * whose posts are pulled are left out, as they are merged in when the ring is read.
+     * @param accountId ID of the account
+     * @param timelines Finds the timeline of an account by ID
+     * @return The ring of the account
+     */
+    private Ring ringOf(int accountId, IntFunction<Timeline> timelines){
+        if (accountId >= rings.length){
+            rings = Arrays.copyOf(rings, Math.max(accountId + 1, rings.length * 2));
+        }
+        if (rings[accountId] != null){
+            return rings[accountId];
+        }
+        int[] followees = follows.followeesOf(accountId);
+        int[][] sources = new int[followees.length][];
+        int sourceCount = 0;
+        for (int followee : followees){
+            if (follows.followerCount(followee) <= FAN_OUT_LIMIT){
+                sources[sourceCount++] = timelines.apply(followee).before(Integer.MAX_VALUE, RING_CAPACITY, HOME_POSTS);
+            }
+        }
+        int[] newest = merge(sources, sourceCount, 0, RING_CAPACITY + 1);
+        Ring ring = new Ring();
+        for (int i = Math.min(newest.length, RING_CAPACITY) - 1; i >= 0; i--){
+            ring.add(newest[i]);
+        }
+        if (newest.length > RING_CAPACITY){ // Every post newer than the first one left out is in the ring
+            ring.horizon = newest[RING_CAPACITY];
+        }
+        rings[accountId] = ring;
+        return ring;
+    }
+
+    /**
+     * Drops the ring of an account, so it is created again the next time it is read.
+     * @param accountId ID of the account
+     */
+    private void dropRing(int accountId){
+        if (accountId < rings.length){
+            rings[accountId] = null;
+        }
+    }
+
+    /**
+     * Drops the rings of every follower of an account.
+     * @param accountId ID of the account
+     */
+    private void dropFollowerRings(int accountId){
+        for (int i = follows.followerCount(accountId) - 1; i >= 0; i--){
+            dropRing(follows.followerAt(accountId, i));
+        }
+    }
+
+    /**
+     * Merges lists of post IDs into one list, newest first, leaving out duplicates.
+     * @param sources The lists, each newest first
+     * @param sourceCount The number of lists in use
+     * @param above ID that every returned post is above
+     * @param want The most IDs to return
+     * @return The newest IDs of all the lists
+     */
+    private static int[] merge(int[][] sources, int sourceCount, int above, int want){
+        int total = 0;
+        for (int i = 0; i < sourceCount; i++){
+            total += sources[i].length;
+        }
+        int[] all = new int[total];
+        int position = 0;
+        for (int i = 0; i < sourceCount; i++){
+            System.arraycopy(sources[i], 0, all, position, sources[i].length);
+            position += sources[i].length;
+        }
+        Arrays.sort(all);
+        int[] merged = new int[Math.min(total, want)];
+        int count = 0;
+        for (int i = total - 1; i >= 0 && count < merged.length && all[i] > above; i--){
+            if (count == 0 || merged[count - 1] != all[i]){
+                merged[count++] = all[i];
+            }
+        }
+        return count == merged.length ? merged : Arrays.copyOf(merged, count);
+    }
+
+    /**
+     * A ring buffer of the newest post IDs of a home timeline, in ascending order.
+     */
+    private static class Ring {
+        /**
+         * The IDs, starting at the position start and wrapping around.
+         */
+        private final int[] ids = new int[RING_CAPACITY];
+        /**
+         * The position of the oldest ID.
+         */
+        private int start;
+        /**
+         * The number of IDs in the ring.
+         */
+        private int size;
+        /**
+         * The newest ID that has been dropped from the ring, or 0 if none has.
+         */
+        private int horizon;
+
+        /**
+         * Adds an ID, dropping the oldest one if the ring is full. IDs normally arrive in ascending order and are
+         * appended, but posts made at the same time on different threads can arrive out of order and are moved
+         * into place.
+         * @param postId ID of the post
+         */
+        void add(int postId){
+            if (size == RING_CAPACITY){
+                int oldest = ids[start];
+                if (postId < oldest){
+                    horizon = Math.max(horizon, postId);
+                    return;
+                }
+                horizon = Math.max(horizon, oldest);
+                start = (start + 1) % RING_CAPACITY;
+                size--;
+            }
+            int i = size;
+            while (i > 0 && ids[(start + i - 1) % RING_CAPACITY] > postId){
+                ids[(start + i) % RING_CAPACITY] = ids[(start + i - 1) % RING_CAPACITY];
+                i--;
+            }
+            ids[(start + i) % RING_CAPACITY] = postId;
+            size++;
+        }
+
+        /**
+         * Returns the newest live IDs in the ring below a post, newest first.
+         * @param before ID that every returned post is below
+         * @param want The most IDs to return
+         * @param isLive States whether the post with an ID exists and has not been deleted
+         * @return The IDs
+         */
+        int[] before(int before, int want, IntPredicate isLive){
+            int[] page = new int[Math.min(size, want)];
+            int count = 0;
+            for (int i = size - 1; i >= 0 && count < page.length; i--){
+                int id = ids[(start + i) % RING_CAPACITY];
+                if (id < before && isLive.test(id)){
+                    page[count++] = id;
+                }
+            }
+            return count == page.length ? page : Arrays.copyOf(page, count);
+        }
+    }
+}
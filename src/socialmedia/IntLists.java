@@ -0,0 +1,199 @@
+package socialmedia;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints for each owner ID, such as the IDs of the comments of each post. Each list is a single int
+ * array whose first element holds its size, so an owner with no list costs one null reference and a list costs one
+ * array header rather than an ArrayList and boxed Integers.
+ */
+public class IntLists {
+    /**
+     * The number of owners the outer array starts with.
+     */
+    private final static int INITIAL_CAPACITY = 64;
+    /**
+     * The number of values a list has room for when it is first created.
+     */
+    private final static int INITIAL_LIST_CAPACITY = 2;
+
+    /**
+     * The list of each owner, indexed by owner ID, or null if the owner has never had a value.
+     */
+    private int[][] lists;
+
+    /**
+     * Creates an empty set of lists.
+     */
+    public IntLists(){
+        clear();
+    }
+
+    /**
+     * Returns the number of values in the list of an owner.
+     * @param owner ID of the owner
+     * @return Number of values, 0 if the owner has no list
+     */
+    public int size(int owner){
+        if (owner < 0 || owner >= lists.length || lists[owner] == null){
+            return 0;
+        }
+        return lists[owner][0];
+    }
+
+    /**
+     * Returns a value from the list of an owner.
+     * @param owner ID of the owner
+     * @param index Position of the value in the list
+     * @return The value
+     */
+    public int get(int owner, int index){
+        return lists[owner][index + 1];
+    }
+
+    /**
+     * Replaces a value in the list of an owner.
+     * @param owner ID of the owner
+     * @param index Position of the value in the list
+     * @param value The new value
+     */
+    public void set(int owner, int index, int value){
+        lists[owner][index + 1] = value;
+    }
+
+    /**
+     * Adds a value to the end of the list of an owner, creating the list if needed.
+     * @param owner ID of the owner, not negative
+     * @param value The value
+     * @return Position of the value in the list
+     */
+    public int add(int owner, int value){
+        if (owner >= lists.length){
+            ensureCapacity(owner + 1);
+        }
+        int[] list = lists[owner];
+        if (list == null){
+            list = new int[INITIAL_LIST_CAPACITY + 1];
+            lists[owner] = list;
+        } else if (list[0] + 1 == list.length){
+            list = Arrays.copyOf(list, list.length * 2 - 1); // Doubles the room for values
+            lists[owner] = list;
+        }
+        int index = list[0]++;
+        list[index + 1] = value;
+        return index;
+    }
+
+    /**
+     * Removes a value from the list of an owner by moving the last value into its place, so the removal takes
+     * constant time but does not keep the order of the list. A list that becomes empty is freed.
+     * @param owner ID of the owner
+     * @param index Position of the value to remove
+     * @return The value moved into the position, or 0 if the removed value was the last one
+     */
+    public int removeAt(int owner, int index){
+        int[] list = lists[owner];
+        int last = list[list[0]];
+        list[0]--;
+        if (list[0] == 0){
+            lists[owner] = null;
+        }
+        if (index == list[0]){
+            return 0;
+        }
+        list[index + 1] = last;
+        return last;
+    }
+
+    /**
+     * Searches the list of an owner that is kept in ascending order for a value.
+     * @param owner ID of the owner
+     * @param value The value
+     * @return Position of the value, or (-(insertion point) - 1) if it is not in the list, as Arrays.binarySearch
+     */
+    public int search(int owner, int value){
+        int size = size(owner);
+        if (size == 0){
+            return -1;
+        }
+        int index = Arrays.binarySearch(lists[owner], 1, size + 1, value); // Positions in the array are one past the list
+        return index >= 0 ? index - 1 : index + 1;
+    }
+
+    /**
+     * Adds a value to the list of an owner that is kept in ascending order, unless it is already in the list.
+     * @param owner ID of the owner, not negative
+     * @param value The value
+     * @return Boolean value stating whether the value was added
+     */
+    public boolean addSorted(int owner, int value){
+        int index = search(owner, value);
+        if (index >= 0){
+            return false;
+        }
+        index = -index - 1;
+        add(owner, value); // Makes room at the end, then the values after the insertion point are moved up
+        int[] list = lists[owner];
+        System.arraycopy(list, index + 1, list, index + 2, list[0] - index - 1);
+        list[index + 1] = value;
+        return true;
+    }
+
+    /**
+     * Removes a value from the list of an owner that is kept in ascending order, keeping the order. A list that
+     * becomes empty is freed.
+     * @param owner ID of the owner
+     * @param value The value
+     * @return Boolean value stating whether the value was in the list
+     */
+    public boolean removeSorted(int owner, int value){
+        int index = search(owner, value);
+        if (index < 0){
+            return false;
+        }
+        int[] list = lists[owner];
+        System.arraycopy(list, index + 2, list, index + 1, list[0] - index - 1);
+        list[0]--;
+        if (list[0] == 0){
+            lists[owner] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the list of an owner.
+     * @param owner ID of the owner
+     */
+    public void removeAll(int owner){
+        if (owner >= 0 && owner < lists.length){
+            lists[owner] = null;
+        }
+    }
+
+    /**
+     * Returns a copy of the list of an owner.
+     * @param owner ID of the owner
+     * @return The values in the list, in list order
+     */
+    public int[] toArray(int owner){
+        int size = size(owner);
+        return size == 0 ? new int[0] : Arrays.copyOfRange(lists[owner], 1, size + 1);
+    }
+
+    /**
+     * Makes room for the lists of owners with IDs below the given value.
+     * @param ownerCount One more than the highest owner ID that will be used
+     */
+    public void ensureCapacity(int ownerCount){
+        if (ownerCount > lists.length){
+            lists = Arrays.copyOf(lists, Math.max(ownerCount, lists.length * 2));
+        }
+    }
+
+    /**
+     * Removes every list.
+     */
+    public void clear(){
+        lists = new int[INITIAL_CAPACITY][];
+    }
+}
@@ -0,0 +1,388 @@
+package socialmedia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the changes made to a platform since its last checkpoint. A journal file is laid out as
+ * <pre>
+ * header:  magic, version
+ * records: [payload length, CRC-32 of payload, payload] for each record, where the payload is
+ *          [sequence, operation, ID, result ID, first string, second string]
+ * </pre>
+ * Records are appended to a buffer and written to the file in groups: the group is written once it holds the
+ * group commit size number of records, or when {@link #commit()} is called. When fsync is enabled each group is
+ * also forced to the storage device before the write returns, so a record is durable once its group is committed.
+ * With a group commit size of 1 every record is committed before the operation that wrote it returns.
+ * <p>
+ * A crash can leave a partly written record at the end of the file. Its length or checksum will not match, so it
+ * is dropped, along with anything after it, when the journal is next opened.
+ */
+public class Journal implements Closeable{
+    /**
+     * The first four bytes of every journal file ("SMJL").
+     */
+    public final static int MAGIC = 0x534D4A4C;
+    /**
+     * The version of the journal format written by this class.
+     */
+    public final static int VERSION = 1;
+    /**
+     * The size in bytes of the header of a journal file.
+     */
+    public final static int HEADER_SIZE = 8;
+    /**
+     * The size in bytes of the length and checksum written before each record payload.
+     */
+    private final static int RECORD_PREFIX_SIZE = 8;
+    /**
+     * The size in bytes of a record payload whose strings are both null.
+     */
+    private final static int MIN_PAYLOAD_SIZE = 25;
+    /**
+     * Operation recording createAccount: first is the handle, second the description, result ID the new account.
+     */
+    public final static byte CREATE_ACCOUNT = 1;
+    /**
+     * Operation recording removeAccount: ID is the account removed.
+     */
+    public final static byte REMOVE_ACCOUNT = 2;
+    /**
+     * Operation recording changeAccountHandle: first is the old handle, second the new handle.
+     */
+    public final static byte CHANGE_ACCOUNT_HANDLE = 3;
+    /**
+     * Operation recording updateAccountDescription: first is the handle, second the new description.
+     */
+    public final static byte UPDATE_ACCOUNT_DESCRIPTION = 4;
+    /**
+     * Operation recording createPost: first is the handle, second the message, result ID the new post.
+     */
+    public final static byte CREATE_POST = 5;
+    /**
+     * Operation recording endorsePost: first is the handle, ID the endorsed post, result ID the endorsement.
+     */
+    public final static byte ENDORSE_POST = 6;
+    /**
+     * Operation recording commentPost: first is the handle, second the message, ID the commented post and result
+     * ID the comment.
+     */
+    public final static byte COMMENT_POST = 7;
+    /**
+     * Operation recording deletePost: ID is the post deleted.
+     */
+    public final static byte DELETE_POST = 8;
+    /**
+     * Operation recording erasePlatform.
+     */
+    public final static byte ERASE_PLATFORM = 9;
+    /**
+     * Operation recording follow: first is the handle of the follower, second the handle of the account followed.
+     */
+    public final static byte FOLLOW = 10;
+    /**
+     * Operation recording unfollow: first is the handle of the follower, second the handle of the account followed.
+     */
+    public final static byte UNFOLLOW = 11;
+
+    /**
+     * The channel of the journal file, positioned at the end of the last record written.
+     */
+    private final FileChannel channel;
+    /**
+     * The output records are appended to until their group is committed.
+     */
+    private final BufferedChannelOutput out;
+    /**
+     * The number of records written to the file in each group.
+     */
+    private final int groupCommitSize;
+    /**
+     * A flag to indicate whether each group is forced to the storage device when it is committed.
+     */
+    private final boolean fsync;
+    /**
+     * The records found after the snapshot sequence when the journal was opened.
+     */
+    private final ArrayList<JournalRecord> recoveredRecords;
+    /**
+     * The sequence number of the last record appended, or of the snapshot if no record has been appended since.
+     */
+    private long lastSequence;
+    /**
+     * The number of appended records that have not been committed yet.
+     */
+    private int pendingRecords = 0;
+    /**
+     * The number of records in the journal since it was last reset.
+     */
+    private int recordCount;
+
+    /**
+     * Creates a journal that appends to an open journal file.
+     * @param channel The channel of the journal file, positioned at the end of its last valid record.
+     * @param groupCommitSize The number of records written to the file in each group.
+     * @param fsync Whether each group is forced to the storage device when it is committed.
+     * @param recoveredRecords The records found after the snapshot sequence.
+     * @param lastSequence The sequence number of the last record in the file or of the snapshot, whichever is later.
+     * @param recordCount The number of records in the file.
+     */
+    private Journal(FileChannel channel, int groupCommitSize, boolean fsync, ArrayList<JournalRecord> recoveredRecords,
+            long lastSequence, int recordCount){
+        this.channel = channel;
+        this.out = new BufferedChannelOutput(channel);
+        this.groupCommitSize = groupCommitSize;
+        this.fsync = fsync;
+        this.recoveredRecords = recoveredRecords;
+        this.lastSequence = lastSequence;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Opens a journal file for appending, creating it if it does not exist. The records in the file written after
+     * the snapshot sequence are read and can be replayed from {@link #getRecoveredRecords()}. A partly written
+     * record at the end of the file is removed.
+     * @param filename Location of the journal file
+     * @param snapshotSequence Sequence number of the last record included in the snapshot the journal follows
+     * @param groupCommitSize Number of records written to the file in each group, at least 1
+     * @param fsync Whether each group is forced to the storage device when it is committed
+     * @return The opened journal
+     * @throws IOException If the file cannot be read or written, is not a journal, or does not continue on from
+     *                     the snapshot sequence
+     */
+    public static Journal open(String filename, long snapshotSequence, int groupCommitSize, boolean fsync) throws IOException{
+        if (groupCommitSize < 1){
+            throw new IllegalArgumentException("Group commit size must be at least 1");
+        }
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+            ArrayList<JournalRecord> records = new ArrayList<JournalRecord>();
+            long end;
+            if (channel.size() < HEADER_SIZE){ // A new file, or one that was created but never written
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.truncate(0);
+                while (header.hasRemaining()){
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+                end = HEADER_SIZE;
+            } else{
+                end = readRecords(channel, filename, records);
+                if (end < channel.size()){
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+            }
+            channel.position(end);
+
+            int recordCount = records.size();
+            long lastSequence = records.isEmpty() ? snapshotSequence : Math.max(snapshotSequence, records.get(records.size() - 1).getSequence());
+            ArrayList<JournalRecord> recovered = new ArrayList<JournalRecord>();
+            for (JournalRecord r : records){
+                if (r.getSequence() > snapshotSequence){
+                    recovered.add(r);
+                }
+            }
+            if (!recovered.isEmpty() && recovered.get(0).getSequence() != snapshotSequence + 1){
+                throw new IOException(filename + " does not continue on from snapshot sequence " + snapshotSequence);
+            }
+            return new Journal(channel, groupCommitSize, fsync, recovered, lastSequence, recordCount);
+        } catch (IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the records found after the snapshot sequence when the journal was opened, in the order they were
+     * written. These are the changes that have to be replayed on top of the snapshot.
+     * @return Records to replay
+     */
+    public ArrayList<JournalRecord> getRecoveredRecords(){
+        return recoveredRecords;
+    }
+
+    /**
+     * Returns the sequence number of the last record appended to the journal.
+     * @return Last sequence number, or the snapshot sequence if nothing has been appended since
+     */
+    public synchronized long getLastSequence(){
+        return lastSequence;
+    }
+
+    /**
+     * Returns the number of records in the journal since it was opened or last reset.
+     * @return Number of records
+     */
+    public synchronized int getRecordCount(){
+        return recordCount;
+    }
+
+    /**
+     * Appends a record to the journal. The record is written to the file with its group, which is committed as
+     * soon as it holds the group commit size number of records.
+     * @param operation The operation that was performed
+     * @param id The ID of the account or post the operation acted on, or 0
+     * @param resultId The ID of the account or post the operation created, or 0
+     * @param first The first string argument of the operation, or null
+     * @param second The second string argument of the operation, or null
+     * @return The sequence number of the record
+     * @throws IOException If the group cannot be written to the file
+     */
+    public synchronized long append(byte operation, int id, int resultId, String first, String second) throws IOException{
+        byte[] firstBytes = first == null ? null : first.getBytes(StandardCharsets.UTF_8);
+        byte[] secondBytes = second == null ? null : second.getBytes(StandardCharsets.UTF_8);
+        int length = MIN_PAYLOAD_SIZE + (firstBytes == null ? 0 : firstBytes.length) + (secondBytes == null ? 0 : secondBytes.length);
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        payload.putLong(lastSequence + 1).put(operation).putInt(id).putInt(resultId);
+        putBytes(payload, firstBytes);
+        putBytes(payload, secondBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        out.writeInt(length);
+        out.writeInt((int)crc.getValue());
+        out.writeBytes(payload.array());
+        lastSequence++;
+        recordCount++;
+        pendingRecords++;
+        if (pendingRecords >= groupCommitSize){
+            commit();
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Writes every appended record that has not been committed yet to the file, forcing it to the storage device
+     * if fsync is enabled.
+     * @throws IOException If the records cannot be written
+     */
+    public synchronized void commit() throws IOException{
+        if (pendingRecords == 0){
+            return;
+        }
+        out.flush();
+        if (fsync){
+            channel.force(false);
+        }
+        pendingRecords = 0;
+    }
+
+    /**
+     * Removes every record from the journal once a checkpoint has saved them in a snapshot. Sequence numbers carry
+     * on from the last record removed.
+     * @throws IOException If the file cannot be truncated
+     */
+    public synchronized void reset() throws IOException{
+        commit();
+        channel.truncate(HEADER_SIZE);
+        channel.position(HEADER_SIZE);
+        if (fsync){
+            channel.force(false);
+        }
+        recordCount = 0;
+        recoveredRecords.clear();
+    }
+
+    /**
+     * Commits any remaining records and closes the journal file.
+     * @throws IOException If the records cannot be written or the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException{
+        try{
+            commit();
+        } finally{
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes a string argument to a record payload as its length in bytes followed by its UTF-8 encoding. A null
+     * string is written as a length of -1.
+     * @param payload The payload being written
+     * @param bytes The UTF-8 encoding of the string, or null
+     */
+    private static void putBytes(ByteBuffer payload, byte[] bytes){
+        if (bytes == null){
+            payload.putInt(-1);
+        } else{
+            payload.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    /**
+     * Reads a string argument from a record payload.
+     * @param payload The payload being read
+     * @return The string, or null if a null string was written
+     * @throws IOException If the length of the string does not fit in the payload
+     */
+    private static String getString(ByteBuffer payload) throws IOException{
+        int length = payload.getInt();
+        if (length == -1){
+            return null;
+        }
+        if (length < 0 || length > payload.remaining()){
+            throw new IOException("Invalid string length " + length);
+        }
+        String value = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    /**
+     * Reads every complete record from a journal file, stopping at the first record that is cut short or whose
+     * checksum does not match.
+     * @param channel The channel of the journal file
+     * @param filename Location of the journal file, used in error messages
+     * @param records The list the records are added to
+     * @return The position in the file after the last complete record
+     * @throws IOException If the file cannot be read or is not a journal
+     */
+    private static long readRecords(FileChannel channel, String filename, ArrayList<JournalRecord> records) throws IOException{
+        long size = channel.size();
+        channel.position(0);
+        BufferedChannelInput in = new BufferedChannelInput(channel); // Not closed, as that would close the channel
+        if (in.readInt() != MAGIC){
+            throw new IOException(filename + " is not a platform journal");
+        }
+        int version = in.readInt();
+        if (version != VERSION){
+            throw new IOException("Unsupported journal version " + version);
+        }
+        long position = HEADER_SIZE;
+        long previousSequence = 0;
+        while (size - position >= RECORD_PREFIX_SIZE + MIN_PAYLOAD_SIZE){
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < MIN_PAYLOAD_SIZE || length > size - position - RECORD_PREFIX_SIZE){ // Cut short by a crash
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.wrap(in.readBytes(length));
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int)crc.getValue() != checksum){
+                break;
+            }
+            long sequence = payload.getLong();
+            if (sequence <= previousSequence){
+                break;
+            }
+            JournalRecord record = new JournalRecord(sequence, payload.get(), payload.getInt(), payload.getInt(),
+                    getString(payload), getString(payload));
+            records.add(record);
+            previousSequence = sequence;
+            position += RECORD_PREFIX_SIZE + length;
+        }
+        return position;
+    }
+}
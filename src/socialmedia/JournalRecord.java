@@ -0,0 +1,100 @@
+package socialmedia;
+
+/**
+ * A single change to a platform recorded in a {@link Journal}. Every operation is stored in the same shape: the ID
+ * of the account or post it acts on, the ID it created and up to two strings. Fields an operation does not use are
+ * 0 or null.
+ */
+public class JournalRecord {
+    /**
+     * The position of the record in the journal. Sequence numbers increase by one for every record and carry on
+     * across checkpoints.
+     */
+    private final long sequence;
+    /**
+     * The operation that was performed, one of the operation constants in Journal.
+     */
+    private final byte operation;
+    /**
+     * The ID of the account or post the operation acted on.
+     */
+    private final int id;
+    /**
+     * The ID of the account or post the operation created.
+     */
+    private final int resultId;
+    /**
+     * The first string argument of the operation, for example a handle.
+     */
+    private final String first;
+    /**
+     * The second string argument of the operation, for example a message or description.
+     */
+    private final String second;
+
+    /**
+     * Creates a journal record.
+     * @param sequence The position of the record in the journal.
+     * @param operation The operation that was performed.
+     * @param id The ID of the account or post the operation acted on, or 0.
+     * @param resultId The ID of the account or post the operation created, or 0.
+     * @param first The first string argument of the operation, or null.
+     * @param second The second string argument of the operation, or null.
+     */
+    public JournalRecord(long sequence, byte operation, int id, int resultId, String first, String second){
+        this.sequence = sequence;
+        this.operation = operation;
+        this.id = id;
+        this.resultId = resultId;
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Returns the position of the record in the journal.
+     * @return Sequence number of the record
+     */
+    public long getSequence(){
+        return sequence;
+    }
+
+    /**
+     * Returns the operation that was performed.
+     * @return One of the operation constants in Journal
+     */
+    public byte getOperation(){
+        return operation;
+    }
+
+    /**
+     * Returns the ID of the account or post the operation acted on.
+     * @return ID acted on, or 0
+     */
+    public int getId(){
+        return id;
+    }
+
+    /**
+     * Returns the ID of the account or post the operation created.
+     * @return ID created, or 0
+     */
+    public int getResultId(){
+        return resultId;
+    }
+
+    /**
+     * Returns the first string argument of the operation.
+     * @return First string argument, or null
+     */
+    public String getFirst(){
+        return first;
+    }
+
+    /**
+     * Returns the second string argument of the operation.
+     * @return Second string argument, or null
+     */
+    public String getSecond(){
+        return second;
+    }
+}
@@ -0,0 +1,248 @@
+package socialmedia;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Ranks posts or accounts by their number of endorsements. The ranking is kept in an indexed binary max-heap
+ * so a score can be changed in O(log n) and the highest ranked ID read in O(1). IDs with the same score are
+ * ranked in the order they were created (lowest ID first).
+ * <p>
+ * Platform IDs are handed out sequentially, so the position of each ID in the heap is stored in an array
+ * indexed by the ID itself.
+ */
+public class Leaderboard implements Serializable{
+    /**
+     * Serialisation version, fixed so that a platform serialised with this class can be read by later builds.
+     */
+    private static final long serialVersionUID = 6385708120302070797L;
+    /**
+     * The number of slots the arrays start with.
+     */
+    private final static int INITIAL_CAPACITY = 64;
+    /**
+     * The value stored in positions for an ID that is not on the leaderboard.
+     */
+    private final static int NOT_ON_BOARD = -1;
+    /**
+     * The IDs on the leaderboard laid out as a binary heap, with the highest ranked ID at index 0.
+     */
+    private int[] heap;
+    /**
+     * The score of each ID, indexed by ID.
+     */
+    private int[] scores;
+    /**
+     * The index of each ID in the heap, indexed by ID.
+     */
+    private int[] positions;
+    /**
+     * The number of IDs on the leaderboard.
+     */
+    private int size;
+
+    /**
+     * Creates an empty leaderboard.
+     */
+    public Leaderboard(){
+        clear();
+    }
+
+    /**
+     * Returns the number of IDs on the leaderboard.
+     * @return Number of IDs on the leaderboard
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * States whether the ID is on the leaderboard.
+     * @param id ID of the post or account
+     * @return Boolean value stating whether the ID is on the leaderboard
+     */
+    public boolean contains(int id){
+        return id > 0 && id < positions.length && positions[id] != NOT_ON_BOARD;
+    }
+
+    /**
+     * Returns the current score of an ID on the leaderboard.
+     * @param id ID of the post or account
+     * @return Score of the ID, or 0 if it is not on the leaderboard
+     */
+    public int getScore(int id){
+        return contains(id) ? scores[id] : 0;
+    }
+
+    /**
+     * Adds an ID to the leaderboard with the given score. Does nothing if the ID is already on the leaderboard.
+     * @param id ID of the post or account
+     * @param score Number of endorsements the post or account has
+     */
+    public void add(int id, int score){
+        if (contains(id)){
+            return;
+        }
+        ensureCapacity(id);
+        scores[id] = score;
+        heap[size] = id;
+        positions[id] = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Removes an ID from the leaderboard. Does nothing if the ID is not on the leaderboard.
+     * @param id ID of the post or account
+     */
+    public void remove(int id){
+        if (!contains(id)){
+            return;
+        }
+        int position = positions[id];
+        size--;
+        positions[id] = NOT_ON_BOARD;
+        scores[id] = 0;
+        if (position == size){ // Removed the last entry of the heap
+            return;
+        }
+        int last = heap[size];
+        heap[position] = last;
+        positions[last] = position;
+        siftUp(position);
+        siftDown(positions[last]);
+    }
+
+    /**
+     * Adds a change to the score of an ID on the leaderboard. Does nothing if the ID is not on the leaderboard.
+     * @param id ID of the post or account
+     * @param change Amount to change the score by, negative when endorsements are removed
+     */
+    public void changeScore(int id, int change){
+        if (!contains(id) || change == 0){
+            return;
+        }
+        scores[id] += change;
+        if (change > 0){
+            siftUp(positions[id]);
+        } else{
+            siftDown(positions[id]);
+        }
+    }
+
+    /**
+     * Returns the highest ranked ID on the leaderboard.
+     * @return ID with the highest score, or 0 if the leaderboard is empty
+     */
+    public int top(){
+        return size == 0 ? 0 : heap[0];
+    }
+
+    /**
+     * Returns the k highest ranked IDs on the leaderboard, highest first. Only the part of the heap above the
+     * k-th entry is visited, so this takes O(k log k) time regardless of the size of the leaderboard.
+     * @param k Number of IDs to return
+     * @return Array of at most k IDs in descending order of score. Empty if k is not positive.
+     */
+    public int[] top(int k){
+        int count = Math.max(0, Math.min(k, size));
+        int[] result = new int[count];
+        if (count == 0){
+            return result;
+        }
+        PriorityQueue<Integer> candidates = new PriorityQueue<Integer>(2 * count + 1,
+                (a, b) -> a.equals(b) ? 0 : (ranksAbove(heap[a], heap[b]) ? -1 : 1)); // Heap positions ordered by rank
+        candidates.add(0);
+        for (int i = 0; i < count; i++){
+            int position = candidates.poll();
+            result[i] = heap[position];
+            if (2 * position + 1 < size){ // Children of an entry are the only entries that can rank next
+                candidates.add(2 * position + 1);
+            }
+            if (2 * position + 2 < size){
+                candidates.add(2 * position + 2);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes every ID from the leaderboard.
+     */
+    public void clear(){
+        heap = new int[INITIAL_CAPACITY];
+        scores = new int[INITIAL_CAPACITY];
+        positions = new int[INITIAL_CAPACITY];
+        Arrays.fill(positions, NOT_ON_BOARD);
+        size = 0;
+    }
+
+    /**
+     * States whether one ID ranks above another, either by having a higher score or an equal score and a lower ID.
+     * @param a ID being compared
+     * @param b ID being compared against
+     * @return Boolean value stating whether a ranks above b
+     */
+    private boolean ranksAbove(int a, int b){
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    /**
+     * Moves the entry at the given heap index up until its parent ranks above it.
+     * @param index Heap index of the entry
+     */
+    private void siftUp(int index){
+        int id = heap[index];
+        while (index > 0){
+            int parent = (index - 1) / 2;
+            if (!ranksAbove(id, heap[parent])){
+                break;
+            }
+            heap[index] = heap[parent];
+            positions[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    /**
+     * Moves the entry at the given heap index down until it ranks above both of its children.
+     * @param index Heap index of the entry
+     */
+    private void siftDown(int index){
+        int id = heap[index];
+        while (2 * index + 1 < size){
+            int child = 2 * index + 1;
+            if (child + 1 < size && ranksAbove(heap[child + 1], heap[child])){
+                child++;
+            }
+            if (!ranksAbove(heap[child], id)){
+                break;
+            }
+            heap[index] = heap[child];
+            positions[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    /**
+     * Grows the arrays so that the given ID and one more heap entry fit.
+     * @param id ID that is about to be added
+     */
+    private void ensureCapacity(int id){
+        if (size == heap.length){
+            heap = Arrays.copyOf(heap, heap.length * 2);
+        }
+        if (id >= positions.length){
+            int capacity = Math.max(positions.length * 2, id + 1);
+            int oldLength = positions.length;
+            scores = Arrays.copyOf(scores, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            Arrays.fill(positions, oldLength, capacity, NOT_ON_BOARD);
+        }
+    }
+}
@@ -0,0 +1,627 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * A platform snapshot file that has been memory-mapped instead of read. Accounts and posts are only read from the
+ * file (materialised) the first time they are looked up by ID or handle, using the tables at the end of the file
+ * written by {@link PlatformSnapshot}. The lists of posts of an account, and the comments, endorsements and
+ * reference post of a post, are read the first time they are used.
+ * <p>
+ * Materialised accounts and posts are added to the same indexes that SocialMedia uses, and once an account or post
+ * has been materialised those indexes are the only record of it. Changes made to it afterwards, including a new
+ * handle or its removal, are never overridden by what the file says.
+ */
+public class MappedSnapshot implements PlatformSource {
+    /**
+     * The contents of the snapshot file.
+     */
+    private final MappedByteBuffer buffer;
+    /**
+     * The location of the snapshot file.
+     */
+    private final String filename;
+    /**
+     * The version of the snapshot format the file was written in.
+     */
+    private final int version;
+    /**
+     * The position of the message in a post record, which follows the timestamp in files that have one.
+     */
+    private final int messagePosition;
+    /**
+     * The ID that will be assigned to the next account created, as saved in the header.
+     */
+    private final int nextAccountID;
+    /**
+     * The ID that will be assigned to the next post created, as saved in the header.
+     */
+    private final int nextPostID;
+    /**
+     * The number of accounts in the file.
+     */
+    private final int accountCount;
+    /**
+     * The number of original posts in the file.
+     */
+    private final int totalOriginalPosts;
+    /**
+     * The number of comment posts in the file.
+     */
+    private final int totalCommentPosts;
+    /**
+     * The number of endorsement posts in the file.
+     */
+    private final int totalEndorsementPosts;
+    /**
+     * The position of the account table in the file.
+     */
+    private final int accountTableOffset;
+    /**
+     * The position of the post table in the file.
+     */
+    private final int postTableOffset;
+    /**
+     * The position of the handle table in the file.
+     */
+    private final int handleTableOffset;
+    /**
+     * The number of slots in the handle table.
+     */
+    private final int handleTableSlots;
+    /**
+     * The materialised accounts indexed by ID.
+     */
+    private final LinkedHashMap<Integer, Account> accountsById = new LinkedHashMap<Integer, Account>();
+    /**
+     * The materialised accounts indexed by handle.
+     */
+    private final HashMap<String, Account> accountsByHandle = new HashMap<String, Account>();
+    /**
+     * The materialised posts.
+     */
+    private final PostIndex posts = new PostIndex();
+    /**
+     * The IDs of the accounts in the file that have been materialised, including ones that have since been removed.
+     */
+    private final BitSet materialisedAccounts = new BitSet();
+    /**
+     * The number of accounts in the file that have been materialised.
+     */
+    private int materialisedAccountCount = 0;
+
+    /**
+     * Creates a mapped snapshot from a mapped file and reads its header.
+     * @param buffer The mapped contents of the file
+     * @param filename Location of the file
+     */
+    private MappedSnapshot(MappedByteBuffer buffer, String filename){
+        this.buffer = buffer;
+        this.filename = filename;
+        version = buffer.getInt(4);
+        messagePosition = version >= PlatformSnapshot.TIMESTAMP_VERSION ? 22 : 14;
+        nextAccountID = buffer.getInt(8);
+        nextPostID = buffer.getInt(12);
+        accountCount = buffer.getInt(16);
+        totalOriginalPosts = buffer.getInt(24);
+        totalCommentPosts = buffer.getInt(28);
+        totalEndorsementPosts = buffer.getInt(32);
+        accountTableOffset = (int)buffer.getLong(PlatformSnapshot.ACCOUNT_TABLE_OFFSET_POSITION);
+        postTableOffset = (int)buffer.getLong(PlatformSnapshot.ACCOUNT_TABLE_OFFSET_POSITION + 8);
+        handleTableOffset = (int)buffer.getLong(PlatformSnapshot.ACCOUNT_TABLE_OFFSET_POSITION + 16);
+        handleTableSlots = buffer.getInt(PlatformSnapshot.ACCOUNT_TABLE_OFFSET_POSITION + 24);
+    }
+
+    /**
+     * Memory-maps a snapshot file. Only the header is read.
+     * @param filename Location of the snapshot file
+     * @return The mapped snapshot, or null if the file is not a version 2 or later snapshot or is too large to be mapped
+     *         into a single buffer, in which case it has to be read in full
+     * @throws IOException If the file cannot be mapped
+     */
+    public static MappedSnapshot open(String filename) throws IOException{
+        try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+            long size = channel.size();
+            if (size < PlatformSnapshot.JOURNAL_SEQUENCE_POSITION || size > Integer.MAX_VALUE){
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // Stays valid once the channel is closed
+            int version = buffer.getInt(4);
+            if (buffer.getInt(0) != PlatformSnapshot.MAGIC || version < 2 || version > PlatformSnapshot.VERSION){
+                return null;
+            }
+            return new MappedSnapshot(buffer, filename);
+        }
+    }
+
+    /**
+     * Returns the materialised accounts indexed by ID. Accounts are added as they are materialised.
+     * @return Materialised accounts indexed by ID
+     */
+    public LinkedHashMap<Integer, Account> getAccounts(){
+        return accountsById;
+    }
+
+    /**
+     * Returns the materialised accounts indexed by handle. Accounts are added as they are materialised.
+     * @return Materialised accounts indexed by handle
+     */
+    public HashMap<String, Account> getAccountsByHandle(){
+        return accountsByHandle;
+    }
+
+    /**
+     * Returns the materialised posts. Posts are added as they are materialised.
+     * @return Index of the materialised posts
+     */
+    public PostIndex getPosts(){
+        return posts;
+    }
+
+    /**
+     * Returns the ID that will be assigned to the next account created.
+     * @return Next account ID
+     */
+    public int getNextAccountID(){
+        return nextAccountID;
+    }
+
+    /**
+     * Returns the ID that will be assigned to the next post created.
+     * @return Next post ID
+     */
+    public int getNextPostID(){
+        return nextPostID;
+    }
+
+    /**
+     * Returns the number of original posts in the file.
+     * @return Number of original posts
+     */
+    public int getTotalOriginalPosts(){
+        return totalOriginalPosts;
+    }
+
+    /**
+     * Returns the number of comment posts in the file.
+     * @return Number of comment posts
+     */
+    public int getTotalCommentPosts(){
+        return totalCommentPosts;
+    }
+
+    /**
+     * Returns the number of endorsement posts in the file.
+     * @return Number of endorsement posts
+     */
+    public int getTotalEndorsementPosts(){
+        return totalEndorsementPosts;
+    }
+
+    /**
+     * Reads the follows section at the end of the file. Follows are read in full rather than materialised with
+     * their accounts, as pushing a new post into home timelines needs every follower of its account.
+     * @return The follow graph, with no follows if the file was written before version 5
+     */
+    public FollowGraph readFollows(){
+        FollowGraph follows = new FollowGraph();
+        if (version < PlatformSnapshot.FOLLOW_VERSION){
+            return follows;
+        }
+        int position = followsOffset();
+        int count = buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < count; i++){
+            int id = buffer.getInt(position);
+            int followees = buffer.getInt(position + 4);
+            position += 8;
+            for (int j = 0; j < followees; j++, position += 4){
+                follows.follow(id, buffer.getInt(position));
+            }
+        }
+        return follows;
+    }
+
+    /**
+     * Reads the search index section at the end of the file. Like the follows, the index is read in full, as any
+     * search can need the posting list of any term. Files written before version 6 have no search index, and it is
+     * rebuilt from the messages in the post records without materialising the posts.
+     * @return The search index
+     * @throws IOException If the search index section cannot be read
+     */
+    public PostSearchIndex readSearchIndex() throws IOException{
+        if (version < PlatformSnapshot.SEARCH_VERSION){
+            PostSearchIndex index = new PostSearchIndex();
+            for (int id = 1; id < nextPostID; id++){
+                int offset = postOffset(id);
+                if (offset != 0 && !isEmptyPost(id) && typeOf(id) != PlatformSnapshot.ENDORSEMENT_POST){
+                    index.add(id, readString(offset + messagePosition));
+                }
+            }
+            return index;
+        }
+        int position = followsOffset();
+        int count = buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < count; i++){ // Skips the follows section
+            position += 8 + 4 * buffer.getInt(position + 4);
+        }
+        try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+            channel.position(position);
+            return PostSearchIndex.read(new BufferedChannelInput(channel));
+        }
+    }
+
+    /**
+     * Returns the number of accounts in the file that have not been materialised yet.
+     * @return Number of accounts only held in the file
+     */
+    public int getUnmaterialisedAccountCount(){
+        return accountCount - materialisedAccountCount;
+    }
+
+    /**
+     * States whether the account with the given ID is in the file and has not been materialised yet.
+     * @param id ID of the account
+     * @return Boolean value stating whether the account is only held in the file
+     */
+    public boolean isUnmaterialisedAccount(int id){
+        return accountOffset(id) != 0 && !materialisedAccounts.get(id);
+    }
+
+    /**
+     * States whether the post with the given ID is in the file and has not been materialised yet.
+     * @param id ID of the post
+     * @return Boolean value stating whether the post is only held in the file
+     */
+    public boolean isUnmaterialisedPost(int id){
+        return postOffset(id) != 0 && posts.get(id) == null;
+    }
+
+    /**
+     * Returns the account with the given ID, materialising it if it has not been used yet.
+     * @param id ID of the account
+     * @return The account, or null if there is no such account or it has been removed since it was materialised
+     */
+    public Account account(int id){
+        if (materialisedAccounts.get(id)){
+            return accountsById.get(id);
+        }
+        int offset = accountOffset(id);
+        if (offset == 0){
+            return null;
+        }
+        String handle = readString(offset + 4);
+        String description = readString(skipString(offset + 4));
+        Account a = new Account(id, handle, description, this);
+        accountsById.put(id, a);
+        accountsByHandle.put(handle, a);
+        materialisedAccounts.set(id);
+        materialisedAccountCount++;
+        return a;
+    }
+
+    /**
+     * Returns the account that had the given handle when the file was saved, materialising it if it has not been
+     * used yet. Once an account has been materialised the account indexes decide which account owns a handle, so
+     * null is returned for it here.
+     * @param handle Handle of the account
+     * @return The account, or null if no account in the file that has not been materialised has the handle
+     */
+    public Account accountByHandle(String handle){
+        byte[] bytes = handle.getBytes(StandardCharsets.UTF_8);
+        int hash = handle.hashCode();
+        int mask = handleTableSlots - 1;
+        for (int slot = PlatformSnapshot.handleSlotFor(hash, handleTableSlots); ; slot = (slot + 1) & mask){
+            int position = handleTableOffset + slot * PlatformSnapshot.HANDLE_SLOT_SIZE;
+            int id = buffer.getInt(position + 4);
+            if (id == 0){ // Reached an unused slot so the handle is not in the file
+                return null;
+            }
+            if (buffer.getInt(position) == hash && handleEquals(accountOffset(id) + 4, bytes)){
+                return materialisedAccounts.get(id) ? null : account(id);
+            }
+        }
+    }
+
+    /**
+     * Returns the post with the given ID, materialising it if it has not been used yet.
+     * @param id ID of the post
+     * @return The post, or null if there is no such post
+     */
+    public Post post(int id){
+        Post existing = posts.get(id);
+        if (existing != null){
+            return existing;
+        }
+        int offset = postOffset(id);
+        if (offset == 0){
+            return null;
+        }
+        byte type = buffer.get(offset + 4);
+        boolean isEmpty = (buffer.get(offset + 5) & PlatformSnapshot.EMPTY_POST_FLAG) != 0;
+        Account account = isEmpty ? null : account(buffer.getInt(offset + 10));
+        String message = readString(offset + messagePosition);
+
+        Post p;
+        if (type == PlatformSnapshot.COMMENT_POST){
+            p = new Comment(id, account, message, this);
+        } else if (type == PlatformSnapshot.ENDORSEMENT_POST){
+            p = new EndorsementPost(id, account, message, this);
+        } else{
+            p = new Post(id, account, message, this);
+        }
+        if (version >= PlatformSnapshot.TIMESTAMP_VERSION){
+            p.setTimestamp(buffer.getLong(offset + 14));
+        }
+        if (isEmpty){
+            p.setPostToEmpty();
+        }
+        posts.put(p);
+        return p;
+    }
+
+    /**
+     * Reads the posts made by an account.
+     * @param accountId ID of the account
+     * @return List of the posts made by the account, in ID order
+     */
+    @Override
+    public ArrayList<Post> readAccountPosts(int accountId){
+        int offset = accountOffset(accountId) + 4;
+        offset = skipString(skipString(offset)); // Skip the handle and description
+        ArrayList<Post> list = new ArrayList<Post>(buffer.getInt(offset));
+        for (int id : readIds(offset)){
+            list.add(post(id));
+        }
+        return list;
+    }
+
+    /**
+     * Reads the comments made about a post.
+     * @param postId ID of the post
+     * @return List of the comments about the post, in ID order
+     */
+    @Override
+    public ArrayList<Comment> readComments(int postId){
+        int offset = skipString(postOffset(postId) + messagePosition); // Skip to the end of the message
+        ArrayList<Comment> list = new ArrayList<Comment>(buffer.getInt(offset));
+        for (int id : readIds(offset)){
+            list.add((Comment)post(id));
+        }
+        return list;
+    }
+
+    /**
+     * Reads the endorsements of a post.
+     * @param postId ID of the post
+     * @return List of the endorsements of the post, in ID order
+     */
+    @Override
+    public ArrayList<EndorsementPost> readEndorsements(int postId){
+        int offset = skipString(postOffset(postId) + messagePosition);
+        offset += 4 + 4 * buffer.getInt(offset); // Skip the comment IDs
+        ArrayList<EndorsementPost> list = new ArrayList<EndorsementPost>(buffer.getInt(offset));
+        for (int id : readIds(offset)){
+            list.add((EndorsementPost)post(id));
+        }
+        return list;
+    }
+
+    /**
+     * Reads the post that a comment or endorsement refers to.
+     * @param postId ID of the comment or endorsement
+     * @return The post referred to
+     */
+    @Override
+    public Post readReferencePost(int postId){
+        return post(buffer.getInt(postOffset(postId) + 6));
+    }
+
+    /**
+     * Returns the number of original posts an account had when the file was saved.
+     * @param accountId ID of the account
+     * @return Number of original posts
+     */
+    @Override
+    public int originalPostCountOf(int accountId){
+        return buffer.getInt(accountEntry(accountId) + 12);
+    }
+
+    /**
+     * Returns the total number of posts an account had when the file was saved.
+     * @param accountId ID of the account
+     * @return Number of original posts, comments and endorsements
+     */
+    @Override
+    public int totalPostCountOf(int accountId){
+        return buffer.getInt(accountEntry(accountId) + 16);
+    }
+
+    /**
+     * Returns the number of endorsements the posts of an account had when the file was saved.
+     * @param accountId ID of the account
+     * @return Number of endorsements
+     */
+    @Override
+    public int endorsementCountOf(int accountId){
+        return buffer.getInt(accountEntry(accountId) + 8);
+    }
+
+    /**
+     * Returns the number of endorsements a post had when the file was saved.
+     * @param postId ID of the post
+     * @return Number of endorsements
+     */
+    @Override
+    public int endorsementCountOfPost(int postId){
+        return buffer.getInt(postEntry(postId) + 8);
+    }
+
+    /**
+     * Returns the number of comments, excluding empty ones, a post had when the file was saved.
+     * @param postId ID of the post
+     * @return Number of comments
+     */
+    @Override
+    public int commentCountOf(int postId){
+        return buffer.getInt(postEntry(postId) + 12);
+    }
+
+    /**
+     * Returns the snapshot type tag of a post.
+     * @param postId ID of the post
+     * @return ORIGINAL_POST, COMMENT_POST or ENDORSEMENT_POST
+     */
+    public byte typeOf(int postId){
+        return buffer.get(postEntry(postId) + 16);
+    }
+
+    /**
+     * States whether a post was an empty post when the file was saved.
+     * @param postId ID of the post
+     * @return Boolean value stating whether the post was empty
+     */
+    public boolean isEmptyPost(int postId){
+        return (buffer.get(postEntry(postId) + 17) & PlatformSnapshot.EMPTY_POST_FLAG) != 0;
+    }
+
+    /**
+     * Materialises every account and post in the file, along with their lists and reference posts, so that the
+     * file is no longer needed.
+     */
+    public void materialiseAll(){
+        for (int id = 1; id < nextAccountID; id++){
+            Account a = account(id);
+            if (a != null){
+                a.getPosts();
+            }
+        }
+        for (int id = 1; id < nextPostID; id++){
+            Post p = post(id);
+            if (p != null){
+                p.getComments();
+                p.getEndorsements();
+                if (p instanceof Comment){
+                    ((Comment)p).getReferencePost();
+                } else if (p instanceof EndorsementPost){
+                    ((EndorsementPost)p).getReferencePost();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the follows section, straight after the handle table.
+     * @return Position of the section in the file
+     */
+    private int followsOffset(){
+        return handleTableOffset + handleTableSlots * PlatformSnapshot.HANDLE_SLOT_SIZE;
+    }
+
+    /**
+     * Returns the position of an account table entry.
+     * @param accountId ID of the account
+     * @return Position of the entry in the file
+     */
+    private int accountEntry(int accountId){
+        return accountTableOffset + accountId * PlatformSnapshot.ACCOUNT_ENTRY_SIZE;
+    }
+
+    /**
+     * Returns the position of a post table entry.
+     * @param postId ID of the post
+     * @return Position of the entry in the file
+     */
+    private int postEntry(int postId){
+        return postTableOffset + postId * PlatformSnapshot.POST_ENTRY_SIZE;
+    }
+
+    /**
+     * Returns the position of the record of an account.
+     * @param accountId ID of the account
+     * @return Position of the record in the file, or 0 if the account is not in the file
+     */
+    private int accountOffset(int accountId){
+        if (accountId <= 0 || accountId >= nextAccountID){
+            return 0;
+        }
+        return (int)buffer.getLong(accountEntry(accountId));
+    }
+
+    /**
+     * Returns the position of the record of a post.
+     * @param postId ID of the post
+     * @return Position of the record in the file, or 0 if the post is not in the file
+     */
+    private int postOffset(int postId){
+        if (postId <= 0 || postId >= nextPostID){
+            return 0;
+        }
+        return (int)buffer.getLong(postEntry(postId));
+    }
+
+    /**
+     * Reads a string written as its length in bytes followed by its UTF-8 encoding.
+     * @param offset Position of the length of the string
+     * @return The string, or null if a null string was written
+     */
+    private String readString(int offset){
+        int length = buffer.getInt(offset);
+        if (length < 0){
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the position just after a string.
+     * @param offset Position of the length of the string
+     * @return Position of the value after the string
+     */
+    private int skipString(int offset){
+        return offset + 4 + Math.max(buffer.getInt(offset), 0);
+    }
+
+    /**
+     * Compares a string in the file with the UTF-8 encoding of a handle without decoding the string.
+     * @param offset Position of the length of the string
+     * @param handle UTF-8 encoding of the handle
+     * @return Boolean value stating whether the string is the handle
+     */
+    private boolean handleEquals(int offset, byte[] handle){
+        if (buffer.getInt(offset) != handle.length){
+            return false;
+        }
+        for (int i = 0; i < handle.length; i++){
+            if (buffer.get(offset + 4 + i) != handle[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a list of IDs written as a count followed by the IDs.
+     * @param offset Position of the count
+     * @return Array of the IDs
+     */
+    private int[] readIds(int offset){
+        int[] ids = new int[buffer.getInt(offset)];
+        for (int i = 0; i < ids.length; i++){
+            ids[i] = buffer.getInt(offset + 4 + 4 * i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,131 @@
+package socialmedia;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Holds the messages of many posts as UTF-8 bytes packed into a few large pages, instead of one String object each.
+ * A message is stored as a two byte length followed by its bytes and is referred to by an int offset. Messages
+ * start on four byte boundaries and offsets count in four byte units, so an int offset can address 8 GiB of
+ * messages.
+ * <p>
+ * The pages are direct ByteBuffers, so the messages are held outside the Java heap and the garbage collector never
+ * has to scan or copy them. A message is only turned back into a String when it is read. Direct memory is limited
+ * by -XX:MaxDirectMemorySize, which defaults to the maximum heap size, and the pages are freed once the arena
+ * holding them is cleared or dropped and its buffers are collected.
+ * <p>
+ * Messages are only ever added. The space of a message that is no longer used is not reused until the arena is
+ * cleared and filled again, for example when a platform is saved and loaded.
+ */
+public class MessageArena {
+    /**
+     * The number of bits of an address within a page.
+     */
+    private final static int PAGE_BITS = 20;
+    /**
+     * The size in bytes of each page.
+     */
+    private final static int PAGE_SIZE = 1 << PAGE_BITS;
+    /**
+     * The number of bits dropped from a byte address to make an offset, as messages start on four byte boundaries.
+     */
+    private final static int ALIGNMENT_BITS = 2;
+    /**
+     * The most pages an int offset can address.
+     */
+    private final static int MAX_PAGES = 1 << (31 - PAGE_BITS + ALIGNMENT_BITS);
+    /**
+     * The longest message in bytes that can be stored.
+     */
+    public final static int MAX_MESSAGE_BYTES = 0xFFFF;
+
+    /**
+     * The pages holding the messages. Only the last page is still being filled.
+     */
+    private ByteBuffer[] pages;
+    /**
+     * The number of pages in use.
+     */
+    private int pageCount;
+    /**
+     * The position in the last page where the next message is stored.
+     */
+    private int position;
+
+    /**
+     * Creates an empty arena. No page is allocated until the first message is added.
+     */
+    public MessageArena(){
+        clear();
+    }
+
+    /**
+     * Stores a message.
+     * @param message The message
+     * @return Offset to read the message back with
+     * @throws IllegalArgumentException If the message is longer than MAX_MESSAGE_BYTES once encoded
+     * @throws IllegalStateException If the arena is full
+     */
+    public int add(String message){
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_MESSAGE_BYTES){
+            throw new IllegalArgumentException("Message of " + bytes.length + " bytes is too long to store");
+        }
+        int size = 2 + bytes.length;
+        if (pageCount == 0 || position + size > PAGE_SIZE){
+            addPage();
+        }
+        ByteBuffer page = pages[pageCount - 1];
+        int start = position;
+        page.putShort(start, (short)bytes.length);
+        page.put(start + 2, bytes);
+        position = (start + size + 3) & ~3; // The next message starts on a four byte boundary
+        return ((pageCount - 1) << (PAGE_BITS - ALIGNMENT_BITS)) | (start >>> ALIGNMENT_BITS);
+    }
+
+    /**
+     * Reads a message back.
+     * @param offset Offset returned when the message was stored
+     * @return The message
+     */
+    public String get(int offset){
+        ByteBuffer page = pages[offset >>> (PAGE_BITS - ALIGNMENT_BITS)];
+        int start = (offset << ALIGNMENT_BITS) & (PAGE_SIZE - 1);
+        byte[] bytes = new byte[page.getShort(start) & 0xFFFF];
+        page.get(start + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of bytes of direct memory the pages of the arena take up.
+     * @return Size of the pages in use, in bytes
+     */
+    public long capacity(){
+        return (long)pageCount * PAGE_SIZE;
+    }
+
+    /**
+     * Removes every message and frees the pages.
+     */
+    public void clear(){
+        pages = new ByteBuffer[4];
+        pageCount = 0;
+        position = 0;
+    }
+
+    /**
+     * Starts a new page, as the message being added does not fit in the last one.
+     * @throws IllegalStateException If the arena already has as many pages as an offset can address
+     */
+    private void addPage(){
+        if (pageCount == MAX_PAGES){
+            throw new IllegalStateException("Message arena is full");
+        }
+        if (pageCount == pages.length){
+            pages = Arrays.copyOf(pages, pages.length * 2);
+        }
+        pages[pageCount++] = ByteBuffer.allocateDirect(PAGE_SIZE);
+        position = 0;
+    }
+}
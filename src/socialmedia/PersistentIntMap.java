@@ -0,0 +1,437 @@
+package socialmedia;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An immutable map from int keys to values, stored as a hash array mapped trie. Changing a map returns a new map
+ * that shares every node off the path to the changed key with the old one, so a change copies at most seven small
+ * nodes and the old map stays valid and unchanged. Maps can be read by any number of threads without locking.
+ * <p>
+ * Each level of the trie is indexed by the next five bits of the key, highest bits first, with the two top bits
+ * indexing the root. The dense sequential IDs of accounts and posts made one after another therefore share every
+ * node of their paths but the last, so a builder adding a run of new posts copies each of those nodes once rather
+ * than once per post, and reads of nearby IDs find them in cache. An entry is kept at the highest level where no
+ * other key shares its index. A node only holds the entries and children that are present, found through a bitmap
+ * of the 32 indexes in use.
+ * <p>
+ * Many changes are best made through a {@link Builder}, which changes the nodes it has already copied in place
+ * instead of copying them again, until the map is built.
+ * @param <V> The type of the values, which must not be null
+ */
+public final class PersistentIntMap<V> {
+    /**
+     * The number of bits of the key used at each level of the trie.
+     */
+    private final static int BITS = 5;
+    /**
+     * The mask taking the bits for one level from the key once shifted.
+     */
+    private final static int MASK = (1 << BITS) - 1;
+    /**
+     * The shift taking the bits indexing the root from the key, leaving the bits of the six levels below it.
+     */
+    private final static int ROOT_SHIFT = 6 * BITS;
+    /**
+     * The map with no entries.
+     */
+    private final static PersistentIntMap<Object> EMPTY = new PersistentIntMap<Object>(emptyNode(null), 0);
+
+    /**
+     * The root node of the trie.
+     */
+    private final Node root;
+    /**
+     * The number of entries in the map.
+     */
+    private final int size;
+
+    /**
+     * Creates a map from the root of a trie.
+     * @param root The root node
+     * @param size The number of entries in the trie
+     */
+    private PersistentIntMap(Node root, int size){
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the map with no entries.
+     * @param <V> The type of the values
+     * @return The empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty(){
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     * @return Number of entries
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Returns the value of a key.
+     * @param key The key
+     * @return The value, or null if the key is not in the map
+     */
+    public V get(int key){
+        return find(root, key);
+    }
+
+    /**
+     * Calls an action with every entry of the map, in no particular order.
+     * @param action The action, given the value and the key of each entry
+     */
+    public void forEach(ObjIntConsumer<? super V> action){
+        forEach(root, action);
+    }
+
+    /**
+     * Returns a map with a key set to a value, sharing everything else with this map.
+     * @param key The key
+     * @param value The value, which must not be null
+     * @return The new map, or this map if the key already had the value
+     */
+    public PersistentIntMap<V> with(int key, V value){
+        Builder<V> builder = builder();
+        builder.put(key, value);
+        return builder.root == root ? this : builder.build();
+    }
+
+    /**
+     * Returns a map without a key, sharing everything else with this map.
+     * @param key The key
+     * @return The new map, or this map if the key was not in it
+     */
+    public PersistentIntMap<V> without(int key){
+        Builder<V> builder = builder();
+        builder.remove(key);
+        return builder.root == root ? this : builder.build();
+    }
+
+    /**
+     * Returns a builder that starts from the entries of this map. The map itself is never changed by the builder.
+     * @return The builder
+     */
+    public Builder<V> builder(){
+        return new Builder<V>(root, size);
+    }
+
+    /**
+     * Finds the value of a key in a trie.
+     * @param <V> The type of the values
+     * @param root The root node of the trie
+     * @param key The key
+     * @return The value, or null if the key is not in the trie
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> V find(Node root, int key){
+        Node node = root;
+        for (int shift = ROOT_SHIFT; ; shift -= BITS){
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0){
+                return null;
+            }
+            int index = Integer.bitCount(node.bitmap & (bit - 1));
+            Object slot = node.slots[index];
+            if (!(slot instanceof Node)){
+                return node.keys[index] == key ? (V) slot : null;
+            }
+            node = (Node) slot;
+        }
+    }
+
+    /**
+     * Calls an action with every entry in the trie below a node. The trie is at most seven levels deep.
+     * @param <V> The type of the values
+     * @param node The node
+     * @param action The action, given the value and the key of each entry
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, ObjIntConsumer<? super V> action){
+        for (int i = 0; i < node.slots.length; i++){
+            Object slot = node.slots[i];
+            if (slot instanceof Node){
+                forEach((Node) slot, action);
+            } else{
+                action.accept((V) slot, node.keys[i]);
+            }
+        }
+    }
+
+    /**
+     * Creates a node with no entries.
+     * @param edit The builder allowed to change the node in place, or null
+     * @return The node
+     */
+    private static Node emptyNode(Object edit){
+        return new Node(edit, 0, new int[0], new Object[0]);
+    }
+
+    /**
+     * Makes changes to a map, copying each node the first time it is changed and changing the copy in place after
+     * that. Nodes copied by a builder are only ever changed by that builder before build is called, so the maps it
+     * builds never change. A builder is not thread safe.
+     * @param <V> The type of the values, which must not be null
+     */
+    public final static class Builder<V> {
+        /**
+         * Marks the nodes this builder has copied and so can change in place. Replaced each time a map is built, so
+         * the nodes of a built map are never changed.
+         */
+        private Object edit = new Object();
+        /**
+         * The root node of the trie being built.
+         */
+        private Node root;
+        /**
+         * The number of entries in the trie being built.
+         */
+        private int size;
+
+        /**
+         * Creates a builder starting from a trie.
+         * @param root The root node of the trie
+         * @param size The number of entries in the trie
+         */
+        private Builder(Node root, int size){
+            this.root = root;
+            this.size = size;
+        }
+
+        /**
+         * Returns the number of entries.
+         * @return Number of entries
+         */
+        public int size(){
+            return size;
+        }
+
+        /**
+         * Returns the value of a key.
+         * @param key The key
+         * @return The value, or null if the key is not in the map
+         */
+        public V get(int key){
+            return find(root, key);
+        }
+
+        /**
+         * Sets a key to a value.
+         * @param key The key
+         * @param value The value, which must not be null
+         */
+        public void put(int key, V value){
+            if (value == null){
+                throw new NullPointerException("Values cannot be null");
+            }
+            root = put(root, key, value, ROOT_SHIFT);
+        }
+
+        /**
+         * Removes a key, if it is in the map.
+         * @param key The key
+         */
+        public void remove(int key){
+            Node node = remove(root, key, ROOT_SHIFT);
+            root = node == null ? emptyNode(edit) : node;
+        }
+
+        /**
+         * Returns a map of the entries so far. The builder can go on being used, and copies any node it changes
+         * again, so the map returned never changes.
+         * @return The map
+         */
+        public PersistentIntMap<V> build(){
+            edit = new Object();
+            return new PersistentIntMap<V>(root, size);
+        }
+
+        /**
+         * Sets a key to a value in the trie below a node.
+         * @param node The node
+         * @param key The key
+         * @param value The value
+         * @param shift The shift taking the bits indexing the level of the node from the key
+         * @return The node, or the copy of it that was changed
+         */
+        private Node put(Node node, int key, Object value, int shift){
+            int bit = 1 << ((key >>> shift) & MASK);
+            int index = Integer.bitCount(node.bitmap & (bit - 1));
+            if ((node.bitmap & bit) == 0){ // A new entry at this level
+                size++;
+                int count = node.slots.length;
+                int[] keys = new int[count + 1];
+                Object[] slots = new Object[count + 1];
+                System.arraycopy(node.keys, 0, keys, 0, index);
+                System.arraycopy(node.slots, 0, slots, 0, index);
+                keys[index] = key;
+                slots[index] = value;
+                System.arraycopy(node.keys, index, keys, index + 1, count - index);
+                System.arraycopy(node.slots, index, slots, index + 1, count - index);
+                if (node.edit == edit){
+                    node.bitmap |= bit;
+                    node.keys = keys;
+                    node.slots = slots;
+                    return node;
+                }
+                return new Node(edit, node.bitmap | bit, keys, slots);
+            }
+            Object slot = node.slots[index];
+            Object replacement;
+            if (slot instanceof Node){
+                replacement = put((Node) slot, key, value, shift - BITS);
+            } else if (node.keys[index] == key){
+                replacement = value;
+            } else{ // Another key shares the index at this level, so both move down to a new node
+                size++;
+                replacement = pair(node.keys[index], slot, key, value, shift - BITS);
+            }
+            if (replacement == slot){
+                return node;
+            }
+            Node changed = editable(node);
+            changed.slots[index] = replacement;
+            return changed;
+        }
+
+        /**
+         * Creates the nodes holding two entries whose keys share the indexes of every level above.
+         * @param key1 The key of the first entry
+         * @param value1 The value of the first entry
+         * @param key2 The key of the second entry, which differs from the first
+         * @param value2 The value of the second entry
+         * @param shift The shift taking the bits indexing the level of the node from the keys
+         * @return The node holding both entries
+         */
+        private Node pair(int key1, Object value1, int key2, Object value2, int shift){
+            int index1 = (key1 >>> shift) & MASK;
+            int index2 = (key2 >>> shift) & MASK;
+            if (index1 == index2){ // Keys that differ always differ within the bits of some level
+                return new Node(edit, 1 << index1, new int[1], new Object[]{pair(key1, value1, key2, value2, shift - BITS)});
+            }
+            if (index1 < index2){
+                return new Node(edit, (1 << index1) | (1 << index2), new int[]{key1, key2}, new Object[]{value1, value2});
+            }
+            return new Node(edit, (1 << index1) | (1 << index2), new int[]{key2, key1}, new Object[]{value2, value1});
+        }
+
+        /**
+         * Removes a key from the trie below a node.
+         * @param node The node
+         * @param key The key
+         * @param shift The shift taking the bits indexing the level of the node from the key
+         * @return The node, the copy of it that was changed, or null if no entries are left below it
+         */
+        private Node remove(Node node, int key, int shift){
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0){
+                return node;
+            }
+            int index = Integer.bitCount(node.bitmap & (bit - 1));
+            Object slot = node.slots[index];
+            if (!(slot instanceof Node)){
+                if (node.keys[index] != key){
+                    return node;
+                }
+                size--;
+                return withoutSlot(node, bit, index);
+            }
+            Node child = remove((Node) slot, key, shift - BITS);
+            if (child == slot){
+                return node;
+            }
+            if (child == null){
+                return withoutSlot(node, bit, index);
+            }
+            Node changed = editable(node);
+            if (child.slots.length == 1 && !(child.slots[0] instanceof Node)){ // A single entry moves back up
+                changed.keys[index] = child.keys[0];
+                changed.slots[index] = child.slots[0];
+            } else{
+                changed.slots[index] = child;
+            }
+            return changed;
+        }
+
+        /**
+         * Removes an entry or child from a node.
+         * @param node The node
+         * @param bit The bit of the entry in the bitmap of the node
+         * @param index The position of the entry in the node
+         * @return The node without the entry, or null if it had no other entries
+         */
+        private Node withoutSlot(Node node, int bit, int index){
+            int count = node.slots.length;
+            if (count == 1){
+                return null;
+            }
+            int[] keys = new int[count - 1];
+            Object[] slots = new Object[count - 1];
+            System.arraycopy(node.keys, 0, keys, 0, index);
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            System.arraycopy(node.keys, index + 1, keys, index, count - index - 1);
+            System.arraycopy(node.slots, index + 1, slots, index, count - index - 1);
+            if (node.edit == edit){
+                node.bitmap &= ~bit;
+                node.keys = keys;
+                node.slots = slots;
+                return node;
+            }
+            return new Node(edit, node.bitmap & ~bit, keys, slots);
+        }
+
+        /**
+         * Returns a node this builder can change in place: the node itself if the builder copied it, or else a copy.
+         * @param node The node
+         * @return The node or its copy
+         */
+        private Node editable(Node node){
+            if (node.edit == edit){
+                return node;
+            }
+            return new Node(edit, node.bitmap, node.keys.clone(), node.slots.clone());
+        }
+    }
+
+    /**
+     * A node of the trie. Each present index holds either an entry, a key and its value, or a child node holding
+     * the entries whose keys share the index.
+     */
+    private final static class Node {
+        /**
+         * The builder allowed to change the node in place, or null if the node was never changed by a builder.
+         */
+        final Object edit;
+        /**
+         * The indexes present in the node, one bit each.
+         */
+        int bitmap;
+        /**
+         * The key of each entry, in index order. Unused where the slot holds a child node.
+         */
+        int[] keys;
+        /**
+         * The value of each entry or the child node, in index order.
+         */
+        Object[] slots;
+
+        /**
+         * Creates a node.
+         * @param edit The builder allowed to change the node in place, or null
+         * @param bitmap The indexes present in the node
+         * @param keys The keys of the entries
+         * @param slots The values and child nodes
+         */
+        Node(Object edit, int bitmap, int[] keys, Object[] slots){
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.keys = keys;
+            this.slots = slots;
+        }
+    }
+}
@@ -0,0 +1,1059 @@
+package socialmedia;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Implementor of the SocialMediaPlatform interface where one writer thread makes every change, without locking.
+ * <p>
+ * Callers submit each change as a command to a ring buffer of preallocated slots and are given a
+ * {@link CompletableFuture} of its result; the blocking SocialMediaPlatform methods submit a command and wait for
+ * it. A caller claims the next slot with one atomic increment, fills it and publishes it. When the ring is full,
+ * callers wait for the writer to free a slot, so a writer that falls behind slows the callers down rather than
+ * letting commands pile up.
+ * <p>
+ * The writer takes every command published since it last looked, up to a batch at a time, and applies them in
+ * order to a SocialMedia platform only it touches. Runs of new accounts, posts, comments and endorsements are
+ * applied with one applyBatch call, which looks each handle up once and updates the leaderboards once. At the end of
+ * the batch the journal, if one is open, is committed with one write, one {@link PlatformVersion} is published for
+ * the whole batch, and then the futures are completed. A future therefore completes once its change is durable and
+ * can be read, but actions chained on with the non-async methods of CompletableFuture run on the writer and hold up
+ * every later command, so long running ones should use the async variants.
+ * <p>
+ * Showing accounts, posts and threads and the aggregate getters read the latest published version without waiting,
+ * as in {@link VersionedSocialMedia}. Timelines, follows, searches, the top k leaderboards, saving and loading are
+ * submitted as commands and run on the writer between batches.
+ */
+public class PipelinedSocialMedia implements SocialMediaPlatform, Closeable {
+	/**
+	 * The number of slots in the ring buffer unless another is given.
+	 */
+	public final static int DEFAULT_CAPACITY = 1 << 14;
+	/**
+	 * The largest number of commands applied in one batch, which bounds how long the commands at the start of a
+	 * batch wait for it to be published.
+	 */
+	private final static int MAX_BATCH_SIZE = 4096;
+	/**
+	 * The number of times the writer checks for a new command before it parks.
+	 */
+	private final static int WRITER_SPINS = 100;
+	/**
+	 * How long a caller waiting for a free slot parks before checking again, in nanoseconds.
+	 */
+	private final static long FULL_WAIT_NANOS = 10000;
+	/**
+	 * Added to the claim counter when the platform is closed, so every slot claimed after that is refused.
+	 */
+	private final static long CLOSED = 1L << 62;
+
+	/**
+	 * Command creating an account: first is the handle, second the description.
+	 */
+	private final static byte CREATE_ACCOUNT = 1;
+	/**
+	 * Command creating a post: first is the handle, second the message.
+	 */
+	private final static byte CREATE_POST = 2;
+	/**
+	 * Command commenting on a post: first is the handle, second the message, ID the post commented on.
+	 */
+	private final static byte COMMENT_POST = 3;
+	/**
+	 * Command endorsing a post: first is the handle, ID the post endorsed.
+	 */
+	private final static byte ENDORSE_POST = 4;
+	/**
+	 * Command removing an account by ID.
+	 */
+	private final static byte REMOVE_ACCOUNT = 5;
+	/**
+	 * Command removing an account by handle: first is the handle.
+	 */
+	private final static byte REMOVE_ACCOUNT_BY_HANDLE = 6;
+	/**
+	 * Command changing a handle: first is the old handle, second the new handle.
+	 */
+	private final static byte CHANGE_ACCOUNT_HANDLE = 7;
+	/**
+	 * Command changing a description: first is the handle, second the description.
+	 */
+	private final static byte UPDATE_ACCOUNT_DESCRIPTION = 8;
+	/**
+	 * Command deleting a post: ID is the post.
+	 */
+	private final static byte DELETE_POST = 9;
+	/**
+	 * Command following an account: first is the handle of the follower, second of the account followed.
+	 */
+	private final static byte FOLLOW = 10;
+	/**
+	 * Command unfollowing an account: first is the handle of the follower, second of the account unfollowed.
+	 */
+	private final static byte UNFOLLOW = 11;
+	/**
+	 * Command applying a batch: the argument is the list of operations.
+	 */
+	private final static byte APPLY_BATCH = 12;
+	/**
+	 * Command running any other call on the writer: the argument is the {@link Task}.
+	 */
+	private final static byte TASK = 13;
+
+	/**
+	 * The platform every change is made to. Only used by the writer thread.
+	 */
+	private final SocialMedia platform = new SocialMedia();
+	/**
+	 * The posts and accounts the platform has changed since the latest version was published. Only used by the
+	 * writer thread.
+	 */
+	private final ChangeSet changes = new ChangeSet();
+	/**
+	 * The slots of the ring buffer, reused for command sequence numbers that are equal modulo the capacity.
+	 */
+	private final Command[] ring;
+	/**
+	 * The capacity of the ring minus one, masking a sequence number to its slot.
+	 */
+	private final int mask;
+	/**
+	 * The sequence number of the next slot to be claimed, plus {@link #CLOSED} once the platform is closed.
+	 */
+	private final AtomicLong claimed = new AtomicLong();
+	/**
+	 * The sequence number of the first command the writer has not finished with. Every slot before it is free.
+	 */
+	private volatile long consumed;
+	/**
+	 * The sequence number the writer stops at, the number of slots claimed before closing, or Long.MAX_VALUE while
+	 * the platform is open.
+	 */
+	private volatile long closedAt = Long.MAX_VALUE;
+	/**
+	 * A flag to indicate whether the writer is parked, or about to park, waiting for a command.
+	 */
+	private volatile boolean writerWaiting;
+	/**
+	 * The thread applying the commands.
+	 */
+	private final Thread writer;
+	/**
+	 * The latest published version.
+	 */
+	private volatile PlatformVersion version = PlatformVersion.empty();
+
+	/**
+	 * The operations of the run of commands the writer is about to apply with one applyBatch call. Only used by the
+	 * writer thread.
+	 */
+	private final ArrayList<BatchOperation> run = new ArrayList<BatchOperation>();
+	/**
+	 * The futures of the batch being applied, copied out of their slots. Only used by the writer thread.
+	 */
+	private final CompletableFuture<?>[] futures;
+	/**
+	 * The result of each command of the batch being applied. Only used by the writer thread.
+	 */
+	private final Object[] results;
+	/**
+	 * The exception thrown by each command of the batch being applied, or null. Only used by the writer thread.
+	 */
+	private final Throwable[] errors;
+
+	/**
+	 * Creates an empty platform with a ring buffer of the default capacity.
+	 */
+	public PipelinedSocialMedia(){
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty platform and starts its writer thread.
+	 * @param capacity The number of slots in the ring buffer, a power of two
+	 */
+	public PipelinedSocialMedia(int capacity){
+		if (capacity < 1 || Integer.bitCount(capacity) != 1){
+			throw new IllegalArgumentException("The capacity must be a power of two");
+		}
+		ring = new Command[capacity];
+		for (int i = 0; i < capacity; i++){
+			ring[i] = new Command(i - capacity); // No slot is published until its first command
+		}
+		mask = capacity - 1;
+		int batchSize = Math.min(capacity, MAX_BATCH_SIZE);
+		futures = new CompletableFuture<?>[batchSize];
+		results = new Object[batchSize];
+		errors = new Throwable[batchSize];
+		platform.trackChanges(changes);
+		writer = new Thread(this::runWriter, "platform-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Returns the latest published version of the platform. The version never changes, so reads made against it
+	 * all see the same platform, however many changes are made meanwhile.
+	 * @return The latest version
+	 */
+	public PlatformVersion getVersion(){
+		return version;
+	}
+
+	/**
+	 * Submits the creation of an account.
+	 * @param handle Handle of the account
+	 * @param description Description of the account
+	 * @return The ID of the account, or the exception createAccount would throw
+	 */
+	public CompletableFuture<Integer> createAccountAsync(String handle, String description){
+		return submit(CREATE_ACCOUNT, handle, description, 0, null);
+	}
+
+	/**
+	 * Submits the creation of a post.
+	 * @param handle Handle of the account posting
+	 * @param message Message of the post
+	 * @return The ID of the post, or the exception createPost would throw
+	 */
+	public CompletableFuture<Integer> createPostAsync(String handle, String message){
+		return submit(CREATE_POST, handle, message, 0, null);
+	}
+
+	/**
+	 * Submits a comment on a post.
+	 * @param handle Handle of the account commenting
+	 * @param id ID of the post commented on
+	 * @param message Message of the comment
+	 * @return The ID of the comment, or the exception commentPost would throw
+	 */
+	public CompletableFuture<Integer> commentPostAsync(String handle, int id, String message){
+		return submit(COMMENT_POST, handle, message, id, null);
+	}
+
+	/**
+	 * Submits the endorsement of a post.
+	 * @param handle Handle of the account endorsing
+	 * @param id ID of the post endorsed
+	 * @return The ID of the endorsement, or the exception endorsePost would throw
+	 */
+	public CompletableFuture<Integer> endorsePostAsync(String handle, int id){
+		return submit(ENDORSE_POST, handle, null, id, null);
+	}
+
+	/**
+	 * Submits the removal of an account.
+	 * @param handle Handle of the account
+	 * @return Completed once the account is removed, or with the exception removeAccount would throw
+	 */
+	public CompletableFuture<Void> removeAccountAsync(String handle){
+		return submit(REMOVE_ACCOUNT_BY_HANDLE, handle, null, 0, null);
+	}
+
+	/**
+	 * Submits the change of a handle.
+	 * @param oldHandle Handle of the account
+	 * @param newHandle New handle of the account
+	 * @return Completed once the handle is changed, or with the exception changeAccountHandle would throw
+	 */
+	public CompletableFuture<Void> changeAccountHandleAsync(String oldHandle, String newHandle){
+		return submit(CHANGE_ACCOUNT_HANDLE, oldHandle, newHandle, 0, null);
+	}
+
+	/**
+	 * Submits the change of a description.
+	 * @param handle Handle of the account
+	 * @param description New description of the account
+	 * @return Completed once the description is changed, or with the exception updateAccountDescription would throw
+	 */
+	public CompletableFuture<Void> updateAccountDescriptionAsync(String handle, String description){
+		return submit(UPDATE_ACCOUNT_DESCRIPTION, handle, description, 0, null);
+	}
+
+	/**
+	 * Submits the deletion of a post.
+	 * @param id ID of the post
+	 * @return Completed once the post is deleted, or with the exception deletePost would throw
+	 */
+	public CompletableFuture<Void> deletePostAsync(int id){
+		return submit(DELETE_POST, null, null, id, null);
+	}
+
+	/**
+	 * Submits a follow.
+	 * @param handle Handle of the follower
+	 * @param followeeHandle Handle of the account followed
+	 * @return Whether the follow was new, or the exception follow would throw
+	 */
+	public CompletableFuture<Boolean> followAsync(String handle, String followeeHandle){
+		return submit(FOLLOW, handle, followeeHandle, 0, null);
+	}
+
+	/**
+	 * Submits an unfollow.
+	 * @param handle Handle of the follower
+	 * @param followeeHandle Handle of the account unfollowed
+	 * @return Whether the account was followed, or the exception unfollow would throw
+	 */
+	public CompletableFuture<Boolean> unfollowAsync(String handle, String followeeHandle){
+		return submit(UNFOLLOW, handle, followeeHandle, 0, null);
+	}
+
+	/**
+	 * Submits a batch, which is applied as one command.
+	 * @param operations The batch
+	 * @return The results of the batch
+	 */
+	public CompletableFuture<BatchResult> applyBatchAsync(List<BatchOperation> operations){
+		return submit(APPLY_BATCH, null, null, 0, operations);
+	}
+
+	/**
+	 * Starts recording every change in a journal, as SocialMedia.openJournal does. Records are committed at the end
+	 * of each batch, with one write for the whole batch, before the futures of the batch are completed.
+	 * @param snapshotFile location of the snapshot file checkpoints are saved to
+	 * @param journalFile location of the journal file
+	 * @param fsync whether each batch of records is forced to the storage device
+	 * @param checkpointInterval number of records after which a checkpoint is taken, or 0 to only take
+	 *                           checkpoints when the journal is opened
+	 * @throws IOException if the files cannot be read or written, or the journal cannot be replayed
+	 * @throws ClassNotFoundException if required class files cannot be found when loading
+	 */
+	public void openJournal(String snapshotFile, String journalFile, boolean fsync, int checkpointInterval)
+			throws IOException, ClassNotFoundException {
+		try{
+			call(p -> {
+				p.openJournal(snapshotFile, journalFile, MAX_BATCH_SIZE, fsync, checkpointInterval);
+				return null;
+			});
+		} catch (IOException | ClassNotFoundException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	/**
+	 * Commits any remaining journal records and stops journaling changes. Does nothing if no journal is open.
+	 * @throws IOException if the records cannot be written or the journal file cannot be closed
+	 */
+	public void closeJournal() throws IOException {
+		try{
+			call(p -> {
+				p.closeJournal();
+				return null;
+			});
+		} catch (IOException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	/**
+	 * Applies every command submitted so far, closes the journal and stops the writer. Commands submitted after
+	 * this are refused with an IllegalStateException.
+	 * @throws IOException if the journal cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closedAt != Long.MAX_VALUE){
+			return;
+		}
+		try{
+			closeJournal();
+		} finally{
+			closedAt = claimed.getAndAdd(CLOSED);
+			LockSupport.unpark(writer);
+			boolean interrupted = false;
+			while (writer.isAlive()){
+				try{
+					writer.join();
+				} catch (InterruptedException e){
+					interrupted = true;
+				}
+			}
+			if (interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Puts a command in the next slot of the ring, waiting for the slot to be free, and wakes the writer if it is
+	 * waiting.
+	 * @param <T> The type of the result
+	 * @param operation The kind of command
+	 * @param first The first string argument, or null
+	 * @param second The second string argument, or null
+	 * @param id The ID argument, or 0
+	 * @param argument Any other argument, or null
+	 * @return The future of the result
+	 * @throws IllegalStateException If the platform has been closed
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> submit(byte operation, String first, String second, int id, Object argument){
+		long sequence = claimed.getAndIncrement();
+		if (sequence >= CLOSED){
+			throw new IllegalStateException("The platform has been closed");
+		}
+		while (sequence - consumed >= ring.length){ // The ring is full until the writer frees this slot
+			LockSupport.parkNanos(FULL_WAIT_NANOS);
+		}
+		CompletableFuture<Object> result = new CompletableFuture<Object>();
+		Command command = ring[(int) sequence & mask];
+		command.operation = operation;
+		command.first = first;
+		command.second = second;
+		command.id = id;
+		command.argument = argument;
+		command.result = result;
+		command.published = sequence; // Publishes the fields above to the writer
+		if (writerWaiting){
+			LockSupport.unpark(writer);
+		}
+		return (CompletableFuture<T>) (CompletableFuture<?>) result;
+	}
+
+	/**
+	 * Runs a task on the writer and waits for its result.
+	 * @param task The task
+	 * @return The result of the task
+	 * @throws Exception The exception thrown by the task
+	 */
+	private Object call(Task task) throws Exception {
+		return await(submit(TASK, null, null, 0, task));
+	}
+
+	/**
+	 * Waits for a result.
+	 * @param result The future of the result
+	 * @return The result
+	 * @throws Exception The exception the command threw
+	 */
+	private static Object await(CompletableFuture<?> result) throws Exception {
+		try{
+			return result.join();
+		} catch (CompletionException e){
+			if (e.getCause() instanceof Exception){
+				throw (Exception) e.getCause();
+			}
+			throw (Error) e.getCause();
+		}
+	}
+
+	/**
+	 * Wraps an exception a command cannot throw, which would be a bug in the platform.
+	 * @param e The exception
+	 * @return The exception to throw
+	 */
+	private static IllegalStateException unexpected(Exception e){
+		return new IllegalStateException("Unexpected exception from the platform", e);
+	}
+
+	/**
+	 * Applies the commands in batches as they are published, until the platform is closed and every command
+	 * claimed before that has been applied.
+	 */
+	private void runWriter(){
+		long next = 0;
+		while (true){
+			int count = 0;
+			while (count < results.length && ring[(int) (next + count) & mask].published == next + count){
+				count++;
+			}
+			if (count > 0){
+				applyCommands(next, count);
+				next += count;
+			} else if (next == closedAt){
+				return;
+			} else{
+				awaitCommand(next);
+			}
+		}
+	}
+
+	/**
+	 * Waits until a command is published, spinning briefly before parking.
+	 * @param sequence The sequence number of the command
+	 */
+	private void awaitCommand(long sequence){
+		Command command = ring[(int) sequence & mask];
+		for (int i = 0; i < WRITER_SPINS; i++){
+			if (command.published == sequence){
+				return;
+			}
+			Thread.onSpinWait();
+		}
+		writerWaiting = true;
+		if (command.published != sequence && closedAt == Long.MAX_VALUE){ // Checked again after setting the flag, which callers read after publishing
+			LockSupport.park(this);
+		}
+		writerWaiting = false;
+	}
+
+	/**
+	 * Applies a batch of published commands, commits the journal, publishes the version they make and completes
+	 * their futures.
+	 * @param first The sequence number of the first command
+	 * @param count The number of commands
+	 */
+	private void applyCommands(long first, int count){
+		for (int i = 0; i < count; i++){
+			Command command = ring[(int) (first + i) & mask];
+			if (isBatchable(command)){
+				run.add(toOperation(command));
+				continue;
+			}
+			applyRun(first, i);
+			try{
+				results[i] = applyCommand(command);
+			} catch (Throwable e){
+				errors[i] = e;
+			}
+		}
+		applyRun(first, count);
+		try{
+			platform.commitJournal();
+		} catch (IOException e){ // The changes of the batch were made but are not durable
+			for (int i = 0; i < count; i++){
+				if (errors[i] == null){
+					errors[i] = e;
+				}
+			}
+		}
+		if (changes.isReplaced() || changes.getPostCount() > 0 || changes.getAccountCount() > 0){
+			version = version.next(platform, changes);
+			changes.clear();
+		}
+
+		for (int i = 0; i < count; i++){
+			Command command = ring[(int) (first + i) & mask];
+			futures[i] = command.result;
+			command.first = null;
+			command.second = null;
+			command.argument = null;
+			command.result = null;
+		}
+		consumed = first + count; // Frees the slots for the callers
+		for (int i = 0; i < count; i++){
+			@SuppressWarnings("unchecked")
+			CompletableFuture<Object> result = (CompletableFuture<Object>) futures[i];
+			if (errors[i] == null){
+				result.complete(results[i]);
+			} else{
+				result.completeExceptionally(errors[i]);
+			}
+			futures[i] = null;
+			results[i] = null;
+			errors[i] = null;
+		}
+	}
+
+	/**
+	 * States whether a command can be applied as part of an applyBatch call and give the same result as applying
+	 * it on its own. Commands whose handle or message is malformed are applied on their own, as a batch checks the
+	 * message before it looks the account up.
+	 * @param command The command
+	 * @return Whether the command can be batched
+	 */
+	private static boolean isBatchable(Command command){
+		switch (command.operation){
+			case CREATE_ACCOUNT:
+				try{
+					Account.validateHandleFormat(command.first);
+					return true;
+				} catch (InvalidHandleException | RuntimeException e){
+					return false;
+				}
+			case CREATE_POST:
+			case COMMENT_POST:
+				try{
+					Post.validateMessage(command.second);
+					return true;
+				} catch (InvalidPostException | RuntimeException e){
+					return false;
+				}
+			case ENDORSE_POST:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Returns the batch operation of a command that can be batched.
+	 * @param command The command
+	 * @return The operation
+	 */
+	private static BatchOperation toOperation(Command command){
+		switch (command.operation){
+			case CREATE_ACCOUNT:
+				return BatchOperation.createAccount(command.first, command.second);
+			case CREATE_POST:
+				return BatchOperation.createPost(command.first, command.second);
+			case COMMENT_POST:
+				return BatchOperation.commentPost(command.first, command.id, command.second);
+			default:
+				return BatchOperation.endorsePost(command.first, command.id);
+		}
+	}
+
+	/**
+	 * Applies the run of batchable commands just before a command with one applyBatch call, if there is a run.
+	 * @param first The sequence number of the first command of the batch being applied
+	 * @param end The position in the batch of the command after the run
+	 */
+	private void applyRun(long first, int end){
+		int size = run.size();
+		if (size == 0){
+			return;
+		}
+		int start = end - size;
+		try{
+			BatchResult result = platform.applyBatch(run);
+			for (int i = 0; i < size; i++){
+				if (result.isSuccess(i)){
+					results[start + i] = result.getId(i);
+				} else{
+					errors[start + i] = result.getError(i);
+				}
+			}
+		} catch (RuntimeException e){ // Such as a journal that cannot be written
+			for (int i = 0; i < size; i++){
+				errors[start + i] = e;
+			}
+		}
+		run.clear();
+	}
+
+	/**
+	 * Applies a command on its own.
+	 * @param command The command
+	 * @return The result of the command
+	 * @throws Exception The exception the platform method threw
+	 */
+	private Object applyCommand(Command command) throws Exception {
+		switch (command.operation){
+			case CREATE_ACCOUNT:
+				return platform.createAccount(command.first, command.second);
+			case CREATE_POST:
+				return platform.createPost(command.first, command.second);
+			case COMMENT_POST:
+				return platform.commentPost(command.first, command.id, command.second);
+			case ENDORSE_POST:
+				return platform.endorsePost(command.first, command.id);
+			case REMOVE_ACCOUNT:
+				platform.removeAccount(command.id);
+				return null;
+			case REMOVE_ACCOUNT_BY_HANDLE:
+				platform.removeAccount(command.first);
+				return null;
+			case CHANGE_ACCOUNT_HANDLE:
+				platform.changeAccountHandle(command.first, command.second);
+				return null;
+			case UPDATE_ACCOUNT_DESCRIPTION:
+				platform.updateAccountDescription(command.first, command.second);
+				return null;
+			case DELETE_POST:
+				platform.deletePost(command.id);
+				return null;
+			case FOLLOW:
+				return platform.follow(command.first, command.second);
+			case UNFOLLOW:
+				return platform.unfollow(command.first, command.second);
+			case APPLY_BATCH: {
+				@SuppressWarnings("unchecked")
+				List<BatchOperation> operations = (List<BatchOperation>) command.argument;
+				return platform.applyBatch(operations);
+			}
+			default:
+				return ((Task) command.argument).run(platform);
+		}
+	}
+
+	@Override
+	public int createAccount(String handle) throws IllegalHandleException, InvalidHandleException {
+		return createAccount(handle, "");
+	}
+
+	@Override
+	public int createAccount(String handle, String description) throws IllegalHandleException, InvalidHandleException {
+		try{
+			return (Integer) await(createAccountAsync(handle, description));
+		} catch (IllegalHandleException | InvalidHandleException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public void removeAccount(int id) throws AccountIDNotRecognisedException {
+		try{
+			await(submit(REMOVE_ACCOUNT, null, null, id, null));
+		} catch (AccountIDNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public void removeAccount(String handle) throws HandleNotRecognisedException {
+		try{
+			await(removeAccountAsync(handle));
+		} catch (HandleNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public void changeAccountHandle(String oldHandle, String newHandle)
+			throws HandleNotRecognisedException, IllegalHandleException, InvalidHandleException {
+		try{
+			await(changeAccountHandleAsync(oldHandle, newHandle));
+		} catch (HandleNotRecognisedException | IllegalHandleException | InvalidHandleException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public void updateAccountDescription(String handle, String description) throws HandleNotRecognisedException {
+		try{
+			await(updateAccountDescriptionAsync(handle, description));
+		} catch (HandleNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public String showAccount(String handle) throws HandleNotRecognisedException {
+		return version.showAccount(handle);
+	}
+
+	@Override
+	public int createPost(String handle, String message) throws HandleNotRecognisedException, InvalidPostException {
+		try{
+			return (Integer) await(createPostAsync(handle, message));
+		} catch (HandleNotRecognisedException | InvalidPostException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public int endorsePost(String handle, int id)
+			throws HandleNotRecognisedException, PostIDNotRecognisedException, NotActionablePostException {
+		try{
+			return (Integer) await(endorsePostAsync(handle, id));
+		} catch (HandleNotRecognisedException | PostIDNotRecognisedException | NotActionablePostException
+				| RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public int commentPost(String handle, int id, String message) throws HandleNotRecognisedException,
+			PostIDNotRecognisedException, NotActionablePostException, InvalidPostException {
+		try{
+			return (Integer) await(commentPostAsync(handle, id, message));
+		} catch (HandleNotRecognisedException | PostIDNotRecognisedException | NotActionablePostException
+				| InvalidPostException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public BatchResult applyBatch(List<BatchOperation> operations){
+		try{
+			return (BatchResult) await(applyBatchAsync(operations));
+		} catch (RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public void deletePost(int id) throws PostIDNotRecognisedException {
+		try{
+			await(deletePostAsync(id));
+		} catch (PostIDNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public String showIndividualPost(int id) throws PostIDNotRecognisedException {
+		return version.showIndividualPost(id);
+	}
+
+	@Override
+	public StringBuilder showPostChildrenDetails(int id)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		return version.showPostChildrenDetails(id);
+	}
+
+	@Override
+	public void showPostChildrenDetails(int id, Appendable out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		version.showPostChildrenDetails(id, out);
+	}
+
+	@Override
+	public void showPostChildrenDetails(int id, WritableByteChannel channel)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		version.showPostChildrenDetails(id, channel);
+	}
+
+	@Override
+	public ThreadPage getThreadPage(int id, String cursor, int limit, int maxDepth, int maxChildren)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		return version.getThreadPage(id, cursor, limit, maxDepth, maxChildren);
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		return getTimeline(handle, cursor, limit, Timeline.ALL_POSTS);
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit, int types) throws HandleNotRecognisedException {
+		try{
+			return (TimelinePage) call(p -> p.getTimeline(handle, cursor, limit, types));
+		} catch (HandleNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public boolean follow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		try{
+			return (Boolean) await(followAsync(handle, followeeHandle));
+		} catch (HandleNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public boolean unfollow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		try{
+			return (Boolean) await(unfollowAsync(handle, followeeHandle));
+		} catch (HandleNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public int getFollowerCount(String handle) throws HandleNotRecognisedException {
+		try{
+			return (Integer) call(p -> p.getFollowerCount(handle));
+		} catch (HandleNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public int getFollowingCount(String handle) throws HandleNotRecognisedException {
+		try{
+			return (Integer) call(p -> p.getFollowingCount(handle));
+		} catch (HandleNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public TimelinePage getHomeTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		try{
+			return (TimelinePage) call(p -> p.getHomeTimeline(handle, cursor, limit));
+		} catch (HandleNotRecognisedException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public int[] searchPosts(String query, int limit) {
+		return (int[]) callUnchecked(p -> p.searchPosts(query, limit));
+	}
+
+	@Override
+	public int getNumberOfAccounts() {
+		return version.getNumberOfAccounts();
+	}
+
+	@Override
+	public int getTotalOriginalPosts() {
+		return version.getTotalOriginalPosts();
+	}
+
+	@Override
+	public int getTotalEndorsmentPosts() {
+		return version.getTotalEndorsmentPosts();
+	}
+
+	@Override
+	public int getTotalCommentPosts() {
+		return version.getTotalCommentPosts();
+	}
+
+	@Override
+	public int getMostEndorsedPost() {
+		return version.getMostEndorsedPost();
+	}
+
+	@Override
+	public int getMostEndorsedAccount() {
+		return version.getMostEndorsedAccount();
+	}
+
+	@Override
+	public int[] getTopEndorsedPosts(int k) {
+		return (int[]) callUnchecked(p -> p.getTopEndorsedPosts(k));
+	}
+
+	@Override
+	public int[] getTopEndorsedAccounts(int k) {
+		return (int[]) callUnchecked(p -> p.getTopEndorsedAccounts(k));
+	}
+
+	@Override
+	public void erasePlatform() {
+		callUnchecked(p -> {
+			p.erasePlatform();
+			return null;
+		});
+	}
+
+	@Override
+	public void savePlatform(String filename) throws IOException {
+		try{
+			call(p -> {
+				p.savePlatform(filename);
+				return null;
+			});
+		} catch (IOException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	@Override
+	public void loadPlatform(String filename) throws IOException, ClassNotFoundException {
+		try{
+			call(p -> {
+				p.loadPlatform(filename);
+				return null;
+			});
+		} catch (IOException | ClassNotFoundException | RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	/**
+	 * Runs a task that throws no checked exception on the writer and waits for its result.
+	 * @param task The task
+	 * @return The result of the task
+	 */
+	private Object callUnchecked(Task task){
+		try{
+			return call(task);
+		} catch (RuntimeException e){
+			throw e;
+		} catch (Exception e){
+			throw unexpected(e);
+		}
+	}
+
+	/**
+	 * A call made on the writer thread, which has the platform to itself while it runs.
+	 */
+	private interface Task {
+		/**
+		 * Makes the call.
+		 * @param platform The platform
+		 * @return The result of the call
+		 * @throws Exception The exception the call threw
+		 */
+		Object run(SocialMedia platform) throws Exception;
+	}
+
+	/**
+	 * A slot of the ring buffer, holding the command with the latest sequence number given to the slot. The
+	 * fields are written by the caller that claimed the sequence number before it publishes the slot, and read by
+	 * the writer after it sees the slot published.
+	 */
+	private final static class Command {
+		/**
+		 * The sequence number of the command the slot holds, once its fields are filled in.
+		 */
+		volatile long published;
+		/**
+		 * The kind of command.
+		 */
+		byte operation;
+		/**
+		 * The first string argument, or null.
+		 */
+		String first;
+		/**
+		 * The second string argument, or null.
+		 */
+		String second;
+		/**
+		 * The ID argument, or 0.
+		 */
+		int id;
+		/**
+		 * Any other argument, or null.
+		 */
+		Object argument;
+		/**
+		 * The future of the result, completed by the writer.
+		 */
+		CompletableFuture<Object> result;
+
+		/**
+		 * Creates an empty slot.
+		 * @param published A sequence number no command of the slot will have
+		 */
+		Command(long published){
+			this.published = published;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package socialmedia;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A connection to a {@link PlatformServer}. Requests are given as the command name and its arguments, and answered
+ * with the fields of the answer line, the first of which is {@link PlatformServer#OK}, {@link PlatformServer#ERROR}
+ * or {@link PlatformServer#BUSY}. Several requests can be sent before their answers are received, which saves a round
+ * trip for each. A client is not thread safe.
+ */
+public class PlatformClient implements Closeable{
+    /**
+     * The connection to the server.
+     */
+    private final Socket socket;
+    /**
+     * The answers from the server.
+     */
+    private final BufferedReader in;
+    /**
+     * The requests to the server, written when the answers are next waited for.
+     */
+    private final Writer out;
+    /**
+     * The request line being built.
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Connects to a server.
+     * @param host The name or address of the server
+     * @param port The port the server listens on
+     * @throws IOException If the server cannot be reached
+     */
+    public PlatformClient(String host, int port) throws IOException{
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a request and waits for its answer.
+     * @param fields The command name and its arguments
+     * @return The fields of the answer
+     * @throws IOException If the connection fails or the server closes it
+     */
+    public String[] request(String... fields) throws IOException{
+        send(fields);
+        return receive();
+    }
+
+    /**
+     * Sends a request without waiting for its answer, which must later be received in the order sent.
+     * @param fields The command name and its arguments
+     * @throws IOException If the connection fails
+     */
+    public void send(String... fields) throws IOException{
+        line.setLength(0);
+        line.append(fields[0]);
+        for (int i = 1; i < fields.length; i++){
+            PlatformServer.appendField(line, fields[i]);
+        }
+        line.append('\n');
+        out.append(line);
+    }
+
+    /**
+     * Waits for the answer to the earliest request sent but not yet received.
+     * @return The fields of the answer
+     * @throws IOException If the connection fails or the server closes it
+     */
+    public String[] receive() throws IOException{
+        out.flush();
+        String answer = in.readLine();
+        if (answer == null){
+            throw new EOFException("The server closed the connection");
+        }
+        return PlatformServer.splitFields(answer);
+    }
+
+    /**
+     * Closes the connection.
+     * @throws IOException If the connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException{
+        socket.close();
+    }
+}
@@ -0,0 +1,981 @@
+package socialmedia;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small embedded server giving network clients access to a SocialMediaPlatform over TCP, so a platform can be
+ * shared and load tested without any other service. The platform must be safe to call from many threads, such as
+ * {@link VersionedSocialMedia} or {@link ConcurrentSocialMedia}.
+ * <p>
+ * The protocol is line based. Each request is one line of UTF-8 text holding the name of a command and its
+ * arguments, separated by tabs, and is answered by one line in the same form:
+ * <pre>
+ * OK [values...]                      the call succeeded, with its results
+ * ERR exception message               the call threw, named by the simple class name of the exception
+ * BUSY reason                         the request was not admitted and can be retried later
+ * </pre>
+ * Backslashes, tabs and line breaks within a field are escaped as \\, \t, \n and \r. An empty cursor field stands
+ * for the first page. A client may send several requests without waiting for the answers, which come back in order.
+ * <p>
+ * The server listens on the loopback address unless it is given another, so it is not reachable from other machines
+ * by accident. The limits of the page commands are cut down to {@link #MAX_PAGE_POSTS} posts and
+ * {@link #MAX_THREAD_DEPTH} levels, and SHOW_POST_CHILDREN fails for a thread longer than {@link #MAX_THREAD_LENGTH}
+ * characters, which has to be fetched with THREAD_PAGE instead, so no answer grows without bound.
+ * <p>
+ * Each connection is served by a thread of its own, which reads the next request only after answering the last, so
+ * a client sending faster than it is answered is slowed down by its own connection. Only so many connections are
+ * admitted at once; any more are answered BUSY and closed. Only so many requests are run at once, of which at most
+ * half can change the platform, so that writers queued behind the platform's locks never hold every place and keep
+ * the readers out. A request that waits too long for a place is answered BUSY. Saving takes no place at all, as it
+ * can block for a long time, but only one save runs at once.
+ * <p>
+ * The commands, named after the operations of the {@link Journal} where there is one, are:
+ * <pre>
+ * PING
+ * CREATE_ACCOUNT handle [description]   -> ID
+ * REMOVE_ACCOUNT handle
+ * CHANGE_ACCOUNT_HANDLE oldHandle newHandle
+ * UPDATE_ACCOUNT_DESCRIPTION handle description
+ * SHOW_ACCOUNT handle                   -> text
+ * CREATE_POST handle message            -> ID
+ * ENDORSE_POST handle id                -> ID
+ * COMMENT_POST handle id message        -> ID
+ * DELETE_POST id
+ * SHOW_POST id                          -> text
+ * SHOW_POST_CHILDREN id                 -> text
+ * THREAD_PAGE id cursor limit maxDepth maxChildren   -> text, post count, next cursor
+ * TIMELINE handle cursor limit          -> text, post count, next cursor
+ * HOME_TIMELINE handle cursor limit     -> text, post count, next cursor
+ * FOLLOW handle followeeHandle          -> whether the follow was new
+ * UNFOLLOW handle followeeHandle        -> whether the account was followed
+ * FOLLOWER_COUNT handle                 -> count
+ * FOLLOWING_COUNT handle                -> count
+ * SEARCH query limit                    -> IDs
+ * TOTALS                                -> accounts, original posts, endorsements, comments
+ * MOST_ENDORSED_POST                    -> ID
+ * MOST_ENDORSED_ACCOUNT                 -> ID
+ * TOP_ENDORSED_POSTS k                  -> IDs
+ * TOP_ENDORSED_ACCOUNTS k               -> IDs
+ * SAVE                                  saves to the snapshot file the server was given
+ * </pre>
+ */
+public class PlatformServer implements Closeable{
+    /**
+     * The first field of the answer to a request that succeeded.
+     */
+    public final static String OK = "OK";
+    /**
+     * The first field of the answer to a request whose call threw an exception.
+     */
+    public final static String ERROR = "ERR";
+    /**
+     * The first field of the answer to a request that was not admitted.
+     */
+    public final static String BUSY = "BUSY";
+    /**
+     * The longest request line accepted, in characters. A connection sending a longer one is closed.
+     */
+    public final static int MAX_REQUEST_LENGTH = 64 * 1024;
+    /**
+     * The longest thread SHOW_POST_CHILDREN answers with, in characters. A longer one fails and is read with
+     * THREAD_PAGE instead.
+     */
+    public final static int MAX_THREAD_LENGTH = 1024 * 1024;
+    /**
+     * The most posts or IDs a page, search or top list holds. Larger limits asked for are cut down to this.
+     */
+    public final static int MAX_PAGE_POSTS = 1000;
+    /**
+     * The most levels of comments THREAD_PAGE shows below a post. Deeper limits asked for are cut down to this, as
+     * every level indents the lines below it further.
+     */
+    public final static int MAX_THREAD_DEPTH = 64;
+    /**
+     * The port the server listens on unless another is given.
+     */
+    public final static int DEFAULT_PORT = 7070;
+    /**
+     * How long a connection can stay idle before it is closed, in milliseconds.
+     */
+    private final static int IDLE_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    /**
+     * The stack size of the connection threads. Requests never recurse deeply, so a small stack lets many
+     * connections be served without reserving much memory.
+     */
+    private final static long CONNECTION_STACK_SIZE = 256 * 1024;
+    /**
+     * The largest answer buffer a connection keeps between requests, in characters. A buffer grown larger by a long
+     * answer is dropped once the answer is written.
+     */
+    private final static int RETAINED_RESPONSE_CAPACITY = 64 * 1024;
+
+    /**
+     * The platform the requests are made to.
+     */
+    private final SocialMediaPlatform platform;
+    /**
+     * The address to listen on.
+     */
+    private final InetAddress bindAddress;
+    /**
+     * The port to listen on, or 0 for any free port.
+     */
+    private final int requestedPort;
+    /**
+     * The file SAVE writes the platform to, or null if saving is not allowed.
+     */
+    private final String snapshotFilename;
+    /**
+     * The places of connections that can be open at once.
+     */
+    private final Semaphore connectionPermits;
+    /**
+     * The places of requests that can run at once.
+     */
+    private final Semaphore requestPermits;
+    /**
+     * The places of requests changing the platform that can run at once, half of the request places.
+     */
+    private final Semaphore writePermits;
+    /**
+     * The place of the one save that can run at once.
+     */
+    private final Semaphore savePermit = new Semaphore(1);
+    /**
+     * How long a request waits for a place before it is answered BUSY, in milliseconds.
+     */
+    private final long admissionTimeoutMillis;
+    /**
+     * The sockets of the open connections, closed when the server is.
+     */
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    /**
+     * The number of connections admitted.
+     */
+    private final LongAdder acceptedConnections = new LongAdder();
+    /**
+     * The number of connections turned away.
+     */
+    private final LongAdder rejectedConnections = new LongAdder();
+    /**
+     * The number of requests answered, including those answered BUSY.
+     */
+    private final LongAdder requests = new LongAdder();
+    /**
+     * The number of requests answered BUSY.
+     */
+    private final LongAdder busyRequests = new LongAdder();
+    /**
+     * The socket connections are accepted from, or null before the server is started.
+     */
+    private volatile ServerSocket serverSocket;
+    /**
+     * A flag to indicate whether the server has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a server listening on the loopback address, with room for 1024 connections and twice as many running
+     * requests as there are processors, which wait up to 100 milliseconds for a place.
+     * @param platform The platform the requests are made to, which must be safe to call from many threads
+     * @param port The port to listen on, or 0 for any free port
+     * @param snapshotFilename The file SAVE writes the platform to, or null if saving is not allowed
+     */
+    public PlatformServer(SocialMediaPlatform platform, int port, String snapshotFilename){
+        this(platform, InetAddress.getLoopbackAddress(), port, snapshotFilename);
+    }
+
+    /**
+     * Creates a server with room for 1024 connections and twice as many running requests as there are processors,
+     * which wait up to 100 milliseconds for a place.
+     * @param platform The platform the requests are made to, which must be safe to call from many threads
+     * @param bindAddress The address to listen on, such as the wildcard address to listen on every interface
+     * @param port The port to listen on, or 0 for any free port
+     * @param snapshotFilename The file SAVE writes the platform to, or null if saving is not allowed
+     */
+    public PlatformServer(SocialMediaPlatform platform, InetAddress bindAddress, int port, String snapshotFilename){
+        this(platform, bindAddress, port, snapshotFilename, 1024, 2 * Runtime.getRuntime().availableProcessors(),
+                100);
+    }
+
+    /**
+     * Creates a server listening on the loopback address.
+     * @param platform The platform the requests are made to, which must be safe to call from many threads
+     * @param port The port to listen on, or 0 for any free port
+     * @param snapshotFilename The file SAVE writes the platform to, or null if saving is not allowed
+     * @param maxConnections The number of connections that can be open at once
+     * @param maxActiveRequests The number of requests that can run at once, at least 2
+     * @param admissionTimeoutMillis How long a request waits for a place before it is answered BUSY
+     */
+    public PlatformServer(SocialMediaPlatform platform, int port, String snapshotFilename, int maxConnections,
+            int maxActiveRequests, long admissionTimeoutMillis){
+        this(platform, InetAddress.getLoopbackAddress(), port, snapshotFilename, maxConnections, maxActiveRequests,
+                admissionTimeoutMillis);
+    }
+
+    /**
+     * Creates a server.
+     * @param platform The platform the requests are made to, which must be safe to call from many threads
+     * @param bindAddress The address to listen on, such as the wildcard address to listen on every interface
+     * @param port The port to listen on, or 0 for any free port
+     * @param snapshotFilename The file SAVE writes the platform to, or null if saving is not allowed
+     * @param maxConnections The number of connections that can be open at once
+     * @param maxActiveRequests The number of requests that can run at once, at least 2
+     * @param admissionTimeoutMillis How long a request waits for a place before it is answered BUSY
+     */
+    public PlatformServer(SocialMediaPlatform platform, InetAddress bindAddress, int port, String snapshotFilename,
+            int maxConnections, int maxActiveRequests, long admissionTimeoutMillis){
+        if (maxConnections < 1 || maxActiveRequests < 2 || admissionTimeoutMillis < 0){
+            throw new IllegalArgumentException("The server needs room for a connection and two requests");
+        }
+        this.platform = platform;
+        this.bindAddress = bindAddress;
+        this.requestedPort = port;
+        this.snapshotFilename = snapshotFilename;
+        this.connectionPermits = new Semaphore(maxConnections);
+        this.requestPermits = new Semaphore(maxActiveRequests);
+        this.writePermits = new Semaphore(maxActiveRequests / 2);
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+    }
+
+    /**
+     * Starts listening for connections on a thread of its own.
+     * @throws IOException If the port cannot be listened on
+     */
+    public synchronized void start() throws IOException{
+        if (serverSocket != null){
+            throw new IllegalStateException("The server has already been started");
+        }
+        ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(new InetSocketAddress(bindAddress, requestedPort));
+        serverSocket = socket;
+        Thread acceptor = new Thread(this::acceptConnections, "platform-server-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the server is listening on, which is the free port chosen if it was asked for port 0.
+     * @return The port
+     */
+    public int getPort(){
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the number of connections admitted so far.
+     * @return Number of connections
+     */
+    public long getAcceptedConnections(){
+        return acceptedConnections.sum();
+    }
+
+    /**
+     * Returns the number of connections turned away because the server was full.
+     * @return Number of connections
+     */
+    public long getRejectedConnections(){
+        return rejectedConnections.sum();
+    }
+
+    /**
+     * Returns the number of requests answered, including those answered BUSY.
+     * @return Number of requests
+     */
+    public long getRequestCount(){
+        return requests.sum();
+    }
+
+    /**
+     * Returns the number of requests answered BUSY because no place was free in time.
+     * @return Number of requests
+     */
+    public long getBusyCount(){
+        return busyRequests.sum();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones. Requests being run are finished, but not answered.
+     * @throws IOException If the listening socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException{
+        closed = true;
+        ServerSocket socket = serverSocket;
+        if (socket != null){
+            socket.close();
+        }
+        for (Socket connection : connections){
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Accepts connections until the server is closed, starting a thread for each connection admitted.
+     */
+    private void acceptConnections(){
+        long count = 0;
+        while (!closed){
+            Socket socket;
+            try{
+                socket = serverSocket.accept();
+            } catch (IOException e){
+                if (closed){
+                    return;
+                }
+                continue; // A connection that failed while being accepted only affects its own client
+            }
+            if (!connectionPermits.tryAcquire()){
+                rejectedConnections.increment();
+                rejectConnection(socket);
+                continue;
+            }
+            acceptedConnections.increment();
+            connections.add(socket);
+            Thread thread = new Thread(null, () -> serveConnection(socket), "platform-server-connection-" + ++count,
+                    CONNECTION_STACK_SIZE);
+            thread.setDaemon(true);
+            thread.start();
+            if (closed){ // Closed while the connection was being admitted, which close may have missed
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * Tells a client the server is full and closes its connection.
+     * @param socket The connection
+     */
+    private static void rejectConnection(Socket socket){
+        try (socket){
+            socket.setSoTimeout(1000);
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(BUSY + "\tToo many connections\n");
+            out.flush();
+        } catch (IOException e){
+            // The client is turned away either way
+        }
+    }
+
+    /**
+     * Answers the requests of a connection until the client closes it, it stays idle too long, it sends a request
+     * that is too long or the server is closed.
+     * @param socket The connection
+     */
+    private void serveConnection(Socket socket){
+        try (socket){
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+            Reader in = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            StringBuilder request = new StringBuilder();
+            StringBuilder response = new StringBuilder();
+            char[] buffer = new char[8192];
+            int[] window = new int[2]; // The start and end of the characters read but not yet used
+            while (readRequest(in, buffer, window, request)){
+                response.setLength(0);
+                handleRequest(request, response);
+                response.append('\n');
+                out.append(response);
+                if (response.capacity() > RETAINED_RESPONSE_CAPACITY){ // Only a long answer needs the grown buffer
+                    response = new StringBuilder();
+                }
+                if (window[0] == window[1] && !in.ready()){ // Answers to requests sent together are written together
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (SocketTimeoutException e){
+            // Idle connections are closed to free their place
+        } catch (IOException e){
+            // The client went away or sent a request that was too long
+        } finally{
+            connections.remove(socket);
+            connectionPermits.release();
+        }
+    }
+
+    /**
+     * Reads the next request line of a connection.
+     * @param in The input of the connection
+     * @param buffer The characters read from the input
+     * @param window The start and end within the buffer of the characters read but not yet used
+     * @param request Where the request is put, without its line break
+     * @return Whether a request was read, false if the client closed the connection
+     * @throws IOException If the input cannot be read or the request is too long
+     */
+    private static boolean readRequest(Reader in, char[] buffer, int[] window, StringBuilder request)
+            throws IOException{
+        request.setLength(0);
+        while (true){
+            for (int i = window[0]; i < window[1]; i++){
+                if (buffer[i] == '\n'){
+                    request.append(buffer, window[0], i - window[0]);
+                    window[0] = i + 1;
+                    int length = request.length();
+                    if (length > 0 && request.charAt(length - 1) == '\r'){
+                        request.setLength(--length);
+                    }
+                    checkRequestLength(length);
+                    return true;
+                }
+            }
+            request.append(buffer, window[0], window[1] - window[0]);
+            checkRequestLength(request.length());
+            int read = in.read(buffer);
+            if (read < 0){
+                return false; // A last request without a line break is dropped, as it may be incomplete
+            }
+            window[0] = 0;
+            window[1] = read;
+        }
+    }
+
+    /**
+     * Checks that a request is not too long.
+     * @param length The number of characters of the request read so far
+     * @throws IOException If the request is longer than the longest accepted
+     */
+    private static void checkRequestLength(int length) throws IOException{
+        if (length > MAX_REQUEST_LENGTH){
+            throw new IOException("Request longer than " + MAX_REQUEST_LENGTH + " characters");
+        }
+    }
+
+    /**
+     * Answers a request, waiting for a place to run it first unless it is a save.
+     * @param request The request line
+     * @param response Where the answer is put, without its line break
+     */
+    private void handleRequest(CharSequence request, StringBuilder response){
+        requests.increment();
+        String[] fields = splitFields(request);
+        String command = fields[0];
+        boolean write = isWrite(command);
+        boolean save = command.equals("SAVE");
+        try{
+            if (save){
+                if (!savePermit.tryAcquire()){
+                    busy(response, "A save is already running");
+                    return;
+                }
+            } else if (!admit(write)){
+                busy(response, "Too many requests");
+                return;
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            busy(response, "Server is closing");
+            return;
+        }
+        try{
+            response.append(OK);
+            runCommand(fields, response);
+        } catch (Exception e){
+            response.setLength(0);
+            response.append(ERROR);
+            appendField(response, e.getClass().getSimpleName());
+            appendField(response, e.getMessage() == null ? "" : e.getMessage());
+        } finally{
+            if (save){
+                savePermit.release();
+            } else{
+                requestPermits.release();
+                if (write){
+                    writePermits.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for a place to run a request.
+     * @param write Whether the request changes the platform
+     * @return Whether a place was found before the admission timeout
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    private boolean admit(boolean write) throws InterruptedException{
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(admissionTimeoutMillis);
+        if (write && !writePermits.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS)){
+            return false;
+        }
+        if (!requestPermits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)){
+            if (write){
+                writePermits.release();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Puts a BUSY answer.
+     * @param response Where the answer is put
+     * @param reason Why the request was not admitted
+     */
+    private void busy(StringBuilder response, String reason){
+        busyRequests.increment();
+        response.setLength(0);
+        response.append(BUSY);
+        appendField(response, reason);
+    }
+
+    /**
+     * States whether a command changes the platform.
+     * @param command The name of the command
+     * @return Whether it is a write
+     */
+    private static boolean isWrite(String command){
+        switch (command){
+            case "CREATE_ACCOUNT":
+            case "REMOVE_ACCOUNT":
+            case "CHANGE_ACCOUNT_HANDLE":
+            case "UPDATE_ACCOUNT_DESCRIPTION":
+            case "CREATE_POST":
+            case "ENDORSE_POST":
+            case "COMMENT_POST":
+            case "DELETE_POST":
+            case "FOLLOW":
+            case "UNFOLLOW":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Runs a command against the platform and adds its results to the answer.
+     * @param fields The command name and its arguments
+     * @param response The answer, holding OK so far
+     * @throws Exception If the command is not known, its arguments are wrong or the platform call throws
+     */
+    private void runCommand(String[] fields, StringBuilder response) throws Exception{
+        switch (fields[0]){
+            case "PING":
+                arguments(fields, 0);
+                break;
+            case "CREATE_ACCOUNT":
+                if (fields.length == 2){
+                    appendField(response, platform.createAccount(fields[1]));
+                } else{
+                    arguments(fields, 2);
+                    appendField(response, platform.createAccount(fields[1], fields[2]));
+                }
+                break;
+            case "REMOVE_ACCOUNT":
+                arguments(fields, 1);
+                platform.removeAccount(fields[1]);
+                break;
+            case "CHANGE_ACCOUNT_HANDLE":
+                arguments(fields, 2);
+                platform.changeAccountHandle(fields[1], fields[2]);
+                break;
+            case "UPDATE_ACCOUNT_DESCRIPTION":
+                arguments(fields, 2);
+                platform.updateAccountDescription(fields[1], fields[2]);
+                break;
+            case "SHOW_ACCOUNT":
+                arguments(fields, 1);
+                appendField(response, platform.showAccount(fields[1]));
+                break;
+            case "CREATE_POST":
+                arguments(fields, 2);
+                appendField(response, platform.createPost(fields[1], fields[2]));
+                break;
+            case "ENDORSE_POST":
+                arguments(fields, 2);
+                appendField(response, platform.endorsePost(fields[1], intArgument(fields, 2)));
+                break;
+            case "COMMENT_POST":
+                arguments(fields, 3);
+                appendField(response, platform.commentPost(fields[1], intArgument(fields, 2), fields[3]));
+                break;
+            case "DELETE_POST":
+                arguments(fields, 1);
+                platform.deletePost(intArgument(fields, 1));
+                break;
+            case "SHOW_POST":
+                arguments(fields, 1);
+                appendField(response, platform.showIndividualPost(intArgument(fields, 1)));
+                break;
+            case "SHOW_POST_CHILDREN":
+                arguments(fields, 1);
+                appendThread(response, intArgument(fields, 1));
+                break;
+            case "THREAD_PAGE": {
+                arguments(fields, 5);
+                ThreadPage page = platform.getThreadPage(intArgument(fields, 1), cursorArgument(fields, 2),
+                        limitArgument(fields, 3, MAX_PAGE_POSTS), limitArgument(fields, 4, MAX_THREAD_DEPTH),
+                        limitArgument(fields, 5, MAX_PAGE_POSTS));
+                appendPage(response, page.getText(), page.getPostCount(), page.getNextCursor());
+                break;
+            }
+            case "TIMELINE": {
+                arguments(fields, 3);
+                TimelinePage page = platform.getTimeline(fields[1], cursorArgument(fields, 2),
+                        limitArgument(fields, 3, MAX_PAGE_POSTS));
+                appendPage(response, page.getText(), page.getPostCount(), page.getNextCursor());
+                break;
+            }
+            case "HOME_TIMELINE": {
+                arguments(fields, 3);
+                TimelinePage page = platform.getHomeTimeline(fields[1], cursorArgument(fields, 2),
+                        limitArgument(fields, 3, MAX_PAGE_POSTS));
+                appendPage(response, page.getText(), page.getPostCount(), page.getNextCursor());
+                break;
+            }
+            case "FOLLOW":
+                arguments(fields, 2);
+                appendField(response, String.valueOf(platform.follow(fields[1], fields[2])));
+                break;
+            case "UNFOLLOW":
+                arguments(fields, 2);
+                appendField(response, String.valueOf(platform.unfollow(fields[1], fields[2])));
+                break;
+            case "FOLLOWER_COUNT":
+                arguments(fields, 1);
+                appendField(response, platform.getFollowerCount(fields[1]));
+                break;
+            case "FOLLOWING_COUNT":
+                arguments(fields, 1);
+                appendField(response, platform.getFollowingCount(fields[1]));
+                break;
+            case "SEARCH":
+                arguments(fields, 2);
+                appendIds(response, platform.searchPosts(fields[1], limitArgument(fields, 2, MAX_PAGE_POSTS)));
+                break;
+            case "TOTALS":
+                arguments(fields, 0);
+                appendField(response, platform.getNumberOfAccounts());
+                appendField(response, platform.getTotalOriginalPosts());
+                appendField(response, platform.getTotalEndorsmentPosts());
+                appendField(response, platform.getTotalCommentPosts());
+                break;
+            case "MOST_ENDORSED_POST":
+                arguments(fields, 0);
+                appendField(response, platform.getMostEndorsedPost());
+                break;
+            case "MOST_ENDORSED_ACCOUNT":
+                arguments(fields, 0);
+                appendField(response, platform.getMostEndorsedAccount());
+                break;
+            case "TOP_ENDORSED_POSTS":
+                arguments(fields, 1);
+                appendIds(response, platform.getTopEndorsedPosts(limitArgument(fields, 1, MAX_PAGE_POSTS)));
+                break;
+            case "TOP_ENDORSED_ACCOUNTS":
+                arguments(fields, 1);
+                appendIds(response, platform.getTopEndorsedAccounts(limitArgument(fields, 1, MAX_PAGE_POSTS)));
+                break;
+            case "SAVE":
+                arguments(fields, 0);
+                if (snapshotFilename == null){
+                    throw new IllegalStateException("The server was not given a snapshot file");
+                }
+                platform.savePlatform(snapshotFilename);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command " + fields[0]);
+        }
+    }
+
+    /**
+     * Checks that a request has the number of arguments its command takes.
+     * @param fields The command name and its arguments
+     * @param count The number of arguments
+     * @throws IllegalArgumentException If the number differs
+     */
+    private static void arguments(String[] fields, int count){
+        if (fields.length != count + 1){
+            throw new IllegalArgumentException(fields[0] + " takes " + count + " arguments");
+        }
+    }
+
+    /**
+     * Reads a number argument.
+     * @param fields The command name and its arguments
+     * @param index The position of the argument
+     * @return The number
+     * @throws IllegalArgumentException If the argument is not a number
+     */
+    private static int intArgument(String[] fields, int index){
+        try{
+            return Integer.parseInt(fields[index]);
+        } catch (NumberFormatException e){
+            throw new IllegalArgumentException("Argument " + index + " of " + fields[0] + " must be a number");
+        }
+    }
+
+    /**
+     * Reads a limit argument, cut down to the most the server allows. Limits below the range are left for the
+     * platform to reject.
+     * @param fields The command name and its arguments
+     * @param index The position of the argument
+     * @param max The most the server allows
+     * @return The limit
+     * @throws IllegalArgumentException If the argument is not a number
+     */
+    private static int limitArgument(String[] fields, int index, int max){
+        return Math.min(intArgument(fields, index), max);
+    }
+
+    /**
+     * Reads a cursor argument, where an empty field stands for the first page.
+     * @param fields The command name and its arguments
+     * @param index The position of the argument
+     * @return The cursor, or null for the first page
+     */
+    private static String cursorArgument(String[] fields, int index){
+        return fields[index].isEmpty() ? null : fields[index];
+    }
+
+    /**
+     * Adds the thread under a post to an answer as one field, streamed from the platform and escaped as it comes,
+     * so the whole thread is never built apart from the answer.
+     * @param response The answer
+     * @param id The ID of the post
+     * @throws IllegalStateException If the thread is longer than {@link #MAX_THREAD_LENGTH} characters
+     * @throws Exception If the platform cannot show the thread
+     */
+    private void appendThread(StringBuilder response, int id) throws Exception{
+        response.append('\t');
+        EscapingAppendable field = new EscapingAppendable(response, MAX_THREAD_LENGTH);
+        try{
+            platform.showPostChildrenDetails(id, field);
+        } catch (IOException e){
+            if (field.isFull()){
+                throw new IllegalStateException("Thread longer than " + MAX_THREAD_LENGTH
+                        + " characters, read it with THREAD_PAGE");
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the fields of a page to an answer: its text, its number of posts and the cursor of the next page,
+     * empty if it is the last.
+     * @param response The answer
+     * @param text The rendered posts of the page
+     * @param postCount The number of posts on the page
+     * @param nextCursor The cursor of the next page, or null
+     */
+    private static void appendPage(StringBuilder response, CharSequence text, int postCount, String nextCursor){
+        appendField(response, text);
+        appendField(response, postCount);
+        appendField(response, nextCursor == null ? "" : nextCursor);
+    }
+
+    /**
+     * Adds a field for each of a list of IDs to an answer.
+     * @param response The answer
+     * @param ids The IDs
+     */
+    private static void appendIds(StringBuilder response, int[] ids){
+        for (int id : ids){
+            appendField(response, id);
+        }
+    }
+
+    /**
+     * Adds a number field to a line.
+     * @param line The line
+     * @param value The number
+     */
+    static void appendField(StringBuilder line, int value){
+        line.append('\t').append(value);
+    }
+
+    /**
+     * Adds a field to a line, escaping the characters that would end the field or the line.
+     * @param line The line
+     * @param field The field
+     */
+    static void appendField(StringBuilder line, CharSequence field){
+        line.append('\t');
+        for (int i = 0; i < field.length(); i++){
+            appendEscaped(line, field.charAt(i));
+        }
+    }
+
+    /**
+     * Adds a character of a field to a line, escaping it if it would end the field or the line.
+     * @param line The line
+     * @param c The character
+     */
+    private static void appendEscaped(StringBuilder line, char c){
+        switch (c){
+            case '\\':
+                line.append("\\\\");
+                break;
+            case '\t':
+                line.append("\\t");
+                break;
+            case '\n':
+                line.append("\\n");
+                break;
+            case '\r':
+                line.append("\\r");
+                break;
+            default:
+                line.append(c);
+        }
+    }
+
+    /**
+     * Splits a line into its fields, undoing the escapes within them.
+     * @param line The line, without its line break
+     * @return The fields, of which there is always at least one
+     */
+    static String[] splitFields(CharSequence line){
+        ArrayList<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); i++){
+            char c = line.charAt(i);
+            if (c == '\t'){
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()){
+                char escaped = line.charAt(++i);
+                field.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            } else{
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Escapes the text appended to it into a field of a line, failing once more than a given number of characters
+     * have been appended.
+     */
+    private static final class EscapingAppendable implements Appendable{
+        /**
+         * The line the field is added to.
+         */
+        private final StringBuilder line;
+        /**
+         * The number of characters that can still be appended.
+         */
+        private int remaining;
+        /**
+         * A flag to indicate whether more characters were appended than allowed.
+         */
+        private boolean full;
+
+        /**
+         * Creates an appendable adding to a line.
+         * @param line The line, ending with the start of the field
+         * @param maxLength The most characters that can be appended
+         */
+        EscapingAppendable(StringBuilder line, int maxLength){
+            this.line = line;
+            this.remaining = maxLength;
+        }
+
+        /**
+         * States whether more characters were appended than allowed.
+         * @return Whether the field is full
+         */
+        boolean isFull(){
+            return full;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException{
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException{
+            reserve(end - start);
+            for (int i = start; i < end; i++){
+                appendEscaped(line, csq.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException{
+            reserve(1);
+            appendEscaped(line, c);
+            return this;
+        }
+
+        /**
+         * Takes characters from those that can still be appended.
+         * @param length The number of characters
+         * @throws IOException If fewer than that can still be appended
+         */
+        private void reserve(int length) throws IOException{
+            if (length > remaining){
+                full = true;
+                throw new IOException("Field longer than allowed");
+            }
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Closes a socket, ignoring any error.
+     * @param socket The socket
+     */
+    private static void closeQuietly(Socket socket){
+        try{
+            socket.close();
+        } catch (IOException e){
+            // Nothing more can be done with it
+        }
+    }
+
+    /**
+     * Runs a server until the process is stopped.
+     * @param args The port, the simple class name of the platform implementation, VersionedSocialMedia by default
+     *             or ConcurrentSocialMedia, the snapshot file, which is loaded first if it exists, or an empty
+     *             argument for none, and the address to listen on, the loopback address by default
+     * @throws Exception If the snapshot cannot be loaded or the port cannot be listened on
+     */
+    public static void main(String[] args) throws Exception{
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String implementation = args.length > 1 ? args[1] : "VersionedSocialMedia";
+        String snapshot = args.length > 2 && !args[2].isEmpty() ? args[2] : null;
+        InetAddress bindAddress = args.length > 3 ? InetAddress.getByName(args[3]) : InetAddress.getLoopbackAddress();
+        SocialMediaPlatform platform;
+        switch (implementation){
+            case "VersionedSocialMedia":
+                platform = new VersionedSocialMedia();
+                break;
+            case "ConcurrentSocialMedia":
+                platform = new ConcurrentSocialMedia();
+                break;
+            default:
+                throw new IllegalArgumentException(implementation + " is not safe to share between connections");
+        }
+        if (snapshot != null && new File(snapshot).exists()){
+            platform.loadPlatform(snapshot);
+        }
+        PlatformServer server = new PlatformServer(platform, bindAddress, port, snapshot);
+        server.start();
+        System.out.println("Serving " + implementation + " on " + bindAddress.getHostAddress() + " port "
+                + server.getPort());
+    }
+}
@@ -0,0 +1,630 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * The contents of a platform saved in the binary snapshot format. A snapshot file is laid out as
+ * <pre>
+ * header:   magic, version, next account ID, next post ID, account count, post count,
+ *           total original posts, total comment posts, total endorsement posts,
+ *           account table offset, post table offset, handle table offset, handle table slots,
+ *           journal sequence
+ * accounts: [ID, handle, description, post IDs] for each account in ID order
+ * posts:    [ID, type, flags, parent post ID, account ID, timestamp, message, comment IDs, endorsement IDs]
+ *           for each post in ID order
+ * account table: [record offset, endorsement count, original post count, total post count] for every
+ *           account ID below the next account ID
+ * post table: [record offset, endorsement count, comment count, type, flags] for every post ID below the
+ *           next post ID
+ * handle table: [handle hash code, account ID] open addressing hash table of the account handles
+ * follows:  count, then [account ID, followee count, followee IDs] for each account that follows another,
+ *           in ID order
+ * search index: term count, then [term, post count, block count, [first ID, ID count, byte count, bytes] for
+ *           each block] for each term in term order
+ * </pre>
+ * Every record is flat and refers to other records only by ID. Posts are written in ID order, so the post a
+ * comment or endorsement refers to is always read before it and the graph is rebuilt in a single pass without
+ * recursion. Deleted posts are kept as empty posts with no account.
+ * <p>
+ * The ID lists in the records and the tables at the end of the file are not needed to read the whole file in
+ * order. They let {@link MappedSnapshot} find any single account or post in the file without reading the rest.
+ * Version 1 files have no ID lists or tables and can only be read in order.
+ * <p>
+ * The journal sequence is the sequence number of the last {@link Journal} record included in the snapshot, so
+ * recovery only replays the records written after it. Version 2 files have no journal sequence.
+ * <p>
+ * The timestamp of a post is the time it was created, in milliseconds since the epoch. Version 3 and earlier files
+ * have no timestamps, and their posts are read with a timestamp of 0.
+ * <p>
+ * The follows section holds the {@link FollowGraph} and starts straight after the handle table. Version 4 and
+ * earlier files have no follows section and are read with no follows.
+ * <p>
+ * The search index section holds the {@link PostSearchIndex} with its posting lists still compressed, and starts
+ * straight after the follows section. Version 5 and earlier files have no search index, and it is rebuilt from the
+ * messages of their posts.
+ */
+public class PlatformSnapshot {
+    /**
+     * The first four bytes of every snapshot file ("SMPS").
+     */
+    public final static int MAGIC = 0x534D5053;
+    /**
+     * The version of the snapshot format written by this class.
+     */
+    public final static int VERSION = 6;
+    /**
+     * The first version of the snapshot format whose post records hold a timestamp.
+     */
+    public final static int TIMESTAMP_VERSION = 4;
+    /**
+     * The first version of the snapshot format with a follows section.
+     */
+    public final static int FOLLOW_VERSION = 5;
+    /**
+     * The first version of the snapshot format with a search index section.
+     */
+    public final static int SEARCH_VERSION = 6;
+    /**
+     * The size in bytes of the header of a version 3 or later snapshot.
+     */
+    public final static int HEADER_SIZE = 72;
+    /**
+     * The position in the header of the offset of the account table.
+     */
+    public final static int ACCOUNT_TABLE_OFFSET_POSITION = 36;
+    /**
+     * The position in the header of the journal sequence.
+     */
+    public final static int JOURNAL_SEQUENCE_POSITION = 64;
+    /**
+     * The size in bytes of each entry of the account table.
+     */
+    public final static int ACCOUNT_ENTRY_SIZE = 20;
+    /**
+     * The size in bytes of each entry of the post table.
+     */
+    public final static int POST_ENTRY_SIZE = 18;
+    /**
+     * The size in bytes of each slot of the handle table.
+     */
+    public final static int HANDLE_SLOT_SIZE = 8;
+    /**
+     * Type tag of an original post.
+     */
+    public final static byte ORIGINAL_POST = 0;
+    /**
+     * Type tag of a comment post.
+     */
+    public final static byte COMMENT_POST = 1;
+    /**
+     * Type tag of an endorsement post.
+     */
+    public final static byte ENDORSEMENT_POST = 2;
+    /**
+     * Flag set on a post record when the post has been deleted and is an empty post.
+     */
+    public final static byte EMPTY_POST_FLAG = 1;
+
+    /**
+     * The accounts in the snapshot indexed by ID, in ID order.
+     */
+    private final LinkedHashMap<Integer, Account> accounts;
+    /**
+     * Every post in the snapshot, including empty posts.
+     */
+    private final PostIndex posts;
+    /**
+     * The ID that will be assigned to the next account created.
+     */
+    private final int nextAccountID;
+    /**
+     * The ID that will be assigned to the next post created.
+     */
+    private final int nextPostID;
+    /**
+     * The number of original posts in the snapshot.
+     */
+    private final int totalOriginalPosts;
+    /**
+     * The number of comment posts in the snapshot.
+     */
+    private final int totalCommentPosts;
+    /**
+     * The number of endorsement posts in the snapshot.
+     */
+    private final int totalEndorsementPosts;
+    /**
+     * The sequence number of the last journal record included in the snapshot, or 0 if there is none.
+     */
+    private final long journalSequence;
+    /**
+     * The accounts each account follows.
+     */
+    private final FollowGraph follows;
+    /**
+     * The index of the words in the messages of the posts.
+     */
+    private final PostSearchIndex searchIndex;
+
+    /**
+     * Creates a snapshot of the contents of a platform.
+     * @param accounts The accounts on the platform indexed by ID, in ID order.
+     * @param posts Every post on the platform, including empty posts.
+     * @param nextAccountID The ID that will be assigned to the next account created.
+     * @param nextPostID The ID that will be assigned to the next post created.
+     * @param totalOriginalPosts The number of original posts on the platform.
+     * @param totalCommentPosts The number of comment posts on the platform.
+     * @param totalEndorsementPosts The number of endorsement posts on the platform.
+     * @param journalSequence The sequence number of the last journal record included, or 0 if there is none.
+     * @param follows The accounts each account follows.
+     * @param searchIndex The index of the words in the messages of the posts.
+     */
+    public PlatformSnapshot(LinkedHashMap<Integer, Account> accounts, PostIndex posts, int nextAccountID, int nextPostID,
+            int totalOriginalPosts, int totalCommentPosts, int totalEndorsementPosts, long journalSequence, FollowGraph follows,
+            PostSearchIndex searchIndex){
+        this.accounts = accounts;
+        this.posts = posts;
+        this.nextAccountID = nextAccountID;
+        this.nextPostID = nextPostID;
+        this.totalOriginalPosts = totalOriginalPosts;
+        this.totalCommentPosts = totalCommentPosts;
+        this.totalEndorsementPosts = totalEndorsementPosts;
+        this.journalSequence = journalSequence;
+        this.follows = follows;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Returns the accounts in the snapshot.
+     * @return The accounts indexed by ID, in ID order
+     */
+    public LinkedHashMap<Integer, Account> getAccounts(){
+        return accounts;
+    }
+
+    /**
+     * Returns the posts in the snapshot.
+     * @return Index of every post, including empty posts
+     */
+    public PostIndex getPosts(){
+        return posts;
+    }
+
+    /**
+     * Returns the ID that will be assigned to the next account created.
+     * @return Next account ID
+     */
+    public int getNextAccountID(){
+        return nextAccountID;
+    }
+
+    /**
+     * Returns the ID that will be assigned to the next post created.
+     * @return Next post ID
+     */
+    public int getNextPostID(){
+        return nextPostID;
+    }
+
+    /**
+     * Returns the number of original posts in the snapshot.
+     * @return Number of original posts
+     */
+    public int getTotalOriginalPosts(){
+        return totalOriginalPosts;
+    }
+
+    /**
+     * Returns the number of comment posts in the snapshot.
+     * @return Number of comment posts
+     */
+    public int getTotalCommentPosts(){
+        return totalCommentPosts;
+    }
+
+    /**
+     * Returns the number of endorsement posts in the snapshot.
+     * @return Number of endorsement posts
+     */
+    public int getTotalEndorsementPosts(){
+        return totalEndorsementPosts;
+    }
+
+    /**
+     * Returns the sequence number of the last journal record included in the snapshot.
+     * @return Journal sequence number, or 0 if no journal records are included
+     */
+    public long getJournalSequence(){
+        return journalSequence;
+    }
+
+    /**
+     * Returns the follows in the snapshot.
+     * @return The follow graph
+     */
+    public FollowGraph getFollows(){
+        return follows;
+    }
+
+    /**
+     * Returns the search index in the snapshot.
+     * @return The search index
+     */
+    public PostSearchIndex getSearchIndex(){
+        return searchIndex;
+    }
+
+    /**
+     * Returns the type tag used in snapshot records for a post.
+     * @param p The post
+     * @return ORIGINAL_POST, COMMENT_POST or ENDORSEMENT_POST
+     */
+    public static byte typeOf(Post p){
+        if (p instanceof Comment){
+            return COMMENT_POST;
+        }
+        if (p instanceof EndorsementPost){
+            return ENDORSEMENT_POST;
+        }
+        return ORIGINAL_POST;
+    }
+
+    /**
+     * Returns the ID of the post that a comment or endorsement refers to.
+     * @param p The post
+     * @return ID of the post referred to, or 0 for an original post
+     */
+    public static int parentIdOf(Post p){
+        if (p instanceof Comment){
+            return ((Comment)p).getReferencePost().getID();
+        }
+        if (p instanceof EndorsementPost){
+            return ((EndorsementPost)p).getReferencePost().getID();
+        }
+        return 0;
+    }
+
+    /**
+     * States whether a file starts with the snapshot magic number, as opposed to being a Java serialised
+     * platform saved by an earlier version.
+     * @param filename Location of the file
+     * @return Boolean value stating whether the file is a binary snapshot
+     * @throws IOException If the file cannot be read
+     */
+    public static boolean isSnapshot(String filename) throws IOException{
+        try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)){
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()){
+                if (channel.read(magic) < 0){
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Writes the snapshot to a file, replacing any existing contents. The snapshot is written to a temporary file
+     * first and then moved over the old file, so a failed save leaves the old file in place and a file that is
+     * currently mapped by a {@link MappedSnapshot} is never overwritten in place.
+     * @param filename Location of the file to be written
+     * @throws IOException If the file cannot be written
+     */
+    public void write(String filename) throws IOException{
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try(BufferedChannelOutput out = new BufferedChannelOutput(channel)){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nextAccountID);
+            out.writeInt(nextPostID);
+            out.writeInt(accounts.size());
+            out.writeInt(posts.size());
+            out.writeInt(totalOriginalPosts);
+            out.writeInt(totalCommentPosts);
+            out.writeInt(totalEndorsementPosts);
+            while (out.position() < JOURNAL_SEQUENCE_POSITION){ // Table offsets are filled in once the tables are written
+                out.writeByte(0);
+            }
+            out.writeLong(journalSequence);
+
+            long[] accountOffsets = new long[nextAccountID];
+            for (Account a : accounts.values()){
+                accountOffsets[a.getID()] = out.position();
+                out.writeInt(a.getID());
+                out.writeString(a.getHandle());
+                out.writeString(a.getDescription());
+                writeIds(out, a.getPosts());
+            }
+
+            long[] postOffsets = new long[nextPostID];
+            int written = 0;
+            for (int id = 1; id < nextPostID; id++){ // IDs are sequential so this visits every post in ID order
+                Post p = posts.get(id);
+                if (p == null){
+                    continue;
+                }
+                postOffsets[id] = out.position();
+                out.writeInt(id);
+                out.writeByte(typeOf(p));
+                out.writeByte(p.isEmptyPost() ? EMPTY_POST_FLAG : 0);
+                out.writeInt(parentIdOf(p));
+                out.writeInt(p.isEmptyPost() ? 0 : p.getAccount().getID());
+                out.writeLong(p.getTimestamp());
+                out.writeString(p.isEmptyPost() ? "" : p.getMessage()); // Empty posts all share the same message
+                writeIds(out, p.getComments());
+                writeIds(out, p.getEndorsements());
+                written++;
+            }
+            if (written != posts.size()){
+                throw new IOException("Post IDs are not below the next post ID");
+            }
+
+            long accountTableOffset = out.position();
+            for (int id = 0; id < nextAccountID; id++){
+                Account a = accounts.get(id);
+                out.writeLong(accountOffsets[id]);
+                out.writeInt(a == null ? 0 : a.getEndorsementCount());
+                out.writeInt(a == null ? 0 : a.getOriginalPostCount());
+                out.writeInt(a == null ? 0 : a.getTotalPostCount());
+            }
+
+            long postTableOffset = out.position();
+            for (int id = 0; id < nextPostID; id++){
+                Post p = posts.get(id);
+                out.writeLong(postOffsets[id]);
+                out.writeInt(p == null ? 0 : p.getNumEndorsements());
+                out.writeInt(p == null ? 0 : p.getNumComments());
+                out.writeByte(p == null ? 0 : typeOf(p));
+                out.writeByte(p == null || !p.isEmptyPost() ? 0 : EMPTY_POST_FLAG);
+            }
+
+            long handleTableOffset = out.position();
+            int handleTableSlots = handleTableSlotsFor(accounts.size());
+            int[] slots = new int[handleTableSlots * 2];
+            for (Account a : accounts.values()){
+                int hash = a.getHandle().hashCode();
+                int slot = handleSlotFor(hash, handleTableSlots);
+                while (slots[slot * 2 + 1] != 0){
+                    slot = (slot + 1) & (handleTableSlots - 1);
+                }
+                slots[slot * 2] = hash;
+                slots[slot * 2 + 1] = a.getID();
+            }
+            for (int value : slots){
+                out.writeInt(value);
+            }
+            writeFollows(out, follows, nextAccountID);
+            searchIndex.write(out);
+
+            out.flush();
+            ByteBuffer tableOffsets = ByteBuffer.allocate(JOURNAL_SEQUENCE_POSITION - ACCOUNT_TABLE_OFFSET_POSITION);
+            tableOffsets.putLong(accountTableOffset).putLong(postTableOffset).putLong(handleTableOffset).putInt(handleTableSlots);
+            tableOffsets.flip();
+            while (tableOffsets.hasRemaining()){
+                channel.write(tableOffsets, ACCOUNT_TABLE_OFFSET_POSITION + tableOffsets.position());
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the number of slots in the handle table for the given number of accounts. The table is kept at
+     * most half full.
+     * @param accountCount Number of accounts in the snapshot
+     * @return Number of slots, a power of two
+     */
+    public static int handleTableSlotsFor(int accountCount){
+        int slots = 2;
+        while (slots < accountCount * 2){
+            slots *= 2;
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the slot of the handle table that a handle hash code starts probing from.
+     * @param hash Hash code of the handle
+     * @param slots Number of slots in the handle table
+     * @return Home slot of the handle
+     */
+    public static int handleSlotFor(int hash, int slots){
+        int h = hash * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (slots - 1);
+    }
+
+    /**
+     * Writes the follows section.
+     * @param out Output positioned at the end of the handle table
+     * @param follows The follow graph
+     * @param nextAccountID The ID that will be assigned to the next account created
+     * @throws IOException If the follows cannot be written
+     */
+    static void writeFollows(BufferedChannelOutput out, FollowGraph follows, int nextAccountID) throws IOException{
+        int count = 0;
+        for (int id = 1; id < nextAccountID; id++){
+            if (follows.followingCount(id) > 0){
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (int id = 1; id < nextAccountID; id++){
+            int[] followees = follows.followeesOf(id);
+            if (followees.length > 0){
+                out.writeInt(id);
+                out.writeInt(followees.length);
+                for (int followee : followees){
+                    out.writeInt(followee);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the follows section of a version 5 or later snapshot.
+     * @param in Input positioned at the start of the follows section
+     * @return The follow graph
+     * @throws IOException If the follows cannot be read
+     */
+    static FollowGraph readFollows(BufferedChannelInput in) throws IOException{
+        FollowGraph follows = new FollowGraph();
+        for (int count = in.readInt(); count > 0; count--){
+            int id = in.readInt();
+            for (int followees = in.readInt(); followees > 0; followees--){
+                follows.follow(id, in.readInt());
+            }
+        }
+        return follows;
+    }
+
+    /**
+     * Returns the number of bytes of the account, post and handle tables, which sit between the last post record and
+     * the follows section.
+     * @param nextAccountID The ID that will be assigned to the next account created
+     * @param nextPostID The ID that will be assigned to the next post created
+     * @param accountCount The number of accounts in the snapshot
+     * @return Size of the tables in bytes
+     */
+    static long tablesSizeFor(int nextAccountID, int nextPostID, int accountCount){
+        return (long)nextAccountID * ACCOUNT_ENTRY_SIZE + (long)nextPostID * POST_ENTRY_SIZE
+                + (long)handleTableSlotsFor(accountCount) * HANDLE_SLOT_SIZE;
+    }
+
+    /**
+     * Writes a list of posts as a count followed by their IDs.
+     * @param out Output to write to
+     * @param list Posts to write the IDs of
+     * @throws IOException If the IDs cannot be written
+     */
+    private static void writeIds(BufferedChannelOutput out, ArrayList<? extends Post> list) throws IOException{
+        out.writeInt(list.size());
+        for (Post p : list){
+            out.writeInt(p.getID());
+        }
+    }
+
+    /**
+     * Reads a snapshot from a file and rebuilds the accounts and posts it contains. The sequential IDs of
+     * Account and Post are not changed.
+     * @param filename Location of the file to be read
+     * @return The snapshot that was read
+     * @throws IOException If the file cannot be read or is not a valid snapshot
+     */
+    public static PlatformSnapshot read(String filename) throws IOException{
+        try(BufferedChannelInput in = new BufferedChannelInput(FileChannel.open(Paths.get(filename), StandardOpenOption.READ))){
+            if (in.readInt() != MAGIC){
+                throw new IOException(filename + " is not a platform snapshot");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION){
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            int nextAccountID = in.readInt();
+            int nextPostID = in.readInt();
+            int accountCount = in.readInt();
+            int postCount = in.readInt();
+            int totalOriginalPosts = in.readInt();
+            int totalCommentPosts = in.readInt();
+            int totalEndorsementPosts = in.readInt();
+            if (version > 1){
+                in.skipBytes(JOURNAL_SEQUENCE_POSITION - ACCOUNT_TABLE_OFFSET_POSITION); // Tables are only used by MappedSnapshot
+            }
+            long journalSequence = version > 2 ? in.readLong() : 0;
+
+            LinkedHashMap<Integer, Account> accounts = new LinkedHashMap<Integer, Account>();
+            for (int i = 0; i < accountCount; i++){
+                Account a = new Account(in.readInt(), in.readString(), in.readString());
+                accounts.put(a.getID(), a);
+                if (version > 1){ // Posts are linked to the account as they are read
+                    in.skipBytes(4L * in.readInt());
+                }
+            }
+
+            PostIndex posts = new PostIndex();
+            for (int i = 0; i < postCount; i++){
+                posts.put(readPost(in, version, accounts, posts));
+                if (version > 1){ // Comments and endorsements are linked to the post as they are read
+                    in.skipBytes(4L * in.readInt());
+                    in.skipBytes(4L * in.readInt());
+                }
+            }
+            FollowGraph follows = new FollowGraph();
+            if (version >= FOLLOW_VERSION){
+                in.skipBytes(tablesSizeFor(nextAccountID, nextPostID, accountCount));
+                follows = readFollows(in);
+            }
+            PostSearchIndex searchIndex = version >= SEARCH_VERSION ? PostSearchIndex.read(in) : PostSearchIndex.of(posts);
+            return new PlatformSnapshot(accounts, posts, nextAccountID, nextPostID,
+                    totalOriginalPosts, totalCommentPosts, totalEndorsementPosts, journalSequence, follows, searchIndex);
+        }
+    }
+
+    /**
+     * Reads a single post record and links the post to its account and to the post it refers to.
+     * @param in Input positioned at the start of a post record
+     * @param version Version of the snapshot being read
+     * @param accounts Accounts that have been read, indexed by ID
+     * @param posts Posts that have been read so far
+     * @return The post that was read
+     * @throws IOException If the record cannot be read or refers to an account or post that does not exist
+     */
+    private static Post readPost(BufferedChannelInput in, int version, LinkedHashMap<Integer, Account> accounts, PostIndex posts) throws IOException{
+        int id = in.readInt();
+        byte type = in.readByte();
+        boolean isEmpty = (in.readByte() & EMPTY_POST_FLAG) != 0;
+        int parentId = in.readInt();
+        int accountId = in.readInt();
+        long timestamp = version >= TIMESTAMP_VERSION ? in.readLong() : 0;
+        String message = in.readString();
+
+        Account account = null;
+        if (!isEmpty){
+            account = accounts.get(accountId);
+            if (account == null){
+                throw new IOException("Post " + id + " refers to unknown account " + accountId);
+            }
+        }
+        Post parent = null;
+        if (type != ORIGINAL_POST){
+            parent = posts.get(parentId);
+            if (parent == null){
+                throw new IOException("Post " + id + " refers to unknown post " + parentId);
+            }
+        }
+
+        Post p;
+        if (type == COMMENT_POST){
+            p = new Comment(id, account, message, parent);
+            parent.addComment((Comment)p); // Replies to a deleted comment still show it
+        } else if (type == ENDORSEMENT_POST){
+            p = new EndorsementPost(id, account, message, parent);
+            if (!isEmpty){
+                parent.addEndorsementPost((EndorsementPost)p);
+            }
+        } else if (type == ORIGINAL_POST){
+            p = new Post(id, account, message);
+        } else{
+            throw new IOException("Post " + id + " has unknown type " + type);
+        }
+
+        p.setTimestamp(timestamp);
+        if (isEmpty){
+            p.setPostToEmpty();
+        } else{
+            account.addPost(p);
+        }
+        return p;
+    }
+}
@@ -0,0 +1,74 @@
+package socialmedia;
+
+import java.util.ArrayList;
+
+/**
+ * Somewhere the lists and counts of an account or post can be read from when the Account or Post object does not
+ * hold them itself. Accounts and posts read lazily from a {@link MappedSnapshot}, and the views handed out by a
+ * {@link CompactStore}, are created with a source and ask it for their posts, comments, endorsements and reference
+ * post the first time they are used.
+ */
+public interface PlatformSource {
+    /**
+     * Reads the posts made by an account.
+     * @param accountId ID of the account
+     * @return List of the posts made by the account
+     */
+    ArrayList<Post> readAccountPosts(int accountId);
+
+    /**
+     * Reads the comments made about a post.
+     * @param postId ID of the post
+     * @return List of the comments about the post, in ID order
+     */
+    ArrayList<Comment> readComments(int postId);
+
+    /**
+     * Reads the endorsements of a post.
+     * @param postId ID of the post
+     * @return List of the endorsements of the post
+     */
+    ArrayList<EndorsementPost> readEndorsements(int postId);
+
+    /**
+     * Reads the post that a comment or endorsement refers to.
+     * @param postId ID of the comment or endorsement
+     * @return The post referred to
+     */
+    Post readReferencePost(int postId);
+
+    /**
+     * Returns the number of original posts made by an account.
+     * @param accountId ID of the account
+     * @return Number of original posts
+     */
+    int originalPostCountOf(int accountId);
+
+    /**
+     * Returns the total number of posts made by an account.
+     * @param accountId ID of the account
+     * @return Number of original posts, comments and endorsements
+     */
+    int totalPostCountOf(int accountId);
+
+    /**
+     * Returns the number of endorsements the posts of an account have.
+     * @param accountId ID of the account
+     * @return Number of endorsements
+     */
+    int endorsementCountOf(int accountId);
+
+    /**
+     * Returns the number of endorsements a post has.
+     * @param postId ID of the post
+     * @return Number of endorsements
+     */
+    int endorsementCountOfPost(int postId);
+
+    /**
+     * Returns the number of comments, excluding empty ones, a post has.
+     * @param postId ID of the post
+     * @return Number of comments
+     */
+    int commentCountOf(int postId);
+}
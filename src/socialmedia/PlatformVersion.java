@@ -0,0 +1,826 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * An immutable copy of what is needed to show the accounts, posts and threads of a platform and to answer its
+ * aggregate getters, as they were between two changes. A version never changes once it has been made, so any number
+ * of threads can read it without locking and every read of it sees the same platform, even while later versions are
+ * being made.
+ * <p>
+ * Accounts and posts are kept as small records in {@link PersistentIntMap}s keyed by ID, and handles in a third
+ * map keyed by the hash of the handle. The next version is made from the records that a {@link ChangeSet} says have
+ * changed, sharing every other record and most of the maps with this one. The post and endorsement counts of
+ * accounts and the comment counts of posts are carried over from the previous version and changed by the posts
+ * that were added or removed, so making a version takes time proportional to what changed rather than to the size
+ * of the accounts and threads involved.
+ * <p>
+ * Accounts and posts are handed out as views, like those of a {@link CompactStore}, which read their counts and
+ * comments from the version. A version does not keep the posts of each account or the endorsements of each post,
+ * so views list them by going through every post in the version, which takes time proportional to the number of
+ * posts on the platform.
+ */
+public final class PlatformVersion implements PlatformSource {
+    /**
+     * The version of a platform with nothing on it.
+     */
+    private final static PlatformVersion EMPTY = new PlatformVersion(0, PersistentIntMap.empty(),
+            PersistentIntMap.empty(), PersistentIntMap.empty(), 0, 0, 0, 0, 0);
+    /**
+     * The comment IDs of a post with no comments.
+     */
+    private final static int[] NO_COMMENTS = new int[0];
+
+    /**
+     * The number of versions made before this one since the platform was created.
+     */
+    private final long sequence;
+    /**
+     * The accounts on the platform, keyed by ID.
+     */
+    private final PersistentIntMap<AccountRecord> accounts;
+    /**
+     * The IDs of the accounts on the platform keyed by the hash code of their handle. Handles with the same hash
+     * code share an array.
+     */
+    private final PersistentIntMap<int[]> handles;
+    /**
+     * Every post on the platform keyed by ID, including empty posts.
+     */
+    private final PersistentIntMap<PostRecord> posts;
+    /**
+     * The number of original posts on the platform.
+     */
+    private final int totalOriginalPosts;
+    /**
+     * The number of comment posts on the platform.
+     */
+    private final int totalCommentPosts;
+    /**
+     * The number of endorsement posts on the platform.
+     */
+    private final int totalEndorsementPosts;
+    /**
+     * The ID of the post with the most endorsements, or 0 if there is none.
+     */
+    private final int mostEndorsedPost;
+    /**
+     * The ID of the account whose posts have the most endorsements, or 0 if there is none.
+     */
+    private final int mostEndorsedAccount;
+
+    /**
+     * Creates a version.
+     * @param sequence The number of versions made before it
+     * @param accounts The accounts keyed by ID
+     * @param handles The account IDs keyed by the hash code of their handle
+     * @param posts The posts keyed by ID
+     * @param totalOriginalPosts The number of original posts
+     * @param totalCommentPosts The number of comment posts
+     * @param totalEndorsementPosts The number of endorsement posts
+     * @param mostEndorsedPost The ID of the most endorsed post, or 0
+     * @param mostEndorsedAccount The ID of the most endorsed account, or 0
+     */
+    private PlatformVersion(long sequence, PersistentIntMap<AccountRecord> accounts, PersistentIntMap<int[]> handles,
+            PersistentIntMap<PostRecord> posts, int totalOriginalPosts, int totalCommentPosts,
+            int totalEndorsementPosts, int mostEndorsedPost, int mostEndorsedAccount){
+        this.sequence = sequence;
+        this.accounts = accounts;
+        this.handles = handles;
+        this.posts = posts;
+        this.totalOriginalPosts = totalOriginalPosts;
+        this.totalCommentPosts = totalCommentPosts;
+        this.totalEndorsementPosts = totalEndorsementPosts;
+        this.mostEndorsedPost = mostEndorsedPost;
+        this.mostEndorsedAccount = mostEndorsedAccount;
+    }
+
+    /**
+     * Returns the version of a platform with nothing on it.
+     * @return The empty version
+     */
+    public static PlatformVersion empty(){
+        return EMPTY;
+    }
+
+    /**
+     * Makes the version that follows this one once a platform has made some changes. This version is not changed.
+     * @param platform The platform, fully held in memory, that this version is a copy of apart from the changes
+     * @param changes The posts and accounts the platform has changed since this version was made
+     * @return The new version
+     */
+    PlatformVersion next(SocialMedia platform, ChangeSet changes){
+        Update update = new Update(changes.isReplaced() ? EMPTY : this, sequence + 1);
+        if (changes.isReplaced()){
+            for (Account a : platform.getAccounts()){
+                update.account(a.getID(), a);
+            }
+            for (Post p : platform.getPosts()){
+                update.post(p.getID(), p);
+            }
+        } else{
+            for (int i = 0; i < changes.getAccountCount(); i++){
+                int id = changes.getAccount(i);
+                update.account(id, platform.getAccount(id));
+            }
+            for (int i = 0; i < changes.getPostCount(); i++){
+                int id = changes.getPost(i);
+                update.post(id, platform.getPost(id));
+            }
+        }
+        update.countChangedPosts();
+        return new PlatformVersion(sequence + 1, update.accounts.build(), update.handles.build(), update.posts.build(),
+                platform.getTotalOriginalPosts(), platform.getTotalCommentPosts(), platform.getTotalEndorsmentPosts(),
+                platform.getMostEndorsedPost(), platform.getMostEndorsedAccount());
+    }
+
+    /**
+     * Returns the number of versions made before this one since the platform was created. Later versions have
+     * higher sequence numbers.
+     * @return The sequence number of the version
+     */
+    public long getSequence(){
+        return sequence;
+    }
+
+    /**
+     * Returns the details of an account, as SocialMediaPlatform.showAccount does.
+     * @param handle The handle of the account
+     * @return The details of the account
+     * @throws HandleNotRecognisedException If no account has the handle
+     */
+    public String showAccount(String handle) throws HandleNotRecognisedException{
+        return account(findAccount(handle)).toString();
+    }
+
+    /**
+     * Returns the details of a post, as SocialMediaPlatform.showIndividualPost does.
+     * @param id The ID of the post
+     * @return The details of the post
+     * @throws PostIDNotRecognisedException If there is no post with the ID
+     */
+    public String showIndividualPost(int id) throws PostIDNotRecognisedException{
+        findPost(id);
+        return post(id).toString();
+    }
+
+    /**
+     * Returns a post and every comment below it, as SocialMediaPlatform.showPostChildrenDetails does.
+     * @param id The ID of the post
+     * @return The thread
+     * @throws PostIDNotRecognisedException If there is no post with the ID
+     * @throws NotActionablePostException If the post is an endorsement
+     */
+    public StringBuilder showPostChildrenDetails(int id) throws PostIDNotRecognisedException, NotActionablePostException{
+        return ThreadRenderer.render(findThreadPost(id), new StringBuilder());
+    }
+
+    /**
+     * Writes a post and every comment below it to an Appendable, as SocialMediaPlatform.showPostChildrenDetails
+     * does.
+     * @param id The ID of the post
+     * @param out Where the thread is written to
+     * @throws PostIDNotRecognisedException If there is no post with the ID
+     * @throws NotActionablePostException If the post is an endorsement
+     * @throws IOException If out cannot be written to
+     */
+    public void showPostChildrenDetails(int id, Appendable out)
+            throws PostIDNotRecognisedException, NotActionablePostException, IOException{
+        streamPostChildrenDetails(id, new ChunkedOutput(out));
+    }
+
+    /**
+     * Writes a post and every comment below it to a channel as UTF-8, as SocialMediaPlatform.showPostChildrenDetails
+     * does.
+     * @param id The ID of the post
+     * @param channel Where the thread is written to
+     * @throws PostIDNotRecognisedException If there is no post with the ID
+     * @throws NotActionablePostException If the post is an endorsement
+     * @throws IOException If the channel cannot be written to
+     */
+    public void showPostChildrenDetails(int id, WritableByteChannel channel)
+            throws PostIDNotRecognisedException, NotActionablePostException, IOException{
+        streamPostChildrenDetails(id, new ChunkedOutput(channel));
+    }
+
+    /**
+     * Returns a page of a post and the comments below it, as SocialMediaPlatform.getThreadPage does. A cursor from
+     * one version can be used with a later one.
+     * @param id The ID of the post
+     * @param cursor Where the previous page ended, or null for the first page
+     * @param limit Maximum number of posts on the page, at least 1
+     * @param maxDepth Maximum number of levels of comments included below the post
+     * @param maxChildren Maximum number of comments included under each post
+     * @return The page
+     * @throws PostIDNotRecognisedException If there is no post with the ID
+     * @throws NotActionablePostException If the post is an endorsement
+     */
+    public ThreadPage getThreadPage(int id, String cursor, int limit, int maxDepth, int maxChildren)
+            throws PostIDNotRecognisedException, NotActionablePostException{
+        return ThreadRenderer.renderPage(findThreadPost(id), cursor, limit, maxDepth, maxChildren);
+    }
+
+    /**
+     * Returns the number of accounts on the platform.
+     * @return Number of accounts
+     */
+    public int getNumberOfAccounts(){
+        return accounts.size();
+    }
+
+    /**
+     * Returns the number of original posts on the platform.
+     * @return Number of original posts
+     */
+    public int getTotalOriginalPosts(){
+        return totalOriginalPosts;
+    }
+
+    /**
+     * Returns the number of endorsement posts on the platform.
+     * @return Number of endorsement posts
+     */
+    public int getTotalEndorsmentPosts(){
+        return totalEndorsementPosts;
+    }
+
+    /**
+     * Returns the number of comment posts on the platform.
+     * @return Number of comment posts
+     */
+    public int getTotalCommentPosts(){
+        return totalCommentPosts;
+    }
+
+    /**
+     * Returns the ID of the post with the most endorsements.
+     * @return ID of the post, or 0 if there is none
+     */
+    public int getMostEndorsedPost(){
+        return mostEndorsedPost;
+    }
+
+    /**
+     * Returns the ID of the account whose posts have the most endorsements.
+     * @return ID of the account, or 0 if there is none
+     */
+    public int getMostEndorsedAccount(){
+        return mostEndorsedAccount;
+    }
+
+    /**
+     * Returns a view of an account.
+     * @param id ID of the account
+     * @return The account, or null if there is no account with the ID
+     */
+    public Account account(int id){
+        AccountRecord record = accounts.get(id);
+        if (record == null){
+            return null;
+        }
+        return new Account(id, record.handle, record.description, this);
+    }
+
+    /**
+     * Returns a view of a post.
+     * @param id ID of the post
+     * @return The post, or null if there is no post with the ID
+     */
+    public Post post(int id){
+        PostRecord record = posts.get(id);
+        if (record == null){
+            return null;
+        }
+        Account account = record.accountId == 0 ? null : account(record.accountId);
+        Post p;
+        if (record.type == PlatformSnapshot.COMMENT_POST){
+            p = new Comment(id, account, record.message, this);
+        } else if (record.type == PlatformSnapshot.ENDORSEMENT_POST){
+            p = new EndorsementPost(id, account, record.message, this);
+        } else{
+            p = new Post(id, account, record.message, this);
+        }
+        p.setTimestamp(record.timestamp);
+        if (record.accountId == 0){
+            p.setPostToEmpty();
+        }
+        return p;
+    }
+
+    /**
+     * Returns views of the posts an account has made, of every type, in the order of their IDs. Every post in the
+     * version is gone through to find them.
+     * @param accountId ID of the account
+     * @return The posts
+     */
+    @Override
+    public ArrayList<Post> readAccountPosts(int accountId){
+        int[] ids = postIdsWhere(r -> r.accountId == accountId);
+        ArrayList<Post> list = new ArrayList<Post>(ids.length);
+        for (int id : ids){
+            list.add(post(id));
+        }
+        return list;
+    }
+
+    @Override
+    public ArrayList<Comment> readComments(int postId){
+        PostRecord record = posts.get(postId);
+        ArrayList<Comment> list = new ArrayList<Comment>(record.commentIdCount);
+        for (int i = 0; i < record.commentIdCount; i++){
+            list.add((Comment)post(record.commentIds[i]));
+        }
+        return list;
+    }
+
+    /**
+     * Returns views of the endorsements of a post in the order of their IDs. An empty post has none, as deleting a
+     * post deletes its endorsements. Every post in the version is gone through to find them.
+     * @param postId ID of the post
+     * @return The endorsements
+     */
+    @Override
+    public ArrayList<EndorsementPost> readEndorsements(int postId){
+        if (posts.get(postId).accountId == 0){ // Only older saves hold endorsements of an empty post
+            return new ArrayList<EndorsementPost>();
+        }
+        int[] ids = postIdsWhere(r -> r.type == PlatformSnapshot.ENDORSEMENT_POST && r.referenceId == postId && r.accountId != 0);
+        ArrayList<EndorsementPost> list = new ArrayList<EndorsementPost>(ids.length);
+        for (int id : ids){
+            list.add((EndorsementPost)post(id));
+        }
+        return list;
+    }
+
+    @Override
+    public Post readReferencePost(int postId){
+        return post(posts.get(postId).referenceId);
+    }
+
+    @Override
+    public int originalPostCountOf(int accountId){
+        return accounts.get(accountId).originalPostCount;
+    }
+
+    @Override
+    public int totalPostCountOf(int accountId){
+        return accounts.get(accountId).postCount;
+    }
+
+    @Override
+    public int endorsementCountOf(int accountId){
+        return accounts.get(accountId).endorsementCount;
+    }
+
+    @Override
+    public int endorsementCountOfPost(int postId){
+        return posts.get(postId).endorsementCount;
+    }
+
+    @Override
+    public int commentCountOf(int postId){
+        return posts.get(postId).commentCount;
+    }
+
+    /**
+     * Returns the ID of the account with a handle.
+     * @param handle The handle
+     * @return ID of the account
+     * @throws HandleNotRecognisedException If no account has the handle
+     */
+    private int findAccount(String handle) throws HandleNotRecognisedException{
+        int[] ids = handle == null ? null : handles.get(handle.hashCode());
+        if (ids != null){
+            for (int id : ids){
+                if (accounts.get(id).handle.equals(handle)){
+                    return id;
+                }
+            }
+        }
+        throw new HandleNotRecognisedException();
+    }
+
+    /**
+     * Returns the IDs of the posts whose records match a condition, going through every post in the version.
+     * @param condition The condition
+     * @return The IDs in ascending order
+     */
+    private int[] postIdsWhere(Predicate<PostRecord> condition){
+        int[][] found = {new int[8]};
+        int[] count = {0};
+        posts.forEach((record, id) -> {
+            if (condition.test(record)){
+                if (count[0] == found[0].length){
+                    found[0] = Arrays.copyOf(found[0], count[0] * 2);
+                }
+                found[0][count[0]++] = id;
+            }
+        });
+        int[] ids = Arrays.copyOf(found[0], count[0]);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Checks that there is a post, which may be empty, with an ID.
+     * @param id ID of the post
+     * @throws PostIDNotRecognisedException If there is no post with the ID
+     */
+    private void findPost(int id) throws PostIDNotRecognisedException{
+        if (posts.get(id) == null){
+            throw new PostIDNotRecognisedException();
+        }
+    }
+
+    /**
+     * Returns a view of the post a thread is shown from.
+     * @param id ID of the post
+     * @return The post
+     * @throws PostIDNotRecognisedException If there is no post with the ID
+     * @throws NotActionablePostException If the post is an endorsement
+     */
+    private Post findThreadPost(int id) throws PostIDNotRecognisedException, NotActionablePostException{
+        findPost(id);
+        if (posts.get(id).type == PlatformSnapshot.ENDORSEMENT_POST){ //Cannot call method on endorsement posts
+            throw new NotActionablePostException();
+        }
+        return post(id);
+    }
+
+    /**
+     * Writes a post and every comment below it through a chunked output, checking the post before anything is written.
+     * @param id ID of the post the thread is shown from
+     * @param out The chunked output the thread is written through
+     * @throws PostIDNotRecognisedException If there is no post with the ID
+     * @throws NotActionablePostException If the post is an endorsement
+     * @throws IOException If the output cannot be written to
+     */
+    private void streamPostChildrenDetails(int id, ChunkedOutput out)
+            throws PostIDNotRecognisedException, NotActionablePostException, IOException{
+        ThreadRenderer.render(findThreadPost(id), out);
+        out.finish();
+    }
+
+    /**
+     * The building of one version from the previous one. Records made by the update carry its sequence number, so
+     * they are changed in place until the version is made, while records shared with earlier versions are copied
+     * before they are changed.
+     */
+    private final static class Update {
+        /**
+         * The sequence number of the version being made.
+         */
+        private final long sequence;
+        /**
+         * The accounts of the version being made.
+         */
+        private final PersistentIntMap.Builder<AccountRecord> accounts;
+        /**
+         * The account IDs by handle hash code of the version being made.
+         */
+        private final PersistentIntMap.Builder<int[]> handles;
+        /**
+         * The posts of the version being made.
+         */
+        private final PersistentIntMap.Builder<PostRecord> posts;
+        /**
+         * The record each changed post had in the previous version, or null if it is new.
+         */
+        private final ArrayList<PostRecord> previousPosts = new ArrayList<PostRecord>();
+        /**
+         * The record each changed post has in the version being made, or null if it was removed, at the same
+         * position as its previous record.
+         */
+        private final ArrayList<PostRecord> changedPosts = new ArrayList<PostRecord>();
+
+        /**
+         * Starts an update from a version.
+         * @param previous The version the update starts from
+         * @param sequence The sequence number of the version being made
+         */
+        Update(PlatformVersion previous, long sequence){
+            this.sequence = sequence;
+            this.accounts = previous.accounts.builder();
+            this.handles = previous.handles.builder();
+            this.posts = previous.posts.builder();
+        }
+
+        /**
+         * Copies the handle and description of a changed account, adding or removing it if it is new or has been
+         * removed. Its counts are kept from the previous version until the changed posts are counted.
+         * @param id ID of the account
+         * @param account The account on the platform, or null if it has been removed
+         */
+        void account(int id, Account account){
+            AccountRecord previous = accounts.get(id);
+            if (previous != null && previous.sequence == sequence){ // Already updated
+                return;
+            }
+            if (account == null){
+                if (previous != null){
+                    accounts.remove(id);
+                    removeHandle(previous.handle, id);
+                }
+                return;
+            }
+            AccountRecord record = new AccountRecord(sequence, account.getHandle(), account.getDescription(), previous);
+            accounts.put(id, record);
+            if (previous == null){
+                addHandle(record.handle, id);
+            } else if (!previous.handle.equals(record.handle)){
+                removeHandle(previous.handle, id);
+                addHandle(record.handle, id);
+            }
+        }
+
+        /**
+         * Copies a changed post. Its comment count is kept from the previous version until the changed posts are
+         * counted.
+         * @param id ID of the post
+         * @param p The post on the platform, or null if it has been removed
+         */
+        void post(int id, Post p){
+            PostRecord previous = posts.get(id);
+            if (previous != null && previous.sequence == sequence){ // Already updated
+                return;
+            }
+            PostRecord record = null;
+            if (p == null){
+                if (previous == null){
+                    return;
+                }
+                posts.remove(id);
+            } else{
+                record = new PostRecord(sequence, p, previous);
+                posts.put(id, record);
+            }
+            previousPosts.add(previous);
+            changedPosts.add(record);
+        }
+
+        /**
+         * Brings the counts of the accounts and posts up to date with the changed posts, by taking away what each
+         * changed post counted for in the previous version and adding what it counts for now.
+         */
+        void countChangedPosts(){
+            for (int i = 0; i < changedPosts.size(); i++){
+                count(previousPosts.get(i), -1);
+                count(changedPosts.get(i), 1);
+            }
+        }
+
+        /**
+         * Adds or takes away what a post counts for: a post of its account, and its endorsements, if it is live, and
+         * a comment of the post it comments on if it is a live comment.
+         * @param record The record of the post, or null if there is none
+         * @param change 1 to add the post, -1 to take it away
+         */
+        private void count(PostRecord record, int change){
+            if (record == null || record.accountId == 0){ // Empty posts count for nothing
+                return;
+            }
+            AccountRecord account = editableAccount(record.accountId);
+            if (account != null){
+                account.postCount += change;
+                account.endorsementCount += change * record.endorsementCount;
+                if (record.type == PlatformSnapshot.ORIGINAL_POST){
+                    account.originalPostCount += change;
+                }
+            }
+            if (record.type == PlatformSnapshot.COMMENT_POST){
+                PostRecord parent = editablePost(record.referenceId);
+                if (parent != null){
+                    parent.commentCount += change;
+                }
+            }
+        }
+
+        /**
+         * Returns the record of an account that this update can change, copying it if it is shared with an earlier
+         * version.
+         * @param id ID of the account
+         * @return The record, or null if the account has been removed
+         */
+        private AccountRecord editableAccount(int id){
+            AccountRecord record = accounts.get(id);
+            if (record == null || record.sequence == sequence){
+                return record;
+            }
+            record = new AccountRecord(sequence, record.handle, record.description, record);
+            accounts.put(id, record);
+            return record;
+        }
+
+        /**
+         * Returns the record of a post that this update can change, copying it if it is shared with an earlier
+         * version.
+         * @param id ID of the post
+         * @return The record, or null if there is no post with the ID
+         */
+        private PostRecord editablePost(int id){
+            PostRecord record = posts.get(id);
+            if (record == null || record.sequence == sequence){
+                return record;
+            }
+            record = new PostRecord(sequence, record);
+            posts.put(id, record);
+            return record;
+        }
+
+        /**
+         * Adds an account to the IDs kept for the hash code of its handle.
+         * @param handle The handle of the account
+         * @param id ID of the account
+         */
+        private void addHandle(String handle, int id){
+            int[] ids = handles.get(handle.hashCode());
+            if (ids == null){
+                ids = new int[]{id};
+            } else{
+                ids = Arrays.copyOf(ids, ids.length + 1);
+                ids[ids.length - 1] = id;
+            }
+            handles.put(handle.hashCode(), ids);
+        }
+
+        /**
+         * Removes an account from the IDs kept for the hash code of its handle.
+         * @param handle The handle of the account
+         * @param id ID of the account
+         */
+        private void removeHandle(String handle, int id){
+            int[] ids = handles.get(handle.hashCode());
+            if (ids == null){
+                return;
+            }
+            int[] remaining = new int[ids.length];
+            int count = 0;
+            for (int other : ids){
+                if (other != id){
+                    remaining[count++] = other;
+                }
+            }
+            if (count == 0){
+                handles.remove(handle.hashCode());
+            } else{
+                handles.put(handle.hashCode(), Arrays.copyOf(remaining, count));
+            }
+        }
+    }
+
+    /**
+     * The copy of an account in a version. Its counts are only changed by the update that made it, before the
+     * version holding it is handed out.
+     */
+    private final static class AccountRecord {
+        /**
+         * The sequence number of the version the record was made for.
+         */
+        final long sequence;
+        /**
+         * The handle of the account.
+         */
+        final String handle;
+        /**
+         * The description of the account.
+         */
+        final String description;
+        /**
+         * The number of posts of every type the account has made.
+         */
+        int postCount;
+        /**
+         * The number of original posts the account has made.
+         */
+        int originalPostCount;
+        /**
+         * The number of endorsements the posts of the account have.
+         */
+        int endorsementCount;
+
+        /**
+         * Creates the record of an account, with the counts of its previous record.
+         * @param sequence The sequence number of the version the record is made for
+         * @param handle The handle of the account
+         * @param description The description of the account
+         * @param previous The previous record of the account, or null if it is new
+         */
+        AccountRecord(long sequence, String handle, String description, AccountRecord previous){
+            this.sequence = sequence;
+            this.handle = handle;
+            this.description = description;
+            if (previous != null){
+                postCount = previous.postCount;
+                originalPostCount = previous.originalPostCount;
+                endorsementCount = previous.endorsementCount;
+            }
+        }
+    }
+
+    /**
+     * The copy of a post in a version. Its comment count is only changed by the update that made it, before the
+     * version holding it is handed out.
+     * <p>
+     * Comments are only ever added to the end of the list of comments of a post, so the record of a post shares
+     * its array of comment IDs with its previous records, each of which reads only as far as its own count. New
+     * comments are written after the end of the latest record, where no earlier record reads.
+     */
+    private final static class PostRecord {
+        /**
+         * The sequence number of the version the record was made for.
+         */
+        final long sequence;
+        /**
+         * The ID of the account that made the post, or 0 if the post is empty.
+         */
+        final int accountId;
+        /**
+         * The type of the post, one of the post type constants in PlatformSnapshot.
+         */
+        final byte type;
+        /**
+         * The message of the post.
+         */
+        final String message;
+        /**
+         * The time the post was created, in milliseconds since the epoch.
+         */
+        final long timestamp;
+        /**
+         * The ID of the post commented on or endorsed, or 0 for an original post.
+         */
+        final int referenceId;
+        /**
+         * The number of endorsements the post has.
+         */
+        final int endorsementCount;
+        /**
+         * The IDs of the comments of the post, including empty ones, in the order they were made.
+         */
+        final int[] commentIds;
+        /**
+         * The number of comment IDs in commentIds that belong to this record.
+         */
+        final int commentIdCount;
+        /**
+         * The number of comments of the post that are not empty.
+         */
+        int commentCount;
+
+        /**
+         * Creates the record of a post, with the comment count of its previous record.
+         * @param sequence The sequence number of the version the record is made for
+         * @param p The post
+         * @param previous The previous record of the post, or null if it is new
+         */
+        PostRecord(long sequence, Post p, PostRecord previous){
+            this.sequence = sequence;
+            this.accountId = p.isEmptyPost() ? 0 : p.getAccount().getID();
+            this.type = PlatformSnapshot.typeOf(p);
+            this.message = p.getMessage();
+            this.timestamp = p.getTimestamp();
+            if (p instanceof Comment){
+                referenceId = ((Comment)p).getReferencePost().getID();
+            } else if (p instanceof EndorsementPost){
+                referenceId = ((EndorsementPost)p).getReferencePost().getID();
+            } else{
+                referenceId = 0;
+            }
+            this.endorsementCount = p.isEmptyPost() ? 0 : p.getNumEndorsements();
+            ArrayList<Comment> comments = p.getComments();
+            int[] ids = previous == null ? NO_COMMENTS : previous.commentIds;
+            int copied = previous == null ? 0 : previous.commentIdCount;
+            if (comments.size() > ids.length){
+                ids = Arrays.copyOf(ids, Math.max(comments.size(), ids.length * 2));
+            }
+            for (int i = copied; i < comments.size(); i++){ // Only comments made since the previous record
+                ids[i] = comments.get(i).getID();
+            }
+            this.commentIds = ids;
+            this.commentIdCount = comments.size();
+            this.commentCount = previous == null ? 0 : previous.commentCount;
+        }
+
+        /**
+         * Creates a copy of a record for a later version.
+         * @param sequence The sequence number of the version the copy is made for
+         * @param record The record copied
+         */
+        PostRecord(long sequence, PostRecord record){
+            this.sequence = sequence;
+            this.accountId = record.accountId;
+            this.type = record.type;
+            this.message = record.message;
+            this.timestamp = record.timestamp;
+            this.referenceId = record.referenceId;
+            this.endorsementCount = record.endorsementCount;
+            this.commentIds = record.commentIds;
+            this.commentIdCount = record.commentIdCount;
+            this.commentCount = record.commentCount;
+        }
+    }
+}
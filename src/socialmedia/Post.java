@@ -1,6 +1,7 @@
 package socialmedia;
 
 import  java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import java.io.Serializable;
 
@@ -9,9 +10,13 @@ import java.io.Serializable;
  */
 public class Post implements Serializable{
     /**
-     * ID assigned to next post to be created
+     * Serialisation version, fixed so that platforms saved by earlier builds can still be loaded.
      */
-    protected static int nextID = 1;
+    private static final long serialVersionUID = 1523626360072424684L;
+    /**
+     * ID assigned to next post to be created. Atomic so that posts created on different threads never share an ID.
+     */
+    protected final static AtomicInteger nextID = new AtomicInteger(1);
     /**
      * The account that is making the post.
      */
@@ -25,13 +30,24 @@ public class Post implements Serializable{
      */
     protected String message;
     /**
-     * The list of comments that refer to this post.
+     * The time the post was created, in milliseconds since the epoch, or 0 if it was saved by a version that did not
+     * record it.
+     */
+    protected long timestamp;
+    /**
+     * The list of comments that refer to this post. Null until first used if the post was read from a mapped
+     * snapshot or compact store.
      */
     protected ArrayList<Comment> comments = new ArrayList<Comment>();
     /**
-     * The list of endorsements that are about this post.
+     * The list of endorsements that are about this post. Null until first used if the post was read from a
+     * mapped snapshot or compact store.
      */
     protected ArrayList<EndorsementPost> endorsements = new ArrayList<EndorsementPost>();
+    /**
+     * The mapped snapshot or compact store the post was read from, or null if it was not read lazily.
+     */
+    protected transient PlatformSource source;
     /**
      * A flag to indicate whether this post is a generic empty post.
      */
@@ -44,6 +60,11 @@ public class Post implements Serializable{
      * A flag to indicate whether the commentCount attribute is up to date.
      */
     protected boolean commentCountUptoDate;
+    /**
+     * The position of the post in the list of posts of its account, so that it can be removed from the list without
+     * searching it. Not saved, as it is renumbered the first time it is found to be wrong.
+     */
+    private transient int accountSlot;
 
     /**
      * Creates an instance of the Post object. Assigns a message, an ID and an account to the post object.
@@ -53,10 +74,42 @@ public class Post implements Serializable{
     public Post(Account account, String message){
         this.message=message;
         this.account=account;
-        postID=nextID++;
+        postID=nextID.getAndIncrement();
+        timestamp = System.currentTimeMillis();
+        isEmptyPost = false;
+        commentCountUptoDate = false;
+    }
+    /**
+     * Creates an instance of the Post object with an ID that has already been assigned, for example when loading a
+     * saved platform. The sequential ID is not changed.
+     * @param postID ID of the post
+     * @param account Account that created the post
+     * @param message Text contained in the post
+     */
+    Post(int postID, Account account, String message){
+        this.message=message;
+        this.account=account;
+        this.postID=postID;
         isEmptyPost = false;
         commentCountUptoDate = false;
     }
+    /**
+     * Creates an instance of the Post object that is read from a mapped snapshot or compact store. Its comments
+     * and endorsements are only read from the source when they are first used, and its comment count is taken
+     * from the source.
+     * @param postID ID of the post
+     * @param account Account that created the post
+     * @param message Text contained in the post
+     * @param source The mapped snapshot or compact store the post is being read from
+     */
+    Post(int postID, Account account, String message, PlatformSource source){
+        this(postID, account, message);
+        this.source = source;
+        this.comments = null;
+        this.endorsements = null;
+        this.commentCount = source.commentCountOf(postID);
+        this.commentCountUptoDate = true;
+    }
 
     /**
      * Returns the account that created the post
@@ -79,6 +132,20 @@ public class Post implements Serializable{
     public String getMessage(){
         return message;
     }
+    /**
+     * Returns the time the post was created
+     * @return Creation time in milliseconds since the epoch, or 0 if it is not known
+     */
+    public long getTimestamp(){
+        return timestamp;
+    }
+    /**
+     * Sets the time the post was created, for a post read from a saved platform
+     * @param timestamp Creation time in milliseconds since the epoch
+     */
+    void setTimestamp(long timestamp){
+        this.timestamp = timestamp;
+    }
     /**
      * Returns the total number of comments directly about the post
      * @return Number of comments the post has
@@ -86,7 +153,7 @@ public class Post implements Serializable{
     public int getNumComments(){
         if (!commentCountUptoDate){
             int total = 0;
-            for (Comment c : comments){
+            for (Comment c : getComments()){
                 if (!c.isEmptyPost()){
                     total +=1;
                 }
@@ -102,11 +169,28 @@ public class Post implements Serializable{
     public void setCommentCountUptoDateToFalse(){ 
         commentCountUptoDate = false;
     }
+    /**
+     * Returns the position of the post in the list of posts of its account. It may be out of date after a load.
+     * @return Index of the post in the list of posts of its account
+     */
+    int getAccountSlot(){
+        return accountSlot;
+    }
+    /**
+     * Records the position of the post in the list of posts of its account.
+     * @param slot Index of the post in the list of posts of its account
+     */
+    void setAccountSlot(int slot){
+        accountSlot = slot;
+    }
     /**
      * Returns the total number of endorsement about the post
      * @return Number of endorsements about the post 
      */
     public int getNumEndorsements(){
+        if (endorsements == null){ // Endorsements have not been read from the source yet
+            return source.endorsementCountOfPost(postID);
+        }
         return endorsements.size();
     }
 
@@ -115,6 +199,9 @@ public class Post implements Serializable{
      * @return ArrayList of comment objects about the post
      */
     public ArrayList<Comment> getComments() {
+        if (comments == null){ // Comments of a post read lazily are read on first use
+            comments = source.readComments(postID);
+        }
         return comments;
     }
 
@@ -123,6 +210,9 @@ public class Post implements Serializable{
      * @return ArrayList of endorsementPost objects about the post
      */
     public ArrayList<EndorsementPost> getEndorsements() {
+        if (endorsements == null){ // Endorsements of a post read lazily are read on first use
+            endorsements = source.readEndorsements(postID);
+        }
         return endorsements;
     }
     /**
@@ -130,7 +220,15 @@ public class Post implements Serializable{
      * @return ID to be used by the next post that is created
      */
     public static int getNextId(){
-        return nextID;
+        return nextID.get();
+    }
+    /**
+     * Takes the next sequential ID for a post that is stored without creating a Post object, for example by a
+     * CompactStore.
+     * @return The ID taken
+     */
+    static int takeNextId(){
+        return nextID.getAndIncrement();
     }
 
     /**
@@ -148,7 +246,7 @@ public class Post implements Serializable{
      * @param id The value to assign to nextID
      */
     public static void setNextId(int id){
-        nextID=id;
+        nextID.set(id);
     }
     /**
      * Updates the message of the post to provided message
@@ -170,14 +268,14 @@ public class Post implements Serializable{
      * Restets the static ID count of the Post class so that the next post created will have an ID of 1
      */
     public static void resetIdCount(){
-        nextID = 1;
+        nextID.set(1);
     }
     /**
      * Add a comment to the list of comments about the post
      * @param c Comment object about the post
      */
     public void addComment(Comment c){
-        comments.add(c);
+        getComments().add(c);
         commentCountUptoDate = false;
     }
     /**
@@ -185,21 +283,38 @@ public class Post implements Serializable{
      * @param e Endorsement object about the post
      */
     public void addEndorsementPost(EndorsementPost e){
+        ArrayList<EndorsementPost> endorsements = getEndorsements();
+        e.setEndorsementSlot(endorsements.size());
         endorsements.add(e);
     }
 
     /**
-     * Removes a single EndorsementPost object from the list of edorsements stored in a post object
+     * Removes a single EndorsementPost object from the list of edorsements stored in a post object. The last
+     * endorsement in the list is moved into its place, so the removal takes constant time.
      * @param e The EndorsementPost object that is being removed
      */
     public void removeEndorsement(EndorsementPost e){
-        endorsements.remove(e);
+        ArrayList<EndorsementPost> endorsements = getEndorsements();
+        int slot = e.getEndorsementSlot();
+        if (slot >= endorsements.size() || endorsements.get(slot) != e){ // Renumber slots that were not saved
+            for (int i = 0; i < endorsements.size(); i++){
+                endorsements.get(i).setEndorsementSlot(i);
+            }
+            slot = e.getEndorsementSlot();
+        }
+        if (slot < endorsements.size() && endorsements.get(slot) == e){
+            EndorsementPost last = endorsements.remove(endorsements.size() - 1);
+            if (last != e){
+                endorsements.set(slot, last);
+                last.setEndorsementSlot(slot);
+            }
+        }
     }
     /**
      * Clears the list of endorsements stored in the post Object
      */
     public void clearEndorsements(){
-        this.endorsements.clear();
+        getEndorsements().clear();
     }
 
     /**
@@ -214,46 +329,31 @@ public class Post implements Serializable{
         }
     }
     /**
-     * Searches through all of the posts stored in accounts and all of the empty posts stored in an emptyPostList.
-     * Returns the Post object that has the given ID
+     * Looks up a post in the post index and returns the Post object that has the given ID. Empty posts are only
+     * returned when includeEmptyPosts is true, as they cannot be acted upon.
      * @param id ID of the post to be returned 
-     * @param accountList List of accounts stored in SocialMedia
-     * @param emptyPostList List of empty posts 
+     * @param postIndex Index of all posts stored in SocialMedia
+     * @param includeEmptyPosts Whether an empty post with the given ID should be returned
      * @return Post that has the ID that is passed in
      * @throws PostIDNotRecognisedException There is no post that has the given ID
      */
-    public static Post findPostByID(int id, ArrayList<Account> accountList, ArrayList<Post> emptyPostList) throws PostIDNotRecognisedException{
-        for (Account a : accountList){ // Searches through posts stored in accounts
-            for(Post p : a.getPosts()){
-                if (p.getID() == id){
-                    return p;
-                }
-            }
-        }
-        for (Post p : emptyPostList){ // Searches through posts stored in emptyPostList
-            if (p.getID() == id){
-                return p;
-            }
+    public static Post findPostByID(int id, PostIndex postIndex, boolean includeEmptyPosts) throws PostIDNotRecognisedException{
+        Post p = postIndex.get(id);
+        if (p == null || (p.isEmptyPost() && !includeEmptyPosts)){
+            throw new PostIDNotRecognisedException();
         }
-        throw new PostIDNotRecognisedException();
+        return p;
     }
     /**
-     * Searches through all of the posts stored in accounts and returns the Post object that has the given ID
+     * Looks up a post in the post index and returns the Post object that has the given ID. Empty posts are
+     * treated as if they do not exist.
      * @param id ID of the post to be returned 
-     * @param accountList List of accounts stored in SocialMedia
+     * @param postIndex Index of all posts stored in SocialMedia
      * @return Post that has the ID that is passed in
      * @throws PostIDNotRecognisedException There is no post that has the given ID
      */
-    public static Post findPostByID(int id, ArrayList<Account> accountList) throws PostIDNotRecognisedException{
-        for (Account a : accountList){ // Searches through posts stored in accounts
-            for(Post p : a.getPosts()){
-                if (p.getID() == id){
-                    return p;
-                }
-            }
-            
-        }
-        throw new PostIDNotRecognisedException();
+    public static Post findPostByID(int id, PostIndex postIndex) throws PostIDNotRecognisedException{
+        return findPostByID(id, postIndex, false);
     }
     
     /**
@@ -0,0 +1,216 @@
+package socialmedia;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash index of every post on the platform keyed by the post ID. Post IDs are stored as primitive ints in an
+ * open addressing table so a lookup does not need to box the ID. Deleted (empty) posts stay in the index so they
+ * can still be shown.
+ */
+public class PostIndex implements Iterable<Post>, Serializable{
+    /**
+     * Serialisation version, fixed so that a platform serialised with this class can be read by later builds.
+     */
+    private static final long serialVersionUID = -295299312170655470L;
+    /**
+     * The number of slots the table starts with. Must be a power of two.
+     */
+    private final static int INITIAL_CAPACITY = 64;
+    /**
+     * The key stored in a slot that holds no post. Post IDs start at 1 so this can never be a real ID.
+     */
+    private final static int EMPTY_SLOT = 0;
+    /**
+     * The IDs of the posts stored in each slot of the table.
+     */
+    private int[] keys;
+    /**
+     * The posts stored in each slot of the table.
+     */
+    private Post[] values;
+    /**
+     * The number of posts in the index.
+     */
+    private int size;
+
+    /**
+     * Creates an empty post index.
+     */
+    public PostIndex(){
+        clear();
+    }
+
+    /**
+     * Returns the number of posts in the index.
+     * @return Number of posts in the index
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Returns the post with the given ID.
+     * @param id ID of the post to find
+     * @return The post with the given ID, or null if there is no post with that ID
+     */
+    public Post get(int id){
+        int mask = keys.length - 1;
+        for (int slot = slotFor(id, mask); keys[slot] != EMPTY_SLOT; slot = (slot + 1) & mask){
+            if (keys[slot] == id){
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a post to the index, replacing any post that already has the same ID.
+     * @param p Post to be added to the index
+     */
+    public void put(Post p){
+        if ((size + 1) * 4 > keys.length * 3){ // Keep the table at most three quarters full
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int slot = slotFor(p.getID(), mask);
+        while (keys[slot] != EMPTY_SLOT){
+            if (keys[slot] == p.getID()){
+                values[slot] = p;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = p.getID();
+        values[slot] = p;
+        size++;
+    }
+
+    /**
+     * Grows the table, if needed, so that it can hold a number of posts without having to grow again.
+     * @param expectedSize Number of posts the index is expected to hold
+     */
+    public void ensureCapacity(int expectedSize){
+        int capacity = keys.length;
+        while ((long) expectedSize * 4 > (long) capacity * 3){
+            capacity *= 2;
+        }
+        if (capacity != keys.length){
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Removes the post with the given ID from the index. The posts after it in the same probe sequence are
+     * shifted back so no tombstones are left in the table.
+     * @param id ID of the post to be removed
+     * @return The post that was removed, or null if there was no post with that ID
+     */
+    public Post remove(int id){
+        int mask = keys.length - 1;
+        int slot = slotFor(id, mask);
+        while (keys[slot] != id){
+            if (keys[slot] == EMPTY_SLOT){
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        Post removed = values[slot];
+        int next = (slot + 1) & mask;
+        while (keys[next] != EMPTY_SLOT){ // Move back any entry that would no longer be reachable
+            int home = slotFor(keys[next], mask);
+            if (((next - home) & mask) >= ((next - slot) & mask)){
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[slot] = EMPTY_SLOT;
+        values[slot] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Removes every post from the index.
+     */
+    public void clear(){
+        keys = new int[INITIAL_CAPACITY];
+        values = new Post[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Returns an iterator over every post in the index, in no particular order.
+     * @return Iterator over the posts in the index
+     */
+    @Override
+    public Iterator<Post> iterator(){
+        return new Iterator<Post>(){
+            private int slot = nextOccupied(0);
+
+            @Override
+            public boolean hasNext(){
+                return slot < keys.length;
+            }
+
+            @Override
+            public Post next(){
+                if (!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                Post p = values[slot];
+                slot = nextOccupied(slot + 1);
+                return p;
+            }
+        };
+    }
+
+    /**
+     * Returns the first occupied slot at or after the given slot.
+     * @param from Slot to start searching from
+     * @return Index of the next occupied slot, or the length of the table if there are none
+     */
+    private int nextOccupied(int from){
+        while (from < keys.length && keys[from] == EMPTY_SLOT){
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Returns the slot that a post ID hashes to. Post IDs are sequential so they are scrambled first to spread
+     * runs of IDs across the table.
+     * @param id ID of the post
+     * @param mask One less than the length of the table
+     * @return Home slot of the ID
+     */
+    private static int slotFor(int id, int mask){
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Moves every post into a new table with the given number of slots.
+     * @param capacity Number of slots in the new table. Must be a power of two.
+     */
+    private void resize(int capacity){
+        int[] oldKeys = keys;
+        Post[] oldValues = values;
+        keys = new int[capacity];
+        values = new Post[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++){
+            if (oldKeys[i] != EMPTY_SLOT){
+                int slot = slotFor(oldKeys[i], mask);
+                while (keys[slot] != EMPTY_SLOT){
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,654 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * An inverted index of the words in the messages of original and comment posts, used by searchPosts. Endorsements are
+ * not indexed, as their message is a copy of the post they endorse.
+ * <p>
+ * A message is split into terms at every character that is not a letter or digit, and terms are lower case. Each
+ * term has a posting list of the IDs of the posts that contain it, in ascending order. A list is split into blocks of
+ * up to BLOCK_SIZE IDs: the first ID of each block is kept in an int array and the rest as the variable length
+ * differences between neighbouring IDs, which take one or two bytes each for all but the rarest terms. Adding a new
+ * post appends to the last block of each of its terms, and deleting a post rewrites one block of each.
+ * <p>
+ * A query is a list of words, which must all be in a post, and OR between two groups of words matches posts that
+ * match either group. A word ending in '*' matches every term starting with it. Results are the newest posts first.
+ * They are found by walking the posting lists from their newest IDs with cursors that skip whole blocks, so a query
+ * stops as soon as it has found the posts it was asked for, however long the lists are.
+ */
+public class PostSearchIndex {
+    /**
+     * The most IDs a block of a posting list holds.
+     */
+    public final static int BLOCK_SIZE = 128;
+    /**
+     * The word that separates the groups of a query, either of which a post can match.
+     */
+    public final static String OR = "OR";
+
+    /**
+     * The posting list of each term, looked up by every post added or removed.
+     */
+    private final HashMap<String, PostingList> lists = new HashMap<String, PostingList>();
+    /**
+     * The same posting lists in term order, so the terms starting with a prefix are next to each other. Only
+     * changed when a term is first used or no longer used.
+     */
+    private final TreeMap<String, PostingList> terms = new TreeMap<String, PostingList>();
+
+    /**
+     * Adds a post to the posting lists of the terms in its message.
+     * @param postId ID of the post
+     * @param message Message of the post
+     */
+    public void add(int postId, String message){
+        for (String term : termsOf(message)){
+            PostingList list = lists.get(term);
+            if (list == null){
+                list = new PostingList();
+                lists.put(term, list);
+                terms.put(term, list);
+            }
+            list.add(postId);
+        }
+    }
+
+    /**
+     * Removes a post from the posting lists of the terms in its message. Terms left with no posts are removed.
+     * @param postId ID of the post
+     * @param message Message of the post, as it was added
+     */
+    public void remove(int postId, String message){
+        for (String term : termsOf(message)){
+            PostingList list = lists.get(term);
+            if (list != null){
+                list.remove(postId);
+                if (list.size == 0){
+                    lists.remove(term);
+                    terms.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the newest posts matching a query.
+     * @param query Words that must all be in a post, with OR between alternative groups of words and '*' after a
+     *              word to match every term starting with it
+     * @param limit The most IDs to return
+     * @return IDs of the matching posts, newest first, or an empty array if the limit is not positive or the query
+     *         is null or has no words
+     */
+    public int[] search(String query, int limit){
+        if (limit <= 0 || query == null){
+            return new int[0];
+        }
+        ArrayList<Cursor> groups = new ArrayList<Cursor>();
+        ArrayList<Cursor> words = new ArrayList<Cursor>();
+        for (String word : query.trim().split("\\s+")){
+            if (word.equals(OR)){
+                addGroup(groups, words);
+                words = new ArrayList<Cursor>();
+            } else if (!word.isEmpty()){
+                addWord(words, word);
+            }
+        }
+        addGroup(groups, words);
+        if (groups.isEmpty()){
+            return new int[0];
+        }
+
+        Cursor cursor = groups.size() == 1 ? groups.get(0) : new UnionCursor(groups);
+        int[] found = new int[Math.min(limit, 64)];
+        int count = 0;
+        cursor.seek(Integer.MAX_VALUE);
+        while (count < limit && cursor.current() > 0){
+            if (count == found.length){
+                found = Arrays.copyOf(found, (int)Math.min(limit, found.length * 2L));
+            }
+            found[count++] = cursor.current();
+            cursor.seek(cursor.current() - 1);
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Returns the number of distinct terms in the index.
+     * @return Number of terms
+     */
+    public int getTermCount(){
+        return terms.size();
+    }
+
+    /**
+     * Writes the index as its term count followed by each term, its number of posts and its blocks as they are
+     * held in memory, so reading it back does not have to compress the lists again.
+     * @param out Output to write to
+     * @throws IOException If the index cannot be written
+     */
+    public void write(BufferedChannelOutput out) throws IOException{
+        out.writeInt(terms.size());
+        for (Map.Entry<String, PostingList> entry : terms.entrySet()){
+            PostingList list = entry.getValue();
+            out.writeString(entry.getKey());
+            out.writeInt(list.size);
+            out.writeInt(list.blockCount);
+            for (int b = 0; b < list.blockCount; b++){
+                out.writeInt(list.firstIds[b]);
+                out.writeInt(list.counts[b]);
+                out.writeInt(list.lengths[b]);
+                out.writeBytes(Arrays.copyOf(list.blocks[b], list.lengths[b]));
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by write.
+     * @param in Input positioned at the start of the index
+     * @return The index
+     * @throws IOException If the index cannot be read
+     */
+    public static PostSearchIndex read(BufferedChannelInput in) throws IOException{
+        PostSearchIndex index = new PostSearchIndex();
+        for (int termCount = in.readInt(); termCount > 0; termCount--){
+            String term = in.readString();
+            PostingList list = new PostingList();
+            list.size = in.readInt();
+            list.setBlockCount(in.readInt());
+            for (int b = 0; b < list.blockCount; b++){
+                list.firstIds[b] = in.readInt();
+                list.counts[b] = in.readInt();
+                list.lengths[b] = in.readInt();
+                list.blocks[b] = in.readBytes(list.lengths[b]);
+            }
+            list.lastId = list.blockCount == 0 ? 0 : list.lastIdOf(list.blockCount - 1);
+            index.lists.put(term, list);
+            index.terms.put(term, list);
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index of every original and comment post that has not been deleted.
+     * @param posts The posts
+     * @return The index
+     */
+    public static PostSearchIndex of(Iterable<Post> posts){
+        PostSearchIndex index = new PostSearchIndex();
+        for (Post p : posts){
+            if (!p.isEmptyPost() && !(p instanceof EndorsementPost)){
+                index.add(p.getID(), p.getMessage());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Splits a message into its distinct terms.
+     * @param message The message
+     * @return The lower case terms, each once
+     */
+    static ArrayList<String> termsOf(String message){
+        ArrayList<String> found = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= message.length(); i++){
+            boolean inWord = i < message.length() && Character.isLetterOrDigit(message.charAt(i));
+            if (inWord && start < 0){
+                start = i;
+            } else if (!inWord && start >= 0){
+                String term = message.substring(start, i).toLowerCase();
+                if (!found.contains(term)){ // Messages are short, so a scan is cheaper than a set
+                    found.add(term);
+                }
+                start = -1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds the cursors of one word of a query. A word made of several terms, such as "don't", needs all of them, and
+     * a word ending in '*' makes its last term a prefix.
+     * @param words The cursors of the group the word is in
+     * @param word The word
+     */
+    private void addWord(ArrayList<Cursor> words, String word){
+        boolean isPrefix = word.endsWith("*");
+        ArrayList<String> wordTerms = termsOf(word);
+        for (int i = 0; i < wordTerms.size(); i++){
+            String term = wordTerms.get(i);
+            if (isPrefix && i == wordTerms.size() - 1){
+                ArrayList<Cursor> matches = new ArrayList<Cursor>();
+                for (PostingList list : terms.subMap(term, term + Character.MAX_VALUE).values()){
+                    matches.add(new ListCursor(list));
+                }
+                words.add(matches.size() == 1 ? matches.get(0) : new UnionCursor(matches));
+            } else{
+                PostingList list = lists.get(term);
+                words.add(list == null ? new UnionCursor(new ArrayList<Cursor>()) : new ListCursor(list));
+            }
+        }
+    }
+
+    /**
+     * Adds the cursor of a group of words that must all be in a post, if the group has any words.
+     * @param groups The cursors of the groups of the query
+     * @param words The cursors of the words of the group
+     */
+    private static void addGroup(ArrayList<Cursor> groups, ArrayList<Cursor> words){
+        if (!words.isEmpty()){
+            groups.add(words.size() == 1 ? words.get(0) : new IntersectionCursor(words));
+        }
+    }
+
+    /**
+     * The IDs of the posts containing one term, in ascending order, split into blocks of delta encoded IDs.
+     */
+    private static class PostingList {
+        /**
+         * The first ID of each block.
+         */
+        private int[] firstIds = new int[1];
+        /**
+         * The number of IDs in each block.
+         */
+        private int[] counts = new int[1];
+        /**
+         * The number of bytes in use in each block.
+         */
+        private int[] lengths = new int[1];
+        /**
+         * The differences between the IDs of each block after the first one, as variable length ints.
+         */
+        private byte[][] blocks = new byte[1][];
+        /**
+         * The number of blocks.
+         */
+        private int blockCount;
+        /**
+         * The number of IDs in the list.
+         */
+        private int size;
+        /**
+         * The highest ID in the list.
+         */
+        private int lastId;
+
+        /**
+         * Adds an ID. An ID above every ID in the list is appended to the last block, any other is inserted into its
+         * block.
+         * @param id The ID
+         */
+        void add(int id){
+            if (blockCount > 0 && id <= lastId){
+                int b = blockOf(id);
+                int[] ids = decode(b);
+                int index = Arrays.binarySearch(ids, id);
+                if (index >= 0){
+                    return;
+                }
+                index = -index - 1;
+                int[] inserted = new int[ids.length + 1];
+                System.arraycopy(ids, 0, inserted, 0, index);
+                inserted[index] = id;
+                System.arraycopy(ids, index, inserted, index + 1, ids.length - index);
+                if (inserted.length > BLOCK_SIZE){ // Splits a full block into two halves
+                    insertBlock(b + 1);
+                    encode(b + 1, Arrays.copyOfRange(inserted, inserted.length / 2, inserted.length));
+                    inserted = Arrays.copyOf(inserted, inserted.length / 2);
+                }
+                encode(b, inserted);
+                size++;
+                return;
+            }
+            if (blockCount == 0 || counts[blockCount - 1] == BLOCK_SIZE){
+                insertBlock(blockCount);
+                firstIds[blockCount - 1] = id;
+                counts[blockCount - 1] = 1;
+                blocks[blockCount - 1] = new byte[8];
+            } else{
+                int b = blockCount - 1;
+                if (lengths[b] + 5 > blocks[b].length){
+                    blocks[b] = Arrays.copyOf(blocks[b], Math.max(lengths[b] + 5, Math.min(blocks[b].length * 2, BLOCK_SIZE * 5)));
+                }
+                lengths[b] = writeVarInt(blocks[b], lengths[b], id - lastId);
+                counts[b]++;
+            }
+            lastId = id;
+            size++;
+        }
+
+        /**
+         * Removes an ID, rewriting the block it is in. Nothing happens if the ID is not in the list.
+         * @param id The ID
+         */
+        void remove(int id){
+            if (blockCount == 0 || id < firstIds[0] || id > lastId){
+                return;
+            }
+            int b = blockOf(id);
+            int[] ids = decode(b);
+            int index = Arrays.binarySearch(ids, id);
+            if (index < 0){
+                return;
+            }
+            size--;
+            if (ids.length == 1){
+                System.arraycopy(firstIds, b + 1, firstIds, b, blockCount - b - 1);
+                System.arraycopy(counts, b + 1, counts, b, blockCount - b - 1);
+                System.arraycopy(lengths, b + 1, lengths, b, blockCount - b - 1);
+                System.arraycopy(blocks, b + 1, blocks, b, blockCount - b - 1);
+                blocks[--blockCount] = null;
+            } else{
+                int[] remaining = new int[ids.length - 1];
+                System.arraycopy(ids, 0, remaining, 0, index);
+                System.arraycopy(ids, index + 1, remaining, index, ids.length - index - 1);
+                encode(b, remaining);
+            }
+            if (id == lastId){
+                lastId = blockCount == 0 ? 0 : lastIdOf(blockCount - 1);
+            }
+        }
+
+        /**
+         * Returns the block an ID is in or would be inserted into: the last block whose first ID is not above it.
+         * @param id The ID
+         * @return Position of the block
+         */
+        int blockOf(int id){
+            int index = Arrays.binarySearch(firstIds, 0, blockCount, id);
+            return index >= 0 ? index : Math.max(0, -index - 2);
+        }
+
+        /**
+         * Decodes the IDs of a block.
+         * @param b Position of the block
+         * @return The IDs in ascending order
+         */
+        int[] decode(int b){
+            int[] ids = new int[counts[b]];
+            decodeInto(b, ids);
+            return ids;
+        }
+
+        /**
+         * Decodes the IDs of a block into an array.
+         * @param b Position of the block
+         * @param ids Array with room for the IDs of the block
+         * @return The number of IDs decoded
+         */
+        int decodeInto(int b, int[] ids){
+            byte[] bytes = blocks[b];
+            int id = firstIds[b];
+            ids[0] = id;
+            int position = 0;
+            for (int i = 1; i < counts[b]; i++){
+                int delta = 0;
+                for (int shift = 0; ; shift += 7){
+                    byte next = bytes[position++];
+                    delta |= (next & 0x7F) << shift;
+                    if (next >= 0){
+                        break;
+                    }
+                }
+                id += delta;
+                ids[i] = id;
+            }
+            return counts[b];
+        }
+
+        /**
+         * Returns the highest ID of a block.
+         * @param b Position of the block
+         * @return The ID
+         */
+        int lastIdOf(int b){
+            int[] ids = decode(b);
+            return ids[ids.length - 1];
+        }
+
+        /**
+         * Replaces the contents of a block.
+         * @param b Position of the block
+         * @param ids The IDs of the block in ascending order, at least one
+         */
+        private void encode(int b, int[] ids){
+            byte[] bytes = new byte[(ids.length - 1) * 5];
+            int length = 0;
+            for (int i = 1; i < ids.length; i++){
+                length = writeVarInt(bytes, length, ids[i] - ids[i - 1]);
+            }
+            firstIds[b] = ids[0];
+            counts[b] = ids.length;
+            lengths[b] = length;
+            blocks[b] = b == blockCount - 1 ? bytes : Arrays.copyOf(bytes, length); // Only the last block grows
+        }
+
+        /**
+         * Makes room for a block at a position, moving the blocks after it along.
+         * @param b Position of the new block
+         */
+        private void insertBlock(int b){
+            setBlockCount(blockCount + 1);
+            System.arraycopy(firstIds, b, firstIds, b + 1, blockCount - b - 1);
+            System.arraycopy(counts, b, counts, b + 1, blockCount - b - 1);
+            System.arraycopy(lengths, b, lengths, b + 1, blockCount - b - 1);
+            System.arraycopy(blocks, b, blocks, b + 1, blockCount - b - 1);
+        }
+
+        /**
+         * Sets the number of blocks, growing the arrays if needed.
+         * @param count Number of blocks
+         */
+        private void setBlockCount(int count){
+            if (count > firstIds.length){
+                int capacity = Math.max(count, firstIds.length * 2);
+                firstIds = Arrays.copyOf(firstIds, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                blocks = Arrays.copyOf(blocks, capacity);
+            }
+            blockCount = count;
+        }
+
+        /**
+         * Writes a positive int in seven bit groups, lowest first, with the top bit set on every byte but the last.
+         * @param bytes Array to write to, with room for five bytes
+         * @param position Position to write at
+         * @param value The value
+         * @return The position after the value
+         */
+        private static int writeVarInt(byte[] bytes, int position, int value){
+            while ((value & ~0x7F) != 0){
+                bytes[position++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte)value;
+            return position;
+        }
+    }
+
+    /**
+     * Walks a set of post IDs from the highest down.
+     */
+    private abstract static class Cursor {
+        /**
+         * Returns the ID the cursor is on.
+         * @return The ID, or 0 once the cursor has passed the lowest ID
+         */
+        abstract int current();
+
+        /**
+         * Moves the cursor down to the highest ID that is not above a target. A cursor never moves up.
+         * @param target The target ID
+         */
+        abstract void seek(int target);
+    }
+
+    /**
+     * Walks one posting list, decoding one block at a time.
+     */
+    private static class ListCursor extends Cursor {
+        /**
+         * The list being walked.
+         */
+        private final PostingList list;
+        /**
+         * The IDs of the decoded block.
+         */
+        private final int[] ids = new int[BLOCK_SIZE];
+        /**
+         * The position of the decoded block, or -1 before the first seek.
+         */
+        private int block = -1;
+        /**
+         * The position of the current ID in the decoded block, or -1 once the cursor has passed the lowest ID.
+         */
+        private int index = -1;
+
+        /**
+         * Creates a cursor over a posting list. It is on no ID until it is first moved.
+         * @param list The list
+         */
+        ListCursor(PostingList list){
+            this.list = list;
+        }
+
+        @Override
+        int current(){
+            return index < 0 ? 0 : ids[index];
+        }
+
+        @Override
+        void seek(int target){
+            if (block >= 0 && (index < 0 || ids[index] <= target)){
+                return;
+            }
+            if (list.blockCount == 0 || target < list.firstIds[0]){
+                index = -1;
+                block = 0;
+                return;
+            }
+            int b = list.blockOf(target); // Whole blocks above the target are skipped without being decoded
+            if (b != block){
+                block = b;
+                list.decodeInto(b, ids);
+            }
+            int found = Arrays.binarySearch(ids, 0, list.counts[b], target);
+            index = found >= 0 ? found : -found - 2;
+        }
+    }
+
+    /**
+     * Walks the IDs that are in every one of a set of cursors, by moving each cursor down to the lowest ID the
+     * others are on until they all agree.
+     */
+    private static class IntersectionCursor extends Cursor {
+        /**
+         * The cursors being intersected.
+         */
+        private final ArrayList<Cursor> cursors;
+        /**
+         * The ID the cursors agree on, or 0 once any of them has passed its lowest ID.
+         */
+        private int current;
+        /**
+         * Whether the cursor has been moved yet.
+         */
+        private boolean started;
+
+        /**
+         * Creates a cursor over the intersection of others.
+         * @param cursors The cursors, at least one
+         */
+        IntersectionCursor(ArrayList<Cursor> cursors){
+            this.cursors = cursors;
+        }
+
+        @Override
+        int current(){
+            return current;
+        }
+
+        @Override
+        void seek(int target){
+            if (started && current <= target){
+                return;
+            }
+            started = true;
+            int candidate = target;
+            int agreed = 0;
+            for (int i = 0; agreed < cursors.size(); i = (i + 1) % cursors.size()){
+                Cursor c = cursors.get(i);
+                c.seek(candidate);
+                if (c.current() == 0){
+                    current = 0;
+                    return;
+                }
+                if (c.current() < candidate){
+                    candidate = c.current();
+                    agreed = 1;
+                } else{
+                    agreed++;
+                }
+            }
+            current = candidate;
+        }
+    }
+
+    /**
+     * Walks the IDs that are in any of a set of cursors, keeping the cursors in a heap ordered by the ID they are on.
+     */
+    private static class UnionCursor extends Cursor {
+        /**
+         * The cursors that have not passed their lowest ID, highest ID first.
+         */
+        private final PriorityQueue<Cursor> heap;
+        /**
+         * The cursors before the first seek.
+         */
+        private ArrayList<Cursor> unstarted;
+
+        /**
+         * Creates a cursor over the union of others.
+         * @param cursors The cursors
+         */
+        UnionCursor(ArrayList<Cursor> cursors){
+            heap = new PriorityQueue<Cursor>(Math.max(1, cursors.size()), (a, b) -> Integer.compare(b.current(), a.current()));
+            unstarted = cursors;
+        }
+
+        @Override
+        int current(){
+            return heap.isEmpty() ? 0 : heap.peek().current();
+        }
+
+        @Override
+        void seek(int target){
+            if (unstarted != null){
+                for (Cursor c : unstarted){
+                    c.seek(target);
+                    if (c.current() > 0){
+                        heap.add(c);
+                    }
+                }
+                unstarted = null;
+                return;
+            }
+            while (!heap.isEmpty() && heap.peek().current() > target){
+                Cursor c = heap.poll();
+                c.seek(target);
+                if (c.current() > 0){
+                    heap.add(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package socialmedia;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of the text of posts and accounts as returned by showIndividualPost and showAccount, so reading
+ * the same post or account again does not format it again or recount its posts and endorsements.
+ * <p>
+ * Entries are keyed by post or account ID and evicted least recently used first once the approximate size of the
+ * cached text goes over a budget in bytes, so a few long posts take the room of many short ones. Each entry records
+ * the handle it was rendered with, which is the version it is checked against when it is read: a post or account
+ * whose account has changed handle since is rendered again without any entries having to be found and dropped. Every
+ * other change that alters the text of a post or account (a new or deleted comment or endorsement, a new or deleted
+ * post of an account, a new description) must remove its entry.
+ * <p>
+ * The entries are kept in parallel arrays linked into a list from the most to the least recently used, and found
+ * through an open addressing table of entry positions. Post IDs are used as keys as they are and account IDs are
+ * negated, so one table holds both. A cache is not thread safe.
+ */
+public class RenderCache {
+    /**
+     * The budget of a cache created with no budget given, in bytes.
+     */
+    public final static long DEFAULT_BUDGET = 64L << 20;
+    /**
+     * The approximate number of bytes each entry takes besides its text: the String and its array, and the entry's
+     * slots in the arrays and table.
+     */
+    private final static int ENTRY_OVERHEAD = 80;
+    /**
+     * The number of entries the arrays start with.
+     */
+    private final static int INITIAL_CAPACITY = 64;
+    /**
+     * Marks the end of the list of entries, and a free entry.
+     */
+    private final static int NONE = -1;
+
+    /**
+     * The most bytes the cached entries can take.
+     */
+    private final long budget;
+    /**
+     * The position of each entry plus one, at the slot its key hashes to or the next free slot after it. 0 marks an
+     * empty slot.
+     */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    /**
+     * The key of each entry: the ID of a post or the negated ID of an account.
+     */
+    private int[] keys = new int[INITIAL_CAPACITY];
+    /**
+     * The cached text of each entry, or null for a free entry.
+     */
+    private String[] texts = new String[INITIAL_CAPACITY];
+    /**
+     * The handle of the account each entry was rendered with, or null for a free entry.
+     */
+    private String[] handles = new String[INITIAL_CAPACITY];
+    /**
+     * The next more recently used entry of each entry, or the next free entry.
+     */
+    private int[] newer = new int[INITIAL_CAPACITY];
+    /**
+     * The next less recently used entry of each entry.
+     */
+    private int[] older = new int[INITIAL_CAPACITY];
+    /**
+     * The most recently used entry, or NONE if the cache is empty.
+     */
+    private int newest = NONE;
+    /**
+     * The least recently used entry, or NONE if the cache is empty.
+     */
+    private int oldest = NONE;
+    /**
+     * The first free entry below the number of entries ever used, or NONE if there is none.
+     */
+    private int free = NONE;
+    /**
+     * The number of entry positions that have ever been used.
+     */
+    private int used;
+    /**
+     * The number of entries in the cache.
+     */
+    private int count;
+    /**
+     * The approximate number of bytes the entries take.
+     */
+    private long bytes;
+
+    /**
+     * Creates an empty cache.
+     * @param budget The most bytes the cached entries can take
+     */
+    public RenderCache(long budget){
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the cached text of a post.
+     * @param id ID of the post
+     * @param handle The current handle of the account of the post
+     * @return The text, or null if the post is not cached or was rendered with another handle
+     */
+    public String post(int id, String handle){
+        return get(id, handle);
+    }
+
+    /**
+     * Caches the text of a post, evicting the least recently used entries if the cache goes over its budget.
+     * @param id ID of the post
+     * @param handle The handle of the account of the post the text was rendered with
+     * @param text The text
+     */
+    public void putPost(int id, String handle, String text){
+        put(id, handle, text);
+    }
+
+    /**
+     * Drops the cached text of a post, if there is one.
+     * @param id ID of the post
+     */
+    public void removePost(int id){
+        remove(id);
+    }
+
+    /**
+     * Returns the cached text of an account.
+     * @param id ID of the account
+     * @param handle The current handle of the account
+     * @return The text, or null if the account is not cached or was rendered with another handle
+     */
+    public String account(int id, String handle){
+        return get(-id, handle);
+    }
+
+    /**
+     * Caches the text of an account, evicting the least recently used entries if the cache goes over its budget.
+     * @param id ID of the account
+     * @param handle The handle of the account the text was rendered with
+     * @param text The text
+     */
+    public void putAccount(int id, String handle, String text){
+        put(-id, handle, text);
+    }
+
+    /**
+     * Drops the cached text of an account, if there is one.
+     * @param id ID of the account
+     */
+    public void removeAccount(int id){
+        remove(-id);
+    }
+
+    /**
+     * Returns the number of posts and accounts cached.
+     * @return Number of entries
+     */
+    public int size(){
+        return count;
+    }
+
+    /**
+     * Returns the approximate number of bytes the cached entries take.
+     * @return Size of the entries in bytes, at most the budget
+     */
+    public long getBytes(){
+        return bytes;
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void clear(){
+        table = new int[INITIAL_CAPACITY * 2];
+        keys = new int[INITIAL_CAPACITY];
+        texts = new String[INITIAL_CAPACITY];
+        handles = new String[INITIAL_CAPACITY];
+        newer = new int[INITIAL_CAPACITY];
+        older = new int[INITIAL_CAPACITY];
+        newest = NONE;
+        oldest = NONE;
+        free = NONE;
+        used = 0;
+        count = 0;
+        bytes = 0;
+    }
+
+    /**
+     * Returns the text of an entry and makes it the most recently used. An entry rendered with another handle is
+     * dropped.
+     * @param key Key of the entry
+     * @param handle The current handle
+     * @return The text, or null if there is no entry for the handle
+     */
+    private String get(int key, String handle){
+        int entry = find(key);
+        if (entry == NONE){
+            return null;
+        }
+        if (!handles[entry].equals(handle)){ // The account has changed handle since
+            remove(key);
+            return null;
+        }
+        if (entry != newest){
+            unlink(entry);
+            linkNewest(entry);
+        }
+        return texts[entry];
+    }
+
+    /**
+     * Adds or replaces an entry and evicts the least recently used entries while the cache is over its budget. Text
+     * too large to fit in an eighth of the budget is not cached, so one entry never flushes most of the cache.
+     * @param key Key of the entry
+     * @param handle The handle the text was rendered with
+     * @param text The text
+     */
+    private void put(int key, String handle, String text){
+        remove(key);
+        long size = sizeOf(text);
+        if (size > budget / 8){
+            return;
+        }
+        int entry = allocate();
+        keys[entry] = key;
+        texts[entry] = text;
+        handles[entry] = handle;
+        linkNewest(entry);
+        insert(entry);
+        count++;
+        bytes += size;
+        while (bytes > budget){
+            remove(keys[oldest]);
+        }
+    }
+
+    /**
+     * Drops an entry, if there is one.
+     * @param key Key of the entry
+     */
+    private void remove(int key){
+        int mask = table.length - 1;
+        int slot = slotFor(key, mask);
+        while (table[slot] != 0 && keys[table[slot] - 1] != key){
+            slot = (slot + 1) & mask;
+        }
+        if (table[slot] == 0){
+            return;
+        }
+        int entry = table[slot] - 1;
+        table[slot] = 0;
+        for (int next = (slot + 1) & mask; table[next] != 0; next = (next + 1) & mask){ // Moves back entries that probed past the slot
+            int home = slotFor(keys[table[next] - 1], mask);
+            if (((next - home) & mask) >= ((next - slot) & mask)){
+                table[slot] = table[next];
+                table[next] = 0;
+                slot = next;
+            }
+        }
+        unlink(entry);
+        bytes -= sizeOf(texts[entry]);
+        count--;
+        texts[entry] = null;
+        handles[entry] = null;
+        newer[entry] = free;
+        free = entry;
+    }
+
+    /**
+     * Finds the entry with a key.
+     * @param key Key of the entry
+     * @return Position of the entry, or NONE if there is none
+     */
+    private int find(int key){
+        int mask = table.length - 1;
+        for (int slot = slotFor(key, mask); table[slot] != 0; slot = (slot + 1) & mask){
+            if (keys[table[slot] - 1] == key){
+                return table[slot] - 1;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Adds an entry to the table, doubling the table first if it would be more than half full.
+     * @param entry Position of the entry
+     */
+    private void insert(int entry){
+        if ((count + 1) * 2 > table.length){
+            int[] old = table;
+            table = new int[old.length * 2];
+            for (int e : old){
+                if (e != 0){
+                    place(e - 1);
+                }
+            }
+        }
+        place(entry);
+    }
+
+    /**
+     * Puts an entry in the first empty slot from the slot its key hashes to.
+     * @param entry Position of the entry
+     */
+    private void place(int entry){
+        int mask = table.length - 1;
+        int slot = slotFor(keys[entry], mask);
+        while (table[slot] != 0){
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+    }
+
+    /**
+     * Returns a free entry position, growing the arrays if every position is in use.
+     * @return Position of the entry
+     */
+    private int allocate(){
+        if (free != NONE){
+            int entry = free;
+            free = newer[entry];
+            return entry;
+        }
+        if (used == keys.length){
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+            handles = Arrays.copyOf(handles, capacity);
+            newer = Arrays.copyOf(newer, capacity);
+            older = Arrays.copyOf(older, capacity);
+        }
+        return used++;
+    }
+
+    /**
+     * Makes an entry that is not in the list the most recently used.
+     * @param entry Position of the entry
+     */
+    private void linkNewest(int entry){
+        newer[entry] = NONE;
+        older[entry] = newest;
+        if (newest != NONE){
+            newer[newest] = entry;
+        } else{
+            oldest = entry;
+        }
+        newest = entry;
+    }
+
+    /**
+     * Takes an entry out of the list.
+     * @param entry Position of the entry
+     */
+    private void unlink(int entry){
+        if (newer[entry] != NONE){
+            older[newer[entry]] = older[entry];
+        } else{
+            newest = older[entry];
+        }
+        if (older[entry] != NONE){
+            newer[older[entry]] = newer[entry];
+        } else{
+            oldest = newer[entry];
+        }
+    }
+
+    /**
+     * Returns the approximate number of bytes an entry with some text takes. Text in Latin-1 takes a byte a
+     * character, and is assumed to be the common case.
+     * @param text The text
+     * @return Size of the entry in bytes
+     */
+    private static long sizeOf(String text){
+        return ENTRY_OVERHEAD + text.length();
+    }
+
+    /**
+     * Returns the slot of the table a key starts probing from.
+     * @param key The key
+     * @param mask One less than the number of slots
+     * @return Home slot of the key
+     */
+    private static int slotFor(int key, int mask){
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -1,61 +1,377 @@
 package socialmedia;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Implementor of the SocialMediaPlatform interface.
  */
 public class SocialMedia implements SocialMediaPlatform {
 	/**
-	 * The list of accounts on the platform.
+	 * The accounts on the platform indexed by their ID, kept in the order they were created.
 	 */
-    private ArrayList<Account> accountList = new ArrayList<Account>();
+	private LinkedHashMap<Integer, Account> accountsById = new LinkedHashMap<Integer, Account>();
 	/**
-	 * The list of generic empty posts on the platform.
+	 * The accounts on the platform indexed by their handle.
 	 */
-	private ArrayList<Post> emptyPostList = new ArrayList<Post>();
+	private HashMap<String, Account> accountsByHandle = new HashMap<String, Account>();
+	/**
+	 * Every post on the platform indexed by its ID, including generic empty posts.
+	 */
+	private PostIndex postIndex = new PostIndex();
+	/**
+	 * The number of original posts currently on the platform.
+	 */
+	private int totalOriginalPosts = 0;
+	/**
+	 * The number of comment posts currently on the platform.
+	 */
+	private int totalCommentPosts = 0;
+	/**
+	 * The number of endorsement posts currently on the platform.
+	 */
+	private int totalEndorsementPosts = 0;
+	/**
+	 * Original and comment posts ranked by the number of endorsements they have.
+	 */
+	private Leaderboard postLeaderboard = new Leaderboard();
+	/**
+	 * Accounts ranked by the number of endorsements their posts have.
+	 */
+	private Leaderboard accountLeaderboard = new Leaderboard();
+	/**
+	 * A flag to indicate whether the leaderboards are up to date or must be rebuilt before they are read.
+	 */
+	private boolean leaderboardsUpToDate = true;
+	/**
+	 * The follow graph and the home timelines built from it.
+	 */
+	private HomeFeeds homeFeeds = new HomeFeeds(new FollowGraph());
+	/**
+	 * The index of the words in the messages of original and comment posts.
+	 */
+	private PostSearchIndex searchIndex = new PostSearchIndex();
+	/**
+	 * The text of recently shown posts and accounts.
+	 */
+	private final RenderCache renderCache = new RenderCache(RenderCache.DEFAULT_BUDGET);
+	/**
+	 * Where the IDs of the posts and accounts that change are recorded, or null if changes are not being tracked.
+	 */
+	private ChangeSet changes;
+	/**
+	 * The snapshot the platform was loaded lazily from, or null if the platform is fully held in memory.
+	 */
+	private transient MappedSnapshot mappedSnapshot;
+	/**
+	 * The journal every change to the platform is recorded in, or null if changes are not being journaled.
+	 */
+	private transient Journal journal;
+	/**
+	 * The location of the snapshot file that checkpoints of the journal are saved to.
+	 */
+	private String checkpointFile;
+	/**
+	 * The number of journal records after which a checkpoint is taken automatically, or 0 if checkpoints are only
+	 * taken when checkpoint is called.
+	 */
+	private int checkpointInterval;
+
+	/**
+	 * Adds an account to the ID and handle indexes of the platform.
+	 * @param account The account to be added to the platform.
+	 */
+	private void addAccount(Account account){
+		accountsByHandle.put(account.getHandle(), account);
+		addClaimedAccount(account);
+	}
+
+	/**
+	 * Adds an account that is already in the handle index to the ID index and the leaderboard of the platform.
+	 * @param account The account to be added to the platform.
+	 */
+	private void addClaimedAccount(Account account){
+		accountsById.put(account.getID(), account);
+		accountLeaderboard.add(account.getID(), 0);
+	}
+
+	/**
+	 * Adds a change to the platform counter matching the type of the post (original, comment or endorsement).
+	 * @param p The post that has been added to or removed from the platform.
+	 * @param change The amount to change the counter by, 1 when a post is added and -1 when it is removed.
+	 */
+	private void updatePostCounters(Post p, int change){
+		if (p instanceof Comment){
+			totalCommentPosts += change;
+		} else if (p instanceof EndorsementPost){
+			totalEndorsementPosts += change;
+		} else{
+			totalOriginalPosts += change;
+		}
+	}
+
+	/**
+	 * Marks what is changed by adding or removing a post: the post, its account, whose post count changes, and the
+	 * post it comments on or endorses, whose comment or endorsement count changes. An endorsement also changes the
+	 * endorsement count of the account of the post it endorses.
+	 * @param p The post that is being added to or removed from the platform, before it is emptied.
+	 */
+	private void markChanged(Post p){
+		markPostChanged(p.getID());
+		markAccountChanged(p.getAccount().getID());
+		Post referencePost = null;
+		if (p instanceof Comment){
+			referencePost = ((Comment)p).getReferencePost();
+		} else if (p instanceof EndorsementPost){
+			referencePost = ((EndorsementPost)p).getReferencePost();
+		}
+		if (referencePost != null){
+			markPostChanged(referencePost.getID());
+			if (p instanceof EndorsementPost && !referencePost.isEmptyPost()){
+				markAccountChanged(referencePost.getAccount().getID());
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached text of a post that has changed, and records the change if changes are being tracked.
+	 * @param id The ID of the post.
+	 */
+	private void markPostChanged(int id){
+		renderCache.removePost(id);
+		if (changes != null){
+			changes.postChanged(id);
+		}
+	}
+
+	/**
+	 * Drops the cached text of an account that has changed, and records the change if changes are being tracked.
+	 * @param id The ID of the account.
+	 */
+	private void markAccountChanged(int id){
+		renderCache.removeAccount(id);
+		if (changes != null){
+			changes.accountChanged(id);
+		}
+	}
+
+	/**
+	 * Drops all cached text once the contents of the whole platform have been replaced, and records the change if
+	 * changes are being tracked.
+	 */
+	private void markPlatformReplaced(){
+		renderCache.clear();
+		if (changes != null){
+			changes.platformReplaced();
+		}
+	}
+
+	/**
+	 * Recalculates the platform post counters from the post index. Empty posts are not counted, nor are
+	 * endorsements left behind by older saves whose endorsed post has since been deleted.
+	 */
+	private void recountPosts(){
+		totalOriginalPosts = 0;
+		totalCommentPosts = 0;
+		totalEndorsementPosts = 0;
+		for (Post p : postIndex){
+			if (!p.isEmptyPost() && !isOrphanedEndorsement(p)){
+				updatePostCounters(p, 1);
+			}
+		}
+	}
+
+	/**
+	 * States whether a post is an endorsement left behind by an older save after the post it endorses was deleted.
+	 * These endorsements are not counted in the post totals and do not change any counts when they are deleted.
+	 * @param p The post.
+	 * @return Boolean value stating whether the post is an endorsement of an empty post.
+	 */
+	private static boolean isOrphanedEndorsement(Post p){
+		return p instanceof EndorsementPost && ((EndorsementPost)p).getReferencePost().isEmptyPost();
+	}
+
+	/**
+	 * Rebuilds the post and account leaderboards from the accounts and posts on the platform. Accounts and posts
+	 * that have not been read from a mapped snapshot yet are ranked using the counts saved in the snapshot.
+	 */
+	private void rebuildLeaderboards(){
+		postLeaderboard.clear();
+		accountLeaderboard.clear();
+		for (Account a : accountsById.values()){
+			accountLeaderboard.add(a.getID(), a.getEndorsementCount());
+		}
+		for (Post p : postIndex){
+			if (!p.isEmptyPost() && !(p instanceof EndorsementPost)){ // Endorsement posts cannot be endorsed so never rank above another post
+				postLeaderboard.add(p.getID(), p.getNumEndorsements());
+			}
+		}
+		if (mappedSnapshot != null){
+			for (int id = 1; id < mappedSnapshot.getNextAccountID(); id++){
+				if (mappedSnapshot.isUnmaterialisedAccount(id)){
+					accountLeaderboard.add(id, mappedSnapshot.endorsementCountOf(id));
+				}
+			}
+			for (int id = 1; id < mappedSnapshot.getNextPostID(); id++){
+				if (mappedSnapshot.isUnmaterialisedPost(id) && !mappedSnapshot.isEmptyPost(id)
+						&& mappedSnapshot.typeOf(id) != PlatformSnapshot.ENDORSEMENT_POST){
+					postLeaderboard.add(id, mappedSnapshot.endorsementCountOfPost(id));
+				}
+			}
+		}
+		leaderboardsUpToDate = true;
+	}
+
+	/**
+	 * Returns the account with the given handle. If the platform was loaded lazily the account is read from the
+	 * mapped snapshot the first time it is used.
+	 * @param handle The handle of the account.
+	 * @return The account with the handle.
+	 * @throws HandleNotRecognisedException If no account has the handle.
+	 */
+	private Account findAccount(String handle) throws HandleNotRecognisedException{
+		loadAccountFromSnapshot(handle);
+		return Account.findAccountByHandle(handle, accountsByHandle);
+	}
+
+	/**
+	 * Returns the account with the given ID. If the platform was loaded lazily the account is read from the
+	 * mapped snapshot the first time it is used.
+	 * @param id The ID of the account.
+	 * @return The account with the ID.
+	 * @throws AccountIDNotRecognisedException If no account has the ID.
+	 */
+	private Account findAccount(int id) throws AccountIDNotRecognisedException{
+		if (mappedSnapshot != null){
+			mappedSnapshot.account(id);
+		}
+		return Account.findAccountById(id, accountsById);
+	}
+
+	/**
+	 * Returns the post with the given ID. If the platform was loaded lazily the post is read from the mapped
+	 * snapshot the first time it is used.
+	 * @param id The ID of the post.
+	 * @param includeEmptyPosts Whether an empty post with the given ID should be returned.
+	 * @return The post with the ID.
+	 * @throws PostIDNotRecognisedException If no post has the ID.
+	 */
+	private Post findPost(int id, boolean includeEmptyPosts) throws PostIDNotRecognisedException{
+		if (mappedSnapshot != null){
+			mappedSnapshot.post(id);
+		}
+		return Post.findPostByID(id, postIndex, includeEmptyPosts);
+	}
+
+	/**
+	 * Reads the account with the given handle from the mapped snapshot into the account indexes, if the platform
+	 * was loaded lazily and the account has not been used yet, so the indexes can be used to check the handle.
+	 * @param handle The handle of the account.
+	 */
+	private void loadAccountFromSnapshot(String handle){
+		if (mappedSnapshot != null && !accountsByHandle.containsKey(handle)){
+			mappedSnapshot.accountByHandle(handle);
+		}
+	}
+
+	/**
+	 * Returns the timeline of the account with the given ID. If the platform was loaded lazily the account is read
+	 * from the mapped snapshot the first time it is used.
+	 * @param id The ID of the account, which must exist.
+	 * @return The timeline of the account.
+	 */
+	private Timeline timelineOf(int id){
+		if (mappedSnapshot != null){
+			mappedSnapshot.account(id);
+		}
+		return accountsById.get(id).getTimeline();
+	}
+
+	/**
+	 * States whether the post with the given ID exists and has not been deleted.
+	 * @param id The ID of the post.
+	 * @return Boolean value stating whether the post is live.
+	 */
+	private boolean isLivePost(int id){
+		Post p = postIndex.get(id);
+		return p != null && !p.isEmptyPost();
+	}
+
+	/**
+	 * Updates the leaderboards after endorsements of a post have been added or removed.
+	 * @param endorsedPost The post whose endorsements have changed.
+	 * @param change The number of endorsements added, negative when endorsements are removed.
+	 */
+	private void updateLeaderboards(Post endorsedPost, int change){
+		if (endorsedPost.isEmptyPost()){ // Deleted posts and their accounts are no longer ranked
+			return;
+		}
+		postLeaderboard.changeScore(endorsedPost.getID(), change);
+		accountLeaderboard.changeScore(endorsedPost.getAccount().getID(), change);
+	}
+
+	/**
+	 * Appends a change to the journal if one is open, and takes a checkpoint once the journal holds the checkpoint
+	 * interval number of records.
+	 * @param operation The operation that was performed, one of the operation constants in Journal.
+	 * @param id The ID of the account or post the operation acted on, or 0.
+	 * @param resultId The ID of the account or post the operation created, or 0.
+	 * @param first The first string argument of the operation, or null.
+	 * @param second The second string argument of the operation, or null.
+	 */
+	private void record(byte operation, int id, int resultId, String first, String second){
+		if (journal == null){
+			return;
+		}
+		try{
+			journal.append(operation, id, resultId, first, second);
+			if (checkpointInterval > 0 && journal.getRecordCount() >= checkpointInterval){
+				checkpoint();
+			}
+		} catch (IOException e){ // The platform methods cannot throw IOException
+			throw new UncheckedIOException("Change could not be written to the journal", e);
+		}
+	}
 
     @Override
 	public int createAccount(String handle) throws IllegalHandleException, InvalidHandleException {
-        Account.validateHandle(handle, accountList); 
-        Account newAccount = new Account(handle);
-		int numOfAccounts = getNumberOfAccounts();
-        accountList.add(newAccount);
-		assert (numOfAccounts + 1 == getNumberOfAccounts()) : "Number of accounts has not increased.";
-        return newAccount.getID();
+        return createAccount(handle, "");
 	}
 
 	@Override
 	public int createAccount(String handle, String description) throws IllegalHandleException, InvalidHandleException {
-		Account.validateHandle(handle, accountList); 
-		Account newAccount = new Account(handle, description);
+		loadAccountFromSnapshot(handle);
+		Account.validateHandleFormat(handle);
 		int numOfAccounts = getNumberOfAccounts();
-        accountList.add(newAccount);
+		Account newAccount = Account.claimHandle(handle, description, accountsByHandle);
+		addClaimedAccount(newAccount);
+		markAccountChanged(newAccount.getID());
 		assert (numOfAccounts + 1 == getNumberOfAccounts()) : "Number of accounts has not increased.";
+		record(Journal.CREATE_ACCOUNT, 0, newAccount.getID(), handle, newAccount.getDescription());
         return newAccount.getID();
 	}
 
 	@Override
 	public void removeAccount(int id) throws AccountIDNotRecognisedException {
-		Account accountToDelete = Account.findAccountById(id, accountList);
+		Account accountToDelete = findAccount(id);
 		int numOfAccounts = getNumberOfAccounts();
-		while (accountToDelete.getPosts().size()>0){ // Deletes all posts from the account
-			try{
-				Post p = accountToDelete.getPosts().get(0);
-				deletePost(p.getID());
-			} catch(PostIDNotRecognisedException e){
-				continue;
-			}
-		}
-		accountList.remove(accountToDelete);
+		deleteAllPosts(accountToDelete);
+		homeFeeds.removeAccount(accountToDelete.getID());
+		markAccountChanged(accountToDelete.getID());
+		accountsById.remove(accountToDelete.getID());
+		accountsByHandle.remove(accountToDelete.getHandle());
+		accountLeaderboard.remove(accountToDelete.getID());
 		assert (numOfAccounts - 1 == getNumberOfAccounts()) : "Number of accounts has not decreased.";
+		record(Journal.REMOVE_ACCOUNT, id, 0, null, null);
 	}
 
 	@Override
 	public void removeAccount(String handle) throws HandleNotRecognisedException {
-		Account accountToDelete = Account.findAccountByHandle(handle, accountList);
+		Account accountToDelete = findAccount(handle);
 		try{
 			removeAccount(accountToDelete.getID());
 		} catch (AccountIDNotRecognisedException e){
@@ -66,43 +382,61 @@ public class SocialMedia implements SocialMediaPlatform {
 	@Override
 	public void changeAccountHandle(String oldHandle, String newHandle)
 			throws HandleNotRecognisedException, IllegalHandleException, InvalidHandleException {
-        Account.validateHandle(newHandle, accountList);
-		Account account = Account.findAccountByHandle(oldHandle, accountList);
+        loadAccountFromSnapshot(newHandle);
+        Account.validateHandle(newHandle, accountsByHandle);
+		Account account = findAccount(oldHandle);
+		accountsByHandle.remove(oldHandle);
 		account.setHandle(newHandle);
+		accountsByHandle.put(newHandle, account);
+		markAccountChanged(account.getID()); // Copies of the platform look the account up by its new handle
 		assert (account.getHandle() == newHandle) : "Handle has not updated.";
+		record(Journal.CHANGE_ACCOUNT_HANDLE, 0, 0, oldHandle, newHandle);
 
 	}
 
 	@Override
 	public void updateAccountDescription(String handle, String description) throws HandleNotRecognisedException {
-		Account account = Account.findAccountByHandle(handle, accountList);
+		Account account = findAccount(handle);
 		account.setDescription(description);
+		markAccountChanged(account.getID());
 		assert (account.getDescription() == description):"Description has not updated.";
+		record(Journal.UPDATE_ACCOUNT_DESCRIPTION, 0, 0, handle, description);
 	}
 
 	@Override
 	public String showAccount(String handle) throws HandleNotRecognisedException {
-		Account account = Account.findAccountByHandle(handle, accountList);
-		return account.toString();
+		Account account = findAccount(handle);
+		String text = renderCache.account(account.getID(), account.getHandle());
+		if (text == null){
+			text = account.toString();
+			renderCache.putAccount(account.getID(), account.getHandle(), text);
+		}
+		return text;
 	}
 
 	@Override
 	public int createPost(String handle, String message) throws HandleNotRecognisedException, InvalidPostException {
-		Account postingAccount = Account.findAccountByHandle(handle, accountList); 
+		Account postingAccount = findAccount(handle); 
 		Post.validateMessage(message); 
 		Post newPost = new Post(postingAccount, message);
 		int numOfAccountPosts = postingAccount.getPosts().size();
 		postingAccount.addPost(newPost);
+		postIndex.put(newPost);
+		updatePostCounters(newPost, 1);
+		markChanged(newPost);
+		postLeaderboard.add(newPost.getID(), 0);
+		homeFeeds.postCreated(postingAccount.getID(), newPost.getID());
+		searchIndex.add(newPost.getID(), message);
 		assert (numOfAccountPosts + 1 == postingAccount.getPosts().size()):"Account post count not updated.";
-		
+		record(Journal.CREATE_POST, 0, newPost.getID(), handle, message);
 		return newPost.getID();
 	}
 
 	@Override
 	public int endorsePost(String handle, int id)
 			throws HandleNotRecognisedException, PostIDNotRecognisedException, NotActionablePostException {
-			Account postingAccount = Account.findAccountByHandle(handle, accountList);
-			Post postToEndorse = Post.findPostByID(id, accountList); 
+			Account postingAccount = findAccount(handle);
+			Post postToEndorse = findPost(id, false); 
 			if (postToEndorse instanceof EndorsementPost){ // Cannot endorse an endorsement post
 				throw new NotActionablePostException();
 			}
@@ -110,8 +444,14 @@ public class SocialMedia implements SocialMediaPlatform {
 			String message = "EP@" + postToEndorse.getAccount().getHandle() + ": " + postToEndorse.getMessage();
 			int numOfEndorsements = getTotalEndorsmentPosts();
 			EndorsementPost endorsementPost = new EndorsementPost(postingAccount, message, postToEndorse);
+			postIndex.put(endorsementPost);
+			updatePostCounters(endorsementPost, 1);
+			markChanged(endorsementPost);
+			updateLeaderboards(postToEndorse, 1);
+			homeFeeds.postCreated(postingAccount.getID(), endorsementPost.getID());
 			assert (postToEndorse.getEndorsements().contains(endorsementPost)):"Endorsement post not added to list of endorsements.";
 			assert (numOfEndorsements + 1 == getTotalEndorsmentPosts()):"Number of endorsement posts has not increased.";
+			record(Journal.ENDORSE_POST, id, endorsementPost.getID(), handle, null);
 			return endorsementPost.getID();
 	}
 
@@ -119,8 +459,8 @@ public class SocialMedia implements SocialMediaPlatform {
 	public int commentPost(String handle, int id, String message) throws HandleNotRecognisedException,
 			PostIDNotRecognisedException, NotActionablePostException, InvalidPostException {
 
-		Account postingAccount = Account.findAccountByHandle(handle, accountList); 
-		Post commentedPost = Post.findPostByID(id, accountList); 
+		Account postingAccount = findAccount(handle); 
+		Post commentedPost = findPost(id, false); 
 		Post.validateMessage(message); 
 
 		if (commentedPost instanceof EndorsementPost){ //Cannot comment on an endorsement post
@@ -129,160 +469,425 @@ public class SocialMedia implements SocialMediaPlatform {
 
 		int numOfComments = getTotalCommentPosts();
 		Comment newComment = new Comment(postingAccount, message, commentedPost);
+		postIndex.put(newComment);
+		updatePostCounters(newComment, 1);
+		markChanged(newComment);
+		postLeaderboard.add(newComment.getID(), 0);
+		searchIndex.add(newComment.getID(), message);
 		assert (commentedPost.getComments().contains(newComment)):"Comment post not added to comment list.";
 		assert (numOfComments + 1 == getTotalCommentPosts()):"Number of comment posts has not increased.";
+		record(Journal.COMMENT_POST, id, newComment.getID(), handle, message);
 		return newComment.getID();
 	}
 
+	@Override
+	public BatchResult applyBatch(List<BatchOperation> operations){
+		BatchResult result = BatchOperation.validateAll(operations); // Handles and messages are checked for the whole batch first
+		HashMap<String, Integer> postsByHandle = new HashMap<String, Integer>();
+		for (int i = 0; i < operations.size(); i++){
+			if (result.isSuccess(i) && operations.get(i).getType() != BatchOperation.Type.CREATE_ACCOUNT){
+				postsByHandle.merge(operations.get(i).getHandle(), 1, Integer::sum);
+			}
+		}
+		postIndex.ensureCapacity(postIndex.size() + operations.size());
+
+		HashMap<String, Account> accounts = new HashMap<String, Account>(); // Each handle is looked up once
+		for (int i = 0; i < operations.size(); i++){
+			if (!result.isSuccess(i)){
+				continue;
+			}
+			try{
+				result.succeeded(i, applyOperation(operations.get(i), result, accounts, postsByHandle));
+			} catch (IllegalHandleException | HandleNotRecognisedException | PostIDNotRecognisedException
+					| NotActionablePostException e){
+				result.failed(i, e);
+			}
+		}
+		if (leaderboardsUpToDate){
+			updateLeaderboardsAfterBatch(operations, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Applies one operation of a batch that has passed validation. The leaderboards are not updated, as the batch
+	 * updates them once at the end.
+	 * @param operation The operation to apply.
+	 * @param result The results of the operations before this one.
+	 * @param accounts The accounts already looked up by the batch, keyed by handle.
+	 * @param postsByHandle The number of posts the batch creates for each handle, used to size the account's list of posts.
+	 * @return The ID of the account or post created.
+	 * @throws IllegalHandleException If the handle of a new account is already used.
+	 * @throws HandleNotRecognisedException If the account posting does not exist.
+	 * @throws PostIDNotRecognisedException If the post commented on or endorsed does not exist.
+	 * @throws NotActionablePostException If the post commented on or endorsed is an endorsement.
+	 */
+	private int applyOperation(BatchOperation operation, BatchResult result, HashMap<String, Account> accounts,
+			HashMap<String, Integer> postsByHandle) throws IllegalHandleException, HandleNotRecognisedException,
+			PostIDNotRecognisedException, NotActionablePostException {
+		String handle = operation.getHandle();
+		if (operation.getType() == BatchOperation.Type.CREATE_ACCOUNT){
+			loadAccountFromSnapshot(handle);
+			Account newAccount = Account.claimHandle(handle, operation.getText(), accountsByHandle); // The format was checked for the whole batch
+			accountsById.put(newAccount.getID(), newAccount);
+			accounts.put(handle, newAccount);
+			markAccountChanged(newAccount.getID());
+			record(Journal.CREATE_ACCOUNT, 0, newAccount.getID(), handle, newAccount.getDescription());
+			return newAccount.getID();
+		}
+
+		Account postingAccount = accounts.get(handle);
+		if (postingAccount == null){
+			postingAccount = findAccount(handle);
+			ArrayList<Post> posts = postingAccount.getPosts();
+			posts.ensureCapacity(posts.size() + postsByHandle.getOrDefault(handle, 0));
+			accounts.put(handle, postingAccount);
+		}
+		Post newPost;
+		int id = 0;
+		if (operation.getType() == BatchOperation.Type.CREATE_POST){
+			newPost = new Post(postingAccount, operation.getText());
+			postingAccount.addPost(newPost);
+		} else{
+			id = operation.getPostId(result);
+			Post referencePost = findPost(id, false);
+			if (referencePost instanceof EndorsementPost){ // Cannot comment on or endorse an endorsement post
+				throw new NotActionablePostException();
+			}
+			if (operation.getType() == BatchOperation.Type.COMMENT_POST){
+				newPost = new Comment(postingAccount, operation.getText(), referencePost);
+			} else{
+				String message = "EP@" + referencePost.getAccount().getHandle() + ": " + referencePost.getMessage();
+				newPost = new EndorsementPost(postingAccount, message, referencePost);
+			}
+		}
+		postIndex.put(newPost);
+		updatePostCounters(newPost, 1);
+		markChanged(newPost);
+		if (operation.getType() != BatchOperation.Type.COMMENT_POST){
+			homeFeeds.postCreated(postingAccount.getID(), newPost.getID());
+		}
+		if (operation.getType() != BatchOperation.Type.ENDORSE_POST){
+			searchIndex.add(newPost.getID(), operation.getText());
+		}
+		switch (operation.getType()){
+			case CREATE_POST:
+				record(Journal.CREATE_POST, 0, newPost.getID(), handle, operation.getText());
+				break;
+			case COMMENT_POST:
+				record(Journal.COMMENT_POST, id, newPost.getID(), handle, operation.getText());
+				break;
+			default:
+				record(Journal.ENDORSE_POST, id, newPost.getID(), handle, null);
+		}
+		return newPost.getID();
+	}
+
+	/**
+	 * Brings the leaderboards up to date with a batch that has been applied, adding each new account and post once
+	 * and changing the score of each endorsed post and account once by the number of times it was endorsed.
+	 * @param operations The batch.
+	 * @param result The results of the batch.
+	 */
+	private void updateLeaderboardsAfterBatch(List<BatchOperation> operations, BatchResult result){
+		HashMap<Integer, Integer> postChanges = new HashMap<Integer, Integer>();
+		HashMap<Integer, Integer> accountChanges = new HashMap<Integer, Integer>();
+		for (int i = 0; i < operations.size(); i++){
+			if (!result.isSuccess(i)){
+				continue;
+			}
+			switch (operations.get(i).getType()){
+				case CREATE_ACCOUNT:
+					accountLeaderboard.add(result.getId(i), 0);
+					break;
+				case ENDORSE_POST:
+					Post endorsedPost = ((EndorsementPost)postIndex.get(result.getId(i))).getReferencePost();
+					postChanges.merge(endorsedPost.getID(), 1, Integer::sum);
+					accountChanges.merge(endorsedPost.getAccount().getID(), 1, Integer::sum);
+					break;
+				default:
+					postLeaderboard.add(result.getId(i), 0);
+			}
+		}
+		postChanges.forEach(postLeaderboard::changeScore);
+		accountChanges.forEach(accountLeaderboard::changeScore);
+	}
+
 	@Override
 	public void deletePost(int id) throws PostIDNotRecognisedException {
-		Post postToDelete = Post.findPostByID(id, accountList); 
+		Post postToDelete = findPost(id, false); 
+		deletePost(postToDelete);
+		record(Journal.DELETE_POST, id, 0, null, null);
+	}
+
+	/**
+	 * Deletes every post of an account. Posts are taken from the end of the list of posts of the account, so no
+	 * other post has to be moved and deleting the whole account takes time proportional to its posts and their
+	 * endorsements.
+	 * @param account The account whose posts are deleted.
+	 */
+	private void deleteAllPosts(Account account){
+		ArrayList<Post> posts = account.getPosts();
+		while (!posts.isEmpty()){
+			deletePost(posts.get(posts.size() - 1));
+		}
+	}
+
+	/**
+	 * Deletes a post from the platform, along with its endorsements if it is an original or comment post.
+	 * @param postToDelete The post to be deleted.
+	 */
+	private void deletePost(Post postToDelete){
 		if (postToDelete instanceof EndorsementPost){ //Removes the endorsement from the post that is endorsed
-			((EndorsementPost)postToDelete).getReferencePost().removeEndorsement((EndorsementPost)postToDelete);
+			Post endorsedPost = ((EndorsementPost)postToDelete).getReferencePost();
+			endorsedPost.removeEndorsement((EndorsementPost)postToDelete);
+			if (!endorsedPost.isEmptyPost()){ // Older saves kept endorsements of deleted posts
+				endorsedPost.getAccount().setEndorsementCountUpToDateToFalse();
+				updateLeaderboards(endorsedPost, -1);
+			}
 		}
 		else{
+			for (EndorsementPost e : postToDelete.getEndorsements()){ // Endorsements of the post are deleted with it
+				removePostFromAccount(e);
+			}
+			updateLeaderboards(postToDelete, -postToDelete.getNumEndorsements());
+			postLeaderboard.remove(postToDelete.getID());
+			searchIndex.remove(postToDelete.getID(), postToDelete.getMessage()); // Before the message is emptied
 			postToDelete.clearEndorsements();
-			if (!(postToDelete instanceof Comment)){ // If post is an original post, account post count must be recalculated
+			postToDelete.getAccount().setEndorsementCountUpToDateToFalse();
+			if (postToDelete instanceof Comment){ // Comment count of the commented post must be recalculated
+				((Comment)postToDelete).getReferencePost().setCommentCountUptoDateToFalse();
+			}
+			else{ // If post is an original post, account post count must be recalculated
 				postToDelete.getAccount().setPostCountUpToDateToFalse();
 			}
 		}
-		postToDelete.getAccount().setEndorsementCountUpToDateToFalse();
-		postToDelete.getAccount().removePost(postToDelete);
-		postToDelete.setPostToEmpty();
-		emptyPostList.add(postToDelete);
-		
+		removePostFromAccount(postToDelete);
+	}
+
+	/**
+	 * Removes a post from the account that posted it, updates the platform counters and turns it into an empty
+	 * post. The empty post stays in the post index so replies can still show it.
+	 * @param p The post to be removed.
+	 */
+	private void removePostFromAccount(Post p){
+		p.getAccount().removePost(p);
+		if (!isOrphanedEndorsement(p)){ // Not counted when loaded, see recountPosts
+			updatePostCounters(p, -1);
+		}
+		markChanged(p);
+		p.setPostToEmpty();
 	}
 
 	@Override
 	public String showIndividualPost(int id) throws PostIDNotRecognisedException {
-		Post postToShow = Post.findPostByID(id, accountList, emptyPostList);
-		return postToShow.toString();
+		Post postToShow = findPost(id, true);
+		if (postToShow.isEmptyPost()){ // Every empty post shows the same text, so only live posts are cached
+			return postToShow.toString();
+		}
+		String handle = postToShow.getAccount().getHandle();
+		String text = renderCache.post(id, handle);
+		if (text == null){
+			text = postToShow.toString();
+			renderCache.putPost(id, handle, text);
+		}
+		return text;
 	}
 
-	
-	private StringBuilder DFSChildren(Post originalPost, Post post, int indent, StringBuilder sb, ArrayList<Post> visited) throws PostIDNotRecognisedException{
-		visited.add(post); // List of posts that have been visited by search
+	@Override
+	public StringBuilder showPostChildrenDetails(int id)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		StringBuilder sb = new StringBuilder();
+		Post postToShow = findPost(id, true);
 
-		if(post instanceof Comment){ 
-			boolean isFirstComment;
-			if (((Comment) post).getReferencePost().getComments().get(0).equals(post)){ //Checks whether post is the first comment under a post
-				isFirstComment = true;
-			} else{
-				isFirstComment = false;
-			}
-			sb.append(Post.formatMessage(showIndividualPost(post.getID()), indent, isFirstComment));
-		}	
-		else{ //Post is an original post
-			sb.append(showIndividualPost(post.getID())+"\n");
+		if (postToShow instanceof EndorsementPost){ //Cannot call method on endorsement posts
+			throw new NotActionablePostException();
 		}
-		indent++;
+		return ThreadRenderer.render(postToShow, sb);
+	}
 
-		for(Comment c:post.getComments()){ //Recursively calls on all comments under the current post
-			if(!visited.contains(c)){
-				DFSChildren(originalPost, c, indent, sb, visited);
-			}
-		}
-		return sb;
+	@Override
+	public void showPostChildrenDetails(int id, Appendable out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		streamPostChildrenDetails(id, new ChunkedOutput(out));
 	}
 
+	@Override
+	public void showPostChildrenDetails(int id, WritableByteChannel channel)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		streamPostChildrenDetails(id, new ChunkedOutput(channel));
+	}
 
 	@Override
-	public StringBuilder showPostChildrenDetails(int id)
+	public ThreadPage getThreadPage(int id, String cursor, int limit, int maxDepth, int maxChildren)
 			throws PostIDNotRecognisedException, NotActionablePostException {
-		StringBuilder sb = new StringBuilder();
-		Post postToShow = Post.findPostByID(id, accountList, emptyPostList);
+		Post postToShow = findPost(id, true);
+		if (postToShow instanceof EndorsementPost){ //Cannot call method on endorsement posts
+			throw new NotActionablePostException();
+		}
+		return ThreadRenderer.renderPage(postToShow, cursor, limit, maxDepth, maxChildren);
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		return getTimeline(handle, cursor, limit, Timeline.ALL_POSTS);
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit, int types) throws HandleNotRecognisedException {
+		Account account = findAccount(handle);
+		int before = TimelinePage.decodeCursor(cursor, account.getID(), limit, types);
+		int[] ids = account.getTimeline().before(before, limit, types);
+		return TimelinePage.render(account.getID(), ids, limit, postIndex::get); // The posts of the account have been read by its timeline
+	}
+
+	@Override
+	public boolean follow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		Account follower = findAccount(handle);
+		Account followee = findAccount(followeeHandle);
+		boolean followed = homeFeeds.follow(follower.getID(), followee.getID());
+		if (followed){
+			record(Journal.FOLLOW, 0, 0, handle, followeeHandle);
+		}
+		return followed;
+	}
+
+	@Override
+	public boolean unfollow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		Account follower = findAccount(handle);
+		Account followee = findAccount(followeeHandle);
+		boolean unfollowed = homeFeeds.unfollow(follower.getID(), followee.getID());
+		if (unfollowed){
+			record(Journal.UNFOLLOW, 0, 0, handle, followeeHandle);
+		}
+		return unfollowed;
+	}
+
+	@Override
+	public int getFollowerCount(String handle) throws HandleNotRecognisedException {
+		return homeFeeds.getFollows().followerCount(findAccount(handle).getID());
+	}
+
+	@Override
+	public int getFollowingCount(String handle) throws HandleNotRecognisedException {
+		return homeFeeds.getFollows().followingCount(findAccount(handle).getID());
+	}
+
+	@Override
+	public TimelinePage getHomeTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		Account account = findAccount(handle);
+		int before = TimelinePage.decodeCursor(cursor, account.getID(), limit, HomeFeeds.HOME_POSTS);
+		int[] ids = homeFeeds.before(account.getID(), before, limit, this::timelineOf, this::isLivePost);
+		return TimelinePage.render(account.getID(), ids, limit, postIndex::get);
+	}
+
+	@Override
+	public int[] searchPosts(String query, int limit) {
+		return searchIndex.search(query, limit);
+	}
 
+	/**
+	 * Writes a post and every comment below it through a chunked output, checking the post before anything is written.
+	 * @param id ID of the post the thread is shown from.
+	 * @param out The chunked output the thread is written through.
+	 * @throws PostIDNotRecognisedException If there is no post with the ID.
+	 * @throws NotActionablePostException If the post is an endorsement.
+	 * @throws IOException If the output cannot be written to.
+	 */
+	private void streamPostChildrenDetails(int id, ChunkedOutput out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		Post postToShow = findPost(id, true);
 		if (postToShow instanceof EndorsementPost){ //Cannot call method on endorsement posts
 			throw new NotActionablePostException();
 		}
-		return DFSChildren(postToShow, postToShow, 0,sb,new ArrayList<Post>()); //recursively visits all comments under original post
+		ThreadRenderer.render(postToShow, out);
+		out.finish();
 	}
 
 	@Override
 	public int getNumberOfAccounts() {
-		return accountList.size();
+		if (mappedSnapshot != null){ // Accounts not read from the snapshot yet are only counted in its tables
+			return accountsById.size() + mappedSnapshot.getUnmaterialisedAccountCount();
+		}
+		return accountsById.size();
 	}
 
 	@Override
 	public int getTotalOriginalPosts() { 
-		int total = 0;
-		for(Account a:accountList){
-			total += a.getOriginalPostCount();
-		}
-		return total;
+		return totalOriginalPosts;
 	}
 
 	@Override
 	public int getTotalEndorsmentPosts() {
-		int total = 0;
-		for(Account a:accountList){
-			total += a.getEndorsementCount();
-		}
-		return total;
+		return totalEndorsementPosts;
 	}
 
 	@Override
 	public int getTotalCommentPosts() {
-		int total = 0;
-		for(Account a:accountList){
-			for(Post p:a.getPosts()){
-				total += p.getComments().size();
-			}
-		}
-		return total;
+		return totalCommentPosts;
 	}
 
 	@Override
 	public int getMostEndorsedPost() {
-		Post mostEndorsedPost = null;
-		for(Account a:accountList){
-			for(Post p : a.getPosts()){
-				if(mostEndorsedPost == null || p.getNumEndorsements() > mostEndorsedPost.getNumEndorsements()){
-					mostEndorsedPost = p;
-				}
-			}
+		if (!leaderboardsUpToDate){
+			rebuildLeaderboards();
 		}
-		if (mostEndorsedPost == null){ // If there are no posts on the platform
-			return 0;
-		}
-		return mostEndorsedPost.getID();
+		return postLeaderboard.top(); // 0 if there are no posts on the platform
 	}
 
 	@Override
 	public int getMostEndorsedAccount() {
-		Account mostEndorsedAccount = null;
-		for(Account a : accountList){
-			if(mostEndorsedAccount == null || a.getEndorsementCount() > mostEndorsedAccount.getEndorsementCount()){
-				mostEndorsedAccount = a;
-			}
+		if (!leaderboardsUpToDate){
+			rebuildLeaderboards();
 		}
-		if (mostEndorsedAccount == null){ // If there are no accounts on the platform
-			return 0;
+		return accountLeaderboard.top(); // 0 if there are no accounts on the platform
+	}
+
+	@Override
+	public int[] getTopEndorsedPosts(int k) {
+		if (!leaderboardsUpToDate){
+			rebuildLeaderboards();
+		}
+		return postLeaderboard.top(k);
+	}
+
+	@Override
+	public int[] getTopEndorsedAccounts(int k) {
+		if (!leaderboardsUpToDate){
+			rebuildLeaderboards();
 		}
-		return mostEndorsedAccount.getID();
+		return accountLeaderboard.top(k);
 	}
 
 	@Override
 	public void erasePlatform() {
-		accountList.clear();
-		emptyPostList.clear();
+		accountsById.clear();
+		accountsByHandle.clear();
+		postIndex.clear();
+		totalOriginalPosts = 0;
+		totalCommentPosts = 0;
+		totalEndorsementPosts = 0;
+		postLeaderboard.clear();
+		accountLeaderboard.clear();
+		leaderboardsUpToDate = true;
+		homeFeeds.clear();
+		searchIndex = new PostSearchIndex();
+		markPlatformReplaced();
+		mappedSnapshot = null;
 		Post.resetIdCount();
 		Account.resetIdCount();
-		assert (accountList.size() == 0) : "Account list not empty";
+		assert (accountsById.size() == 0) : "Account list not empty";
+		record(Journal.ERASE_PLATFORM, 0, 0, null, null);
 	}
 	@Override
 	public void savePlatform(String filename) throws IOException {
-		try(ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))){
-			Account[] accountArr = accountList.toArray(new Account[accountList.size()]); //Create an array of accountList
-			out.writeObject(accountArr);
-			Post[] emptyPostArr = emptyPostList.toArray(new Post[emptyPostList.size()]); //Create an array of emptyPostList
-			out.writeObject(emptyPostArr);
-			
-			int nextAccountID = Account.getNextId(); // Saves account ID counters' value
-			out.writeObject(nextAccountID);
-			int nextPostID = Post.getNextId(); // Saves post ID counters' value
-			out.writeObject(nextPostID);
+		if (mappedSnapshot != null){ // Everything has to be read from the mapped file before it can be overwritten
+			materialisePlatform();
 		}
+		PlatformSnapshot snapshot = new PlatformSnapshot(accountsById, postIndex, Account.getNextId(), Post.getNextId(),
+				totalOriginalPosts, totalCommentPosts, totalEndorsementPosts, journal == null ? 0 : journal.getLastSequence(),
+				homeFeeds.getFollows(), searchIndex);
+		snapshot.write(filename);
 
 		File f = new File(filename);
 		assert (f.isFile()) : "File has not been created";
@@ -290,20 +895,334 @@ public class SocialMedia implements SocialMediaPlatform {
 
 	@Override
 	public void loadPlatform(String filename) throws IOException, ClassNotFoundException {
+		loadSnapshot(filename);
+		if (journal != null){ // The journal cannot describe replacing the whole platform, so a checkpoint is taken instead
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Replaces the contents of the platform with a platform saved by savePlatform or by an earlier version.
+	 * @param filename location of the file to be loaded
+	 * @return The sequence number of the last journal record included in the file, or 0 if there is none.
+	 * @throws IOException if there is a problem experienced when trying to load the file
+	 * @throws ClassNotFoundException if required class files cannot be found when loading
+	 */
+	private long loadSnapshot(String filename) throws IOException, ClassNotFoundException {
+		if (PlatformSnapshot.isSnapshot(filename)){
+			PlatformSnapshot snapshot = PlatformSnapshot.read(filename);
+			replacePlatform(snapshot);
+			return snapshot.getJournalSequence();
+		}
+		// Platforms saved by earlier versions were written with Java serialisation
+		replacePlatform(readSerialisedPlatform(filename));
+		recountPosts(); // Serialised platforms do not store the post totals
+		return 0;
+	}
+
+	/**
+	 * Loads a platform saved by savePlatform by memory-mapping the file instead of reading all of it. Only the
+	 * header is read up front, so the number of accounts and the post totals are available straight away, and
+	 * each account and post is read from the file the first time it is used. Files that cannot be mapped, such
+	 * as ones saved by earlier versions, are loaded in full with loadPlatform.
+	 * <p>
+	 * The file must not be changed by anything else while the platform is using it. Saving the platform, even to
+	 * the same file, is safe.
+	 *
+	 * @param filename location of the file to be loaded
+	 * @throws IOException            if there is a problem experienced when trying
+	 *                                to load the store contents from the file
+	 * @throws ClassNotFoundException if required class files cannot be found when
+	 *                                loading
+	 */
+	public void loadPlatformLazily(String filename) throws IOException, ClassNotFoundException {
+		MappedSnapshot snapshot = MappedSnapshot.open(filename);
+		if (snapshot == null){
+			loadPlatform(filename);
+			return;
+		}
+		accountsById = snapshot.getAccounts();
+		accountsByHandle = snapshot.getAccountsByHandle();
+		postIndex = snapshot.getPosts();
+		totalOriginalPosts = snapshot.getTotalOriginalPosts();
+		totalCommentPosts = snapshot.getTotalCommentPosts();
+		totalEndorsementPosts = snapshot.getTotalEndorsementPosts();
+		Account.setNextId(snapshot.getNextAccountID());
+		Post.setNextId(snapshot.getNextPostID());
+		postLeaderboard.clear();
+		accountLeaderboard.clear();
+		leaderboardsUpToDate = false; // Rebuilt from the snapshot tables the first time they are read
+		homeFeeds = new HomeFeeds(snapshot.readFollows());
+		searchIndex = snapshot.readSearchIndex();
+		markPlatformReplaced();
+		mappedSnapshot = snapshot;
+		if (journal != null){
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Starts recording every change to the platform in an append-only journal, so the platform can be recovered
+	 * after a crash without saving all of it after each change. The platform is first recovered from the files:
+	 * if the snapshot exists it is loaded, and the journal records written after it are replayed on top. If
+	 * neither file exists the current contents of the platform are kept and saved as the first checkpoint.
+	 * <p>
+	 * Journal records are written to the file in groups of groupCommitSize records. Records that have not been
+	 * written when the process stops are lost, so a group commit size of 1 makes every change durable before the
+	 * method that made it returns, and larger groups trade that for fewer writes. commitJournal writes the current
+	 * group straight away. When fsync is enabled each group is also forced to the storage device.
+	 * <p>
+	 * Every checkpointInterval records a checkpoint is taken: the platform is saved to the snapshot file and the
+	 * journal is emptied, so recovery never replays more than that many records.
+	 *
+	 * @param snapshotFile location of the snapshot file checkpoints are saved to
+	 * @param journalFile location of the journal file
+	 * @param groupCommitSize number of records written to the journal file at once, at least 1
+	 * @param fsync whether each group of records is forced to the storage device
+	 * @param checkpointInterval number of records after which a checkpoint is taken, or 0 to only take
+	 *                           checkpoints when checkpoint is called
+	 * @throws IOException            if the files cannot be read or written, or the journal cannot be replayed
+	 *                                on top of the snapshot
+	 * @throws ClassNotFoundException if required class files cannot be found when
+	 *                                loading
+	 */
+	public void openJournal(String snapshotFile, String journalFile, int groupCommitSize, boolean fsync, int checkpointInterval)
+			throws IOException, ClassNotFoundException {
+		closeJournal();
+		boolean snapshotExists = new File(snapshotFile).isFile();
+		long snapshotSequence = 0;
+		if (snapshotExists){
+			snapshotSequence = loadSnapshot(snapshotFile);
+		} else if (new File(journalFile).isFile()){ // The journal was started from an empty platform
+			erasePlatform();
+		}
+
+		Journal recovered = Journal.open(journalFile, snapshotSequence, groupCommitSize, fsync);
+		try{
+			for (JournalRecord r : recovered.getRecoveredRecords()){
+				replay(r);
+			}
+		} catch (IOException | RuntimeException e){
+			recovered.close();
+			throw e;
+		}
+		journal = recovered;
+		this.checkpointFile = snapshotFile;
+		this.checkpointInterval = checkpointInterval;
+		if (!snapshotExists || (checkpointInterval > 0 && journal.getRecordCount() >= checkpointInterval)){
+			checkpoint();
+		}
+	}
+
+	/**
+	 * Saves the platform to the snapshot file given to openJournal and empties the journal, so recovery starts
+	 * from this point. The snapshot stores the sequence number of the last journal record it includes, so a crash
+	 * between saving the snapshot and emptying the journal does not replay any record twice.
+	 * @throws IOException if the snapshot cannot be saved or the journal cannot be emptied
+	 * @throws IllegalStateException if no journal is open
+	 */
+	public void checkpoint() throws IOException {
+		if (journal == null){
+			throw new IllegalStateException("No journal is open");
+		}
+		journal.commit();
+		savePlatform(checkpointFile);
+		journal.reset();
+	}
+
+	/**
+	 * Writes any journal records that are waiting for their group to fill up to the journal file, so every change
+	 * made so far is durable. Does nothing if no journal is open.
+	 * @throws IOException if the records cannot be written
+	 */
+	public void commitJournal() throws IOException {
+		if (journal != null){
+			journal.commit();
+		}
+	}
+
+	/**
+	 * Commits any remaining journal records and stops journaling changes. Does nothing if no journal is open.
+	 * @throws IOException if the records cannot be written or the journal file cannot be closed
+	 */
+	public void closeJournal() throws IOException {
+		if (journal != null){
+			Journal closing = journal;
+			journal = null;
+			closing.close();
+		}
+	}
+
+	/**
+	 * Starts or stops recording the IDs of the posts and accounts that change. The platform must be fully held in
+	 * memory while changes are tracked, as reading accounts and posts lazily from a mapped snapshot is not recorded.
+	 * @param changes The change set the IDs are recorded in, or null to stop recording them.
+	 */
+	void trackChanges(ChangeSet changes){
+		this.changes = changes;
+	}
+
+	/**
+	 * Returns the account with the given ID, if it is held in memory.
+	 * @param id The ID of the account.
+	 * @return The account, or null if there is none.
+	 */
+	Account getAccount(int id){
+		return accountsById.get(id);
+	}
+
+	/**
+	 * Returns the post with the given ID, including an empty post, if it is held in memory.
+	 * @param id The ID of the post.
+	 * @return The post, or null if there is none.
+	 */
+	Post getPost(int id){
+		return postIndex.get(id);
+	}
+
+	/**
+	 * Returns the accounts held in memory.
+	 * @return The accounts, in the order they were added.
+	 */
+	Iterable<Account> getAccounts(){
+		return accountsById.values();
+	}
+
+	/**
+	 * Returns the posts held in memory, including empty posts.
+	 * @return The posts.
+	 */
+	Iterable<Post> getPosts(){
+		return postIndex;
+	}
+
+	/**
+	 * Applies a journal record to the platform while it is being recovered. The records are replayed through the
+	 * same methods that wrote them, with no journal open so they are not recorded again.
+	 * @param r The record to be replayed.
+	 * @throws IOException if the record cannot be applied, or creates a different ID to the one recorded
+	 */
+	private void replay(JournalRecord r) throws IOException {
+		int createdId = 0;
+		try{
+			switch (r.getOperation()){
+				case Journal.CREATE_ACCOUNT:
+					createdId = createAccount(r.getFirst(), r.getSecond());
+					break;
+				case Journal.REMOVE_ACCOUNT:
+					removeAccount(r.getId());
+					break;
+				case Journal.CHANGE_ACCOUNT_HANDLE:
+					changeAccountHandle(r.getFirst(), r.getSecond());
+					break;
+				case Journal.UPDATE_ACCOUNT_DESCRIPTION:
+					updateAccountDescription(r.getFirst(), r.getSecond());
+					break;
+				case Journal.CREATE_POST:
+					createdId = createPost(r.getFirst(), r.getSecond());
+					break;
+				case Journal.ENDORSE_POST:
+					createdId = endorsePost(r.getFirst(), r.getId());
+					break;
+				case Journal.COMMENT_POST:
+					createdId = commentPost(r.getFirst(), r.getId(), r.getSecond());
+					break;
+				case Journal.DELETE_POST:
+					deletePost(r.getId());
+					break;
+				case Journal.ERASE_PLATFORM:
+					erasePlatform();
+					break;
+				case Journal.FOLLOW:
+					follow(r.getFirst(), r.getSecond());
+					break;
+				case Journal.UNFOLLOW:
+					unfollow(r.getFirst(), r.getSecond());
+					break;
+				default:
+					throw new IOException("Unknown journal operation " + r.getOperation());
+			}
+		} catch (AccountIDNotRecognisedException | HandleNotRecognisedException | IllegalHandleException | InvalidHandleException
+				| InvalidPostException | NotActionablePostException | PostIDNotRecognisedException e){
+			throw new IOException("Journal record " + r.getSequence() + " cannot be replayed", e);
+		}
+		if (createdId != r.getResultId()){
+			throw new IOException("Journal record " + r.getSequence() + " created ID " + createdId + " instead of " + r.getResultId());
+		}
+	}
+
+	/**
+	 * Reads every account and post that has not been used yet from the mapped snapshot, so the platform is fully
+	 * held in memory and no longer needs the file.
+	 */
+	private void materialisePlatform(){
+		mappedSnapshot.materialiseAll();
+		LinkedHashMap<Integer, Account> accountsInIdOrder = new LinkedHashMap<Integer, Account>();
+		for (int id = 1; id < Account.getNextId(); id++){ // Accounts were added to the index in the order they were used
+			Account a = accountsById.get(id);
+			if (a != null){
+				accountsInIdOrder.put(id, a);
+			}
+		}
+		accountsById = accountsInIdOrder;
+		mappedSnapshot = null;
+	}
+
+	/**
+	 * Replaces the contents of the platform with the contents of a snapshot and rebuilds the indexes from it.
+	 * @param snapshot The snapshot that has been loaded.
+	 */
+	private void replacePlatform(PlatformSnapshot snapshot){
+		HashMap<String, Account> loadedAccountsByHandle = new HashMap<String, Account>();
+		for (Account a : snapshot.getAccounts().values()){
+			loadedAccountsByHandle.put(a.getHandle(), a);
+		}
+		accountsById = snapshot.getAccounts();
+		accountsByHandle = loadedAccountsByHandle;
+		postIndex = snapshot.getPosts();
+		totalOriginalPosts = snapshot.getTotalOriginalPosts();
+		totalCommentPosts = snapshot.getTotalCommentPosts();
+		totalEndorsementPosts = snapshot.getTotalEndorsementPosts();
+		Account.setNextId(snapshot.getNextAccountID());
+		Post.setNextId(snapshot.getNextPostID());
+		homeFeeds = new HomeFeeds(snapshot.getFollows());
+		searchIndex = snapshot.getSearchIndex();
+		markPlatformReplaced();
+		mappedSnapshot = null;
+		rebuildLeaderboards();
+	}
+
+	/**
+	 * Reads a platform saved with Java serialisation by an earlier version of savePlatform. The post totals
+	 * are not stored in these files so are returned as 0.
+	 * @param filename location of the file to be loaded
+	 * @return A snapshot of the contents of the file
+	 * @throws IOException if there is a problem experienced when trying to load the file
+	 * @throws ClassNotFoundException if required class files cannot be found when loading
+	 */
+	static PlatformSnapshot readSerialisedPlatform(String filename) throws IOException, ClassNotFoundException {
 		try(ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))){
 			Account[] accountArr = (Account[])in.readObject(); // Read as Array
-			accountList = new ArrayList<>(Arrays.asList(accountArr)); // Cast to ArrayList
+			LinkedHashMap<Integer, Account> loadedAccountsById = new LinkedHashMap<Integer, Account>();
+			for (Account a : accountArr){
+				loadedAccountsById.put(a.getID(), a);
+			}
 
 			Post[] emptyPostArr = (Post[])in.readObject();
-			emptyPostList = new ArrayList<>(Arrays.asList(emptyPostArr));
+			PostIndex loadedPostIndex = new PostIndex();
+			for (Account a : accountArr){ // Rebuild the post index
+				for (Post p : a.getPosts()){
+					loadedPostIndex.put(p);
+				}
+			}
+			for (Post p : emptyPostArr){
+				loadedPostIndex.put(p);
+			}
 			
 			int nextAccountID = (int)in.readObject();
-			Account.setNextId(nextAccountID);
-			
 			int nextPostID = (int)in.readObject();
-			Post.setNextId(nextPostID);
-			
-
+			return new PlatformSnapshot(loadedAccountsById, loadedPostIndex, nextAccountID, nextPostID, 0, 0, 0, 0, new FollowGraph(),
+					PostSearchIndex.of(loadedPostIndex));
 		} 
 	}
 }
\ No newline at end of file
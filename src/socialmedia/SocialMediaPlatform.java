@@ -1,5 +1,9 @@
 package socialmedia;
 
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
 /**
  * SocialMediaPlatform interface. This interface is a more elaborated version of
  * the MiniSocialMediaPlatform. The no-argument constructor of a class
@@ -58,8 +62,229 @@ public interface SocialMediaPlatform extends MiniSocialMediaPlatform {
 	 */
 	void updateAccountDescription(String handle, String description) throws HandleNotRecognisedException;
 
+	// Post-related methods ****************************************
+
+	/**
+	 * The method writes the same text as {@link #showPostChildrenDetails(int)}
+	 * to out while the thread is walked, instead of building it in memory. The
+	 * text is passed to out in chunks of a fixed size, and out is flushed after
+	 * every chunk if it is {@link java.io.Flushable}, so only one chunk of the
+	 * thread is held in memory at a time.
+	 * <p>
+	 * Nothing is written if an exception other than an IOException is thrown.
+	 * 
+	 * @param id  of the post to be shown.
+	 * @param out where the details of the post and its children are written,
+	 *            such as a Writer.
+	 * @throws PostIDNotRecognisedException if the ID does not match to any post in
+	 *                                      the system.
+	 * @throws NotActionablePostException   if the ID refers to an endorsement post.
+	 * @throws IOException                  if out cannot be written to.
+	 */
+	void showPostChildrenDetails(int id, Appendable out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException;
+
+	/**
+	 * The method writes the same text as {@link #showPostChildrenDetails(int)}
+	 * to a channel, encoded as UTF-8, while the thread is walked. The text is
+	 * encoded and written in chunks of a fixed size, so only one chunk of the
+	 * thread is held in memory at a time.
+	 * <p>
+	 * Nothing is written if an exception other than an IOException is thrown.
+	 * 
+	 * @param id      of the post to be shown.
+	 * @param channel where the details of the post and its children are written.
+	 * @throws PostIDNotRecognisedException if the ID does not match to any post in
+	 *                                      the system.
+	 * @throws NotActionablePostException   if the ID refers to an endorsement post.
+	 * @throws IOException                  if the channel cannot be written to.
+	 */
+	void showPostChildrenDetails(int id, WritableByteChannel channel)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException;
+
+	/**
+	 * The method returns one page of the thread under a post, in the same format
+	 * as {@link #showPostChildrenDetails(int)}. The first page starts with the
+	 * post itself and each page holds at most limit posts, in the order they
+	 * appear in the whole thread. Only comments at most maxDepth levels below the
+	 * post, and among the first maxChildren comments of the post they reply to,
+	 * are included. The work done is proportional to the posts on the page, not
+	 * to the size of the thread.
+	 * <p>
+	 * The next page is fetched by passing the cursor of the page, with the same
+	 * limits. Pass {@link Integer#MAX_VALUE} for a limit that should not apply.
+	 * 
+	 * @param id          of the post to be shown.
+	 * @param cursor      the next cursor of the previous page, or null for the
+	 *                    first page.
+	 * @param limit       the maximum number of posts on the page, at least 1.
+	 * @param maxDepth    the maximum number of levels of comments below the post.
+	 * @param maxChildren the maximum number of comments shown under each post.
+	 * @return the page, with the cursor of the next page if there is one.
+	 * @throws PostIDNotRecognisedException if the ID does not match to any post in
+	 *                                      the system.
+	 * @throws NotActionablePostException   if the ID refers to an endorsement post.
+	 * @throws IllegalArgumentException     if a limit is out of range or the
+	 *                                      cursor was not returned for the post.
+	 */
+	ThreadPage getThreadPage(int id, String cursor, int limit, int maxDepth, int maxChildren)
+			throws PostIDNotRecognisedException, NotActionablePostException;
+
+	/**
+	 * The method applies a batch of operations creating accounts, posts,
+	 * comments and endorsements, in order, as if each had been passed to the
+	 * matching single method. Handles and messages are checked for the whole
+	 * batch before anything is changed. An operation that fails does not stop
+	 * the batch; its exception is recorded in the result instead of being thrown,
+	 * and the platform is left as if the operation had not been in the batch.
+	 * 
+	 * @param operations the operations to apply, in order.
+	 * @return the ID created by, or the exception thrown by, each operation.
+	 */
+	BatchResult applyBatch(List<BatchOperation> operations);
+
+	/**
+	 * The method returns one page of the timeline of an account: the posts,
+	 * comments and endorsements it has made, newest first, each in the same
+	 * format as {@link #showIndividualPost(int)}. Deleted posts are not shown.
+	 * The work done is proportional to the log of the number of posts of the
+	 * account plus the size of the page.
+	 * <p>
+	 * The next page is fetched by passing the cursor of the page.
+	 * 
+	 * @param handle of the account.
+	 * @param cursor the next cursor of the previous page, or null for the first
+	 *               page.
+	 * @param limit  the maximum number of posts on the page, at least 1.
+	 * @return the page, with the cursor of the next page if there is one.
+	 * @throws HandleNotRecognisedException if the handle does not match to any
+	 *                                      account in the system.
+	 * @throws IllegalArgumentException     if the limit is out of range or the
+	 *                                      cursor was not returned for the
+	 *                                      account.
+	 */
+	TimelinePage getTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException;
+
+	/**
+	 * The method returns one page of the timeline of an account, as
+	 * {@link #getTimeline(String, String, int)}, showing only posts of the given
+	 * types.
+	 * 
+	 * @param handle of the account.
+	 * @param cursor the next cursor of the previous page, or null for the first
+	 *               page.
+	 * @param limit  the maximum number of posts on the page, at least 1.
+	 * @param types  the types of post to show, a combination of
+	 *               {@link Timeline#ORIGINAL_POSTS},
+	 *               {@link Timeline#COMMENT_POSTS} and
+	 *               {@link Timeline#ENDORSEMENT_POSTS}.
+	 * @return the page, with the cursor of the next page if there is one.
+	 * @throws HandleNotRecognisedException if the handle does not match to any
+	 *                                      account in the system.
+	 * @throws IllegalArgumentException     if the limit or types are out of
+	 *                                      range or the cursor was not returned
+	 *                                      for the account.
+	 */
+	TimelinePage getTimeline(String handle, String cursor, int limit, int types) throws HandleNotRecognisedException;
+
 	// End Post-related methods ****************************************
 
+	// Follow-related methods ****************************************
+
+	/**
+	 * The method makes one account follow another, so the posts of the account
+	 * followed appear in the home timeline of the follower.
+	 * 
+	 * @param handle         of the account following.
+	 * @param followeeHandle of the account to follow.
+	 * @return true if the follow is new, false if the account already followed
+	 *         the other.
+	 * @throws HandleNotRecognisedException if either handle does not match to any
+	 *                                      account in the system.
+	 * @throws IllegalArgumentException     if both handles are of the same
+	 *                                      account.
+	 */
+	boolean follow(String handle, String followeeHandle) throws HandleNotRecognisedException;
+
+	/**
+	 * The method stops one account following another.
+	 * 
+	 * @param handle         of the account following.
+	 * @param followeeHandle of the account to stop following.
+	 * @return true if the account was following the other, false otherwise.
+	 * @throws HandleNotRecognisedException if either handle does not match to any
+	 *                                      account in the system.
+	 */
+	boolean unfollow(String handle, String followeeHandle) throws HandleNotRecognisedException;
+
+	/**
+	 * The method returns the number of accounts following an account.
+	 * 
+	 * @param handle of the account.
+	 * @return the number of followers of the account.
+	 * @throws HandleNotRecognisedException if the handle does not match to any
+	 *                                      account in the system.
+	 */
+	int getFollowerCount(String handle) throws HandleNotRecognisedException;
+
+	/**
+	 * The method returns the number of accounts an account follows.
+	 * 
+	 * @param handle of the account.
+	 * @return the number of accounts followed by the account.
+	 * @throws HandleNotRecognisedException if the handle does not match to any
+	 *                                      account in the system.
+	 */
+	int getFollowingCount(String handle) throws HandleNotRecognisedException;
+
+	/**
+	 * The method returns one page of the home timeline of an account: the
+	 * original posts and endorsements of every account it follows, newest first,
+	 * each formatted as {@link #showIndividualPost(int)} and followed by a new
+	 * line. Comments are not included.
+	 * <p>
+	 * The newest posts are read from a bounded buffer the posts of the accounts
+	 * followed are pushed into as they are made, merged with the posts of
+	 * followed accounts with too many followers to push to. Older pages are
+	 * merged from the timelines of the accounts followed.
+	 * 
+	 * @param handle of the account.
+	 * @param cursor the next cursor of the previous page, or null for the first
+	 *               page.
+	 * @param limit  the maximum number of posts on the page, at least 1.
+	 * @return the page, with the cursor of the next page if there is one.
+	 * @throws HandleNotRecognisedException if the handle does not match to any
+	 *                                      account in the system.
+	 * @throws IllegalArgumentException     if the limit is out of range or the
+	 *                                      cursor was not returned for the
+	 *                                      account.
+	 */
+	TimelinePage getHomeTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException;
+
+	// End Follow-related methods ****************************************
+
+	// Search-related methods ****************************************
+
+	/**
+	 * The method finds the newest original and comment posts whose messages
+	 * contain the words of a query. Words are matched without regard to case,
+	 * and a message is split into words at every character that is not a letter
+	 * or digit. Endorsement posts and deleted posts are never returned.
+	 * <p>
+	 * Every word of the query must be in a post. The word OR, in capitals,
+	 * separates alternative groups of words, so "cat dog OR bird" finds posts
+	 * containing both cat and dog, or bird. A word ending in * matches any word
+	 * starting with it.
+	 *
+	 * @param query the words to search for.
+	 * @param limit the maximum number of posts to return.
+	 * @return the IDs of at most limit matching posts, newest first, or an empty
+	 *         array if limit is not positive or the query has no words.
+	 */
+	int[] searchPosts(String query, int limit);
+
+	// End Search-related methods ****************************************
+
 	// Analytics-related methods ****************************************
 
 	/**
@@ -99,6 +324,28 @@ public interface SocialMediaPlatform extends MiniSocialMediaPlatform {
 	 */
 	int getTotalCommentPosts();
 
+	/**
+	 * This method returns the posts with the most number of endorsements, in
+	 * descending order of endorsements. Posts with the same number of
+	 * endorsements are ordered by ID.
+	 * 
+	 * @param k the maximum number of posts to return.
+	 * @return the IDs of at most k of the most popular posts, or an empty array if
+	 *         k is not positive.
+	 */
+	int[] getTopEndorsedPosts(int k);
+
+	/**
+	 * This method returns the accounts with the most number of endorsements, in
+	 * descending order of endorsements. Accounts with the same number of
+	 * endorsements are ordered by ID.
+	 * 
+	 * @param k the maximum number of accounts to return.
+	 * @return the IDs of at most k of the most popular accounts, or an empty array
+	 *         if k is not positive.
+	 */
+	int[] getTopEndorsedAccounts(int k);
+
 	// End Management-related methods ****************************************
 
 }
\ No newline at end of file
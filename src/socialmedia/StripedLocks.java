@@ -0,0 +1,138 @@
+package socialmedia;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed set of read-write locks that accounts are spread across by ID. Holding the stripe of an account guards
+ * the account and every post it has made, so changes to different accounts can proceed in parallel while only
+ * needing a small, fixed number of locks.
+ * <p>
+ * Operations that involve several accounts lock their stripes in ascending stripe order, which is the same for
+ * every thread, so two operations can never wait on each other's stripes.
+ */
+public class StripedLocks {
+    /**
+     * The locks, one per stripe.
+     */
+    private final ReentrantReadWriteLock[] stripes;
+    /**
+     * The mask applied to a spread account ID to find its stripe. The number of stripes is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * Creates a set of stripes.
+     * @param stripeCount Number of stripes, rounded up to a power of two
+     */
+    public StripedLocks(int stripeCount){
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantReadWriteLock[count];
+        for (int i = 0; i < count; i++){
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        mask = count - 1;
+    }
+
+    /**
+     * Returns the stripe that guards an account.
+     * @param accountId ID of the account
+     * @return Index of the stripe
+     */
+    public int stripeOf(int accountId){
+        int h = accountId * 0x9E3779B9; // Spread sequential IDs so neighbouring accounts rarely share a stripe
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Returns the distinct stripes that guard a set of accounts, in the order they must be locked.
+     * @param accountIds IDs of the accounts, 0 for an account that does not need locking
+     * @return Indexes of the stripes in ascending order, without duplicates
+     */
+    public int[] stripesOf(int... accountIds){
+        int[] result = new int[accountIds.length];
+        int count = 0;
+        for (int id : accountIds){
+            if (id != 0){
+                result[count++] = stripeOf(id);
+            }
+        }
+        Arrays.sort(result, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++){
+            if (distinct == 0 || result[distinct - 1] != result[i]){
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    /**
+     * States whether every stripe of a set of accounts is included in a set of stripes.
+     * @param locked Indexes of stripes in ascending order, as returned by stripesOf
+     * @param accountIds IDs of the accounts, 0 for an account that does not need locking
+     * @return Boolean value stating whether all of the accounts are guarded by the stripes
+     */
+    public boolean covers(int[] locked, int... accountIds){
+        for (int id : accountIds){
+            if (id != 0 && Arrays.binarySearch(locked, stripeOf(id)) < 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Locks stripes for writing, in ascending order.
+     * @param stripeIndexes Indexes of the stripes in ascending order, as returned by stripesOf
+     */
+    public void lockForWriting(int[] stripeIndexes){
+        for (int i : stripeIndexes){
+            stripes[i].writeLock().lock();
+        }
+    }
+
+    /**
+     * Unlocks stripes that were locked for writing.
+     * @param stripeIndexes Indexes of the stripes that were locked
+     */
+    public void unlockForWriting(int[] stripeIndexes){
+        for (int i = stripeIndexes.length - 1; i >= 0; i--){
+            stripes[stripeIndexes[i]].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Locks the stripe of an account for reading.
+     * @param accountId ID of the account
+     */
+    public void lockForReading(int accountId){
+        stripes[stripeOf(accountId)].readLock().lock();
+    }
+
+    /**
+     * Unlocks the stripe of an account that was locked for reading.
+     * @param accountId ID of the account
+     */
+    public void unlockForReading(int accountId){
+        stripes[stripeOf(accountId)].readLock().unlock();
+    }
+
+    /**
+     * Locks every stripe for reading, in ascending order, so a view spanning many accounts is consistent.
+     */
+    public void lockAllForReading(){
+        for (ReentrantReadWriteLock stripe : stripes){
+            stripe.readLock().lock();
+        }
+    }
+
+    /**
+     * Unlocks every stripe that was locked for reading by lockAllForReading.
+     */
+    public void unlockAllForReading(){
+        for (int i = stripes.length - 1; i >= 0; i--){
+            stripes[i].readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package socialmedia;
+
+/**
+ * One page of a thread returned by getThreadPage. The text is in the same format as showPostChildrenDetails, so
+ * joining the text of every page of a thread, fetched with no depth or child limits, gives the whole thread.
+ * <p>
+ * A cursor records the path of comment indexes from the post the thread is shown from down to the next comment to
+ * show, written as the post ID followed by the indexes, such as "12/0.3.1". Comments are never taken out of the
+ * comment list of a post, as deleted comments are left as empty posts, so a cursor stays valid however the thread
+ * changes between pages.
+ */
+public class ThreadPage {
+    /**
+     * The rendered posts of the page.
+     */
+    private final StringBuilder text;
+    /**
+     * The number of posts on the page.
+     */
+    private final int postCount;
+    /**
+     * The cursor of the next page, or null if this is the last page.
+     */
+    private final String nextCursor;
+
+    /**
+     * Creates a page of a thread.
+     * @param text The rendered posts of the page
+     * @param postCount Number of posts on the page
+     * @param nextCursor Cursor of the next page, or null if this is the last page
+     */
+    public ThreadPage(StringBuilder text, int postCount, String nextCursor){
+        this.text = text;
+        this.postCount = postCount;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the rendered posts of the page.
+     * @return The text of the page
+     */
+    public StringBuilder getText(){
+        return text;
+    }
+
+    /**
+     * Returns the number of posts on the page.
+     * @return Number of posts on the page
+     */
+    public int getPostCount(){
+        return postCount;
+    }
+
+    /**
+     * Returns the cursor to pass to getThreadPage to fetch the next page.
+     * @return Cursor of the next page, or null if this is the last page
+     */
+    public String getNextCursor(){
+        return nextCursor;
+    }
+
+    /**
+     * States whether there are more posts in the thread after this page.
+     * @return Boolean value stating whether there is a next page
+     */
+    public boolean hasNextPage(){
+        return nextCursor != null;
+    }
+
+    /**
+     * Writes a cursor.
+     * @param postId ID of the post the thread is shown from
+     * @param path Indexes of the comments from the post down to the next comment to show
+     * @return The cursor
+     */
+    static String encodeCursor(int postId, int[] path){
+        StringBuilder sb = new StringBuilder().append(postId).append('/');
+        for (int i = 0; i < path.length; i++){
+            if (i > 0){
+                sb.append('.');
+            }
+            sb.append(path[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads a cursor.
+     * @param cursor The cursor
+     * @param postId ID of the post the thread is being shown from
+     * @return Indexes of the comments from the post down to the next comment to show
+     * @throws IllegalArgumentException If the cursor is malformed or belongs to the thread of another post
+     */
+    static int[] decodeCursor(String cursor, int postId){
+        int slash = cursor.indexOf('/');
+        String[] indexes = cursor.substring(slash + 1).split("\\.", -1);
+        try{
+            if (slash < 0 || Integer.parseInt(cursor.substring(0, slash)) != postId){
+                throw new IllegalArgumentException("Cursor belongs to the thread of another post");
+            }
+            int[] path = new int[indexes.length];
+            for (int i = 0; i < indexes.length; i++){
+                path[i] = Integer.parseInt(indexes[i]);
+            }
+            return path;
+        } catch (NumberFormatException e){
+            throw new IllegalArgumentException("Malformed cursor " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Renders a post and every comment below it in the format returned by showPostChildrenDetails. The thread is
+ * walked with an explicit stack rather than recursion, so a reply chain of any depth can be shown, and each post is
+ * written straight into the output instead of being built with toString and split into lines first.
+ * <p>
+ * The post the thread is shown from is written as its toString followed by a blank line. Every comment below it
+ * is written as Post.formatMessage would write it, for example:
+ * <pre>
+ * ID: 1
+ * Account: user1
+ * No. endorsements: 0 | No. comments: 1
+ * This is a post
+ *
+ * |
+ * | > ID: 2
+ *     Account: user2
+ *     No. endorsements: 0 | No. comments: 0
+ *     This is a comment
+ * </pre>
+ */
+public class ThreadRenderer {
+    /**
+     * The text one level of indentation adds before a line.
+     */
+    private final static String INDENT = "    ";
+
+    /**
+     * Where the thread is written to.
+     */
+    private final Appendable out;
+    /**
+     * Spaces that indentation is cut from, grown as deeper comments are reached.
+     */
+    private String padding = INDENT.repeat(16);
+    /**
+     * The posts on the path from the post the thread is shown from to the comment being visited.
+     */
+    private Post[] path = new Post[16];
+    /**
+     * The index of the next comment to visit under each post on the path.
+     */
+    private int[] nextComment = new int[16];
+    /**
+     * The number of posts written so far.
+     */
+    private int rendered;
+
+    /**
+     * Creates a renderer that writes to out.
+     * @param out Where the thread is written to
+     */
+    private ThreadRenderer(Appendable out){
+        this.out = out;
+    }
+
+    /**
+     * Appends a post and every comment below it to a StringBuilder.
+     * @param post The post the thread is shown from
+     * @param sb The StringBuilder the thread is appended to
+     * @return The StringBuilder that was passed in
+     */
+    public static StringBuilder render(Post post, StringBuilder sb){
+        try{
+            render(post, (Appendable) sb);
+        } catch (IOException e){ // A StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return sb;
+    }
+
+    /**
+     * Writes a post and every comment below it to an Appendable.
+     * @param post The post the thread is shown from
+     * @param out Where the thread is written to
+     * @throws IOException If out cannot be written to
+     */
+    public static void render(Post post, Appendable out) throws IOException{
+        new ThreadRenderer(out).renderThread(post);
+    }
+
+    /**
+     * Renders part of a thread to a new StringBuilder, as a page of at most limit posts. Only comments at most
+     * maxDepth levels below the post and among the first maxChildren comments of their post are included.
+     * @param post The post the thread is shown from
+     * @param cursor Where the previous page of the thread ended, or null for the first page
+     * @param limit Maximum number of posts on the page, at least 1
+     * @param maxDepth Maximum number of levels of comments included below the post
+     * @param maxChildren Maximum number of comments included under each post
+     * @return The page
+     * @throws IllegalArgumentException If a limit is out of range, or the cursor is not one returned for the post
+     *                                  with the same limits
+     */
+    public static ThreadPage renderPage(Post post, String cursor, int limit, int maxDepth, int maxChildren){
+        if (limit < 1 || maxDepth < 0 || maxChildren < 0){
+            throw new IllegalArgumentException("Limits must not be negative and a page must hold at least 1 post");
+        }
+        int[] resume = cursor == null ? null : ThreadPage.decodeCursor(cursor, post.getID());
+        StringBuilder sb = new StringBuilder();
+        ThreadRenderer renderer = new ThreadRenderer(sb);
+        int[] next;
+        try{
+            next = renderer.renderThread(post, resume, limit, maxDepth, maxChildren);
+        } catch (IOException e){ // A StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        String nextCursor = next == null ? null : ThreadPage.encodeCursor(post.getID(), next);
+        return new ThreadPage(sb, renderer.rendered, nextCursor);
+    }
+
+    /**
+     * Walks the thread depth first, writing each post the first time it is reached.
+     * @param root The post the thread is shown from
+     * @throws IOException If the output cannot be written to
+     */
+    private void renderThread(Post root) throws IOException{
+        renderThread(root, null, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Walks the thread depth first, writing each post the first time it is reached, until limit posts have been
+     * written. Only the comments that are needed are looked at, so the work done is proportional to the posts
+     * written and the depth of the thread, not to the size of the thread.
+     * @param root The post the thread is shown from
+     * @param resume The path of comment indexes from the root to the comment to start from, or null to start from
+     *               the root
+     * @param limit Maximum number of posts to write
+     * @param maxDepth Maximum number of levels of comments written below the root
+     * @param maxChildren Maximum number of comments written under each post
+     * @return The path of comment indexes from the root to the next comment that would have been written, or null
+     *         if the rest of the thread was written
+     * @throws IOException If the output cannot be written to
+     */
+    private int[] renderThread(Post root, int[] resume, int limit, int maxDepth, int maxChildren)
+            throws IOException{
+        path[0] = root;
+        nextComment[0] = 0;
+        int depth = 0;
+        if (resume == null){
+            out.append(root.toString()).append('\n');
+            rendered++;
+        } else{
+            depth = resume(resume, maxDepth, maxChildren);
+        }
+        while (depth >= 0){
+            ArrayList<Comment> comments = path[depth].getComments();
+            int i = nextComment[depth];
+            if (i == comments.size() || i == maxChildren || depth == maxDepth){ // Nothing more to write under this post
+                path[depth--] = null;
+                continue;
+            }
+            if (rendered == limit){
+                int[] next = new int[depth + 1];
+                for (int j = 0; j < depth; j++){
+                    next[j] = nextComment[j] - 1; // Each post on the path was reached through the comment before
+                }
+                next[depth] = i;
+                return next;
+            }
+            nextComment[depth] = i + 1;
+            Comment comment = comments.get(i);
+            depth++;
+            renderComment(comment, depth, i == 0);
+            rendered++;
+            push(comment, depth);
+        }
+        return null;
+    }
+
+    /**
+     * Rebuilds the path down to the comment a page resumes from, so the walk continues as if it had never stopped.
+     * @param resume The path of comment indexes from the root to the comment to start from
+     * @param maxDepth Maximum number of levels of comments written below the root
+     * @param maxChildren Maximum number of comments written under each post
+     * @return The depth of the post whose comment is written next
+     * @throws IllegalArgumentException If the path does not lead to a comment within the limits
+     */
+    private int resume(int[] resume, int maxDepth, int maxChildren){
+        if (resume.length > maxDepth){
+            throw new IllegalArgumentException("Cursor is deeper than the depth limit");
+        }
+        int depth = 0;
+        for (int j = 0; j < resume.length; j++){
+            ArrayList<Comment> comments = path[depth].getComments();
+            if (resume[j] < 0 || resume[j] >= comments.size() || resume[j] >= maxChildren){
+                throw new IllegalArgumentException("Cursor does not lead to a comment");
+            }
+            if (j == resume.length - 1){
+                nextComment[depth] = resume[j];
+            } else{
+                nextComment[depth] = resume[j] + 1;
+                depth++;
+                push(comments.get(resume[j]), depth);
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Puts a comment on the path so the comments under it are visited next.
+     * @param comment The comment
+     * @param depth The position of the comment on the path
+     */
+    private void push(Comment comment, int depth){
+        if (depth == path.length){
+            path = Arrays.copyOf(path, depth * 2);
+            nextComment = Arrays.copyOf(nextComment, depth * 2);
+        }
+        path[depth] = comment;
+        nextComment[depth] = 0;
+    }
+
+    /**
+     * Writes one comment. The first line is marked with "| > ", the first comment of a post is preceded by a line
+     * holding a single "|", and every other line is indented one level further.
+     * @param comment The comment
+     * @param level The number of levels the comment is indented by, at least 1
+     * @param isFirstComment Whether the comment is the first comment of the post above it
+     * @throws IOException If the output cannot be written to
+     */
+    private void renderComment(Comment comment, int level, boolean isFirstComment) throws IOException{
+        if (isFirstComment){
+            indent(level - 1).append("|\n");
+        }
+        indent(level - 1).append("| > ");
+        if (comment.isEmptyPost()){
+            String message = comment.getMessage();
+            String rule = "-".repeat(message.length());
+            out.append(rule).append('\n');
+            indent(level).append(message).append('\n');
+            indent(level).append(rule).append('\n');
+            return;
+        }
+        out.append("ID: ").append(String.valueOf(comment.getID())).append('\n');
+        indent(level).append("Account: ").append(comment.getAccount().getHandle()).append('\n');
+        indent(level).append("No. endorsements: ").append(String.valueOf(comment.getNumEndorsements()))
+                .append(" | No. comments: ").append(String.valueOf(comment.getNumComments())).append('\n');
+
+        String message = comment.getMessage();
+        int end = message.length();
+        while (end > 0 && message.charAt(end - 1) == '\n'){ // Trailing blank lines are dropped, as String.split does
+            end--;
+        }
+        int start = 0;
+        while (start < end){
+            int lineEnd = message.indexOf('\n', start);
+            if (lineEnd < 0 || lineEnd > end){
+                lineEnd = end;
+            }
+            indent(level).append(message, start, lineEnd).append('\n');
+            start = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Writes the indentation for a number of levels.
+     * @param level The number of levels
+     * @return The output, so the rest of the line can be appended
+     * @throws IOException If the output cannot be written to
+     */
+    private Appendable indent(int level) throws IOException{
+        int length = level * INDENT.length();
+        while (padding.length() < length){
+            padding = padding + padding;
+        }
+        return out.append(padding, 0, length);
+    }
+}
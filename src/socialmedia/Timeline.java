@@ -0,0 +1,170 @@
+package socialmedia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The posts of one account in the order they were made, used to serve its feed with getTimeline. Post IDs are
+ * handed out in the order posts are created, so the timeline keeps a sorted array of IDs for each type of post:
+ * original, comment and endorsement. A page of the newest posts before a cursor is found with a binary search in
+ * each array followed by a merge of the arrays from that point, so it takes time proportional to the log of the
+ * number of posts plus the size of the page, whichever types are asked for.
+ * <p>
+ * New posts always have the highest ID, so adding one appends it. Removing a deleted post shifts the newer IDs of
+ * its type down by one.
+ */
+public class Timeline {
+    /**
+     * Type filter bit selecting original posts.
+     */
+    public final static int ORIGINAL_POSTS = 1 << PlatformSnapshot.ORIGINAL_POST;
+    /**
+     * Type filter bit selecting comment posts.
+     */
+    public final static int COMMENT_POSTS = 1 << PlatformSnapshot.COMMENT_POST;
+    /**
+     * Type filter bit selecting endorsement posts.
+     */
+    public final static int ENDORSEMENT_POSTS = 1 << PlatformSnapshot.ENDORSEMENT_POST;
+    /**
+     * Type filter selecting every post.
+     */
+    public final static int ALL_POSTS = ORIGINAL_POSTS | COMMENT_POSTS | ENDORSEMENT_POSTS;
+    /**
+     * The number of IDs each array has room for when the timeline is created empty.
+     */
+    private final static int INITIAL_CAPACITY = 4;
+
+    /**
+     * The IDs of the posts of each type, indexed by PlatformSnapshot type tag, in ascending order.
+     */
+    private final int[][] ids = new int[3][];
+    /**
+     * The number of IDs in each array, indexed by PlatformSnapshot type tag.
+     */
+    private final int[] sizes = new int[3];
+
+    /**
+     * Creates an empty timeline.
+     */
+    public Timeline(){
+        for (int type = 0; type < ids.length; type++){
+            ids[type] = new int[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Creates the timeline of the posts of an account.
+     * @param posts The posts of the account, in any order
+     * @return The timeline
+     */
+    public static Timeline of(ArrayList<Post> posts){
+        Timeline timeline = new Timeline();
+        for (Post p : posts){
+            timeline.append(PlatformSnapshot.typeOf(p), p.getID());
+        }
+        timeline.sort();
+        return timeline;
+    }
+
+    /**
+     * Adds a post. A post newer than every post in the timeline is appended, any other is inserted in order.
+     * @param postId ID of the post, not already in the timeline
+     * @param type PlatformSnapshot type of the post
+     */
+    public void add(int postId, byte type){
+        int size = sizes[type];
+        if (size == 0 || ids[type][size - 1] < postId){
+            append(type, postId);
+            return;
+        }
+        int index = -Arrays.binarySearch(ids[type], 0, size, postId) - 1;
+        append(type, 0); // Makes room for the ID, which is then moved into place
+        System.arraycopy(ids[type], index, ids[type], index + 1, size - index);
+        ids[type][index] = postId;
+    }
+
+    /**
+     * Removes a post. Nothing happens if the post is not in the timeline.
+     * @param postId ID of the post
+     * @param type PlatformSnapshot type of the post
+     */
+    public void remove(int postId, byte type){
+        int size = sizes[type];
+        int index = Arrays.binarySearch(ids[type], 0, size, postId);
+        if (index >= 0){
+            System.arraycopy(ids[type], index + 1, ids[type], index, size - index - 1);
+            sizes[type]--;
+        }
+    }
+
+    /**
+     * Returns the number of posts of the given types.
+     * @param types Type filter, a combination of ORIGINAL_POSTS, COMMENT_POSTS and ENDORSEMENT_POSTS
+     * @return Number of posts
+     */
+    public int size(int types){
+        int total = 0;
+        for (int type = 0; type < ids.length; type++){
+            if ((types & (1 << type)) != 0){
+                total += sizes[type];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the IDs of the newest posts of the given types made before a post, newest first.
+     * @param before ID that every returned post is below, or Integer.MAX_VALUE for the newest posts
+     * @param limit The most IDs to return, at least 1
+     * @param types Type filter, a combination of ORIGINAL_POSTS, COMMENT_POSTS and ENDORSEMENT_POSTS
+     * @return The IDs, followed by one more ID if there are more posts after the page
+     */
+    public int[] before(int before, int limit, int types){
+        int[] next = new int[ids.length]; // The position of the next ID to take from each array, or -1
+        for (int type = 0; type < ids.length; type++){
+            if ((types & (1 << type)) == 0){
+                next[type] = -1;
+                continue;
+            }
+            int index = Arrays.binarySearch(ids[type], 0, sizes[type], before);
+            next[type] = (index >= 0 ? index : -index - 1) - 1;
+        }
+        int[] page = new int[limit == Integer.MAX_VALUE ? size(types) + 1 : limit + 1];
+        int count = 0;
+        while (count < page.length){
+            int newest = -1;
+            for (int type = 0; type < ids.length; type++){
+                if (next[type] >= 0 && (newest < 0 || ids[type][next[type]] > ids[newest][next[newest]])){
+                    newest = type;
+                }
+            }
+            if (newest < 0){
+                break;
+            }
+            page[count++] = ids[newest][next[newest]--];
+        }
+        return count == page.length ? page : Arrays.copyOf(page, count);
+    }
+
+    /**
+     * Adds an ID to the end of an array, growing it if needed.
+     * @param type PlatformSnapshot type the array holds
+     * @param postId ID to add
+     */
+    private void append(int type, int postId){
+        if (sizes[type] == ids[type].length){
+            ids[type] = Arrays.copyOf(ids[type], ids[type].length * 2);
+        }
+        ids[type][sizes[type]++] = postId;
+    }
+
+    /**
+     * Sorts each array, after IDs have been appended out of order.
+     */
+    private void sort(){
+        for (int type = 0; type < ids.length; type++){
+            Arrays.sort(ids[type], 0, sizes[type]);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package socialmedia;
+
+import java.util.function.IntFunction;
+
+/**
+ * One page of the timeline of an account returned by getTimeline: its posts newest first, each in the same format as
+ * showIndividualPost and followed by a new line.
+ * <p>
+ * A cursor records the account the timeline belongs to and the ID of the last post on the page, written as the
+ * account ID followed by the post ID, such as "3/1207". The next page starts with the newest post older than that
+ * post, so a cursor stays valid however many posts are made or deleted between pages.
+ */
+public class TimelinePage {
+    /**
+     * The IDs of the posts on the page, newest first.
+     */
+    private final int[] postIds;
+    /**
+     * The creation time of each post on the page, in milliseconds since the epoch.
+     */
+    private final long[] timestamps;
+    /**
+     * The rendered posts of the page.
+     */
+    private final StringBuilder text;
+    /**
+     * The cursor of the next page, or null if this is the last page.
+     */
+    private final String nextCursor;
+
+    /**
+     * Creates a page of a timeline.
+     * @param postIds IDs of the posts on the page, newest first
+     * @param timestamps Creation time of each post on the page
+     * @param text The rendered posts of the page
+     * @param nextCursor Cursor of the next page, or null if this is the last page
+     */
+    public TimelinePage(int[] postIds, long[] timestamps, StringBuilder text, String nextCursor){
+        this.postIds = postIds;
+        this.timestamps = timestamps;
+        this.text = text;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the IDs of the posts on the page.
+     * @return Post IDs, newest first
+     */
+    public int[] getPostIds(){
+        return postIds;
+    }
+
+    /**
+     * Returns the creation times of the posts on the page.
+     * @return Creation time of each post in milliseconds since the epoch, in the same order as the post IDs
+     */
+    public long[] getTimestamps(){
+        return timestamps;
+    }
+
+    /**
+     * Returns the rendered posts of the page.
+     * @return The text of the page
+     */
+    public StringBuilder getText(){
+        return text;
+    }
+
+    /**
+     * Returns the number of posts on the page.
+     * @return Number of posts on the page
+     */
+    public int getPostCount(){
+        return postIds.length;
+    }
+
+    /**
+     * Returns the cursor to pass to getTimeline to fetch the next page.
+     * @return Cursor of the next page, or null if this is the last page
+     */
+    public String getNextCursor(){
+        return nextCursor;
+    }
+
+    /**
+     * States whether there are more posts in the timeline after this page.
+     * @return Boolean value stating whether there is a next page
+     */
+    public boolean hasNextPage(){
+        return nextCursor != null;
+    }
+
+    /**
+     * Checks the limits of a request and reads its cursor.
+     * @param cursor The cursor, or null for the first page
+     * @param accountId ID of the account whose timeline is being shown
+     * @param limit The most posts the page can hold
+     * @param types Type filter of the request
+     * @return ID that every post on the page must be below
+     * @throws IllegalArgumentException If the limit or type filter is out of range, or the cursor is malformed or
+     *                                  belongs to the timeline of another account
+     */
+    static int decodeCursor(String cursor, int accountId, int limit, int types){
+        if (limit < 1 || types <= 0 || (types & ~Timeline.ALL_POSTS) != 0){
+            throw new IllegalArgumentException("A page must hold at least 1 post of at least one known type");
+        }
+        if (cursor == null){
+            return Integer.MAX_VALUE;
+        }
+        int slash = cursor.indexOf('/');
+        try{
+            if (slash < 0 || Integer.parseInt(cursor.substring(0, slash)) != accountId){
+                throw new IllegalArgumentException("Cursor belongs to the timeline of another account");
+            }
+            return Integer.parseInt(cursor.substring(slash + 1));
+        } catch (NumberFormatException e){
+            throw new IllegalArgumentException("Malformed cursor " + cursor, e);
+        }
+    }
+
+    /**
+     * Renders a page from the IDs returned by {@link Timeline#before}.
+     * @param accountId ID of the account whose timeline is being shown
+     * @param ids IDs of the posts on the page, followed by one more ID if there is a next page
+     * @param limit The most posts the page can hold
+     * @param posts Finds the post with an ID
+     * @return The page
+     */
+    static TimelinePage render(int accountId, int[] ids, int limit, IntFunction<Post> posts){
+        int count = Math.min(ids.length, limit);
+        int[] postIds = new int[count];
+        long[] timestamps = new long[count];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++){
+            Post p = posts.apply(ids[i]);
+            postIds[i] = ids[i];
+            timestamps[i] = p.getTimestamp();
+            sb.append(p.toString()).append('\n');
+        }
+        String nextCursor = ids.length > limit ? accountId + "/" + ids[limit - 1] : null;
+        return new TimelinePage(postIds, timestamps, sb, nextCursor);
+    }
+}
@@ -0,0 +1,346 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Implementor of the SocialMediaPlatform interface whose readers never wait for a lock or see a change half made.
+ * <p>
+ * Every change is made by one writer at a time to a SocialMedia platform guarded by the write lock. When a change is
+ * finished the writer makes a new {@link PlatformVersion} from the posts and accounts it changed and publishes it,
+ * before the next change can start. Showing accounts, posts and threads and the aggregate getters read only the
+ * latest published version, without taking any lock, so they run in parallel with each other and with the writer
+ * and always see the platform as it was between two changes: removing an account, which deletes its posts one by
+ * one, is seen either not at all or all at once. {@link #getVersion} hands out the version itself, so several reads
+ * can be made against the same one.
+ * <p>
+ * Timelines, follows, searches, the top k leaderboards and saving are not kept in versions, so they take the write
+ * lock and wait for the change being made, if any.
+ */
+public class VersionedSocialMedia implements SocialMediaPlatform {
+	/**
+	 * The platform every change is made to and every version is made from. Guarded by writeLock.
+	 */
+	private final SocialMedia platform = new SocialMedia();
+	/**
+	 * The posts and accounts the platform has changed since the latest version was published. Guarded by writeLock.
+	 */
+	private final ChangeSet changes = new ChangeSet();
+	/**
+	 * The lock held while the platform is changed or read, and while the version of a change is published.
+	 */
+	private final Object writeLock = new Object();
+	/**
+	 * The latest published version.
+	 */
+	private volatile PlatformVersion version = PlatformVersion.empty();
+
+	/**
+	 * Creates an empty platform.
+	 */
+	public VersionedSocialMedia(){
+		platform.trackChanges(changes);
+	}
+
+	/**
+	 * Returns the latest published version of the platform. The version never changes, so reads made against it
+	 * all see the same platform, however many changes are made meanwhile.
+	 * @return The latest version
+	 */
+	public PlatformVersion getVersion(){
+		return version;
+	}
+
+	/**
+	 * Publishes a version made from the changes made since the latest one, if there were any. Must be called
+	 * holding the write lock after every change, including one that failed part of the way through.
+	 */
+	private void publish(){
+		if (changes.isReplaced() || changes.getPostCount() > 0 || changes.getAccountCount() > 0){
+			version = version.next(platform, changes);
+			changes.clear();
+		}
+	}
+
+	@Override
+	public int createAccount(String handle) throws IllegalHandleException, InvalidHandleException {
+		return createAccount(handle, "");
+	}
+
+	@Override
+	public int createAccount(String handle, String description) throws IllegalHandleException, InvalidHandleException {
+		synchronized (writeLock){
+			try{
+				return platform.createAccount(handle, description);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public void removeAccount(int id) throws AccountIDNotRecognisedException {
+		synchronized (writeLock){
+			try{
+				platform.removeAccount(id);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public void removeAccount(String handle) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			try{
+				platform.removeAccount(handle);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public void changeAccountHandle(String oldHandle, String newHandle)
+			throws HandleNotRecognisedException, IllegalHandleException, InvalidHandleException {
+		synchronized (writeLock){
+			try{
+				platform.changeAccountHandle(oldHandle, newHandle);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public void updateAccountDescription(String handle, String description) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			try{
+				platform.updateAccountDescription(handle, description);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public String showAccount(String handle) throws HandleNotRecognisedException {
+		return version.showAccount(handle);
+	}
+
+	@Override
+	public int createPost(String handle, String message) throws HandleNotRecognisedException, InvalidPostException {
+		synchronized (writeLock){
+			try{
+				return platform.createPost(handle, message);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public int endorsePost(String handle, int id)
+			throws HandleNotRecognisedException, PostIDNotRecognisedException, NotActionablePostException {
+		synchronized (writeLock){
+			try{
+				return platform.endorsePost(handle, id);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public int commentPost(String handle, int id, String message) throws HandleNotRecognisedException,
+			PostIDNotRecognisedException, NotActionablePostException, InvalidPostException {
+		synchronized (writeLock){
+			try{
+				return platform.commentPost(handle, id, message);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public BatchResult applyBatch(List<BatchOperation> operations){
+		synchronized (writeLock){
+			try{
+				return platform.applyBatch(operations);
+			} finally{
+				publish(); // The whole batch is published as one version
+			}
+		}
+	}
+
+	@Override
+	public void deletePost(int id) throws PostIDNotRecognisedException {
+		synchronized (writeLock){
+			try{
+				platform.deletePost(id);
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public String showIndividualPost(int id) throws PostIDNotRecognisedException {
+		return version.showIndividualPost(id);
+	}
+
+	@Override
+	public StringBuilder showPostChildrenDetails(int id)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		return version.showPostChildrenDetails(id);
+	}
+
+	@Override
+	public void showPostChildrenDetails(int id, Appendable out)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		version.showPostChildrenDetails(id, out);
+	}
+
+	@Override
+	public void showPostChildrenDetails(int id, WritableByteChannel channel)
+			throws PostIDNotRecognisedException, NotActionablePostException, IOException {
+		version.showPostChildrenDetails(id, channel);
+	}
+
+	@Override
+	public ThreadPage getThreadPage(int id, String cursor, int limit, int maxDepth, int maxChildren)
+			throws PostIDNotRecognisedException, NotActionablePostException {
+		return version.getThreadPage(id, cursor, limit, maxDepth, maxChildren);
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			return platform.getTimeline(handle, cursor, limit);
+		}
+	}
+
+	@Override
+	public TimelinePage getTimeline(String handle, String cursor, int limit, int types) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			return platform.getTimeline(handle, cursor, limit, types);
+		}
+	}
+
+	@Override
+	public boolean follow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			return platform.follow(handle, followeeHandle); // Follows are not kept in versions
+		}
+	}
+
+	@Override
+	public boolean unfollow(String handle, String followeeHandle) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			return platform.unfollow(handle, followeeHandle);
+		}
+	}
+
+	@Override
+	public int getFollowerCount(String handle) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			return platform.getFollowerCount(handle);
+		}
+	}
+
+	@Override
+	public int getFollowingCount(String handle) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			return platform.getFollowingCount(handle);
+		}
+	}
+
+	@Override
+	public TimelinePage getHomeTimeline(String handle, String cursor, int limit) throws HandleNotRecognisedException {
+		synchronized (writeLock){
+			return platform.getHomeTimeline(handle, cursor, limit);
+		}
+	}
+
+	@Override
+	public int[] searchPosts(String query, int limit) {
+		synchronized (writeLock){
+			return platform.searchPosts(query, limit);
+		}
+	}
+
+	@Override
+	public int getNumberOfAccounts() {
+		return version.getNumberOfAccounts();
+	}
+
+	@Override
+	public int getTotalOriginalPosts() {
+		return version.getTotalOriginalPosts();
+	}
+
+	@Override
+	public int getTotalEndorsmentPosts() {
+		return version.getTotalEndorsmentPosts();
+	}
+
+	@Override
+	public int getTotalCommentPosts() {
+		return version.getTotalCommentPosts();
+	}
+
+	@Override
+	public int getMostEndorsedPost() {
+		return version.getMostEndorsedPost();
+	}
+
+	@Override
+	public int getMostEndorsedAccount() {
+		return version.getMostEndorsedAccount();
+	}
+
+	@Override
+	public int[] getTopEndorsedPosts(int k) {
+		synchronized (writeLock){
+			return platform.getTopEndorsedPosts(k);
+		}
+	}
+
+	@Override
+	public int[] getTopEndorsedAccounts(int k) {
+		synchronized (writeLock){
+			return platform.getTopEndorsedAccounts(k);
+		}
+	}
+
+	@Override
+	public void erasePlatform() {
+		synchronized (writeLock){
+			try{
+				platform.erasePlatform();
+			} finally{
+				publish();
+			}
+		}
+	}
+
+	@Override
+	public void savePlatform(String filename) throws IOException {
+		synchronized (writeLock){
+			platform.savePlatform(filename);
+		}
+	}
+
+	@Override
+	public void loadPlatform(String filename) throws IOException, ClassNotFoundException {
+		synchronized (writeLock){
+			try{
+				platform.loadPlatform(filename);
+			} finally{
+				publish();
+			}
+		}
+	}
+}
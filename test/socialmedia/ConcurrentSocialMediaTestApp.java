@@ -0,0 +1,229 @@
+package socialmedia;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a random mix of changes and reads against a ConcurrentSocialMedia from several threads at once, then checks
+ * the counters and leaderboards it kept up to date against a recount of the accounts and posts it holds. Run with
+ * assertions enabled.
+ */
+public class ConcurrentSocialMediaTestApp {
+	/**
+	 * The number of threads calling the platform at the same time.
+	 */
+	private final static int THREADS = 8;
+	/**
+	 * The number of calls each thread makes.
+	 */
+	private final static int CALLS = 20000;
+	/**
+	 * The number of handles the threads choose from.
+	 */
+	private final static int HANDLES = 40;
+	/**
+	 * The seed of the first thread, with each later thread using the next seed.
+	 */
+	private final static long SEED = 1410;
+
+	/**
+	 * Runs the threads and checks the platform they leave behind.
+	 * @param args not used
+	 * @throws Exception If a thread or the check fails
+	 */
+	public static void main(String[] args) throws Exception {
+		ConcurrentSocialMedia platform = new ConcurrentSocialMedia();
+		platform.erasePlatform();
+		for (int i = 0; i < HANDLES; i++){
+			platform.createAccount(handle(i));
+			platform.createPost(handle(i), "first post");
+		}
+
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++){
+			Random random = new Random(SEED + t);
+			threads[t] = new Thread(() -> {
+				try{
+					for (int i = 0; i < CALLS && failure.get() == null; i++){
+						call(platform, random);
+					}
+				} catch (Throwable e){
+					failure.compareAndSet(null, e);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads){
+			thread.join();
+		}
+		if (failure.get() != null){
+			throw new AssertionError("A thread failed", failure.get());
+		}
+		checkCounters(platform);
+		System.out.println("ConcurrentSocialMediaTestApp passed");
+	}
+
+	/**
+	 * Returns one of the handles the threads choose from.
+	 * @param i The number of the handle
+	 * @return The handle
+	 */
+	private static String handle(int i){
+		return "user" + i;
+	}
+
+	/**
+	 * Makes one random call. Calls naming an account or post that another thread has just removed are rejected
+	 * with the checked exceptions of the interface, which are expected; anything else is a failure.
+	 * @param platform The platform
+	 * @param random The random choices of the thread
+	 * @throws Exception If the call fails unexpectedly
+	 */
+	private static void call(SocialMediaPlatform platform, Random random) throws Exception {
+		int account = random.nextInt(HANDLES);
+		String handle = handle(account);
+		String other = handle((account + 1 + random.nextInt(HANDLES - 1)) % HANDLES); // Accounts cannot follow themselves
+		int post = 1 + random.nextInt(Post.getNextId() - 1);
+		try{
+			int choice = random.nextInt(1000);
+			if (choice < 200){
+				platform.createPost(handle, "a post");
+			} else if (choice < 320){
+				platform.commentPost(handle, post, "a comment");
+			} else if (choice < 520){
+				platform.endorsePost(handle, post);
+			} else if (choice < 600){
+				platform.deletePost(post);
+			} else if (choice < 640){
+				platform.follow(handle, other);
+			} else if (choice < 660){
+				platform.unfollow(handle, other);
+			} else if (choice < 680){
+				platform.updateAccountDescription(handle, "description " + random.nextInt(10));
+			} else if (choice < 682){ // Removed accounts are created again, with a new ID, so the handles stay in use
+				platform.removeAccount(handle);
+				platform.createAccount(handle);
+			} else if (choice < 690){
+				platform.changeAccountHandle(handle, handle + "x");
+				platform.changeAccountHandle(handle + "x", handle);
+			} else if (choice < 710){
+				List<BatchOperation> batch = new ArrayList<BatchOperation>();
+				batch.add(BatchOperation.createPost(handle, "a batched post"));
+				batch.add(BatchOperation.endorsePost(other, post));
+				batch.add(BatchOperation.commentPost(handle, post, "a batched comment"));
+				platform.applyBatch(batch);
+			} else if (choice < 780){
+				platform.showIndividualPost(post);
+			} else if (choice < 820){
+				platform.showPostChildrenDetails(post);
+			} else if (choice < 860){
+				platform.showAccount(handle);
+			} else if (choice < 900){
+				platform.getTimeline(handle, null, 10);
+			} else if (choice < 940){
+				platform.getHomeTimeline(handle, null, 10);
+			} else{
+				platform.getTopEndorsedPosts(5);
+				platform.getMostEndorsedAccount();
+			}
+		} catch (HandleNotRecognisedException | PostIDNotRecognisedException | NotActionablePostException
+				| IllegalHandleException e){
+			// Another thread removed or renamed what was named, or made the handle in the meantime
+		}
+	}
+
+	/**
+	 * Checks the post totals, the leaderboards and the counts shown for every account and post against a recount
+	 * of the accounts and posts saved from the platform.
+	 * @param platform The platform, which nothing else is changing
+	 * @throws Exception If the platform cannot be saved or read back
+	 */
+	private static void checkCounters(ConcurrentSocialMedia platform) throws Exception {
+		File file = File.createTempFile("concurrent", ".snap");
+		file.deleteOnExit();
+		platform.savePlatform(file.getPath());
+		PlatformSnapshot saved = PlatformSnapshot.read(file.getPath());
+
+		int[] totals = new int[3];
+		Map<Integer, Integer> endorsements = new HashMap<Integer, Integer>();
+		Map<Integer, Integer> comments = new HashMap<Integer, Integer>();
+		for (Post p : saved.getPosts()){
+			if (p.isEmptyPost()){
+				continue;
+			}
+			byte type = PlatformSnapshot.typeOf(p);
+			totals[type]++;
+			if (type == PlatformSnapshot.ENDORSEMENT_POST){
+				endorsements.merge(PlatformSnapshot.parentIdOf(p), 1, Integer::sum);
+			} else if (type == PlatformSnapshot.COMMENT_POST){
+				comments.merge(PlatformSnapshot.parentIdOf(p), 1, Integer::sum);
+			}
+		}
+		assert platform.getTotalOriginalPosts() == totals[PlatformSnapshot.ORIGINAL_POST] : "original posts "
+				+ platform.getTotalOriginalPosts() + " counted " + totals[PlatformSnapshot.ORIGINAL_POST];
+		assert platform.getTotalCommentPosts() == totals[PlatformSnapshot.COMMENT_POST] : "comments "
+				+ platform.getTotalCommentPosts() + " counted " + totals[PlatformSnapshot.COMMENT_POST];
+		assert platform.getTotalEndorsmentPosts() == totals[PlatformSnapshot.ENDORSEMENT_POST] : "endorsements "
+				+ platform.getTotalEndorsmentPosts() + " counted " + totals[PlatformSnapshot.ENDORSEMENT_POST];
+		assert platform.getNumberOfAccounts() == saved.getAccounts().size() : "accounts";
+
+		ArrayList<int[]> postScores = new ArrayList<int[]>();
+		Map<Integer, Integer> accountEndorsements = new HashMap<Integer, Integer>();
+		Map<Integer, Integer> accountPosts = new HashMap<Integer, Integer>();
+		for (Post p : saved.getPosts()){
+			if (p.isEmptyPost()){
+				continue;
+			}
+			int accountId = p.getAccount().getID();
+			accountPosts.merge(accountId, 1, Integer::sum);
+			if (p instanceof EndorsementPost){
+				continue;
+			}
+			int endorsed = endorsements.getOrDefault(p.getID(), 0);
+			postScores.add(new int[]{p.getID(), endorsed});
+			accountEndorsements.merge(accountId, endorsed, Integer::sum);
+			String shown = platform.showIndividualPost(p.getID());
+			assert shown.contains("No. endorsements: " + endorsed + " | No. comments: " + comments.getOrDefault(p.getID(), 0))
+					: "counts of post " + p.getID() + ": " + shown;
+		}
+		ArrayList<int[]> accountScores = new ArrayList<int[]>();
+		for (Account a : saved.getAccounts().values()){
+			int endorsed = accountEndorsements.getOrDefault(a.getID(), 0);
+			accountScores.add(new int[]{a.getID(), endorsed});
+			String shown = platform.showAccount(a.getHandle());
+			assert shown.contains("Post count: " + accountPosts.getOrDefault(a.getID(), 0) + "\nEndorse count: " + endorsed)
+					: "counts of account " + a.getHandle() + ": " + shown;
+		}
+
+		int[] topPosts = ranking(postScores, 10);
+		int[] topAccounts = ranking(accountScores, 10);
+		assert platform.getMostEndorsedPost() == (topPosts.length == 0 ? 0 : topPosts[0]) : "most endorsed post";
+		assert platform.getMostEndorsedAccount() == (topAccounts.length == 0 ? 0 : topAccounts[0]) : "most endorsed account";
+		assert Arrays.equals(platform.getTopEndorsedPosts(10), topPosts) : "top posts "
+				+ Arrays.toString(platform.getTopEndorsedPosts(10)) + " counted " + Arrays.toString(topPosts);
+		assert Arrays.equals(platform.getTopEndorsedAccounts(10), topAccounts) : "top accounts "
+				+ Arrays.toString(platform.getTopEndorsedAccounts(10)) + " counted " + Arrays.toString(topAccounts);
+	}
+
+	/**
+	 * Ranks IDs by score the way the leaderboards do, highest score first and lowest ID first for equal scores.
+	 * @param scores Pairs of ID and score
+	 * @param k The number of IDs to return
+	 * @return The k highest ranked IDs, or all of them if there are fewer
+	 */
+	private static int[] ranking(ArrayList<int[]> scores, int k){
+		scores.sort((a, b) -> a[1] != b[1] ? Integer.compare(b[1], a[1]) : Integer.compare(a[0], b[0]));
+		int[] ids = new int[Math.min(k, scores.size())];
+		for (int i = 0; i < ids.length; i++){
+			ids[i] = scores.get(i)[0];
+		}
+		return ids;
+	}
+}
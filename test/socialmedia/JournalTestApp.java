@@ -0,0 +1,278 @@
+package socialmedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Checks that a platform journaling its changes is recovered after a crash: every committed change is replayed on
+ * top of the last checkpoint, a record cut short or corrupted by the crash stops the replay at the record before
+ * it, and a journal that does not follow on from the snapshot is refused. Run with assertions enabled.
+ */
+public class JournalTestApp {
+	/**
+	 * A change made to the platform while it is journaled.
+	 */
+	private interface Step {
+		/**
+		 * Makes the change.
+		 * @param platform The platform
+		 * @throws Exception If the platform rejects the change
+		 */
+		void run(SocialMedia platform) throws Exception;
+	}
+
+	/**
+	 * Every handle used by the steps.
+	 */
+	private final static String[] HANDLES = {"ann", "ben", "cat", "dan"};
+	/**
+	 * The changes made to a platform that starts empty, covering every kind of journal record. Post IDs start from 1.
+	 */
+	private final static Step[] STEPS = {
+		p -> p.createAccount("ann", "first"),
+		p -> p.createAccount("ben"),
+		p -> p.createPost("ann", "hello"),
+		p -> p.createPost("ben", "hi ann"),
+		p -> p.commentPost("ben", 1, "welcome"),
+		p -> p.endorsePost("ben", 1),
+		p -> p.follow("ben", "ann"),
+		p -> p.changeAccountHandle("ben", "cat"),
+		p -> p.updateAccountDescription("ann", "second"),
+		p -> p.endorsePost("ann", 2),
+		p -> p.deletePost(3),
+		p -> p.createAccount("dan"),
+		p -> p.follow("dan", "ann"),
+		p -> p.unfollow("cat", "ann"),
+		p -> p.commentPost("dan", 1, "late reply"),
+		p -> p.removeAccount("cat"),
+		p -> p.createPost("ann", "last"),
+	};
+
+	/**
+	 * The files of a journaled platform and what the platform showed after each step.
+	 */
+	private final static class Recording {
+		/**
+		 * Location of the snapshot file.
+		 */
+		final String snapshot;
+		/**
+		 * Location of the journal file.
+		 */
+		final String journal;
+		/**
+		 * The description of the platform after each number of steps, from none to all of them.
+		 */
+		final String[] states = new String[STEPS.length + 1];
+		/**
+		 * The size of the journal file after each number of steps.
+		 */
+		final long[] sizes = new long[STEPS.length + 1];
+
+		/**
+		 * Creates a recording whose files are in a new temporary directory.
+		 * @throws IOException If the directory cannot be created
+		 */
+		Recording() throws IOException {
+			File dir = Files.createTempDirectory("journal").toFile();
+			dir.deleteOnExit();
+			File snapshotFile = new File(dir, "platform.snap");
+			File journalFile = new File(dir, "platform.journal");
+			snapshotFile.deleteOnExit();
+			journalFile.deleteOnExit();
+			snapshot = snapshotFile.getPath();
+			journal = journalFile.getPath();
+		}
+	}
+
+	/**
+	 * Runs the checks.
+	 * @param args not used
+	 * @throws Exception If a check fails with an exception
+	 */
+	public static void main(String[] args) throws Exception {
+		checkReplay();
+		checkTornRecord();
+		checkCorruptRecord();
+		checkCheckpoint();
+		checkSequenceAfterReset();
+		checkStaleSnapshot();
+		System.out.println("JournalTestApp passed");
+	}
+
+	/**
+	 * Makes every change to an empty platform, committing each record as it is written, and closes the journal
+	 * without taking a checkpoint, so recovery has to replay all of them.
+	 * @return The recording
+	 * @throws Exception If a change fails
+	 */
+	private static Recording record() throws Exception {
+		Recording recording = new Recording();
+		SocialMedia platform = new SocialMedia();
+		platform.erasePlatform();
+		platform.openJournal(recording.snapshot, recording.journal, 1, false, 0);
+		recording.states[0] = PlatformState.describe(platform, HANDLES);
+		recording.sizes[0] = new File(recording.journal).length();
+		for (int i = 0; i < STEPS.length; i++){
+			STEPS[i].run(platform);
+			recording.states[i + 1] = PlatformState.describe(platform, HANDLES);
+			recording.sizes[i + 1] = new File(recording.journal).length();
+		}
+		platform.closeJournal();
+		return recording;
+	}
+
+	/**
+	 * Recovers a platform from the files of a recording, leaving the journal open.
+	 * @param recording The recording
+	 * @return The recovered platform
+	 * @throws Exception If the platform cannot be recovered
+	 */
+	private static SocialMedia recover(Recording recording) throws Exception {
+		SocialMedia platform = new SocialMedia();
+		platform.openJournal(recording.snapshot, recording.journal, 1, false, 0);
+		return platform;
+	}
+
+	/**
+	 * Checks that recovery replays every committed change.
+	 * @throws Exception If recovery fails
+	 */
+	private static void checkReplay() throws Exception {
+		Recording recording = record();
+		SocialMedia platform = recover(recording);
+		assert PlatformState.describe(platform, HANDLES).equals(recording.states[STEPS.length]) : "replay";
+		platform.closeJournal();
+	}
+
+	/**
+	 * Checks that a last record cut short, either in its length and checksum or in its payload, is dropped and
+	 * truncated from the file, and that changes made after recovery are journaled after the last complete record.
+	 * @throws Exception If recovery fails
+	 */
+	private static void checkTornRecord() throws Exception {
+		int last = STEPS.length - 1;
+		for (int cut : new int[]{5, 12, -3}){
+			Recording recording = record();
+			long size = cut > 0 ? recording.sizes[last] + cut : recording.sizes[last + 1] + cut;
+			try (RandomAccessFile file = new RandomAccessFile(recording.journal, "rw")){
+				file.setLength(size);
+			}
+			SocialMedia platform = recover(recording);
+			assert PlatformState.describe(platform, HANDLES).equals(recording.states[last]) : "torn record replayed, cut " + cut;
+			assert new File(recording.journal).length() == recording.sizes[last] : "torn record not truncated, cut " + cut;
+
+			STEPS[last].run(platform); // Made again, as the torn record never committed it
+			platform.closeJournal();
+			platform = recover(recording);
+			assert PlatformState.describe(platform, HANDLES).equals(recording.states[last + 1])
+					: "change after recovery not journaled, cut " + cut;
+			platform.closeJournal();
+		}
+	}
+
+	/**
+	 * Checks that replay stops at a record whose checksum does not match, dropping it and every record after it.
+	 * @throws Exception If recovery fails
+	 */
+	private static void checkCorruptRecord() throws Exception {
+		Recording recording = record();
+		int corrupt = STEPS.length / 2;
+		try (RandomAccessFile file = new RandomAccessFile(recording.journal, "rw")){
+			long position = recording.sizes[corrupt] + 12; // In the sequence number of the record of the next step
+			file.seek(position);
+			int b = file.read();
+			file.seek(position);
+			file.write(b ^ 0xFF);
+		}
+		SocialMedia platform = recover(recording);
+		assert PlatformState.describe(platform, HANDLES).equals(recording.states[corrupt]) : "replay past corrupt record";
+		assert new File(recording.journal).length() == recording.sizes[corrupt] : "corrupt record not truncated";
+		platform.closeJournal();
+	}
+
+	/**
+	 * Checks that a checkpoint saves every change so far and empties the journal, and that recovery replays only
+	 * the records written after it.
+	 * @throws Exception If recovery fails
+	 */
+	private static void checkCheckpoint() throws Exception {
+		Recording recording = record();
+		SocialMedia platform = recover(recording);
+		platform.checkpoint();
+		assert new File(recording.journal).length() == Journal.HEADER_SIZE : "journal not emptied by checkpoint";
+		platform.createPost("ann", "after the checkpoint");
+		String state = PlatformState.describe(platform, HANDLES);
+		platform.closeJournal();
+
+		platform = recover(recording);
+		assert PlatformState.describe(platform, HANDLES).equals(state) : "replay after checkpoint";
+		platform.closeJournal();
+	}
+
+	/**
+	 * Checks that sequence numbers carry on from the last record removed when a journal is reset, so the records
+	 * written after a checkpoint follow on from the sequence saved in its snapshot.
+	 * @throws Exception If the journal cannot be written
+	 */
+	private static void checkSequenceAfterReset() throws Exception {
+		Recording recording = new Recording();
+		Journal journal = Journal.open(recording.journal, 0, 2, false);
+		for (int i = 1; i <= 3; i++){
+			assert journal.append(Journal.CREATE_ACCOUNT, 0, i, "user" + i, null) == i : "sequence before reset";
+		}
+		journal.reset();
+		assert journal.getRecordCount() == 0 : "records after reset";
+		assert journal.getLastSequence() == 3 : "last sequence after reset";
+		assert journal.append(Journal.CREATE_POST, 0, 1, "user1", "hello") == 4 : "sequence after reset";
+		assert journal.append(Journal.DELETE_POST, 1, 0, null, null) == 5 : "sequence after reset";
+		journal.close();
+
+		journal = Journal.open(recording.journal, 3, 1, false);
+		assert journal.getRecoveredRecords().size() == 2 : "recovered records";
+		assert journal.getRecoveredRecords().get(0).getSequence() == 4 : "first recovered sequence";
+		assert journal.getRecoveredRecords().get(1).getOperation() == Journal.DELETE_POST : "recovered operation";
+		assert journal.getLastSequence() == 5 : "last sequence";
+		journal.close();
+
+		journal = Journal.open(recording.journal, 5, 1, false); // The snapshot already includes every record
+		assert journal.getRecoveredRecords().isEmpty() : "records included in the snapshot recovered";
+		assert journal.append(Journal.ERASE_PLATFORM, 0, 0, null, null) == 6 : "sequence after reopening";
+		journal.close();
+
+		try{
+			Journal.open(recording.journal, 1, 1, false).close();
+			assert false : "journal opened after a gap in the sequence";
+		} catch (IOException e){
+			assert e.getMessage().contains("does not continue on from snapshot sequence 1") : e.getMessage();
+		}
+	}
+
+	/**
+	 * Checks that a platform is not recovered from a snapshot older than the journal, which would silently drop
+	 * the changes made between the two.
+	 * @throws Exception If the files cannot be copied
+	 */
+	private static void checkStaleSnapshot() throws Exception {
+		Recording recording = record();
+		File stale = new File(recording.snapshot + ".stale");
+		stale.deleteOnExit();
+		Files.copy(new File(recording.snapshot).toPath(), stale.toPath());
+
+		SocialMedia platform = recover(recording);
+		platform.checkpoint();
+		platform.createPost("ann", "after the checkpoint");
+		platform.closeJournal();
+		Files.copy(stale.toPath(), new File(recording.snapshot).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		try{
+			recover(recording).closeJournal();
+			assert false : "journal replayed on top of an older snapshot";
+		} catch (IOException e){
+			assert e.getMessage().contains("does not continue on from snapshot sequence 0") : e.getMessage();
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package socialmedia;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks loadPlatformLazily against loadPlatform: that a platform loaded from a mapped snapshot, whose accounts and
+ * posts are read from the file the first time they are used, answers every call the same as one loaded in full, as
+ * accounts are renamed and removed and posts are made and deleted on top of the snapshot, and that it saves the same
+ * platform, including to the file it was loaded from. Run with assertions enabled.
+ */
+public class LazyLoadTestApp {
+	/**
+	 * The number of random changes made to the platform that is saved.
+	 */
+	private final static int SAVED_CHANGES = 3000;
+	/**
+	 * The number of random calls made to each loaded platform.
+	 */
+	private final static int CALLS = 3000;
+	/**
+	 * The number of rounds of calls, each made to fresh loads of the snapshot.
+	 */
+	private final static int ROUNDS = 5;
+	/**
+	 * The number of handles the changes choose from, more than the accounts the saved platform holds, so renames
+	 * to handles that are free and to handles still only in the file both happen.
+	 */
+	private final static int HANDLES = 16;
+	/**
+	 * The seed of the random changes.
+	 */
+	private final static long SEED = 61;
+
+	/**
+	 * Runs the checks.
+	 * @param args not used
+	 * @throws Exception If a check fails with an exception
+	 */
+	public static void main(String[] args) throws Exception {
+		File snapshot = tempFile();
+		savePlatform(snapshot);
+		checkLoadedState(snapshot);
+		checkHandleLookups(snapshot);
+		for (int round = 0; round < ROUNDS; round++){
+			checkCalls(snapshot, SEED + round);
+		}
+		System.out.println("LazyLoadTestApp passed");
+	}
+
+	/**
+	 * Makes random changes to a platform, including follows, and saves it.
+	 * @param file Where the platform is saved
+	 * @throws Exception If the platform cannot be saved
+	 */
+	private static void savePlatform(File file) throws Exception {
+		SocialMedia platform = new SocialMedia();
+		platform.erasePlatform();
+		for (int i = 0; i < HANDLES - 4; i++){ // The last handles are left free
+			platform.createAccount(handle(i), "description " + i);
+			platform.createPost(handle(i), "first post of " + i);
+		}
+		Random random = new Random(SEED);
+		for (int i = 0; i < SAVED_CHANGES; i++){
+			call(platform, random);
+		}
+		platform.savePlatform(file.getPath());
+	}
+
+	/**
+	 * Checks that a platform loaded lazily shows the same as one loaded in full before anything is changed.
+	 * @param snapshot The saved platform
+	 * @throws Exception If a platform cannot be loaded
+	 */
+	private static void checkLoadedState(File snapshot) throws Exception {
+		SocialMedia eager = new SocialMedia();
+		eager.loadPlatform(snapshot.getPath());
+		String expected = PlatformState.describe(eager, handles());
+		SocialMedia lazy = new SocialMedia();
+		lazy.loadPlatformLazily(snapshot.getPath());
+		assert PlatformState.describe(lazy, handles()).equals(expected) : "platform loaded lazily differs";
+	}
+
+	/**
+	 * Checks that looking an account up by handle on a platform loaded lazily never finds an account under a handle
+	 * it was renamed from or after it was removed, although the handle is still in the table of the file, and that
+	 * the handle can be used for a new account.
+	 * @param snapshot The saved platform
+	 * @throws Exception If the platform cannot be loaded
+	 */
+	private static void checkHandleLookups(File snapshot) throws Exception {
+		List<Account> saved = new ArrayList<Account>(PlatformSnapshot.read(snapshot.getPath()).getAccounts().values());
+		String renamed = saved.get(0).getHandle();
+		String removed = saved.get(1).getHandle();
+		String kept = saved.get(2).getHandle();
+		int id = saved.get(0).getID();
+		SocialMedia lazy = new SocialMedia();
+		lazy.loadPlatformLazily(snapshot.getPath()); // Nothing is read from the file before the changes
+
+		lazy.changeAccountHandle(renamed, "newHandle");
+		assert missing(lazy, renamed) : "account found under the handle it was renamed from";
+		assert lazy.showAccount("newHandle").startsWith("ID: " + id + "\n") : "renamed account";
+		lazy.removeAccount(removed);
+		assert missing(lazy, removed) : "removed account found";
+		assert lazy.getNumberOfAccounts() == saved.size() - 1 : "accounts after a removal";
+		try{
+			lazy.changeAccountHandle("newHandle", kept);
+			assert false : "renamed to the handle of an account not read yet";
+		} catch (IllegalHandleException e){
+			// The handle is taken by an account still only in the file
+		}
+
+		int created = lazy.createAccount(renamed);
+		assert created != id && lazy.showAccount(renamed).startsWith("ID: " + created + "\n")
+				: "account made with an old handle";
+		lazy.createAccount(removed);
+		lazy.removeAccount(removed);
+		assert missing(lazy, removed) : "account removed twice found";
+		lazy.changeAccountHandle("newHandle", "other");
+		lazy.changeAccountHandle("other", "newHandle");
+		assert missing(lazy, "other") : "account found under a handle it was renamed from twice";
+		assert lazy.showAccount(kept).contains("Handle: " + kept) : "account not changed";
+
+		MappedSnapshot mapped = MappedSnapshot.open(snapshot.getPath());
+		Account found = mapped.accountByHandle(renamed);
+		assert found != null && found.getID() == id : "account looked up in the file";
+		found.setHandle("newHandle"); // As a rename does, leaving the old handle in the table of the file
+		assert mapped.accountByHandle(renamed) == null : "account read already found again by its old handle";
+		assert mapped.account(id) == found : "account read twice";
+	}
+
+	/**
+	 * Loads the snapshot in full and lazily, makes the same random calls to both and checks that every call had the
+	 * same result or exception, that both platforms end up the same, and that saves of the lazily loaded platform,
+	 * to a new file and to the file it was loaded from, load back to the same platform.
+	 * @param snapshot The saved platform, which is overwritten by the check
+	 * @param seed The seed of the calls
+	 * @throws Exception If a platform cannot be loaded or saved
+	 */
+	private static void checkCalls(File snapshot, long seed) throws Exception {
+		SocialMedia eager = new SocialMedia();
+		eager.loadPlatform(snapshot.getPath());
+		List<String> expected = calls(eager, seed);
+		String state = PlatformState.describe(eager, handles());
+
+		SocialMedia lazy = new SocialMedia();
+		lazy.loadPlatformLazily(snapshot.getPath()); // Also sets the ID counters back to those of the snapshot
+		List<String> outcomes = calls(lazy, seed);
+		for (int i = 0; i < outcomes.size(); i++){
+			assert outcomes.get(i).equals(expected.get(i)) : "seed " + seed + ": call " + i + " gave "
+					+ outcomes.get(i) + " not " + expected.get(i);
+		}
+		File copy = tempFile();
+		lazy.savePlatform(copy.getPath());
+		lazy.savePlatform(snapshot.getPath());
+		assert PlatformState.describe(lazy, handles()).equals(state) : "seed " + seed + ": platforms differ";
+
+		SocialMedia reloaded = new SocialMedia();
+		reloaded.loadPlatform(copy.getPath());
+		assert PlatformState.describe(reloaded, handles()).equals(state) : "seed " + seed + ": save differs";
+		reloaded.loadPlatformLazily(snapshot.getPath());
+		assert PlatformState.describe(reloaded, handles()).equals(state)
+				: "seed " + seed + ": save over the file the platform was loaded from differs";
+	}
+
+	/**
+	 * Makes random calls to a platform.
+	 * @param platform The platform
+	 * @param seed The seed of the calls
+	 * @return The result or exception of each call
+	 * @throws Exception If a call fails unexpectedly
+	 */
+	private static List<String> calls(SocialMedia platform, long seed) throws Exception {
+		Random random = new Random(seed);
+		List<String> outcomes = new ArrayList<String>();
+		for (int i = 0; i < CALLS; i++){
+			outcomes.add(call(platform, random));
+		}
+		return outcomes;
+	}
+
+	/**
+	 * Makes one random call, which may well be rejected.
+	 * @param platform The platform
+	 * @param random The random choices
+	 * @return The result of the call, or the simple name of the exception it threw
+	 * @throws Exception If the call fails unexpectedly
+	 */
+	private static String call(SocialMedia platform, Random random) throws Exception {
+		String handle = handle(random.nextInt(HANDLES));
+		String other = handle(random.nextInt(HANDLES));
+		int id = 1 + random.nextInt(Post.getNextId());
+		int choice = random.nextInt(100);
+		try{
+			if (choice < 20){
+				return String.valueOf(platform.createPost(handle, "post " + random.nextInt(50)));
+			} else if (choice < 32){
+				return String.valueOf(platform.commentPost(handle, id, "reply " + random.nextInt(50)));
+			} else if (choice < 47){
+				return String.valueOf(platform.endorsePost(handle, id));
+			} else if (choice < 55){
+				platform.deletePost(id);
+			} else if (choice < 60){
+				platform.removeAccount(handle);
+			} else if (choice < 65){
+				return String.valueOf(platform.createAccount(handle, "new " + handle));
+			} else if (choice < 71){
+				platform.changeAccountHandle(handle, other);
+			} else if (choice < 74){
+				platform.updateAccountDescription(handle, "changed " + random.nextInt(10));
+			} else if (choice < 80){
+				return String.valueOf(platform.follow(handle, other));
+			} else if (choice < 83){
+				return String.valueOf(platform.unfollow(handle, other));
+			} else if (choice < 87){
+				return platform.showAccount(handle);
+			} else if (choice < 90){
+				return platform.showPostChildrenDetails(id).toString();
+			} else if (choice < 93){
+				return Arrays.toString(platform.searchPosts("post " + random.nextInt(50) + " OR reply", 10));
+			} else if (choice < 96){
+				return Arrays.toString(platform.getTopEndorsedPosts(5)) + Arrays.toString(platform.getTopEndorsedAccounts(5));
+			} else{
+				return platform.getFollowerCount(handle) + " " + platform.getFollowingCount(handle) + " "
+						+ platform.getHomeTimeline(handle, null, 5).getText();
+			}
+			return "done";
+		} catch (HandleNotRecognisedException | IllegalHandleException | PostIDNotRecognisedException
+				| NotActionablePostException | IllegalArgumentException e){
+			return e.getClass().getSimpleName();
+		}
+	}
+
+	/**
+	 * Returns one of the handles the changes choose from.
+	 * @param i The number of the handle
+	 * @return The handle
+	 */
+	private static String handle(int i){
+		return "user" + i;
+	}
+
+	/**
+	 * Returns every handle the changes choose from.
+	 * @return The handles
+	 */
+	private static String[] handles(){
+		String[] handles = new String[HANDLES];
+		for (int i = 0; i < HANDLES; i++){
+			handles[i] = handle(i);
+		}
+		return handles;
+	}
+
+	/**
+	 * States whether a platform holds no account with a handle.
+	 * @param platform The platform
+	 * @param handle The handle
+	 * @return Whether no account has it
+	 */
+	private static boolean missing(SocialMedia platform, String handle){
+		try{
+			platform.showAccount(handle);
+			return false;
+		} catch (HandleNotRecognisedException e){
+			return true;
+		}
+	}
+
+	/**
+	 * Creates a temporary file, deleted when the test ends.
+	 * @return The file
+	 * @throws Exception If the file cannot be created
+	 */
+	private static File tempFile() throws Exception {
+		File file = File.createTempFile("lazy", ".snap");
+		file.deleteOnExit();
+		return file;
+	}
+}
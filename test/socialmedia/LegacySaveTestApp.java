@@ -0,0 +1,129 @@
+package socialmedia;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.function.Supplier;
+
+/**
+ * Checks that platforms saved with Java serialisation by the first version of savePlatform can still be loaded and
+ * changed. That version deleted a post without deleting its endorsements, so its saves can hold endorsements of
+ * empty posts, which must not be counted and must not stop their account or the endorsement being removed.
+ * Run with assertions enabled.
+ */
+public class LegacySaveTestApp {
+	/**
+	 * The ID of the original post of alice that was deleted before the platform was saved.
+	 */
+	private final static int DELETED_POST = 1;
+	/**
+	 * The ID of the endorsement by bob of the deleted post, left behind by the deletion.
+	 */
+	private final static int ORPHANED_ENDORSEMENT = 2;
+	/**
+	 * The ID of the original post of bob.
+	 */
+	private final static int BOB_POST = 3;
+	/**
+	 * The ID of the endorsement by alice of the post of bob.
+	 */
+	private final static int ALICE_ENDORSEMENT = 4;
+
+	/**
+	 * Runs the checks against each implementation that loads serialised platforms.
+	 * @param args not used
+	 * @throws Exception If a check fails with an exception
+	 */
+	public static void main(String[] args) throws Exception {
+		File save = File.createTempFile("legacy", ".ser");
+		save.deleteOnExit();
+		writeLegacySave(save);
+		check("SocialMedia", SocialMedia::new, save.getPath());
+		check("ConcurrentSocialMedia", ConcurrentSocialMedia::new, save.getPath());
+		check("CompactSocialMedia", CompactSocialMedia::new, save.getPath());
+		System.out.println("LegacySaveTestApp passed");
+	}
+
+	/**
+	 * Writes a platform the way the first version of savePlatform did, after the first version of deletePost has
+	 * deleted an endorsed post. alice posted post 1, which bob endorsed with post 2 before it was deleted. bob then
+	 * posted post 3, which alice endorsed with post 4.
+	 * @param file The file to write
+	 * @throws IOException If the file cannot be written
+	 */
+	private static void writeLegacySave(File file) throws IOException {
+		Account.resetIdCount();
+		Post.resetIdCount();
+		Account alice = new Account("alice");
+		Account bob = new Account("bob");
+		Post deleted = new Post(alice, "hello");
+		alice.addPost(deleted);
+		new EndorsementPost(bob, "EP@alice: hello", deleted);
+		Post kept = new Post(bob, "still here");
+		bob.addPost(kept);
+		new EndorsementPost(alice, "EP@bob: still here", kept);
+
+		// The first version of deletePost left the endorsements of the post with the accounts that posted them
+		deleted.clearEndorsements();
+		alice.setPostCountUpToDateToFalse();
+		alice.setEndorsementCountUpToDateToFalse();
+		alice.removePost(deleted);
+		deleted.setPostToEmpty();
+
+		try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))){
+			out.writeObject(new Account[]{alice, bob});
+			out.writeObject(new Post[]{deleted});
+			out.writeObject(Account.getNextId());
+			out.writeObject(Post.getNextId());
+		}
+	}
+
+	/**
+	 * Loads the legacy save into new platforms of an implementation, then deletes the orphaned endorsement and
+	 * removes the account that posted it.
+	 * @param name The name of the implementation, used in failure messages
+	 * @param implementation Creates an empty platform of the implementation
+	 * @param save The legacy save
+	 * @throws Exception If a call fails
+	 */
+	private static void check(String name, Supplier<SocialMediaPlatform> implementation, String save) throws Exception {
+		SocialMediaPlatform platform = implementation.get();
+		platform.loadPlatform(save);
+		checkTotals(name + " after loading", platform, 1, 1);
+		assert platform.getMostEndorsedPost() == BOB_POST : name + ": most endorsed post";
+
+		platform.deletePost(ORPHANED_ENDORSEMENT);
+		checkTotals(name + " after deleting the orphaned endorsement", platform, 1, 1);
+		assert platform.showIndividualPost(ORPHANED_ENDORSEMENT).contains("no longer available")
+				: name + ": orphaned endorsement not emptied";
+		platform.removeAccount("bob");
+		checkTotals(name + " after removing bob", platform, 0, 0);
+		assert platform.getNumberOfAccounts() == 1 : name + ": bob not removed";
+
+		platform = implementation.get();
+		platform.loadPlatform(save);
+		platform.removeAccount("bob"); // Removes the orphaned endorsement along with the account
+		checkTotals(name + " after removing bob with the orphaned endorsement", platform, 0, 0);
+		assert platform.getNumberOfAccounts() == 1 : name + ": bob not removed";
+		assert platform.showAccount("alice").contains("Endorse count: 0") : name + ": endorsement count of alice";
+		assert platform.showIndividualPost(ALICE_ENDORSEMENT).contains("no longer available")
+				: name + ": endorsement not deleted with the post of bob";
+		assert platform.showIndividualPost(DELETED_POST).contains("no longer available") : name + ": deleted post";
+	}
+
+	/**
+	 * Checks the post totals of a platform whose posts are all by alice or bob.
+	 * @param when Describes the point of the check, used in failure messages
+	 * @param platform The platform
+	 * @param originalPosts The expected number of original posts
+	 * @param endorsements The expected number of endorsements
+	 */
+	private static void checkTotals(String when, SocialMediaPlatform platform, int originalPosts, int endorsements){
+		assert platform.getTotalOriginalPosts() == originalPosts : when + ": original posts "
+				+ platform.getTotalOriginalPosts();
+		assert platform.getTotalCommentPosts() == 0 : when + ": comments " + platform.getTotalCommentPosts();
+		assert platform.getTotalEndorsmentPosts() == endorsements : when + ": endorsements "
+				+ platform.getTotalEndorsmentPosts();
+	}
+}
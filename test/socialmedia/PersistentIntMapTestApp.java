@@ -0,0 +1,250 @@
+package socialmedia;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Checks PersistentIntMap against a HashMap: that changes made through with, without and builders never change a
+ * map built before them, that keys sharing the indexes of one or more levels are kept apart in nodes of their own,
+ * and that removing entries collapses those nodes again. Run with assertions enabled.
+ */
+public class PersistentIntMapTestApp {
+	/**
+	 * The number of random changes made by the model check.
+	 */
+	private final static int CHANGES = 200000;
+	/**
+	 * The number of changes between the maps kept to check that later changes leave them alone.
+	 */
+	private final static int KEEP_EVERY = 5000;
+	/**
+	 * The seed of the random changes.
+	 */
+	private final static long SEED = 23;
+
+	/**
+	 * Runs the checks.
+	 * @param args not used
+	 * @throws Exception If the trie of a map cannot be read
+	 */
+	public static void main(String[] args) throws Exception {
+		checkAgainstModel();
+		checkBuilderIsolation();
+		checkSharedIndexes();
+		checkCollapse();
+		System.out.println("PersistentIntMapTestApp passed");
+	}
+
+	/**
+	 * Makes random changes to a map and to a HashMap, checking that they hold the same entries after each change,
+	 * and that every map kept along the way still holds the entries it had when it was made.
+	 */
+	private static void checkAgainstModel(){
+		Random random = new Random(SEED);
+		PersistentIntMap<Integer> map = PersistentIntMap.empty();
+		Map<Integer, Integer> model = new HashMap<Integer, Integer>();
+		List<PersistentIntMap<Integer>> kept = new ArrayList<PersistentIntMap<Integer>>();
+		List<Map<Integer, Integer>> keptModels = new ArrayList<Map<Integer, Integer>>();
+		for (int i = 0; i < CHANGES; i++){
+			int key = randomKey(random);
+			PersistentIntMap<Integer> before = map;
+			if (random.nextInt(3) == 0){
+				map = map.without(key);
+				assert (model.remove(key) != null) == (map != before) : "without " + key + " changed the map wrongly";
+			} else{
+				Integer value = random.nextInt(4);
+				map = map.with(key, value);
+				assert value.equals(model.put(key, value)) || map != before : "with " + key + " did not change the map";
+			}
+			assert map.size() == model.size() : "size " + map.size() + " expected " + model.size();
+			assert Objects.equals(map.get(key), model.get(key)) : "value of " + key;
+			if (i % KEEP_EVERY == 0){
+				kept.add(map);
+				keptModels.add(new HashMap<Integer, Integer>(model));
+			}
+		}
+		checkEntries("after the random changes", map, model);
+		for (int i = 0; i < kept.size(); i++){
+			checkEntries("kept map " + i, kept.get(i), keptModels.get(i));
+		}
+	}
+
+	/**
+	 * Returns a key from a few small ranges, so keys are often changed again, spread over every bit of the int so
+	 * the trie grows to its full depth.
+	 * @param random The random choices
+	 * @return The key
+	 */
+	private static int randomKey(Random random){
+		int low = random.nextInt(64);
+		switch (random.nextInt(4)){
+			case 0:
+				return low;
+			case 1:
+				return low | random.nextInt(8) << 27;
+			case 2:
+				return -low;
+			default:
+				return low + (random.nextInt(32) << (5 * (1 + random.nextInt(5))));
+		}
+	}
+
+	/**
+	 * Checks that a map holds exactly the entries of a HashMap, through get and forEach.
+	 * @param when Describes the map, used in failure messages
+	 * @param map The map
+	 * @param model The entries it should hold
+	 */
+	private static void checkEntries(String when, PersistentIntMap<Integer> map, Map<Integer, Integer> model){
+		assert map.size() == model.size() : when + ": size " + map.size() + " expected " + model.size();
+		for (Map.Entry<Integer, Integer> entry : model.entrySet()){
+			assert entry.getValue().equals(map.get(entry.getKey())) : when + ": value of " + entry.getKey();
+		}
+		Map<Integer, Integer> seen = new HashMap<Integer, Integer>();
+		map.forEach((value, key) -> {
+			assert seen.put(key, value) == null : when + ": key " + key + " visited twice";
+		});
+		assert seen.equals(model) : when + ": entries visited " + seen;
+	}
+
+	/**
+	 * Checks that a builder never changes a map it started from or built, including after it goes on changing the
+	 * nodes it copied in place.
+	 */
+	private static void checkBuilderIsolation(){
+		PersistentIntMap.Builder<Integer> builder = PersistentIntMap.<Integer>empty().builder();
+		Map<Integer, Integer> model = new HashMap<Integer, Integer>();
+		for (int key = 0; key < 2000; key++){
+			builder.put(key, key);
+			model.put(key, key);
+		}
+		PersistentIntMap<Integer> first = builder.build();
+		Map<Integer, Integer> firstModel = new HashMap<Integer, Integer>(model);
+
+		for (int key = 0; key < 2000; key += 3){
+			builder.remove(key);
+		}
+		for (int key = 1; key < 4000; key += 2){
+			builder.put(key, -key);
+		}
+		PersistentIntMap<Integer> second = builder.build();
+		checkEntries("map built first", first, firstModel);
+
+		PersistentIntMap.Builder<Integer> other = first.builder();
+		other.put(7, 700);
+		other.remove(8);
+		assert other.get(7) == 700 && other.get(8) == null && other.size() == first.size() - 1 : "second builder";
+		checkEntries("map built first, changed by another builder", first, firstModel);
+
+		builder.put(5, 500); // Changes nodes the builder copied before building the second map
+		assert second.get(5) == -5 : "map built second changed by its builder";
+		assert builder.build().get(5) == 500 : "builder";
+	}
+
+	/**
+	 * Checks keys that differ only in the bits of one level, from the lowest to the highest, and negative keys, which
+	 * need nodes of their own below the levels whose indexes they share.
+	 */
+	private static void checkSharedIndexes(){
+		int[] keys = {1, 1 + (1 << 5), 1 + (1 << 10), 1 + (1 << 15), 1 + (1 << 20), 1 + (1 << 25), 1 + (1 << 30),
+				1 + (1 << 31), 1 + (1 << 30) + (1 << 31), 0, Integer.MIN_VALUE, Integer.MAX_VALUE, -1, -33};
+		Map<Integer, Integer> model = new HashMap<Integer, Integer>();
+		PersistentIntMap<Integer> map = PersistentIntMap.empty();
+		for (int key : keys){
+			map = map.with(key, key);
+			model.put(key, key);
+			checkEntries("after adding " + key, map, model);
+		}
+		for (int key : keys){
+			int absent = key ^ 2; // Shares the index of every level but the last with the key
+			assert model.containsKey(absent) || map.get(absent) == null : "value of absent key " + absent;
+		}
+		PersistentIntMap<Integer> full = map;
+		for (int i = keys.length - 1; i >= 0; i -= 2){
+			map = map.without(keys[i]);
+			model.remove(keys[i]);
+			checkEntries("after removing " + keys[i], map, model);
+		}
+		assert full.size() == keys.length : "map changed by removals";
+	}
+
+	/**
+	 * Checks that removing entries leaves the same trie as adding only the entries that are left, so nodes holding
+	 * a single entry after a removal are collapsed into their parents, and empty nodes are removed.
+	 * @throws Exception If the trie cannot be read
+	 */
+	private static void checkCollapse() throws Exception {
+		int[] keys = {3, 3 + (1 << 5), 3 + (1 << 10) + (1 << 5), 3 + (1 << 25), 3 + (1 << 31), 4, 4 + (1 << 20), 35};
+		PersistentIntMap<Integer> full = PersistentIntMap.empty();
+		for (int key : keys){
+			full = full.with(key, key);
+		}
+		Random random = new Random(SEED);
+		for (int round = 0; round < 200; round++){
+			PersistentIntMap<Integer> map = full;
+			PersistentIntMap<Integer> rebuilt = PersistentIntMap.empty();
+			List<Integer> removed = new ArrayList<Integer>();
+			for (int key : keys){
+				if (random.nextBoolean()){
+					map = map.without(key);
+					removed.add(key);
+				}
+			}
+			for (int key : keys){
+				if (!removed.contains(key)){
+					rebuilt = rebuilt.with(key, key);
+				}
+			}
+			assert shape(map).equals(shape(rebuilt)) : "removing " + removed + " left " + shape(map) + " not "
+					+ shape(rebuilt);
+		}
+		PersistentIntMap<Integer> map = full;
+		for (int key : keys){
+			map = map.without(key);
+		}
+		assert map.size() == 0 && shape(map).equals(shape(PersistentIntMap.empty())) : "empty map " + shape(map);
+	}
+
+	/**
+	 * Describes the trie of a map: the bitmap of each node, then its entries and children in index order.
+	 * @param map The map
+	 * @return The description
+	 * @throws Exception If the trie cannot be read
+	 */
+	private static String shape(PersistentIntMap<?> map) throws Exception {
+		Field root = PersistentIntMap.class.getDeclaredField("root");
+		root.setAccessible(true);
+		return shape(root.get(map));
+	}
+
+	/**
+	 * Describes the trie below a node.
+	 * @param node The node
+	 * @return The description
+	 * @throws Exception If the node cannot be read
+	 */
+	private static String shape(Object node) throws Exception {
+		Field bitmap = node.getClass().getDeclaredField("bitmap");
+		Field keys = node.getClass().getDeclaredField("keys");
+		Field slots = node.getClass().getDeclaredField("slots");
+		bitmap.setAccessible(true);
+		keys.setAccessible(true);
+		slots.setAccessible(true);
+		StringBuilder sb = new StringBuilder("{").append(Integer.toHexString(bitmap.getInt(node)));
+		Object[] children = (Object[]) slots.get(node);
+		for (int i = 0; i < children.length; i++){
+			sb.append(' ');
+			if (children[i].getClass() == node.getClass()){
+				sb.append(shape(children[i]));
+			} else{
+				sb.append(((int[]) keys.get(node))[i]).append('=').append(children[i]);
+			}
+		}
+		return sb.append('}').toString();
+	}
+}
@@ -0,0 +1,388 @@
+package socialmedia;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Checks the command pipeline of PipelinedSocialMedia: that commands applied together in batches give the same
+ * results, in the same order, as making the calls one at a time on a SocialMedia, that the ring buffer keeps working
+ * as its slots are reused, that callers wait when it is full, and that each exception a command throws completes its
+ * own future. Run with assertions enabled.
+ */
+public class PipelinedSocialMediaTestApp {
+	/**
+	 * The number of slots of the small ring buffers used, so the commands of a check wrap around them many times.
+	 */
+	private final static int SMALL_CAPACITY = 8;
+	/**
+	 * The number of random commands submitted by the order check.
+	 */
+	private final static int COMMANDS = 20000;
+	/**
+	 * The number of handles the random commands choose from.
+	 */
+	private final static int HANDLES = 10;
+	/**
+	 * The seed of the random commands.
+	 */
+	private final static long SEED = 2025;
+	/**
+	 * How long to wait for something the writer or a caller should do soon, in milliseconds.
+	 */
+	private final static long WAIT_MILLIS = 10000;
+
+	/**
+	 * A change made directly on a SocialMedia.
+	 */
+	private interface DirectCall {
+		/**
+		 * Makes the change.
+		 * @param platform The platform
+		 * @return The result of the change, or null if it has none
+		 * @throws Exception The exception the change threw
+		 */
+		Object call(SocialMedia platform) throws Exception;
+	}
+
+	/**
+	 * A change that can be made either through the pipeline or directly on a SocialMedia.
+	 */
+	private final static class Change {
+		/**
+		 * Submits the change to the pipeline without waiting for it, returning its future.
+		 */
+		final Function<PipelinedSocialMedia, CompletableFuture<?>> submit;
+		/**
+		 * Makes the change directly.
+		 */
+		final DirectCall direct;
+
+		/**
+		 * Creates a change.
+		 * @param submit Submits the change to the pipeline
+		 * @param direct Makes the change directly
+		 */
+		Change(Function<PipelinedSocialMedia, CompletableFuture<?>> submit, DirectCall direct){
+			this.submit = submit;
+			this.direct = direct;
+		}
+	}
+
+	/**
+	 * Runs the checks.
+	 * @param args not used
+	 * @throws Exception If a check fails with an exception
+	 */
+	public static void main(String[] args) throws Exception {
+		checkOrder(SMALL_CAPACITY);
+		checkOrder(PipelinedSocialMedia.DEFAULT_CAPACITY);
+		checkDependentCommands();
+		checkExceptions();
+		checkBackpressure();
+		System.out.println("PipelinedSocialMediaTestApp passed");
+	}
+
+	/**
+	 * Submits random changes without waiting for any of them, so the writer applies them in batches, then makes the
+	 * same changes one at a time on a SocialMedia and checks that every change had the same result or exception and
+	 * that both platforms end up the same.
+	 * @param capacity The capacity of the ring buffer
+	 * @throws Exception If a platform fails to show something it holds
+	 */
+	private static void checkOrder(int capacity) throws Exception {
+		Random random = new Random(SEED);
+		List<Change> changes = new ArrayList<Change>();
+		for (int i = 0; i < HANDLES; i++){
+			String handle = handle(i);
+			changes.add(new Change(p -> p.createAccountAsync(handle, ""), p -> p.createAccount(handle)));
+			changes.add(new Change(p -> p.createPostAsync(handle, "first post"), p -> p.createPost(handle, "first post")));
+		}
+		for (int i = 0; i < COMMANDS; i++){
+			changes.add(randomChange(random, 2 * HANDLES + i));
+		}
+
+		PipelinedSocialMedia pipelined = new PipelinedSocialMedia(capacity);
+		pipelined.erasePlatform();
+		List<CompletableFuture<?>> futures = new ArrayList<CompletableFuture<?>>();
+		for (Change change : changes){
+			futures.add(change.submit.apply(pipelined));
+		}
+		List<String> outcomes = new ArrayList<String>();
+		for (CompletableFuture<?> future : futures){
+			outcomes.add(outcome(future));
+		}
+		String state = PlatformState.describe(pipelined, handles());
+		pipelined.close();
+
+		SocialMedia direct = new SocialMedia();
+		direct.erasePlatform();
+		for (int i = 0; i < changes.size(); i++){
+			String expected;
+			try{
+				expected = String.valueOf(changes.get(i).direct.call(direct));
+			} catch (Exception e){
+				expected = e.getClass().getSimpleName();
+			}
+			assert outcomes.get(i).equals(expected) : "capacity " + capacity + ": change " + i + " gave "
+					+ outcomes.get(i) + " not " + expected;
+		}
+		assert state.equals(PlatformState.describe(direct, handles())) : "capacity " + capacity + ": platforms differ";
+	}
+
+	/**
+	 * Returns a random change, which may well be rejected.
+	 * @param random The random choices
+	 * @param before The number of changes made before it, which bounds the post IDs used so far
+	 * @return The change
+	 */
+	private static Change randomChange(Random random, int before){
+		String handle = handle(random.nextInt(HANDLES));
+		String other = handle(random.nextInt(HANDLES));
+		int id = 1 + random.nextInt(before);
+		int choice = random.nextInt(100);
+		if (choice < 25){
+			String message = random.nextInt(20) == 0 ? "" : "post " + before;
+			return new Change(p -> p.createPostAsync(handle, message), p -> p.createPost(handle, message));
+		} else if (choice < 40){
+			return new Change(p -> p.commentPostAsync(handle, id, "reply"), p -> p.commentPost(handle, id, "reply"));
+		} else if (choice < 65){
+			return new Change(p -> p.endorsePostAsync(handle, id), p -> p.endorsePost(handle, id));
+		} else if (choice < 75){
+			return new Change(p -> p.deletePostAsync(id), p -> {
+				p.deletePost(id);
+				return null;
+			});
+		} else if (choice < 80){
+			return new Change(p -> p.followAsync(handle, other), p -> p.follow(handle, other));
+		} else if (choice < 83){
+			String description = "description " + before;
+			return new Change(p -> p.updateAccountDescriptionAsync(handle, description), p -> {
+				p.updateAccountDescription(handle, description);
+				return null;
+			});
+		} else if (choice < 86){ // Moves the handle to another account, or fails if the new handle is taken
+			return new Change(p -> p.changeAccountHandleAsync(handle, other), p -> {
+				p.changeAccountHandle(handle, other);
+				return null;
+			});
+		} else if (choice < 88){
+			return new Change(p -> p.removeAccountAsync(handle), p -> {
+				p.removeAccount(handle);
+				return null;
+			});
+		} else{ // Includes handles already in use and malformed ones
+			String created = random.nextBoolean() ? handle : handle + (random.nextBoolean() ? " " : "");
+			return new Change(p -> p.createAccountAsync(created, "again"), p -> p.createAccount(created, "again"));
+		}
+	}
+
+	/**
+	 * Checks that commands submitted together see the changes of the commands submitted before them: posts are
+	 * numbered in the order they were submitted, a post can be endorsed and commented on before its own future has
+	 * completed, and once deleted or moved to another handle it can no longer be used.
+	 * @throws Exception If the platform cannot be closed
+	 */
+	private static void checkDependentCommands() throws Exception {
+		PipelinedSocialMedia platform = new PipelinedSocialMedia(SMALL_CAPACITY);
+		platform.erasePlatform();
+		platform.createAccount("ann");
+		platform.createAccount("ben");
+		int next = Post.getNextId(); // Only the writer takes IDs, and it is waiting for a command
+
+		List<CompletableFuture<?>> futures = new ArrayList<CompletableFuture<?>>();
+		futures.add(platform.createPostAsync("ann", "first"));
+		futures.add(platform.endorsePostAsync("ben", next));
+		futures.add(platform.commentPostAsync("ben", next, "reply"));
+		futures.add(platform.createPostAsync("ann", "second"));
+		futures.add(platform.deletePostAsync(next));
+		futures.add(platform.endorsePostAsync("ben", next));
+		futures.add(platform.commentPostAsync("ben", next + 3, "reply to second"));
+		futures.add(platform.changeAccountHandleAsync("ann", "amy"));
+		futures.add(platform.createPostAsync("ann", "third"));
+		futures.add(platform.createPostAsync("amy", "third"));
+		String[] expected = {"" + next, "" + (next + 1), "" + (next + 2), "" + (next + 3), "null",
+				"PostIDNotRecognisedException", "" + (next + 4), "null", "HandleNotRecognisedException", "" + (next + 5)};
+		for (int i = 0; i < expected.length; i++){
+			assert outcome(futures.get(i)).equals(expected[i]) : "command " + i + " gave " + outcome(futures.get(i))
+					+ " not " + expected[i];
+		}
+		assert platform.getTotalOriginalPosts() == 2 && platform.getTotalCommentPosts() == 2
+				&& platform.getTotalEndorsmentPosts() == 0 : "totals after the dependent commands"; // Comments outlive their post
+		platform.close();
+	}
+
+	/**
+	 * Checks that a command that throws completes its own future with the exception and leaves the commands around
+	 * it, in the same batch, to complete normally, and that the blocking methods throw the same exception.
+	 * @throws Exception If the platform cannot be closed
+	 */
+	private static void checkExceptions() throws Exception {
+		PipelinedSocialMedia platform = new PipelinedSocialMedia(SMALL_CAPACITY);
+		platform.erasePlatform();
+		platform.createAccount("ann");
+		int post = platform.createPost("ann", "hello");
+		int endorsement = platform.endorsePost("ann", post);
+
+		List<CompletableFuture<?>> futures = new ArrayList<CompletableFuture<?>>();
+		futures.add(platform.createPostAsync("ann", "fine"));
+		futures.add(platform.createPostAsync("nobody", "hello"));
+		futures.add(platform.createPostAsync("ann", ""));
+		futures.add(platform.endorsePostAsync("ann", 999));
+		futures.add(platform.endorsePostAsync("ann", endorsement));
+		futures.add(platform.commentPostAsync("ann", endorsement, "reply"));
+		futures.add(platform.createAccountAsync("ann", ""));
+		futures.add(platform.createAccountAsync("two words", ""));
+		futures.add(platform.deletePostAsync(999));
+		futures.add(platform.removeAccountAsync("nobody"));
+		futures.add(platform.createPostAsync("ann", "also fine"));
+		Class<?>[] expected = {null, HandleNotRecognisedException.class, InvalidPostException.class,
+				PostIDNotRecognisedException.class, NotActionablePostException.class, NotActionablePostException.class,
+				IllegalHandleException.class, InvalidHandleException.class, PostIDNotRecognisedException.class,
+				HandleNotRecognisedException.class, null};
+		for (int i = 0; i < expected.length; i++){
+			String outcome = outcome(futures.get(i));
+			if (expected[i] == null){
+				assert outcome.matches("[0-9]+") : "command " + i + " failed with " + outcome;
+			} else{
+				assert outcome.equals(expected[i].getSimpleName()) : "command " + i + " gave " + outcome;
+			}
+		}
+
+		try{
+			platform.createPost("nobody", "hello");
+			assert false : "createPost with an unknown handle did not fail";
+		} catch (HandleNotRecognisedException e){
+			// Thrown from the future by the blocking method
+		}
+		try{
+			platform.endorsePost("ann", endorsement);
+			assert false : "endorsing an endorsement did not fail";
+		} catch (NotActionablePostException e){
+			// Thrown from the future by the blocking method
+		}
+		assert platform.getTotalOriginalPosts() == 3 : "posts made by the commands that did not fail";
+		platform.close();
+	}
+
+	/**
+	 * Checks that a caller submitting to a full ring waits until the writer frees a slot, rather than overwriting a
+	 * command or failing. The writer is held up by an action chained on to a future, which runs on the writer.
+	 * @throws Exception If a thread is interrupted or the platform cannot be closed
+	 */
+	private static void checkBackpressure() throws Exception {
+		PipelinedSocialMedia platform = new PipelinedSocialMedia(SMALL_CAPACITY);
+		platform.erasePlatform();
+		platform.createAccount("ann");
+		CountDownLatch release = new CountDownLatch(1);
+		holdUpWriter(platform, release);
+
+		List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+		AtomicInteger submitted = new AtomicInteger();
+		Thread caller = new Thread(() -> {
+			for (int i = 0; i < 4 * SMALL_CAPACITY; i++){
+				CompletableFuture<Integer> future = platform.createPostAsync("ann", "post " + i);
+				synchronized (futures){
+					futures.add(future);
+				}
+				submitted.incrementAndGet();
+			}
+		});
+		caller.start();
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while (submitted.get() < SMALL_CAPACITY && System.currentTimeMillis() < deadline){
+			Thread.sleep(1);
+		}
+		Thread.sleep(200); // Time for the caller to overrun the ring, if it could
+		assert submitted.get() == SMALL_CAPACITY : submitted.get() + " commands submitted to a ring of "
+				+ SMALL_CAPACITY + " slots";
+		assert caller.isAlive() : "caller did not wait for a free slot";
+		synchronized (futures){
+			for (CompletableFuture<Integer> future : futures){
+				assert !future.isDone() : "command completed while the writer was held up";
+			}
+		}
+
+		release.countDown();
+		caller.join(WAIT_MILLIS);
+		assert !caller.isAlive() : "caller still waiting after the writer went on";
+		int previous = 0;
+		for (CompletableFuture<Integer> future : futures){
+			int id = Integer.parseInt(outcome(future));
+			assert id > previous : "post " + id + " made after post " + previous;
+			previous = id;
+		}
+		assert platform.getTotalOriginalPosts() == 4 * SMALL_CAPACITY : "posts made after waiting";
+		platform.close();
+	}
+
+	/**
+	 * Holds up the writer of a platform until a latch is released, by chaining an action on to the future of a
+	 * command, which runs on the writer when it completes the future. If the command has already completed when the
+	 * action is chained, the action does not wait and another command is tried.
+	 * @param platform The platform
+	 * @param release The latch the writer waits for
+	 * @throws InterruptedException If interrupted while waiting for the writer to be held up
+	 */
+	private static void holdUpWriter(PipelinedSocialMedia platform, CountDownLatch release) throws InterruptedException {
+		CountDownLatch held = new CountDownLatch(1);
+		while (held.getCount() > 0){
+			Thread caller = Thread.currentThread();
+			platform.updateAccountDescriptionAsync("ann", "held").thenRun(() -> {
+				if (Thread.currentThread() != caller){
+					held.countDown();
+					try{
+						release.await();
+					} catch (InterruptedException e){
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			held.await(10, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Returns one of the handles the random changes choose from.
+	 * @param i The number of the handle
+	 * @return The handle
+	 */
+	private static String handle(int i){
+		return "user" + i;
+	}
+
+	/**
+	 * Returns every handle the random changes choose from.
+	 * @return The handles
+	 */
+	private static String[] handles(){
+		String[] handles = new String[HANDLES];
+		for (int i = 0; i < HANDLES; i++){
+			handles[i] = handle(i);
+		}
+		return handles;
+	}
+
+	/**
+	 * Waits for a future and describes how it completed.
+	 * @param future The future
+	 * @return Its result as a string, or the simple class name of the exception it completed with
+	 * @throws InterruptedException If interrupted while waiting
+	 */
+	private static String outcome(CompletableFuture<?> future) throws InterruptedException {
+		try{
+			return String.valueOf(future.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+		} catch (ExecutionException e){
+			return e.getCause().getClass().getSimpleName();
+		} catch (TimeoutException e){
+			throw new AssertionError("command not completed in " + WAIT_MILLIS + " ms");
+		}
+	}
+}
@@ -0,0 +1,403 @@
+package socialmedia;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks PlatformServer through PlatformClient connections to a server on a free port: that fields are escaped and
+ * unescaped without loss, that pipelined requests are answered in order, that requests are admitted to the right
+ * places and give them back however they end, that connections over the limit and requests that are too long are
+ * turned away, and that answers stay within the limits of the server. Run with assertions enabled.
+ */
+public class PlatformServerTestApp {
+	/**
+	 * The number of requests sent together by the pipelining check.
+	 */
+	private final static int PIPELINED = 2000;
+	/**
+	 * How long to wait for an answer that should come soon, in milliseconds.
+	 */
+	private final static long WAIT_MILLIS = 10000;
+
+	/**
+	 * Runs the checks.
+	 * @param args not used
+	 * @throws Exception If a check fails with an exception
+	 */
+	public static void main(String[] args) throws Exception {
+		checkEscaping();
+		checkPipelining();
+		checkRequestAdmission();
+		checkConnectionAdmission();
+		checkLongRequest();
+		checkAnswerLimits();
+		System.out.println("PlatformServerTestApp passed");
+	}
+
+	/**
+	 * Checks that fields holding the escaped characters, escapes themselves and empty fields are split back into the
+	 * fields they were made from.
+	 */
+	private static void checkEscaping(){
+		String[][] cases = {
+				{"PING"},
+				{""},
+				{"A", ""},
+				{"A", "", "", ""},
+				{"A", "tab\there", "line\nbreak", "return\r\n", "back\\slash"},
+				{"A", "\\", "\\\\", "\\t", "\\n", "trailing\\"},
+				{"A", "\t\t", "\n", "é ü ☃"},
+		};
+		for (String[] fields : cases){
+			StringBuilder line = new StringBuilder(fields[0]);
+			for (int i = 1; i < fields.length; i++){
+				PlatformServer.appendField(line, fields[i]);
+			}
+			assert line.indexOf("\n") < 0 && line.indexOf("\r") < 0 : "line break left in " + line;
+			String[] split = PlatformServer.splitFields(line);
+			assert Arrays.equals(split, fields) : Arrays.toString(fields) + " split as " + Arrays.toString(split);
+		}
+		StringBuilder line = new StringBuilder(PlatformServer.OK);
+		PlatformServer.appendField(line, -42);
+		PlatformServer.appendField(line, "x");
+		assert Arrays.equals(PlatformServer.splitFields(line), new String[]{PlatformServer.OK, "-42", "x"})
+				: "number field " + line;
+	}
+
+	/**
+	 * Sends many requests on one connection before reading any answer, checking that each answer is the one for its
+	 * own request, including messages holding escaped characters.
+	 * @throws Exception If the server cannot be reached
+	 */
+	private static void checkPipelining() throws Exception {
+		VersionedSocialMedia platform = new VersionedSocialMedia();
+		platform.erasePlatform();
+		try (PlatformServer server = new PlatformServer(platform, 0, null)){
+			server.start();
+			try (PlatformClient client = connect(server)){
+				assert client.request("CREATE_ACCOUNT", "user", "a\tdescription")[0].equals(PlatformServer.OK)
+						: "account";
+				for (int i = 0; i < PIPELINED; i++){
+					client.send("CREATE_POST", "user", message(i));
+					client.send("SHOW_POST", String.valueOf(i + 1));
+					client.send("SHOW_POST", "x"); // Fails, between answers that succeed
+				}
+				for (int i = 0; i < PIPELINED; i++){
+					String[] created = client.receive();
+					assert Arrays.equals(created, new String[]{PlatformServer.OK, String.valueOf(i + 1)})
+							: "post " + i + " answered " + Arrays.toString(created);
+					String[] shown = client.receive();
+					assert shown.length == 2 && shown[1].equals(platform.showIndividualPost(i + 1))
+							&& shown[1].contains(message(i)) : "post " + i + " shown as " + Arrays.toString(shown);
+					String[] failed = client.receive();
+					assert failed[0].equals(PlatformServer.ERROR) && failed[1].equals("IllegalArgumentException")
+							: "bad request " + i + " answered " + Arrays.toString(failed);
+				}
+				String[] unknown = client.request("NO_SUCH_COMMAND");
+				assert unknown[0].equals(PlatformServer.ERROR) : "unknown command " + Arrays.toString(unknown);
+			}
+			assert server.getRequestCount() == 3 * PIPELINED + 2 : "requests " + server.getRequestCount();
+		}
+	}
+
+	/**
+	 * Returns the message of a post made by the pipelining check.
+	 * @param i The number of the post
+	 * @return The message
+	 */
+	private static String message(int i){
+		return "post " + i + (i % 3 == 0 ? "\twith\\tab" : "") + (i % 5 == 0 ? "\nand\r\nbreaks" : "");
+	}
+
+	/**
+	 * Checks that a write waits for one of the write places, which are half of the request places, that a write
+	 * finding none answers BUSY while a read is still let in, and that a request gives its places back whether it
+	 * succeeds, fails or is turned away.
+	 * @throws Exception If the server cannot be reached
+	 */
+	private static void checkRequestAdmission() throws Exception {
+		BlockingPlatform platform = new BlockingPlatform();
+		platform.erasePlatform();
+		platform.createAccount("user");
+		platform.createPost("user", "first");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		PlatformServer server = new PlatformServer(platform, 0, null, 10, 4, 100);
+		server.start();
+		try (server; PlatformClient first = connect(server); PlatformClient second = connect(server);
+				PlatformClient third = connect(server); PlatformClient reader = connect(server)){
+			checkPermits(server, 4, 2, "before any request");
+
+			platform.block = true;
+			Future<String[]> blocked1 = executor.submit(() -> first.request("CREATE_POST", "user", "a"));
+			Future<String[]> blocked2 = executor.submit(() -> second.request("CREATE_POST", "user", "b"));
+			assert platform.inside.tryAcquire(2, WAIT_MILLIS, TimeUnit.MILLISECONDS) : "writes not run";
+			checkPermits(server, 2, 0, "with two writes running");
+			String[] busy = third.request("ENDORSE_POST", "user", "1");
+			assert busy[0].equals(PlatformServer.BUSY) : "third write answered " + Arrays.toString(busy);
+			String[] read = reader.request("SHOW_ACCOUNT", "user");
+			assert read[0].equals(PlatformServer.OK) : "read during writes answered " + Arrays.toString(read);
+			platform.release.countDown();
+			assert answer(blocked1)[0].equals(PlatformServer.OK) && answer(blocked2)[0].equals(PlatformServer.OK)
+					: "blocked writes";
+			assert server.getBusyCount() == 1 : "busy count " + server.getBusyCount();
+			checkPermits(server, 4, 2, "after the writes");
+
+			platform.block = false;
+			platform.fail = true;
+			for (int i = 0; i < 10; i++){ // More failures than places, so a place lost by each would show
+				String[] failed = first.request("CREATE_POST", "user", "c");
+				assert failed[0].equals(PlatformServer.ERROR) && failed[1].equals("IllegalStateException")
+						: "failing write answered " + Arrays.toString(failed);
+				failed = first.request("CREATE_POST", "nobody", "c");
+				assert failed[1].equals("HandleNotRecognisedException") : "write for no account";
+				failed = first.request("SHOW_POST", "99");
+				assert failed[1].equals("PostIDNotRecognisedException") : "read of no post";
+				failed = first.request("ENDORSE_POST", "user");
+				assert failed[1].equals("IllegalArgumentException") : "write missing an argument";
+			}
+			checkPermits(server, 4, 2, "after failed requests");
+			platform.fail = false;
+			assert first.request("CREATE_POST", "user", "d")[0].equals(PlatformServer.OK) : "write after failures";
+			checkPermits(server, 4, 2, "at the end");
+		} finally{
+			platform.release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks that a connection over the limit is answered BUSY and closed, and that the place of a connection is
+	 * given back when it closes.
+	 * @throws Exception If the server cannot be reached
+	 */
+	private static void checkConnectionAdmission() throws Exception {
+		try (PlatformServer server = new PlatformServer(new VersionedSocialMedia(), 0, null, 2, 2, 100)){
+			server.start();
+			PlatformClient first = connect(server);
+			try (PlatformClient second = connect(server); PlatformClient third = connect(server)){
+				assert first.request("PING")[0].equals(PlatformServer.OK) : "first connection";
+				assert second.request("PING")[0].equals(PlatformServer.OK) : "second connection";
+				String[] busy = third.receive();
+				assert busy[0].equals(PlatformServer.BUSY) : "third connection answered " + Arrays.toString(busy);
+				checkClosed(third, "connection over the limit");
+				first.close();
+				assert awaitPermits(server, "connectionPermits", 1) : "place of a closed connection not given back";
+				try (PlatformClient fourth = connect(server)){
+					assert fourth.request("PING")[0].equals(PlatformServer.OK) : "connection after one closed";
+				}
+			}
+			assert server.getAcceptedConnections() == 3 && server.getRejectedConnections() == 1
+					: "connections " + server.getAcceptedConnections() + " and " + server.getRejectedConnections();
+		}
+	}
+
+	/**
+	 * Checks that a request longer than the longest accepted closes its connection, and that a request of exactly
+	 * that length is answered.
+	 * @throws Exception If the server cannot be reached
+	 */
+	private static void checkLongRequest() throws Exception {
+		try (PlatformServer server = new PlatformServer(new VersionedSocialMedia(), 0, null)){
+			server.start();
+			try (PlatformClient client = connect(server)){
+				String handle = "h".repeat(PlatformServer.MAX_REQUEST_LENGTH - "SHOW_ACCOUNT\t".length());
+				String[] answer = client.request("SHOW_ACCOUNT", handle);
+				assert answer[1].equals("HandleNotRecognisedException") : "longest request " + answer[0];
+				client.send("SHOW_ACCOUNT", handle + "h");
+				checkClosed(client, "request too long");
+			}
+			assert awaitPermits(server, "connectionPermits", 1024) : "place of a closed connection not given back";
+			try (PlatformClient client = connect(server)){
+				assert client.request("PING")[0].equals(PlatformServer.OK) : "connection after a long request";
+			}
+		}
+	}
+
+	/**
+	 * Checks that the server listens on the loopback address, that the limits of pages are cut down to the most the
+	 * server allows, and that a thread too long for SHOW_POST_CHILDREN fails while a shorter one is shown whole.
+	 * @throws Exception If the server cannot be reached
+	 */
+	private static void checkAnswerLimits() throws Exception {
+		VersionedSocialMedia platform = new VersionedSocialMedia();
+		platform.erasePlatform();
+		platform.createAccount("user");
+		int small = platform.createPost("user", "small thread");
+		platform.commentPost("user", platform.commentPost("user", small, "a\tcomment"), "a\\reply");
+		int large = platform.createPost("user", "large thread");
+		String message = "m".repeat(100);
+		for (int i = 0; i < PlatformServer.MAX_THREAD_LENGTH / message.length(); i++){
+			platform.commentPost("user", large, message);
+		}
+		try (PlatformServer server = new PlatformServer(platform, 0, null)){
+			server.start();
+			ServerSocket socket = (ServerSocket) field(server, "serverSocket");
+			assert socket.getInetAddress().isLoopbackAddress() : "listening on " + socket.getInetAddress();
+			try (PlatformClient client = connect(server)){
+				String[] shown = client.request("SHOW_POST_CHILDREN", String.valueOf(small));
+				assert shown.length == 2 && shown[1].equals(platform.showPostChildrenDetails(small).toString())
+						: "small thread " + Arrays.toString(shown);
+				String[] failed = client.request("SHOW_POST_CHILDREN", String.valueOf(large));
+				assert failed[0].equals(PlatformServer.ERROR) && failed[1].equals("IllegalStateException")
+						&& failed[2].contains("THREAD_PAGE") : "large thread answered " + failed[0];
+
+				String max = String.valueOf(Integer.MAX_VALUE);
+				String cursor = "";
+				int pages = 0;
+				int posts = 0;
+				do{
+					String[] page = client.request("THREAD_PAGE", String.valueOf(large), cursor, max, max, max);
+					assert page[0].equals(PlatformServer.OK) : "page " + pages + " answered " + Arrays.toString(page);
+					int count = Integer.parseInt(page[2]);
+					assert count >= 1 && count <= PlatformServer.MAX_PAGE_POSTS : "page of " + count + " posts";
+					posts += count;
+					cursor = page[3];
+					pages++;
+				} while (!cursor.isEmpty());
+				assert posts == 1 + PlatformServer.MAX_PAGE_POSTS : "thread paged as " + posts + " posts";
+				assert pages == 2 : "thread paged as " + pages + " pages";
+
+				String[] found = client.request("SEARCH", "thread", max);
+				assert found.length == 3 : "search answered " + Arrays.toString(found);
+				String[] negative = client.request("THREAD_PAGE", String.valueOf(large), "", "0", max, max);
+				assert negative[1].equals("IllegalArgumentException") : "page of no posts";
+				assert client.request("PING")[0].equals(PlatformServer.OK) : "connection after a long thread";
+			}
+		}
+	}
+
+	/**
+	 * Connects to a server on the loopback address.
+	 * @param server The server
+	 * @return The connection
+	 * @throws IOException If the server cannot be reached
+	 */
+	private static PlatformClient connect(PlatformServer server) throws IOException {
+		return new PlatformClient("127.0.0.1", server.getPort());
+	}
+
+	/**
+	 * Waits for the answer to a request sent on another thread.
+	 * @param future The answer to come
+	 * @return The answer
+	 * @throws Exception If the request failed
+	 */
+	private static String[] answer(Future<String[]> future) throws Exception {
+		try{
+			return future.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e){
+			throw new AssertionError("no answer within " + WAIT_MILLIS + " ms");
+		}
+	}
+
+	/**
+	 * Checks that the server has closed a connection.
+	 * @param client The connection
+	 * @param why Why it should be closed, used in failure messages
+	 */
+	private static void checkClosed(PlatformClient client, String why){
+		try{
+			String[] answer = client.receive();
+			assert false : why + ": connection left open, answered " + Arrays.toString(answer);
+		} catch (IOException e){
+			// Closed, as it should be
+		}
+	}
+
+	/**
+	 * Checks the request and write places of a server that are free.
+	 * @param server The server
+	 * @param requests The request places that should be free
+	 * @param writes The write places that should be free
+	 * @param when Describes the moment of the check, used in failure messages
+	 * @throws Exception If the places cannot be read
+	 */
+	private static void checkPermits(PlatformServer server, int requests, int writes, String when) throws Exception {
+		int freeRequests = ((Semaphore) field(server, "requestPermits")).availablePermits();
+		int freeWrites = ((Semaphore) field(server, "writePermits")).availablePermits();
+		assert freeRequests == requests && freeWrites == writes : when + ": " + freeRequests + " request and "
+				+ freeWrites + " write places free, expected " + requests + " and " + writes;
+	}
+
+	/**
+	 * Waits for a number of places of a server to be free, as a closed connection gives its place back on its own
+	 * thread.
+	 * @param server The server
+	 * @param name The name of the field holding the places
+	 * @param permits The number of places
+	 * @return Whether they were free within the wait
+	 * @throws Exception If the places cannot be read
+	 */
+	private static boolean awaitPermits(PlatformServer server, String name, int permits) throws Exception {
+		Semaphore semaphore = (Semaphore) field(server, name);
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while (semaphore.availablePermits() != permits){
+			if (System.currentTimeMillis() > deadline){
+				return false;
+			}
+			Thread.sleep(10);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a private field of a server.
+	 * @param server The server
+	 * @param name The name of the field
+	 * @return The value of the field
+	 * @throws Exception If the field cannot be read
+	 */
+	private static Object field(PlatformServer server, String name) throws Exception {
+		Field field = PlatformServer.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(server);
+	}
+
+	/**
+	 * A platform whose posts can be made to wait until released, or to fail, so requests can be held inside the
+	 * server.
+	 */
+	private final static class BlockingPlatform extends VersionedSocialMedia {
+		/**
+		 * Given a permit by each post made while blocking.
+		 */
+		final Semaphore inside = new Semaphore(0);
+		/**
+		 * Released to let the blocked posts go on.
+		 */
+		final CountDownLatch release = new CountDownLatch(1);
+		/**
+		 * A flag to indicate whether posts wait until released.
+		 */
+		volatile boolean block;
+		/**
+		 * A flag to indicate whether posts fail with an unchecked exception.
+		 */
+		volatile boolean fail;
+
+		@Override
+		public int createPost(String handle, String message) throws HandleNotRecognisedException, InvalidPostException {
+			if (fail && handle.equals("user")){
+				throw new IllegalStateException("Failing as asked");
+			}
+			if (block){
+				inside.release();
+				try{
+					release.await();
+				} catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.createPost(handle, message);
+		}
+	}
+}
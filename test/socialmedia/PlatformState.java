@@ -0,0 +1,41 @@
+package socialmedia;
+
+/**
+ * Describes everything a platform shows through the SocialMediaPlatform interface, so the tests can check that two
+ * platforms, or a platform before and after recovery, hold the same accounts and posts.
+ */
+class PlatformState {
+	/**
+	 * Returns a description of the totals, the accounts with the given handles and every post with an ID below the
+	 * next post ID, including whether it exists.
+	 * @param platform The platform to describe
+	 * @param handles The handles that are or have been used on the platform
+	 * @return The description
+	 * @throws Exception If the platform fails to show something it holds
+	 */
+	static String describe(SocialMediaPlatform platform, String... handles) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("accounts ").append(platform.getNumberOfAccounts())
+				.append(" original ").append(platform.getTotalOriginalPosts())
+				.append(" comments ").append(platform.getTotalCommentPosts())
+				.append(" endorsements ").append(platform.getTotalEndorsmentPosts())
+				.append(" most endorsed post ").append(platform.getMostEndorsedPost())
+				.append(" most endorsed account ").append(platform.getMostEndorsedAccount()).append('\n');
+		for (String handle : handles){
+			try{
+				sb.append(platform.showAccount(handle)).append("followers ").append(platform.getFollowerCount(handle))
+						.append(" following ").append(platform.getFollowingCount(handle)).append('\n');
+			} catch (HandleNotRecognisedException e){
+				sb.append("no account ").append(handle).append('\n');
+			}
+		}
+		for (int id = 1; id < Post.getNextId(); id++){
+			try{
+				sb.append(platform.showIndividualPost(id)).append('\n');
+			} catch (PostIDNotRecognisedException e){
+				sb.append("no post ").append(id).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,400 @@
+package socialmedia;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Checks searchPosts and PostSearchIndex against a scan of every message: that queries of words, OR groups and
+ * prefixes find the same posts, newest first, as the scan, while posts are added in and out of order so blocks fill
+ * and split, and removed so blocks and terms empty, and after the index and the platform are saved and loaded.
+ * Run with assertions enabled.
+ */
+public class PostSearchIndexTestApp {
+	/**
+	 * The words messages and queries are made of, several sharing prefixes.
+	 */
+	private final static String[] WORDS = {"alpha", "alps", "alpine", "al", "beta", "bet", "better", "gamma", "gam",
+			"delta", "deltas", "epsilon", "x", "x1", "x12", "zeta", "eta", "theta", "common", "Ölwechsel", "öl"};
+	/**
+	 * The number of random changes made to the index.
+	 */
+	private final static int CHANGES = 40000;
+	/**
+	 * The number of changes between checks of random queries.
+	 */
+	private final static int CHECK_EVERY = 5000;
+	/**
+	 * The number of random queries made by each check.
+	 */
+	private final static int QUERIES = 100;
+	/**
+	 * The number of random changes made to the platform.
+	 */
+	private final static int PLATFORM_CHANGES = 5000;
+	/**
+	 * The seed of the random changes and queries.
+	 */
+	private final static long SEED = 4711;
+
+	/**
+	 * Runs the checks.
+	 * @param args not used
+	 * @throws Exception If a check fails with an exception
+	 */
+	public static void main(String[] args) throws Exception {
+		checkTerms();
+		checkQueries();
+		checkIndex();
+		checkPlatform();
+		System.out.println("PostSearchIndexTestApp passed");
+	}
+
+	/**
+	 * Checks how messages are split into terms: at every character that is not a letter or digit, in lower case and
+	 * each term once.
+	 */
+	private static void checkTerms(){
+		assert PostSearchIndex.termsOf("Hello, hello WORLD!").equals(List.of("hello", "world")) : "case and repeats";
+		assert PostSearchIndex.termsOf("x1-y2_z3's").equals(List.of("x1", "y2", "z3", "s")) : "punctuation";
+		assert PostSearchIndex.termsOf("Ölwechsel\tüber\nÄrger").equals(List.of("ölwechsel", "über", "ärger"))
+				: "letters beyond ASCII";
+		assert PostSearchIndex.termsOf("... --- !!!").isEmpty() : "no letters";
+	}
+
+	/**
+	 * Checks the query language on a few posts whose matches are known: words that must all match, OR groups, words
+	 * holding several terms, prefixes, case, repeated posts and queries with no words.
+	 */
+	private static void checkQueries(){
+		PostSearchIndex index = new PostSearchIndex();
+		index.add(1, "alpha beta");
+		index.add(2, "alpine gamma");
+		index.add(3, "Beta-Gamma");
+		index.add(4, "alps");
+		index.add(5, "betting on alpha");
+		checkQuery(index, "alpha", 10, 5, 1);
+		checkQuery(index, "ALPHA Beta", 10, 1);
+		checkQuery(index, "beta gamma", 10, 3);
+		checkQuery(index, "beta-gamma", 10, 3);
+		checkQuery(index, "beta OR gamma", 10, 3, 2, 1);
+		checkQuery(index, "alp*", 10, 5, 4, 2, 1);
+		checkQuery(index, "alp* bet*", 10, 5, 1);
+		checkQuery(index, "alp* OR gam* OR missing", 2, 5, 4);
+		checkQuery(index, "  gamma   OR  OR alps ", 10, 4, 3, 2);
+		checkQuery(index, "missing", 10);
+		checkQuery(index, "alpha missing", 10);
+		checkQuery(index, "missing*", 10);
+		checkQuery(index, "OR", 10);
+		checkQuery(index, "", 10);
+		checkQuery(index, "!!!", 10);
+		checkQuery(index, "alpha", 0);
+		checkQuery(index, null, 10);
+		index.remove(1, "alpha beta");
+		index.remove(1, "alpha beta"); // Removing a post twice changes nothing
+		checkQuery(index, "alpha OR beta", 10, 5, 3);
+		index.remove(4, "alps");
+		checkQuery(index, "alp*", 10, 5, 2);
+		assert index.getTermCount() == 6 : "terms left " + index.getTermCount();
+	}
+
+	/**
+	 * Checks the IDs a query finds.
+	 * @param index The index
+	 * @param query The query
+	 * @param limit The most IDs to find
+	 * @param expected The IDs it should find, newest first
+	 */
+	private static void checkQuery(PostSearchIndex index, String query, int limit, int... expected){
+		int[] found = index.search(query, limit);
+		assert Arrays.equals(found, expected) : "'" + query + "' found " + Arrays.toString(found) + " not "
+				+ Arrays.toString(expected);
+	}
+
+	/**
+	 * Makes random changes to an index, adding posts mostly in ID order but often below the newest ID, which splits
+	 * full blocks, and removing posts, checking random queries against a scan of the messages along the way, and
+	 * again once the index has been saved and read back.
+	 * @throws Exception If the index cannot be saved or read
+	 */
+	private static void checkIndex() throws Exception {
+		Random random = new Random(SEED);
+		PostSearchIndex index = new PostSearchIndex();
+		TreeMap<Integer, String> messages = new TreeMap<Integer, String>();
+		int nextId = 1;
+		for (int i = 0; i < CHANGES; i++){
+			int choice = random.nextInt(100);
+			if (choice < 45){
+				nextId += 1 + (random.nextInt(10) == 0 ? random.nextInt(100000) : 0); // Some gaps need long deltas
+				add(index, messages, nextId, randomMessage(random));
+			} else if (choice < 75){
+				int id = 1 + random.nextInt(nextId); // Below the newest ID, into a block that may be full
+				if (!messages.containsKey(id)){
+					add(index, messages, id, randomMessage(random));
+				}
+			} else if (!messages.isEmpty()){
+				Integer id = messages.ceilingKey(1 + random.nextInt(nextId));
+				id = id == null ? messages.firstKey() : id;
+				index.remove(id, messages.remove(id));
+			}
+			if ((i + 1) % CHECK_EVERY == 0){
+				checkRandomQueries(index, messages, random);
+			}
+		}
+		checkTermCount(index, messages);
+		PostSearchIndex read = saveAndRead(index);
+		checkRandomQueries(read, messages, random);
+		checkTermCount(read, messages);
+		assert Arrays.equals(read.search("common", Integer.MAX_VALUE), index.search("common", Integer.MAX_VALUE))
+				: "common term read back";
+
+		for (int id : new ArrayList<Integer>(messages.keySet())){ // Empties every block and term
+			if (random.nextBoolean()){
+				read.remove(id, messages.remove(id));
+			}
+		}
+		checkRandomQueries(read, messages, random);
+		for (Map.Entry<Integer, String> entry : messages.entrySet()){
+			read.remove(entry.getKey(), entry.getValue());
+		}
+		assert read.getTermCount() == 0 : "terms left in an empty index " + read.getTermCount();
+		assert read.search("common", 10).length == 0 : "posts found in an empty index";
+	}
+
+	/**
+	 * Adds a post to an index and to the messages it is checked against.
+	 * @param index The index
+	 * @param messages The messages of the posts in the index, by ID
+	 * @param id The ID of the post
+	 * @param message The message of the post
+	 */
+	private static void add(PostSearchIndex index, TreeMap<Integer, String> messages, int id, String message){
+		index.add(id, message);
+		messages.put(id, message);
+	}
+
+	/**
+	 * Returns a random message of a few words in mixed case and punctuation, most of them holding a common word so
+	 * its posting list has many blocks.
+	 * @param random The random choices
+	 * @return The message
+	 */
+	private static String randomMessage(Random random){
+		StringBuilder sb = new StringBuilder(random.nextInt(4) == 0 ? "" : "Common ");
+		for (int words = 1 + random.nextInt(4); words > 0; words--){
+			String word = WORDS[random.nextInt(WORDS.length)];
+			sb.append(random.nextInt(5) == 0 ? word.toUpperCase() : word).append(", -!".charAt(random.nextInt(4)));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns a random query of one to three groups of words, which may be prefixes, hold several terms or have no
+	 * terms at all.
+	 * @param random The random choices
+	 * @return The query
+	 */
+	private static String randomQuery(Random random){
+		StringBuilder sb = new StringBuilder();
+		for (int groups = 1 + random.nextInt(3); groups > 0; groups--){
+			for (int words = 1 + random.nextInt(3); words > 0; words--){
+				String word = random.nextInt(10) == 0 ? "common" : WORDS[random.nextInt(WORDS.length)];
+				int kind = random.nextInt(10);
+				if (kind < 3){
+					word = word.substring(0, 1 + random.nextInt(word.length())) + "*";
+				} else if (kind == 3){
+					word = word + "-" + WORDS[random.nextInt(WORDS.length)];
+				} else if (kind == 4){
+					word = word.toUpperCase();
+				} else if (kind == 5){
+					word = random.nextBoolean() ? "missing" : "?!";
+				}
+				sb.append(word).append(' ');
+			}
+			sb.append(groups > 1 ? "OR " : "");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Checks random queries with random limits against a scan of the messages.
+	 * @param index The index
+	 * @param messages The messages of the posts in the index, by ID
+	 * @param random The random choices
+	 */
+	private static void checkRandomQueries(PostSearchIndex index, TreeMap<Integer, String> messages, Random random){
+		int[] limits = {1, 3, 64, 65, 1000, Integer.MAX_VALUE};
+		for (int q = 0; q < QUERIES; q++){
+			String query = randomQuery(random);
+			int limit = limits[random.nextInt(limits.length)];
+			int[] expected = scan(messages, query, limit);
+			int[] found = index.search(query, limit);
+			assert Arrays.equals(found, expected) : "'" + query + "' limit " + limit + " found " + found.length
+					+ " posts " + Arrays.toString(Arrays.copyOf(found, Math.min(found.length, 10))) + " not "
+					+ expected.length + " " + Arrays.toString(Arrays.copyOf(expected, Math.min(expected.length, 10)));
+		}
+	}
+
+	/**
+	 * Finds the posts matching a query by checking every message.
+	 * @param messages The messages of the posts, by ID
+	 * @param query The query
+	 * @param limit The most IDs to find
+	 * @return IDs of the matching posts, newest first
+	 */
+	private static int[] scan(Map<Integer, String> messages, String query, int limit){
+		List<List<String>> groups = new ArrayList<List<String>>(); // Each term, ending in '*' if it is a prefix
+		List<String> group = new ArrayList<String>();
+		for (String word : query.trim().split("\\s+")){
+			if (word.equals(PostSearchIndex.OR)){
+				groups.add(group);
+				group = new ArrayList<String>();
+				continue;
+			}
+			List<String> terms = PostSearchIndex.termsOf(word);
+			for (int i = 0; i < terms.size(); i++){
+				group.add(terms.get(i) + (word.endsWith("*") && i == terms.size() - 1 ? "*" : ""));
+			}
+		}
+		groups.add(group);
+		List<Integer> found = new ArrayList<Integer>();
+		for (int id : ((TreeMap<Integer, String>) messages).descendingKeySet()){
+			if (found.size() == limit){
+				break;
+			}
+			List<String> terms = PostSearchIndex.termsOf(messages.get(id));
+			for (List<String> g : groups){
+				if (!g.isEmpty() && matchesAll(terms, g)){
+					found.add(id);
+					break;
+				}
+			}
+		}
+		return found.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * States whether the terms of a message hold every term of a group.
+	 * @param terms The terms of the message
+	 * @param group The terms of the group, ending in '*' if they are prefixes
+	 * @return Whether each term of the group is in the message
+	 */
+	private static boolean matchesAll(List<String> terms, List<String> group){
+		for (String wanted : group){
+			boolean matched = false;
+			for (String term : terms){
+				if (wanted.endsWith("*") ? term.startsWith(wanted.substring(0, wanted.length() - 1))
+						: term.equals(wanted)){
+					matched = true;
+					break;
+				}
+			}
+			if (!matched){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks that an index holds a term for each term of the messages, and no more.
+	 * @param index The index
+	 * @param messages The messages of the posts in the index, by ID
+	 */
+	private static void checkTermCount(PostSearchIndex index, Map<Integer, String> messages){
+		TreeSet<String> terms = new TreeSet<String>();
+		for (String message : messages.values()){
+			terms.addAll(PostSearchIndex.termsOf(message));
+		}
+		assert index.getTermCount() == terms.size() : "terms " + index.getTermCount() + " expected " + terms.size();
+	}
+
+	/**
+	 * Saves an index to a file and reads it back.
+	 * @param index The index
+	 * @return The index read back
+	 * @throws Exception If the file cannot be written or read
+	 */
+	private static PostSearchIndex saveAndRead(PostSearchIndex index) throws Exception {
+		File file = File.createTempFile("search", ".index");
+		file.deleteOnExit();
+		try (BufferedChannelOutput out = new BufferedChannelOutput(FileChannel.open(file.toPath(),
+				StandardOpenOption.WRITE))){
+			index.write(out);
+		}
+		try (BufferedChannelInput in = new BufferedChannelInput(FileChannel.open(file.toPath(),
+				StandardOpenOption.READ))){
+			return PostSearchIndex.read(in);
+		}
+	}
+
+	/**
+	 * Makes random posts, comments, endorsements and deletes on a platform, checking searchPosts against a scan of
+	 * the messages of its original and comment posts, and again after the platform is saved and loaded in full and
+	 * lazily.
+	 * @throws Exception If the platform cannot be saved or loaded
+	 */
+	private static void checkPlatform() throws Exception {
+		Random random = new Random(SEED);
+		SocialMedia platform = new SocialMedia();
+		platform.erasePlatform();
+		TreeMap<Integer, String> messages = new TreeMap<Integer, String>();
+		for (int i = 0; i < 5; i++){
+			platform.createAccount("user" + i);
+			String message = randomMessage(random);
+			messages.put(platform.createPost("user" + i, message), message);
+		}
+		for (int i = 0; i < PLATFORM_CHANGES; i++){
+			String handle = "user" + random.nextInt(5);
+			int id = 1 + random.nextInt(Post.getNextId() - 1);
+			String message = randomMessage(random);
+			try{
+				int choice = random.nextInt(10);
+				if (choice < 4){
+					messages.put(platform.createPost(handle, message), message);
+				} else if (choice < 7){
+					messages.put(platform.commentPost(handle, id, message), message);
+				} else if (choice < 9){
+					platform.endorsePost(handle, id); // Not indexed, as it copies the message it endorses
+				} else{
+					platform.deletePost(id);
+					messages.remove(id);
+				}
+			} catch (PostIDNotRecognisedException | NotActionablePostException e){
+				// The post was deleted, or is an endorsement
+			}
+		}
+		checkPlatformQueries(platform, messages, random);
+
+		File file = File.createTempFile("search", ".snap");
+		file.deleteOnExit();
+		platform.savePlatform(file.getPath());
+		SocialMedia loaded = new SocialMedia();
+		loaded.loadPlatform(file.getPath());
+		checkPlatformQueries(loaded, messages, random);
+		loaded.loadPlatformLazily(file.getPath());
+		checkPlatformQueries(loaded, messages, random);
+	}
+
+	/**
+	 * Checks random queries on a platform against a scan of the messages.
+	 * @param platform The platform
+	 * @param messages The messages of the original and comment posts of the platform, by ID
+	 * @param random The random choices
+	 */
+	private static void checkPlatformQueries(SocialMedia platform, TreeMap<Integer, String> messages, Random random){
+		for (int q = 0; q < QUERIES; q++){
+			String query = randomQuery(random);
+			int limit = 1 + random.nextInt(100);
+			assert Arrays.equals(platform.searchPosts(query, limit), scan(messages, query, limit))
+					: "searchPosts '" + query + "' limit " + limit;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package socialmedia;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the versions published by VersionedSocialMedia: that a version never changes once published, however many
+ * changes are made after it, and that the accounts and posts it hands out list the same posts, comments and
+ * endorsements as the platform does. Run with assertions enabled.
+ */
+public class VersionedSocialMediaTestApp {
+	/**
+	 * The number of random changes made to the platform.
+	 */
+	private final static int CHANGES = 6000;
+	/**
+	 * The number of changes between the versions that are checked.
+	 */
+	private final static int CHECK_EVERY = 1000;
+	/**
+	 * The number of handles the changes choose from.
+	 */
+	private final static int HANDLES = 12;
+	/**
+	 * The seed of the random changes.
+	 */
+	private final static long SEED = 97;
+
+	/**
+	 * Makes random changes to a platform, checking each version kept along the way against the platform when it
+	 * is published and again once every change has been made.
+	 * @param args not used
+	 * @throws Exception If a check fails with an exception
+	 */
+	public static void main(String[] args) throws Exception {
+		VersionedSocialMedia platform = new VersionedSocialMedia();
+		platform.erasePlatform();
+		for (int i = 0; i < HANDLES; i++){
+			platform.createAccount(handle(i));
+			platform.createPost(handle(i), "first post");
+		}
+		Random random = new Random(SEED);
+		PlatformVersion[] kept = new PlatformVersion[CHANGES / CHECK_EVERY];
+		String[] descriptions = new String[kept.length];
+		int[] nextAccountIds = new int[kept.length];
+		int[] nextPostIds = new int[kept.length];
+		for (int i = 0; i < CHANGES; i++){
+			change(platform, random);
+			if ((i + 1) % CHECK_EVERY == 0){
+				int k = i / CHECK_EVERY;
+				kept[k] = platform.getVersion();
+				nextAccountIds[k] = Account.getNextId();
+				nextPostIds[k] = Post.getNextId();
+				descriptions[k] = describe(kept[k], nextAccountIds[k], nextPostIds[k]);
+				checkViews(platform, kept[k]);
+			}
+		}
+		for (int k = 0; k < kept.length; k++){
+			assert describe(kept[k], nextAccountIds[k], nextPostIds[k]).equals(descriptions[k])
+					: "version " + k + " changed by later changes";
+		}
+		System.out.println("VersionedSocialMediaTestApp passed");
+	}
+
+	/**
+	 * Returns one of the handles the changes choose from.
+	 * @param i The number of the handle
+	 * @return The handle
+	 */
+	private static String handle(int i){
+		return "user" + i;
+	}
+
+	/**
+	 * Makes one random change. Changes naming an account or post that has been removed are rejected with the
+	 * checked exceptions of the interface, which are expected.
+	 * @param platform The platform
+	 * @param random The random choices
+	 * @throws Exception If the change fails unexpectedly
+	 */
+	private static void change(SocialMediaPlatform platform, Random random) throws Exception {
+		int account = random.nextInt(HANDLES);
+		String handle = handle(account);
+		int post = 1 + random.nextInt(Post.getNextId() - 1);
+		try{
+			int choice = random.nextInt(100);
+			if (choice < 30){
+				platform.createPost(handle, "a post");
+			} else if (choice < 50){
+				platform.commentPost(handle, post, "a comment");
+			} else if (choice < 80){
+				platform.endorsePost(handle, post);
+			} else if (choice < 93){
+				platform.deletePost(post);
+			} else if (choice < 95){ // Removed accounts are created again, with a new ID, so the handles stay in use
+				platform.removeAccount(handle);
+				platform.createAccount(handle);
+			} else{
+				platform.updateAccountDescription(handle, "description " + random.nextInt(10));
+			}
+		} catch (PostIDNotRecognisedException | NotActionablePostException e){
+			// The post was deleted, or is an endorsement
+		}
+	}
+
+	/**
+	 * Describes everything a version shows for the accounts and posts with IDs below the given ones, including the
+	 * posts listed by each account and the comments and endorsements listed by each post.
+	 * @param version The version
+	 * @param nextAccountId The next account ID when the version was published
+	 * @param nextPostId The next post ID when the version was published
+	 * @return The description
+	 * @throws Exception If the version fails to show something it holds
+	 */
+	private static String describe(PlatformVersion version, int nextAccountId, int nextPostId) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("accounts ").append(version.getNumberOfAccounts())
+				.append(" original ").append(version.getTotalOriginalPosts())
+				.append(" comments ").append(version.getTotalCommentPosts())
+				.append(" endorsements ").append(version.getTotalEndorsmentPosts())
+				.append(" most endorsed post ").append(version.getMostEndorsedPost())
+				.append(" most endorsed account ").append(version.getMostEndorsedAccount()).append('\n');
+		for (int id = 1; id < nextAccountId; id++){
+			Account account = version.account(id);
+			if (account == null){
+				sb.append("no account ").append(id).append('\n');
+			} else{
+				sb.append(version.showAccount(account.getHandle())).append(" posts ").append(ids(account.getPosts()))
+						.append('\n');
+			}
+		}
+		for (int id = 1; id < nextPostId; id++){
+			Post post = version.post(id);
+			if (post == null){
+				sb.append("no post ").append(id).append('\n');
+			} else{
+				sb.append(version.showIndividualPost(id)).append(" comments ").append(ids(post.getComments()))
+						.append(" endorsements ").append(ids(post.getEndorsements())).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Checks that the accounts and posts of a version list the same posts, comments and endorsements as those of
+	 * the platform, read back from a save of it.
+	 * @param platform The platform, which has not changed since the version was published
+	 * @param version The version
+	 * @throws Exception If the platform cannot be saved or read back
+	 */
+	private static void checkViews(VersionedSocialMedia platform, PlatformVersion version) throws Exception {
+		File file = File.createTempFile("versioned", ".snap");
+		file.deleteOnExit();
+		platform.savePlatform(file.getPath());
+		PlatformSnapshot saved = PlatformSnapshot.read(file.getPath());
+
+		assert version.getNumberOfAccounts() == saved.getAccounts().size() : "accounts";
+		for (Account a : saved.getAccounts().values()){
+			assert ids(version.account(a.getID()).getPosts()).equals(ids(a.getPosts())) : "posts of account " + a.getID()
+					+ ": " + ids(version.account(a.getID()).getPosts()) + " expected " + ids(a.getPosts());
+		}
+		for (Post p : saved.getPosts()){
+			Post view = version.post(p.getID());
+			assert ids(view.getEndorsements()).equals(ids(p.getEndorsements())) : "endorsements of post " + p.getID()
+					+ ": " + ids(view.getEndorsements()) + " expected " + ids(p.getEndorsements());
+			assert ids(view.getComments()).equals(ids(p.getComments())) : "comments of post " + p.getID();
+		}
+	}
+
+	/**
+	 * Lists the IDs of posts.
+	 * @param posts The posts
+	 * @return The IDs, in the order of the list
+	 */
+	private static String ids(List<? extends Post> posts){
+		StringBuilder sb = new StringBuilder("[");
+		for (Post p : posts){
+			sb.append(' ').append(p.getID());
+		}
+		return sb.append(" ]").toString();
+	}
+}